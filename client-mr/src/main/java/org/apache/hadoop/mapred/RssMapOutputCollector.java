@@ -37,6 +37,7 @@ import org.apache.hadoop.mapreduce.TaskCounter;
 import com.tencent.rss.common.ShuffleServerInfo;
 import com.tencent.rss.common.exception.RssException;
 import com.tencent.rss.common.util.ByteUnit;
+import com.tencent.rss.common.util.ChecksumType;
 import com.tencent.rss.storage.util.StorageType;
 
 public class RssMapOutputCollector<K extends Object, V extends Object>
@@ -108,7 +109,10 @@ public class RssMapOutputCollector<K extends Object, V extends Object>
         bitmapSplitNum,
         maxSegmentSize,
         numMaps,
-        isMemoryShuffleEnabled(storageType));
+        isMemoryShuffleEnabled(storageType),
+        RssMRUtils.createCodec(jobConf),
+        ChecksumType.fromName(jobConf.get(RssMRConfig.RSS_CLIENT_CHECKSUM_TYPE,
+            RssMRConfig.RSS_CLIENT_CHECKSUM_TYPE_DEFAULT_VALUE)));
   }
 
   private Map<Integer, List<ShuffleServerInfo>> createAssignmentMap(JobConf jobConf) {
@@ -45,10 +45,12 @@ import org.slf4j.LoggerFactory;
 import com.tencent.rss.client.api.ShuffleWriteClient;
 import com.tencent.rss.client.response.SendShuffleDataResult;
 import com.tencent.rss.client.util.ClientUtils;
-import com.tencent.rss.common.RssShuffleUtils;
 import com.tencent.rss.common.ShuffleBlockInfo;
 import com.tencent.rss.common.ShuffleServerInfo;
+import com.tencent.rss.common.compression.Codec;
+import com.tencent.rss.common.compression.Lz4Codec;
 import com.tencent.rss.common.exception.RssException;
+import com.tencent.rss.common.util.ChecksumType;
 import com.tencent.rss.common.util.ChecksumUtils;
 
 public class SortWriteBufferManager<K, V> {
@@ -86,6 +88,8 @@ public class SortWriteBufferManager<K, V> {
   private long maxSegmentSize;
   private final boolean isMemoryShuffleEnabled;
   private final int numMaps;
+  private final Codec codec;
+  private final ChecksumType checksumType;
   private long copyTime = 0;
   private long sortTime = 0;
   private final ExecutorService sendExecutorService = Executors.newFixedThreadPool(
@@ -116,6 +120,35 @@ public class SortWriteBufferManager<K, V> {
       long maxSegmentSize,
       int numMaps,
       boolean isMemoryShuffleEnabled) {
+    this(maxMemSize, taskAttemptId, batch, keySerializer, valSerializer, comparator, memoryThreshold, appId,
+        shuffleWriteClient, sendCheckInterval, sendCheckTimeout, partitionToServers, successBlockIds,
+        failedBlockIds, mapOutputByteCounter, mapOutputRecordCounter, bitmapSplitNum, maxSegmentSize,
+        numMaps, isMemoryShuffleEnabled, new Lz4Codec(), ChecksumType.CRC32);
+  }
+
+  public SortWriteBufferManager(
+      long maxMemSize,
+      long taskAttemptId,
+      int batch,
+      Serializer<K> keySerializer,
+      Serializer<V> valSerializer,
+      RawComparator<K> comparator,
+      double memoryThreshold,
+      String appId,
+      ShuffleWriteClient shuffleWriteClient,
+      long sendCheckInterval,
+      long sendCheckTimeout,
+      Map<Integer, List<ShuffleServerInfo>> partitionToServers,
+      Set<Long> successBlockIds,
+      Set<Long> failedBlockIds,
+      Counters.Counter mapOutputByteCounter,
+      Counters.Counter mapOutputRecordCounter,
+      int bitmapSplitNum,
+      long maxSegmentSize,
+      int numMaps,
+      boolean isMemoryShuffleEnabled,
+      Codec codec,
+      ChecksumType checksumType) {
     this.maxMemSize = maxMemSize;
     this.taskAttemptId = taskAttemptId;
     this.batch = batch;
@@ -136,6 +169,8 @@ public class SortWriteBufferManager<K, V> {
     this.maxSegmentSize = maxSegmentSize;
     this.numMaps = numMaps;
     this.isMemoryShuffleEnabled = isMemoryShuffleEnabled;
+    this.codec = codec;
+    this.checksumType = checksumType;
   }
 
   // todo: Single Buffer should also have its size limit
@@ -286,8 +321,10 @@ public class SortWriteBufferManager<K, V> {
     int partitionId = wb.getPartitionId();
     final int uncompressLength = data.length;
     long start = System.currentTimeMillis();
-    final byte[] compressed = RssShuffleUtils.compressData(data);
-    final long crc32 = ChecksumUtils.getCrc32(compressed);
+    final byte[] compressed = codec.compress(data);
+    // the codec is recorded with the block, so the reader doesn't depend on its own codec config
+    final long crc32 = ChecksumUtils.withCodecId(
+        ChecksumUtils.getChecksum(checksumType, compressed), codec.getType().getId());
     compressTime += System.currentTimeMillis() - start;
     final long blockId = ClientUtils.getBlockId(partitionId, taskAttemptId, getNextSeqNo(partitionId));
     uncompressedDataLen += data.length;
@@ -102,6 +102,39 @@ public class RssMRConfig {
   public static String RSS_CLIENT_READ_BUFFER_SIZE_DEFAULT_VALUE =
       RssClientConfig.RSS_CLIENT_READ_BUFFER_SIZE_DEFAULT_VALUE;
 
+  public static String RSS_CLIENT_READ_STREAM_ENABLED =
+      MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_STREAM_ENABLED;
+  public static boolean RSS_CLIENT_READ_STREAM_ENABLED_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_STREAM_ENABLED_DEFAULT_VALUE;
+  public static String RSS_CLIENT_READ_SERVER_FILTER_ENABLED =
+      MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_SERVER_FILTER_ENABLED;
+  public static boolean RSS_CLIENT_READ_SERVER_FILTER_ENABLED_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_SERVER_FILTER_ENABLED_DEFAULT_VALUE;
+  public static String RSS_CLIENT_READ_PREFETCH_DEPTH =
+      MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_PREFETCH_DEPTH;
+  public static int RSS_CLIENT_READ_PREFETCH_DEPTH_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_PREFETCH_DEPTH_DEFAULT_VALUE;
+  public static String RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE =
+      MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE;
+  public static String RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE_DEFAULT_VALUE;
+  public static String RSS_CLIENT_READ_HDFS_CONCURRENCY =
+      MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_HDFS_CONCURRENCY;
+  public static int RSS_CLIENT_READ_HDFS_CONCURRENCY_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_HDFS_CONCURRENCY_DEFAULT_VALUE;
+  public static String RSS_CLIENT_COMPRESSION_CODEC =
+      MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_COMPRESSION_CODEC;
+  public static String RSS_CLIENT_COMPRESSION_CODEC_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_COMPRESSION_CODEC_DEFAULT_VALUE;
+  public static String RSS_CLIENT_COMPRESSION_ZSTD_LEVEL =
+      MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_COMPRESSION_ZSTD_LEVEL;
+  public static int RSS_CLIENT_COMPRESSION_ZSTD_LEVEL_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_COMPRESSION_ZSTD_LEVEL_DEFAULT_VALUE;
+  public static String RSS_CLIENT_CHECKSUM_TYPE =
+      MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_CHECKSUM_TYPE;
+  public static String RSS_CLIENT_CHECKSUM_TYPE_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_CHECKSUM_TYPE_DEFAULT_VALUE;
+
   public static String RSS_DYNAMIC_CLIENT_CONF_ENABLED =
       MR_RSS_CONFIG_PREFIX + RssClientConfig.RSS_DYNAMIC_CLIENT_CONF_ENABLED;
   public static boolean RSS_DYNAMIC_CLIENT_CONF_ENABLED_DEFAULT_VALUE =
@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 import com.tencent.rss.client.api.ShuffleWriteClient;
 import com.tencent.rss.client.factory.ShuffleClientFactory;
 import com.tencent.rss.common.ShuffleServerInfo;
+import com.tencent.rss.common.compression.Codec;
 import com.tencent.rss.common.exception.RssException;
 
 public class RssMRUtils {
@@ -135,4 +136,12 @@ public class RssMRUtils {
       }
     }
   }
+
+  public static Codec createCodec(JobConf jobConf) {
+    return Codec.newInstance(
+        jobConf.get(RssMRConfig.RSS_CLIENT_COMPRESSION_CODEC,
+            RssMRConfig.RSS_CLIENT_COMPRESSION_CODEC_DEFAULT_VALUE),
+        jobConf.getInt(RssMRConfig.RSS_CLIENT_COMPRESSION_ZSTD_LEVEL,
+            RssMRConfig.RSS_CLIENT_COMPRESSION_ZSTD_LEVEL_DEFAULT_VALUE));
+  }
 }
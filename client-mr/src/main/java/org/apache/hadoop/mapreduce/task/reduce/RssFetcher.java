@@ -36,7 +36,7 @@ import org.apache.hadoop.util.Progress;
 
 import com.tencent.rss.client.api.ShuffleReadClient;
 import com.tencent.rss.client.response.CompressedShuffleBlock;
-import com.tencent.rss.common.RssShuffleUtils;
+import com.tencent.rss.common.compression.Codec;
 import com.tencent.rss.common.exception.RssException;
 import com.tencent.rss.common.util.ByteUnit;
 
@@ -142,8 +142,10 @@ public class RssFetcher<K,V> {
     // uncompress the block
     if (compressedData != null) {
       final long startDecompress = System.currentTimeMillis();
-      byte[] uncompressedData = RssShuffleUtils.decompressData(
-        compressedData, compressedBlock.getUncompressLength(), false).array();
+      byte[] uncompressedData = new byte[compressedBlock.getUncompressLength()];
+      // every block is decompressed with the codec of its writer
+      Codec.getDecompressor(compressedBlock.getCodecId()).decompress(
+          compressedData, compressedBlock.getUncompressLength(), ByteBuffer.wrap(uncompressedData));
       unCompressionLength += compressedBlock.getUncompressLength();
       long decompressDuration = System.currentTimeMillis() - startDecompress;
       decompressTime += decompressDuration;
@@ -79,6 +79,11 @@ public class RssShuffle<K, V> implements ShuffleConsumerPlugin<K, V>, ExceptionR
   private String basePath;
   private int indexReadLimit;
   private int readBufferSize;
+  private boolean streamReadEnabled;
+  private boolean serverFilterEnabled;
+  private int prefetchDepth;
+  private long prefetchBufferSize;
+  private int hdfsReadConcurrency;
   private RemoteStorageInfo remoteStorageInfo;
 
   @Override
@@ -115,6 +120,17 @@ public class RssShuffle<K, V> implements ShuffleConsumerPlugin<K, V>, ExceptionR
     this.readBufferSize = (int)UnitConverter.byteStringAsBytes(
       jobConf.get(RssMRConfig.RSS_CLIENT_READ_BUFFER_SIZE,
         RssMRConfig.RSS_CLIENT_READ_BUFFER_SIZE_DEFAULT_VALUE));
+    this.streamReadEnabled = jobConf.getBoolean(RssMRConfig.RSS_CLIENT_READ_STREAM_ENABLED,
+      RssMRConfig.RSS_CLIENT_READ_STREAM_ENABLED_DEFAULT_VALUE);
+    this.serverFilterEnabled = jobConf.getBoolean(RssMRConfig.RSS_CLIENT_READ_SERVER_FILTER_ENABLED,
+      RssMRConfig.RSS_CLIENT_READ_SERVER_FILTER_ENABLED_DEFAULT_VALUE);
+    this.prefetchDepth = jobConf.getInt(RssMRConfig.RSS_CLIENT_READ_PREFETCH_DEPTH,
+      RssMRConfig.RSS_CLIENT_READ_PREFETCH_DEPTH_DEFAULT_VALUE);
+    this.prefetchBufferSize = UnitConverter.byteStringAsBytes(
+      jobConf.get(RssMRConfig.RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE,
+        RssMRConfig.RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE_DEFAULT_VALUE));
+    this.hdfsReadConcurrency = jobConf.getInt(RssMRConfig.RSS_CLIENT_READ_HDFS_CONCURRENCY,
+      RssMRConfig.RSS_CLIENT_READ_HDFS_CONCURRENCY_DEFAULT_VALUE);
     String remoteStorageConf = jobConf.get(RssMRConfig.RSS_REMOTE_STORAGE_CONF, "");
     this.remoteStorageInfo = new RemoteStorageInfo(basePath, remoteStorageConf);
    }
@@ -167,11 +183,18 @@ public class RssShuffle<K, V> implements ShuffleConsumerPlugin<K, V>, ExceptionR
       }
       CreateShuffleReadClientRequest request = new CreateShuffleReadClientRequest(
         appId, 0, reduceId.getTaskID().getId(), storageType, basePath, indexReadLimit, readBufferSize,
-        partitionNumPerRange, partitionNum, blockIdBitmap, taskIdBitmap, serverInfoList, readerJobConf);
+        partitionNumPerRange, partitionNum, blockIdBitmap, taskIdBitmap, serverInfoList, readerJobConf,
+        streamReadEnabled, serverFilterEnabled, prefetchDepth, prefetchBufferSize,
+        hdfsReadConcurrency);
       ShuffleReadClient shuffleReadClient = ShuffleClientFactory.getInstance().createShuffleReadClient(request);
       RssFetcher fetcher = new RssFetcher(jobConf, reduceId, taskStatus, merger, copyPhase, reporter, metrics,
         shuffleReadClient, blockIdBitmap.getLongCardinality());
-      fetcher.fetchAllRssBlocks();
+      try {
+        fetcher.fetchAllRssBlocks();
+      } finally {
+        // stop prefetching if the fetch fails, the read client is closed already when all blocks are fetched
+        shuffleReadClient.close();
+      }
       LOG.info("In reduce: " + reduceId
         + ", Rss MR client fetches blocks from RSS server successfully");
     }
@@ -88,6 +88,42 @@ public class RssSparkConfig {
   // it will incur humongous allocation, so we set it to 14m.
   public static final String RSS_CLIENT_READ_BUFFER_SIZE_DEFAULT_VALUE =
       RssClientConfig.RSS_CLIENT_READ_BUFFER_SIZE_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_READ_STREAM_ENABLED =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_STREAM_ENABLED;
+  public static final boolean RSS_CLIENT_READ_STREAM_ENABLED_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_STREAM_ENABLED_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_READ_SERVER_FILTER_ENABLED =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_SERVER_FILTER_ENABLED;
+  public static final boolean RSS_CLIENT_READ_SERVER_FILTER_ENABLED_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_SERVER_FILTER_ENABLED_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_READ_PREFETCH_DEPTH =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_PREFETCH_DEPTH;
+  public static final int RSS_CLIENT_READ_PREFETCH_DEPTH_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_PREFETCH_DEPTH_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE;
+  public static final String RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_READ_PARTITION_CONCURRENCY =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_PARTITION_CONCURRENCY;
+  public static final int RSS_CLIENT_READ_PARTITION_CONCURRENCY_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_PARTITION_CONCURRENCY_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_READ_HDFS_CONCURRENCY =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_READ_HDFS_CONCURRENCY;
+  public static final int RSS_CLIENT_READ_HDFS_CONCURRENCY_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_READ_HDFS_CONCURRENCY_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_COMPRESSION_CODEC =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_COMPRESSION_CODEC;
+  public static final String RSS_CLIENT_COMPRESSION_CODEC_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_COMPRESSION_CODEC_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_COMPRESSION_ZSTD_LEVEL =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_COMPRESSION_ZSTD_LEVEL;
+  public static final int RSS_CLIENT_COMPRESSION_ZSTD_LEVEL_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_COMPRESSION_ZSTD_LEVEL_DEFAULT_VALUE;
+  public static final String RSS_CLIENT_CHECKSUM_TYPE =
+      SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_CLIENT_CHECKSUM_TYPE;
+  public static final String RSS_CLIENT_CHECKSUM_TYPE_DEFAULT_VALUE =
+      RssClientConfig.RSS_CLIENT_CHECKSUM_TYPE_DEFAULT_VALUE;
   public static final String RSS_HEARTBEAT_INTERVAL = SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_HEARTBEAT_INTERVAL;
   public static final long RSS_HEARTBEAT_INTERVAL_DEFAULT_VALUE = RssClientConfig.RSS_HEARTBEAT_INTERVAL_DEFAULT_VALUE;
   public static final String RSS_HEARTBEAT_TIMEOUT = SPARK_RSS_CONFIG_PREFIX + RssClientConfig.RSS_HEARTBEAT_TIMEOUT;
@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import com.tencent.rss.client.api.CoordinatorClient;
 import com.tencent.rss.client.factory.CoordinatorClientFactory;
 import com.tencent.rss.common.RemoteStorageInfo;
+import com.tencent.rss.common.compression.Codec;
 
 public class RssSparkShuffleUtils {
 
@@ -124,4 +125,12 @@ public class RssSparkShuffleUtils {
     }
     return readerHadoopConf;
   }
+
+  public static Codec createCodec(SparkConf sparkConf) {
+    return Codec.newInstance(
+        sparkConf.get(RssSparkConfig.RSS_CLIENT_COMPRESSION_CODEC,
+            RssSparkConfig.RSS_CLIENT_COMPRESSION_CODEC_DEFAULT_VALUE),
+        sparkConf.getInt(RssSparkConfig.RSS_CLIENT_COMPRESSION_ZSTD_LEVEL,
+            RssSparkConfig.RSS_CLIENT_COMPRESSION_ZSTD_LEVEL_DEFAULT_VALUE));
+  }
 }
@@ -29,6 +29,7 @@ import org.apache.spark.executor.ShuffleReadMetrics;
 import org.apache.spark.serializer.DeserializationStream;
 import org.apache.spark.serializer.Serializer;
 import org.apache.spark.serializer.SerializerInstance;
+import org.apache.spark.storage.StorageUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import scala.Product2;
@@ -38,7 +39,7 @@ import scala.collection.Iterator;
 
 import com.tencent.rss.client.api.ShuffleReadClient;
 import com.tencent.rss.client.response.CompressedShuffleBlock;
-import com.tencent.rss.common.RssShuffleUtils;
+import com.tencent.rss.common.compression.Codec;
 
 public class RssShuffleDataIterator<K, C> extends AbstractIterator<Product2<K, C>> {
 
@@ -55,6 +56,9 @@ public class RssShuffleDataIterator<K, C> extends AbstractIterator<Product2<K, C
   private DeserializationStream deserializationStream = null;
   private ByteBufInputStream byteBufInputStream = null;
   private long unCompressionLength = 0;
+  private boolean finished = false;
+  // the decompressed data of current block, it is reused by the next block after the records are read
+  private ByteBuffer uncompressedBuffer = null;
 
   public RssShuffleDataIterator(
       Serializer serializer,
@@ -108,8 +112,13 @@ public class RssShuffleDataIterator<K, C> extends AbstractIterator<Product2<K, C
       if (compressedData != null) {
         shuffleReadMetrics.incRemoteBytesRead(compressedData.limit() - compressedData.position());
         long startDecompress = System.currentTimeMillis();
-        ByteBuffer uncompressedData = RssShuffleUtils.decompressData(
-            compressedData, compressedBlock.getUncompressLength());
+        int uncompressLength = compressedBlock.getUncompressLength();
+        ByteBuffer uncompressedData = getUncompressedBuffer(uncompressLength);
+        // every block is decompressed with the codec of its writer
+        Codec.getDecompressor(compressedBlock.getCodecId()).decompress(
+            compressedData, uncompressLength, uncompressedData);
+        uncompressedData.clear();
+        uncompressedData.limit(uncompressLength);
         unCompressionLength += compressedBlock.getUncompressLength();
         long decompressDuration = System.currentTimeMillis() - startDecompress;
         decompressTime += decompressDuration;
@@ -121,7 +130,9 @@ public class RssShuffleDataIterator<K, C> extends AbstractIterator<Product2<K, C
         serializeTime += serializationDuration;
       } else {
         // finish reading records, close related reader and check data consistent
+        finished = true;
         clearDeserializationStream();
+        releaseUncompressedBuffer();
         shuffleReadClient.close();
         shuffleReadClient.checkProcessedBlockIds();
         shuffleReadClient.logStatics();
@@ -140,6 +151,38 @@ public class RssShuffleDataIterator<K, C> extends AbstractIterator<Product2<K, C
     return (Product2<K, C>) recordsIterator.next();
   }
 
+  // release the reader if the task is finished before all records are read
+  public void cleanup() {
+    if (!finished) {
+      finished = true;
+      clearDeserializationStream();
+      releaseUncompressedBuffer();
+      shuffleReadClient.close();
+    }
+  }
+
+  // the records of previous block have been read, so the buffer can be reused
+  private ByteBuffer getUncompressedBuffer(int uncompressLength) {
+    if (uncompressedBuffer == null || uncompressedBuffer.capacity() < uncompressLength) {
+      releaseUncompressedBuffer();
+      // round up to the power of 2 to avoid reallocation for blocks with similar size
+      int capacity = Integer.highestOneBit(uncompressLength);
+      if (capacity < uncompressLength && capacity < (1 << 30)) {
+        capacity <<= 1;
+      }
+      uncompressedBuffer = ByteBuffer.allocateDirect(Math.max(capacity, uncompressLength));
+    }
+    return uncompressedBuffer;
+  }
+
+  private void releaseUncompressedBuffer() {
+    if (uncompressedBuffer != null) {
+      // free direct memory now instead of waiting for gc
+      StorageUtils.dispose(uncompressedBuffer);
+      uncompressedBuffer = null;
+    }
+  }
+
   @VisibleForTesting
   protected ShuffleReadMetrics getShuffleReadMetrics() {
     return shuffleReadMetrics;
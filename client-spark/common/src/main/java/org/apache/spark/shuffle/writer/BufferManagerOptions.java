@@ -20,9 +20,13 @@ package org.apache.spark.shuffle.writer;
 
 import org.apache.spark.SparkConf;
 import org.apache.spark.shuffle.RssSparkConfig;
+import org.apache.spark.shuffle.RssSparkShuffleUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.tencent.rss.common.compression.Codec;
+import com.tencent.rss.common.util.ChecksumType;
+
 public class BufferManagerOptions {
 
   private static final Logger LOG = LoggerFactory.getLogger(BufferManagerOptions.class);
@@ -34,6 +38,8 @@ public class BufferManagerOptions {
   private long preAllocatedBufferSize;
   private long requireMemoryInterval;
   private int requireMemoryRetryMax;
+  private Codec codec;
+  private ChecksumType checksumType;
 
   public BufferManagerOptions(SparkConf sparkConf) {
     bufferSize = sparkConf.getSizeAsBytes(RssSparkConfig.RSS_WRITER_BUFFER_SIZE,
@@ -50,6 +56,9 @@ public class BufferManagerOptions {
         RssSparkConfig.RSS_WRITER_REQUIRE_MEMORY_INTERVAL_DEFAULT_VALUE);
     requireMemoryRetryMax = sparkConf.getInt(RssSparkConfig.RSS_WRITER_REQUIRE_MEMORY_RETRY_MAX,
         RssSparkConfig.RSS_WRITER_REQUIRE_MEMORY_RETRY_MAX_DEFAULT_VALUE);
+    codec = RssSparkShuffleUtils.createCodec(sparkConf);
+    checksumType = ChecksumType.fromName(sparkConf.get(RssSparkConfig.RSS_CLIENT_CHECKSUM_TYPE,
+        RssSparkConfig.RSS_CLIENT_CHECKSUM_TYPE_DEFAULT_VALUE));
     LOG.info(RssSparkConfig.RSS_WRITER_BUFFER_SIZE + "=" + bufferSize);
     LOG.info(RssSparkConfig.RSS_WRITER_BUFFER_SPILL_SIZE + "=" + bufferSpillThreshold);
     LOG.info(RssSparkConfig.RSS_WRITER_PRE_ALLOCATED_BUFFER_SIZE + "=" + preAllocatedBufferSize);
@@ -106,4 +115,12 @@ public class BufferManagerOptions {
   public int getRequireMemoryRetryMax() {
     return requireMemoryRetryMax;
   }
+
+  public Codec getCodec() {
+    return codec;
+  }
+
+  public ChecksumType getChecksumType() {
+    return checksumType;
+  }
 }
@@ -18,10 +18,12 @@
 
 package org.apache.spark.shuffle.writer;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import com.clearspring.analytics.util.Lists;
 import com.google.common.annotations.VisibleForTesting;
@@ -38,10 +40,11 @@ import org.slf4j.LoggerFactory;
 import scala.reflect.ClassTag$;
 
 import com.tencent.rss.client.util.ClientUtils;
-import com.tencent.rss.common.RssShuffleUtils;
 import com.tencent.rss.common.ShuffleBlockInfo;
 import com.tencent.rss.common.ShuffleServerInfo;
+import com.tencent.rss.common.compression.Codec;
 import com.tencent.rss.common.exception.RssException;
+import com.tencent.rss.common.util.ChecksumType;
 import com.tencent.rss.common.util.ChecksumUtils;
 
 public class WriteBufferManager extends MemoryConsumer {
@@ -78,6 +81,12 @@ public class WriteBufferManager extends MemoryConsumer {
   private long uncompressedDataLen = 0;
   private long requireMemoryInterval;
   private int requireMemoryRetryMax;
+  private Codec codec;
+  private ChecksumType checksumType;
+  // send the blocks of spilled buffers to shuffle servers, it returns after they are sent
+  private Consumer<List<ShuffleBlockInfo>> spillFunc;
+  private long spillTime = 0;
+  private long spilledBytes = 0;
 
   public WriteBufferManager(
       int shuffleId,
@@ -101,6 +110,8 @@ public class WriteBufferManager extends MemoryConsumer {
     this.askExecutorMemory = bufferManagerOptions.getPreAllocatedBufferSize();
     this.requireMemoryInterval = bufferManagerOptions.getRequireMemoryInterval();
     this.requireMemoryRetryMax = bufferManagerOptions.getRequireMemoryRetryMax();
+    this.codec = bufferManagerOptions.getCodec();
+    this.checksumType = bufferManagerOptions.getChecksumType();
     this.arrayOutputStream = new WrappedByteArrayOutputStream(serializerBufferSize);
     this.serializeStream = instance.serializeStream(arrayOutputStream);
   }
@@ -122,9 +133,9 @@ public class WriteBufferManager extends MemoryConsumer {
       WriterBuffer wb = buffers.get(partitionId);
       if (wb.askForMemory(serializedDataLength)) {
         if (serializedDataLength > bufferSegmentSize) {
-          requestMemory(serializedDataLength);
+          requestMemory(partitionId, serializedDataLength);
         } else {
-          requestMemory(bufferSegmentSize);
+          requestMemory(partitionId, bufferSegmentSize);
         }
       }
       wb.addRecord(serializedData, serializedDataLength);
@@ -137,7 +148,7 @@ public class WriteBufferManager extends MemoryConsumer {
             + "], dataLength[" + wb.getDataLength() + "]");
       }
     } else {
-      requestMemory(bufferSegmentSize);
+      requestMemory(partitionId, bufferSegmentSize);
       WriterBuffer wb = new WriterBuffer(bufferSegmentSize);
       wb.addRecord(serializedData, serializedDataLength);
       buffers.put(partitionId, wb);
@@ -175,8 +186,10 @@ public class WriteBufferManager extends MemoryConsumer {
     byte[] data = wb.getData();
     final int uncompressLength = data.length;
     long start = System.currentTimeMillis();
-    final byte[] compressed = RssShuffleUtils.compressData(data);
-    final long crc32 = ChecksumUtils.getCrc32(compressed);
+    final byte[] compressed = codec.compress(data);
+    // the codec is recorded with the block, so the reader doesn't depend on its own codec config
+    final long crc32 = ChecksumUtils.withCodecId(
+        ChecksumUtils.getChecksum(checksumType, compressed), codec.getType().getId());
     compressTime += System.currentTimeMillis() - start;
     final long blockId = ClientUtils.getBlockId(partitionId, taskAttemptId, getNextSeqNo(partitionId));
     uncompressedDataLen += data.length;
@@ -195,18 +208,22 @@ public class WriteBufferManager extends MemoryConsumer {
     return seqNo;
   }
 
-  private void requestMemory(long requiredMem) {
+  private void requestMemory(int partitionId, long requiredMem) {
     final long start = System.currentTimeMillis();
     if (allocatedBytes.get() - usedBytes.get() < requiredMem) {
-      requestExecutorMemory(requiredMem);
+      requestExecutorMemory(partitionId, requiredMem);
     }
     usedBytes.addAndGet(requiredMem);
     requireMemoryTime += System.currentTimeMillis() - start;
   }
 
-  private void requestExecutorMemory(long leastMem) {
+  private void requestExecutorMemory(int partitionId, long leastMem) {
     long gotMem = acquireMemory(askExecutorMemory);
     allocatedBytes.addAndGet(gotMem);
+    if (allocatedBytes.get() - usedBytes.get() < leastMem) {
+      // reuse the memory of other buffers, the buffer of current partition is being written
+      spillBuffers(leastMem - (allocatedBytes.get() - usedBytes.get()), partitionId);
+    }
     int retry = 0;
     while (allocatedBytes.get() - usedBytes.get() < leastMem) {
       LOG.info("Can't get memory for now, sleep and try[" + retry
@@ -232,10 +249,74 @@ public class WriteBufferManager extends MemoryConsumer {
     }
   }
 
+  /**
+   * Release memory for other consumers of the task. The allocated memory which isn't used by buffers
+   * is released at first, then the largest buffers are sent to shuffle servers synchronously.
+   * It is ignored if it is triggered by itself, because a buffer may be being written,
+   * and requestExecutorMemory spills the other buffers for such situation.
+   */
   @Override
   public long spill(long size, MemoryConsumer trigger) {
-    // there is no spill for such situation
-    return 0;
+    if (trigger == this) {
+      return 0L;
+    }
+    long freeBytes = allocatedBytes.get() - usedBytes.get();
+    if (freeBytes < size) {
+      spillBuffers(size - freeBytes, -1);
+    }
+    long releasedBytes = allocatedBytes.get() - usedBytes.get();
+    if (releasedBytes <= 0) {
+      return 0L;
+    }
+    allocatedBytes.addAndGet(-releasedBytes);
+    freeMemory(releasedBytes);
+    LOG.info("Spill " + releasedBytes + " bytes for shuffleId[" + shuffleId + "] with request["
+        + size + "] triggered by " + trigger);
+    return releasedBytes;
+  }
+
+  // send the largest buffers until their memory reaches the size, and their memory can be used by new records
+  private long spillBuffers(long size, int excludedPartitionId) {
+    if (spillFunc == null || buffers.isEmpty()) {
+      return 0L;
+    }
+    final long start = System.currentTimeMillis();
+    List<Entry<Integer, WriterBuffer>> candidates = Lists.newArrayList();
+    for (Entry<Integer, WriterBuffer> entry : buffers.entrySet()) {
+      if (entry.getKey() != excludedPartitionId) {
+        candidates.add(entry);
+      }
+    }
+    candidates.sort(Comparator.comparingLong(
+        (Entry<Integer, WriterBuffer> entry) -> entry.getValue().getMemoryUsed()).reversed());
+    List<ShuffleBlockInfo> spilledBlocks = Lists.newArrayList();
+    long memoryUsed = 0;
+    for (Entry<Integer, WriterBuffer> entry : candidates) {
+      if (memoryUsed >= size) {
+        break;
+      }
+      WriterBuffer wb = entry.getValue();
+      spilledBlocks.add(createShuffleBlock(entry.getKey(), wb));
+      copyTime += wb.getCopyTime();
+      memoryUsed += wb.getMemoryUsed();
+      buffers.remove(entry.getKey());
+    }
+    if (spilledBlocks.isEmpty()) {
+      return 0L;
+    }
+    spillFunc.accept(spilledBlocks);
+    // the blocks have been sent, their memory can be used again
+    usedBytes.addAndGet(-memoryUsed);
+    inSendListBytes.addAndGet(-memoryUsed);
+    spilledBytes += memoryUsed;
+    spillTime += System.currentTimeMillis() - start;
+    LOG.info("Spill " + spilledBlocks.size() + " buffers with " + memoryUsed + " bytes for shuffleId["
+        + shuffleId + "], cost " + (System.currentTimeMillis() - start) + " ms");
+    return memoryUsed;
+  }
+
+  public void setSpillFunc(Consumer<List<ShuffleBlockInfo>> spillFunc) {
+    this.spillFunc = spillFunc;
   }
 
   @VisibleForTesting
@@ -289,7 +370,7 @@ public class WriteBufferManager extends MemoryConsumer {
   public String getManagerCostInfo() {
     return "WriteBufferManager cost copyTime[" + copyTime + "], writeTime[" + writeTime + "], serializeTime["
         + serializeTime + "], compressTime[" + compressTime + "], estimateTime["
-        + estimateTime + "], requireMemoryTime[" + requireMemoryTime
-        + "], uncompressedDataLen[" + uncompressedDataLen + "]";
+        + estimateTime + "], requireMemoryTime[" + requireMemoryTime + "], spillTime[" + spillTime
+        + "], spilledBytes[" + spilledBytes + "], uncompressedDataLen[" + uncompressedDataLen + "]";
   }
 }
@@ -26,6 +26,7 @@ import com.google.common.collect.Sets;
 import com.tencent.rss.client.util.ClientUtils;
 import com.tencent.rss.common.RssShuffleUtils;
 import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.common.compression.Codec;
 import com.tencent.rss.common.util.ChecksumUtils;
 import com.tencent.rss.storage.HdfsTestBase;
 import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
@@ -44,6 +45,8 @@ import scala.reflect.ClassTag$;
 public abstract class AbstractRssReaderTest extends HdfsTestBase {
 
   private AtomicInteger atomicInteger = new AtomicInteger(0);
+  // the blocks are compressed with lz4 without codec id if it is null, like the blocks of old writers
+  protected Codec writeCodec = null;
 
   protected void validateResult(Iterator iterator,
       Map<String, String> expectedData, int recordNum) {
@@ -88,8 +91,15 @@ public abstract class AbstractRssReaderTest extends HdfsTestBase {
   }
 
   protected ShufflePartitionedBlock createShuffleBlock(byte[] data, long blockId) {
-    byte[] compressData = RssShuffleUtils.compressData(data);
-    long crc = ChecksumUtils.getCrc32(compressData);
+    byte[] compressData;
+    long crc;
+    if (writeCodec == null) {
+      compressData = RssShuffleUtils.compressData(data);
+      crc = ChecksumUtils.getCrc32(compressData);
+    } else {
+      compressData = writeCodec.compress(data);
+      crc = ChecksumUtils.withCodecId(ChecksumUtils.getCrc32(compressData), writeCodec.getType().getId());
+    }
     return new ShufflePartitionedBlock(compressData.length, data.length, crc, blockId, 0,
         compressData);
   }
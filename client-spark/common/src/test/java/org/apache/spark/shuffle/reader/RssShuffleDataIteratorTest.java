@@ -27,6 +27,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.tencent.rss.client.impl.ShuffleReadClientImpl;
 import com.tencent.rss.client.util.ClientUtils;
+import com.tencent.rss.common.compression.Codec;
 import com.tencent.rss.common.util.ChecksumUtils;
 import com.tencent.rss.common.util.Constants;
 import com.tencent.rss.storage.handler.impl.HdfsShuffleWriteHandler;
@@ -115,6 +116,28 @@ public class RssShuffleDataIteratorTest extends AbstractRssReaderTest {
     assertTrue(rssShuffleDataIterator.getShuffleReadMetrics().fetchWaitTime() > 0);
   }
 
+  @Test
+  public void readWithCodecOfBlockTest() throws Exception {
+    String basePath = HDFS_URI + "readWithCodecOfBlockTest";
+    HdfsShuffleWriteHandler writeHandler1 =
+        new HdfsShuffleWriteHandler("appId", 0, 0, 1, basePath, "test_codec_1", conf);
+    HdfsShuffleWriteHandler writeHandler2 =
+        new HdfsShuffleWriteHandler("appId", 0, 0, 1, basePath, "test_codec_2", conf);
+
+    Map<String, String> expectedData = Maps.newHashMap();
+    Roaring64NavigableMap blockIdBitmap = Roaring64NavigableMap.bitmapOf();
+    Roaring64NavigableMap taskIdBitmap = Roaring64NavigableMap.bitmapOf(0);
+    // the writers of a partition use different codecs, and the reader doesn't know them
+    writeTestData(writeHandler1, 2, 5, expectedData,
+        blockIdBitmap, "key1", KRYO_SERIALIZER, 0);
+    writeCodec = Codec.newInstance("zstd", 3);
+    writeTestData(writeHandler2, 2, 5, expectedData,
+        blockIdBitmap, "key2", KRYO_SERIALIZER, 0);
+
+    RssShuffleDataIterator rssShuffleDataIterator = getDataIterator(basePath, blockIdBitmap, taskIdBitmap);
+    validateResult(rssShuffleDataIterator, expectedData, 20);
+  }
+
   @Test
   public void readTest3() throws Exception {
     String basePath = HDFS_URI + "readTest3";
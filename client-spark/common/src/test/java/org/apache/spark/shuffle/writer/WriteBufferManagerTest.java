@@ -26,11 +26,13 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.tencent.rss.common.ShuffleBlockInfo;
 import java.util.List;
 import org.apache.spark.SparkConf;
 import org.apache.spark.executor.ShuffleWriteMetrics;
+import org.apache.spark.memory.MemoryConsumer;
 import org.apache.spark.memory.TaskMemoryManager;
 import org.apache.spark.serializer.KryoSerializer;
 import org.apache.spark.serializer.Serializer;
@@ -146,4 +148,67 @@ public class WriteBufferManagerTest {
     sbi = wbm.createShuffleBlock(1, mockWriterBuffer);
     assertEquals(35184374185984L, sbi.getBlockId());
   }
+
+  @Test
+  public void spillTest() {
+    SparkConf conf = getConf();
+    conf.set(RssSparkConfig.RSS_WRITER_BUFFER_SPILL_SIZE, "1000");
+    WriteBufferManager wbm = createManager(conf);
+    List<ShuffleBlockInfo> spilledBlocks = Lists.newArrayList();
+    wbm.setSpillFunc(spilledBlocks::addAll);
+    String testKey = "Key";
+    String testValue = "Value";
+    wbm.addRecord(0, testKey, testValue);
+    wbm.addRecord(1, testKey, testValue);
+    wbm.addRecord(1, testKey, testValue);
+    wbm.addRecord(1, testKey, testValue);
+    wbm.addRecord(2, testKey, testValue);
+    assertEquals(512, wbm.getAllocatedBytes());
+    assertEquals(128, wbm.getUsedBytes());
+
+    // spill triggered by itself is ignored
+    assertEquals(0, wbm.spill(64, wbm));
+    assertEquals(512, wbm.getAllocatedBytes());
+
+    // the memory which isn't used by buffers is released at first
+    MemoryConsumer otherConsumer = mock(MemoryConsumer.class);
+    assertEquals(384, wbm.spill(64, otherConsumer));
+    assertEquals(128, wbm.getAllocatedBytes());
+    assertEquals(128, wbm.getUsedBytes());
+    assertTrue(spilledBlocks.isEmpty());
+
+    // the largest buffer is sent
+    assertEquals(64, wbm.spill(50, otherConsumer));
+    assertEquals(1, spilledBlocks.size());
+    assertEquals(1, spilledBlocks.get(0).getPartitionId());
+    assertEquals(64, wbm.getAllocatedBytes());
+    assertEquals(64, wbm.getUsedBytes());
+    assertEquals(0, wbm.getInSendListBytes());
+    assertEquals(2, wbm.getBuffers().size());
+  }
+
+  @Test
+  public void spillWhenMemoryIsExhaustedTest() {
+    SparkConf conf = getConf();
+    conf.set(RssSparkConfig.RSS_WRITER_BUFFER_SPILL_SIZE, "1000");
+    WriteBufferManager wbm = createManager(conf);
+    List<ShuffleBlockInfo> spilledBlocks = Lists.newArrayList();
+    wbm.setSpillFunc(spilledBlocks::addAll);
+    String testKey = "Key";
+    String testValue = "Value";
+    for (int i = 0; i < 16; i++) {
+      wbm.addRecord(i, testKey, testValue);
+    }
+    assertEquals(512, wbm.getAllocatedBytes());
+    assertEquals(512, wbm.getUsedBytes());
+
+    // executor memory is exhausted, the memory of other buffer is reused instead of waiting
+    doReturn(0L).when(wbm).acquireMemory(anyLong());
+    wbm.addRecord(16, testKey, testValue);
+    assertEquals(1, spilledBlocks.size());
+    assertTrue(spilledBlocks.get(0).getPartitionId() != 16);
+    assertEquals(512, wbm.getAllocatedBytes());
+    assertEquals(512, wbm.getUsedBytes());
+    assertEquals(16, wbm.getBuffers().size());
+  }
 }
@@ -60,6 +60,11 @@ public class RssShuffleReader<K, C> implements ShuffleReader<K, C> {
   private String basePath;
   private int indexReadLimit;
   private int readBufferSize;
+  private boolean streamReadEnabled;
+  private boolean serverFilterEnabled;
+  private int prefetchDepth;
+  private long prefetchBufferSize;
+  private int hdfsReadConcurrency;
   private int partitionNumPerRange;
   private int partitionNum;
   private String storageType;
@@ -78,6 +83,11 @@ public class RssShuffleReader<K, C> implements ShuffleReader<K, C> {
       Configuration hadoopConf,
       String storageType,
       int readBufferSize,
+      boolean streamReadEnabled,
+      boolean serverFilterEnabled,
+      int prefetchDepth,
+      long prefetchBufferSize,
+      int hdfsReadConcurrency,
       int partitionNumPerRange,
       int partitionNum,
       Roaring64NavigableMap blockIdBitmap,
@@ -94,6 +104,11 @@ public class RssShuffleReader<K, C> implements ShuffleReader<K, C> {
     this.indexReadLimit = indexReadLimit;
     this.storageType = storageType;
     this.readBufferSize = readBufferSize;
+    this.streamReadEnabled = streamReadEnabled;
+    this.serverFilterEnabled = serverFilterEnabled;
+    this.prefetchDepth = prefetchDepth;
+    this.prefetchBufferSize = prefetchBufferSize;
+    this.hdfsReadConcurrency = hdfsReadConcurrency;
     this.partitionNumPerRange = partitionNumPerRange;
     this.partitionNum = partitionNum;
     this.blockIdBitmap = blockIdBitmap;
@@ -109,11 +124,19 @@ public class RssShuffleReader<K, C> implements ShuffleReader<K, C> {
 
     CreateShuffleReadClientRequest request = new CreateShuffleReadClientRequest(
         appId, shuffleId, startPartition, storageType, basePath, indexReadLimit, readBufferSize,
-        partitionNumPerRange, partitionNum, blockIdBitmap, taskIdBitmap, shuffleServerInfoList, hadoopConf);
+        partitionNumPerRange, partitionNum, blockIdBitmap, taskIdBitmap, shuffleServerInfoList, hadoopConf,
+        streamReadEnabled, serverFilterEnabled, prefetchDepth, prefetchBufferSize,
+        hdfsReadConcurrency);
     ShuffleReadClient shuffleReadClient = ShuffleClientFactory.getInstance().createShuffleReadClient(request);
     RssShuffleDataIterator rssShuffleDataIterator = new RssShuffleDataIterator<K, C>(
         shuffleDependency.serializer(), shuffleReadClient,
         context.taskMetrics().shuffleReadMetrics());
+    // the read client must be closed to stop prefetching if the task is finished early, eg, with limit
+    context.addTaskCompletionListener(new TaskCompletionListener() {
+      public void onTaskCompletion(TaskContext context) {
+        rssShuffleDataIterator.cleanup();
+      }
+    });
 
     Iterator<Product2<K, C>> resultIter = null;
     Iterator<Product2<K, C>> aggregatedIter = null;
@@ -440,6 +440,18 @@ public class RssShuffleManager implements ShuffleManager {
         readerHadoopConf,
         storageType,
         (int) readBufferSize,
+        sparkConf.getBoolean(RssSparkConfig.RSS_CLIENT_READ_STREAM_ENABLED,
+            RssSparkConfig.RSS_CLIENT_READ_STREAM_ENABLED_DEFAULT_VALUE),
+        sparkConf.getBoolean(RssSparkConfig.RSS_CLIENT_READ_SERVER_FILTER_ENABLED,
+            RssSparkConfig.RSS_CLIENT_READ_SERVER_FILTER_ENABLED_DEFAULT_VALUE),
+        sparkConf.getInt(RssSparkConfig.RSS_CLIENT_READ_PREFETCH_DEPTH,
+            RssSparkConfig.RSS_CLIENT_READ_PREFETCH_DEPTH_DEFAULT_VALUE),
+        sparkConf.getSizeAsBytes(RssSparkConfig.RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE,
+            RssSparkConfig.RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE_DEFAULT_VALUE),
+        sparkConf.getInt(RssSparkConfig.RSS_CLIENT_READ_PARTITION_CONCURRENCY,
+            RssSparkConfig.RSS_CLIENT_READ_PARTITION_CONCURRENCY_DEFAULT_VALUE),
+        sparkConf.getInt(RssSparkConfig.RSS_CLIENT_READ_HDFS_CONCURRENCY,
+            RssSparkConfig.RSS_CLIENT_READ_HDFS_CONCURRENCY_DEFAULT_VALUE),
         partitionNum,
         partitionToExpectBlocks,
         taskIdBitmap,
@@ -18,11 +18,13 @@
 
 package org.apache.spark.shuffle.reader;
 
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.spark.InterruptibleIterator;
 import org.apache.spark.ShuffleDependency;
@@ -66,6 +68,12 @@ public class RssShuffleReader<K, C> implements ShuffleReader<K, C> {
   private String basePath;
   private int indexReadLimit;
   private int readBufferSize;
+  private boolean streamReadEnabled;
+  private boolean serverFilterEnabled;
+  private int prefetchDepth;
+  private long prefetchBufferSize;
+  private int partitionConcurrency;
+  private int hdfsReadConcurrency;
   private int partitionNum;
   private String storageType;
   private Map<Integer, Roaring64NavigableMap> partitionToExpectBlocks;
@@ -87,6 +95,12 @@ public class RssShuffleReader<K, C> implements ShuffleReader<K, C> {
       Configuration hadoopConf,
       String storageType,
       int readBufferSize,
+      boolean streamReadEnabled,
+      boolean serverFilterEnabled,
+      int prefetchDepth,
+      long prefetchBufferSize,
+      int partitionConcurrency,
+      int hdfsReadConcurrency,
       int partitionNum,
       Map<Integer, Roaring64NavigableMap> partitionToExpectBlocks,
       Roaring64NavigableMap taskIdBitmap,
@@ -105,6 +119,12 @@ public class RssShuffleReader<K, C> implements ShuffleReader<K, C> {
     this.indexReadLimit = indexReadLimit;
     this.storageType = storageType;
     this.readBufferSize = readBufferSize;
+    this.streamReadEnabled = streamReadEnabled;
+    this.serverFilterEnabled = serverFilterEnabled;
+    this.prefetchDepth = prefetchDepth;
+    this.prefetchBufferSize = prefetchBufferSize;
+    this.partitionConcurrency = Math.max(1, partitionConcurrency);
+    this.hdfsReadConcurrency = hdfsReadConcurrency;
     this.partitionNum = partitionNum;
     this.partitionToExpectBlocks = partitionToExpectBlocks;
     this.taskIdBitmap = taskIdBitmap;
@@ -183,52 +203,79 @@ public class RssShuffleReader<K, C> implements ShuffleReader<K, C> {
     return hadoopConf;
   }
 
+  /**
+   * Read partitions one by one. If partitionConcurrency is greater than 1, the following partitions are
+   * opened in advance and their data is prefetched in background while the current one is consumed.
+   */
   class MultiPartitionIterator<K, C> extends AbstractIterator<Product2<K, C>> {
-    java.util.Iterator<RssShuffleDataIterator> iterator;
-    RssShuffleDataIterator dataIterator;
+    // partitions which haven't been opened
+    java.util.Iterator<Integer> partitionIterator;
+    // the first one is being consumed
+    Deque<RssShuffleDataIterator> dataIterators = Queues.newArrayDeque();
 
     MultiPartitionIterator() {
-      List<RssShuffleDataIterator> iterators = Lists.newArrayList();
+      List<Integer> partitions = Lists.newArrayList();
       for (int partition = startPartition; partition < endPartition; partition++) {
         if (partitionToExpectBlocks.get(partition).isEmpty()) {
           LOG.info("{} partition is empty partition", partition);
           continue;
         }
-        List<ShuffleServerInfo> shuffleServerInfoList = partitionToShuffleServers.get(partition);
-        CreateShuffleReadClientRequest request = new CreateShuffleReadClientRequest(
-            appId, shuffleId, partition, storageType, basePath, indexReadLimit, readBufferSize,
-            1, partitionNum, partitionToExpectBlocks.get(partition), taskIdBitmap, shuffleServerInfoList, hadoopConf);
-        ShuffleReadClient shuffleReadClient = ShuffleClientFactory.getInstance().createShuffleReadClient(request);
-        RssShuffleDataIterator iterator = new RssShuffleDataIterator<K, C>(
-            shuffleDependency.serializer(), shuffleReadClient,
-            readMetrics);
-        iterators.add(iterator);
+        partitions.add(partition);
       }
-      iterator = iterators.iterator();
-      if (iterator.hasNext()) {
-        dataIterator = iterator.next();
-        iterator.remove();
+      partitionIterator = partitions.iterator();
+      openPartitions();
+      // the opened partitions must be closed to stop prefetching if the task is finished early, eg, with limit
+      Function1<TaskContext, Void> fn1 = new AbstractFunction1<TaskContext, Void>() {
+        public Void apply(TaskContext context) {
+          dataIterators.forEach(RssShuffleDataIterator::cleanup);
+          return (Void) null;
+        }
+      };
+      context.addTaskCompletionListener(fn1);
+    }
+
+    private void openPartitions() {
+      while (dataIterators.size() < partitionConcurrency && partitionIterator.hasNext()) {
+        dataIterators.add(createDataIterator(partitionIterator.next()));
+      }
+    }
+
+    private RssShuffleDataIterator createDataIterator(int partition) {
+      int depth = prefetchDepth;
+      long bufferSize = prefetchBufferSize;
+      if (partitionConcurrency > 1) {
+        // concurrent read depends on prefetch, and the opened partitions share the prefetch buffer.
+        // One result is always allowed beyond the buffer, so every opened partition can hold another
+        // readBufferSize, up to prefetchBufferSize + partitionConcurrency * readBufferSize in total
+        depth = Math.max(1, prefetchDepth);
+        bufferSize = prefetchBufferSize / partitionConcurrency;
       }
+      List<ShuffleServerInfo> shuffleServerInfoList = partitionToShuffleServers.get(partition);
+      CreateShuffleReadClientRequest request = new CreateShuffleReadClientRequest(
+          appId, shuffleId, partition, storageType, basePath, indexReadLimit, readBufferSize,
+          1, partitionNum, partitionToExpectBlocks.get(partition), taskIdBitmap, shuffleServerInfoList, hadoopConf,
+          streamReadEnabled, serverFilterEnabled, depth, bufferSize, hdfsReadConcurrency);
+      ShuffleReadClient shuffleReadClient = ShuffleClientFactory.getInstance().createShuffleReadClient(request);
+      return new RssShuffleDataIterator<K, C>(
+          shuffleDependency.serializer(), shuffleReadClient,
+          readMetrics);
     }
 
     @Override
     public boolean hasNext() {
-      if (dataIterator == null) {
-        return false;
-      }
-      while (!dataIterator.hasNext()) {
-        if (!iterator.hasNext()) {
-          return false;
+      while (!dataIterators.isEmpty()) {
+        if (dataIterators.peek().hasNext()) {
+          return true;
         }
-        dataIterator = iterator.next();
-        iterator.remove();
+        dataIterators.poll();
+        openPartitions();
       }
-      return dataIterator.hasNext();
+      return false;
     }
 
     @Override
     public Product2<K, C> next() {
-      Product2<K, C> result = dataIterator.next();
+      Product2<K, C> result = dataIterators.peek().next();
       return result;
     }
   }
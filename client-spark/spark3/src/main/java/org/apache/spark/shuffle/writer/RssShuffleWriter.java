@@ -51,6 +51,7 @@ import scala.Product2;
 import scala.collection.Iterator;
 
 import com.tencent.rss.client.api.ShuffleWriteClient;
+import com.tencent.rss.client.response.SendShuffleDataResult;
 import com.tencent.rss.common.ShuffleBlockInfo;
 import com.tencent.rss.common.ShuffleServerInfo;
 import com.tencent.rss.common.exception.RssException;
@@ -123,6 +124,7 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     partitionToServers = rssHandle.getPartitionToServers();
     this.isMemoryShuffleEnabled = isMemoryShuffleEnabled(
         sparkConf.get(RssSparkConfig.RSS_STORAGE_TYPE));
+    bufferManager.setSpillFunc(this::sendSpilledBlocks);
   }
 
   private boolean isMemoryShuffleEnabled(String storageType) {
@@ -192,6 +194,27 @@ public class RssShuffleWriter<K, V, C> extends ShuffleWriter<K, V> {
     }
   }
 
+  // the blocks of spilled buffers are sent in task thread, because their memory is reused after spill
+  @VisibleForTesting
+  protected void sendSpilledBlocks(List<ShuffleBlockInfo> shuffleBlockInfoList) {
+    SendShuffleDataResult result = shuffleWriteClient.sendShuffleData(appId, shuffleBlockInfoList);
+    int failedNum = shuffleBlockInfoList.size() - result.getSuccessBlockIds().size();
+    if (failedNum > 0) {
+      String errorMsg = "Send failed: Task[" + taskId + "]"
+          + " failed because " + failedNum
+          + " spilled blocks can't be sent to shuffle server.";
+      LOG.error(errorMsg);
+      throw new RssException(errorMsg);
+    }
+    shuffleBlockInfoList.forEach(sbi -> {
+      // update [partition, blockIds], it will be sent to shuffle server
+      int partitionId = sbi.getPartitionId();
+      partitionToBlockIds.putIfAbsent(partitionId, Sets.newConcurrentHashSet());
+      partitionToBlockIds.get(partitionId).add(sbi.getBlockId());
+      partitionLengths[partitionId] += sbi.getLength();
+    });
+  }
+
   protected void postBlockEvent(List<ShuffleBlockInfo> shuffleBlockInfoList) {
     long totalSize = 0;
     List<ShuffleBlockInfo> shuffleBlockInfosPerEvent = Lists.newArrayList();
@@ -91,6 +91,12 @@ public class RssShuffleReaderTest extends AbstractRssReaderTest {
         conf,
         StorageType.HDFS.name(),
         1000,
+        false,
+        false,
+        0,
+        0L,
+        1,
+        1,
         1,
         partitionToExpectBlocks,
         taskIdBitmap,
@@ -112,12 +118,43 @@ public class RssShuffleReaderTest extends AbstractRssReaderTest {
         conf,
         StorageType.HDFS.name(),
         1000,
+        false,
+        false,
+        0,
+        0L,
+        1,
+        1,
         2,
         partitionToExpectBlocks,
         taskIdBitmap,
         new ShuffleReadMetrics()));
     validateResult(rssShuffleReaderSpy1.read(), expectedData, 18);
 
+    // partitions are read concurrently
+    RssShuffleReader rssShuffleReaderSpy3 = spy(new RssShuffleReader<String, String>(
+        0,
+        2,
+        0,
+        Integer.MAX_VALUE,
+        contextMock,
+        handleMock,
+        basePath,
+        1000,
+        conf,
+        StorageType.HDFS.name(),
+        1000,
+        false,
+        false,
+        0,
+        2000L,
+        2,
+        1,
+        2,
+        partitionToExpectBlocks,
+        taskIdBitmap,
+        new ShuffleReadMetrics()));
+    validateResult(rssShuffleReaderSpy3.read(), expectedData, 18);
+
     RssShuffleReader rssShuffleReaderSpy2 = spy(new RssShuffleReader<String, String>(
         0,
         2,
@@ -130,6 +167,12 @@ public class RssShuffleReaderTest extends AbstractRssReaderTest {
         conf,
         StorageType.HDFS.name(),
         1000,
+        false,
+        false,
+        0,
+        0L,
+        1,
+        1,
         2,
         partitionToExpectBlocks,
         Roaring64NavigableMap.bitmapOf(),
@@ -47,6 +47,7 @@ public class ShuffleClientFactory {
         request.getPartitionId(), request.getIndexReadLimit(), request.getPartitionNumPerRange(),
         request.getPartitionNum(), request.getReadBufferSize(), request.getBasePath(),
         request.getBlockIdBitmap(), request.getTaskIdBitmap(), request.getShuffleServerInfoList(),
-        request.getHadoopConf());
+        request.getHadoopConf(), request.isStreamReadEnabled(), request.isServerFilterEnabled(),
+        request.getPrefetchDepth(), request.getPrefetchBufferSize(), request.getHdfsReadConcurrency());
   }
 }
@@ -0,0 +1,174 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.client.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.common.BufferSegment;
+import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.common.exception.RssException;
+import com.tencent.rss.storage.handler.api.ClientReadHandler;
+
+/**
+ * Read shuffle data ahead of the consumer in a background thread, so the latency of storage and network
+ * is overlapped with the processing of records. At most prefetchDepth results are kept in flight, and
+ * no more data is read after the buffered data reaches maxBufferSize.
+ */
+public class ShuffleDataPrefetcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ShuffleDataPrefetcher.class);
+
+  // prefetch tasks are short and are submitted by every read client, the threads are shared between them
+  private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("shuffle-read-prefetch-%d").build());
+
+  private final ClientReadHandler clientReadHandler;
+  private final int prefetchDepth;
+  private final long maxBufferSize;
+  // blocks which have been read, the handler skips the segments in it instead of the processed blocks,
+  // because the processed blocks are updated by consumer thread
+  private final Roaring64NavigableMap fetchedBlockIds;
+  private final Queue<ShuffleDataResult> results = Queues.newArrayDeque();
+  private long bufferedSize = 0L;
+  private boolean started = false;
+  // the prefetch task is submitted and hasn't exited
+  private boolean running = false;
+  private boolean finished = false;
+  private boolean closed = false;
+  private Throwable error;
+  private long readDataTime = 0L;
+
+  public ShuffleDataPrefetcher(
+      ClientReadHandler clientReadHandler,
+      int prefetchDepth,
+      long maxBufferSize,
+      Roaring64NavigableMap fetchedBlockIds) {
+    this.clientReadHandler = clientReadHandler;
+    this.prefetchDepth = prefetchDepth;
+    this.maxBufferSize = maxBufferSize;
+    this.fetchedBlockIds = fetchedBlockIds;
+  }
+
+  public synchronized void start() {
+    if (!started && !closed) {
+      started = true;
+      running = true;
+      PREFETCH_EXECUTOR.submit(this::prefetch);
+    }
+  }
+
+  // wait for the next result, null if there is no more data
+  public synchronized ShuffleDataResult take() throws InterruptedException {
+    start();
+    while (results.isEmpty() && !finished && !closed) {
+      wait();
+    }
+    ShuffleDataResult result = results.poll();
+    if (result != null) {
+      bufferedSize -= result.getDataLength();
+      notifyAll();
+      return result;
+    }
+    if (error != null) {
+      throw new RssException("Failed to prefetch shuffle data due to " + error.getMessage());
+    }
+    return null;
+  }
+
+  // stop prefetching and wait for the prefetch task to exit, so the handler can be closed safely after it
+  public synchronized void close() {
+    closed = true;
+    results.clear();
+    bufferedSize = 0L;
+    notifyAll();
+    while (running) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        LOG.warn("Interrupted when waiting for the prefetch task to exit");
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  public synchronized long getReadDataTime() {
+    return readDataTime;
+  }
+
+  // one result is always allowed even if it exceeds the max buffer size, or the reader will be blocked forever
+  private boolean isFull() {
+    return results.size() >= prefetchDepth || (!results.isEmpty() && bufferedSize >= maxBufferSize);
+  }
+
+  private void prefetch() {
+    try {
+      while (true) {
+        synchronized (this) {
+          while (!closed && isFull()) {
+            wait();
+          }
+          if (closed) {
+            return;
+          }
+        }
+        long start = System.currentTimeMillis();
+        ShuffleDataResult result = clientReadHandler.readShuffleData();
+        long readTime = System.currentTimeMillis() - start;
+        synchronized (this) {
+          readDataTime += readTime;
+          if (closed) {
+            return;
+          }
+          if (result == null || result.isEmpty()) {
+            finished = true;
+            notifyAll();
+            return;
+          }
+          for (BufferSegment bs : result.getBufferSegments()) {
+            fetchedBlockIds.addLong(bs.getBlockId());
+          }
+          results.offer(result);
+          bufferedSize += result.getDataLength();
+          notifyAll();
+        }
+      }
+    } catch (Throwable e) {
+      LOG.warn("Failed to prefetch shuffle data", e);
+      synchronized (this) {
+        error = e;
+        finished = true;
+        notifyAll();
+      }
+    } finally {
+      synchronized (this) {
+        running = false;
+        notifyAll();
+      }
+    }
+  }
+}
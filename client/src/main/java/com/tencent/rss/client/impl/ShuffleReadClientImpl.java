@@ -61,6 +61,9 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
   private AtomicLong copyTime = new AtomicLong(0);
   private AtomicLong crcCheckTime = new AtomicLong(0);
   private ClientReadHandler clientReadHandler;
+  // null if prefetch is disabled
+  private ShuffleDataPrefetcher prefetcher;
+  private boolean closed = false;
 
   public ShuffleReadClientImpl(
       String storageType,
@@ -76,6 +79,72 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
       Roaring64NavigableMap taskIdBitmap,
       List<ShuffleServerInfo> shuffleServerInfoList,
       Configuration hadoopConf) {
+    this(storageType, appId, shuffleId, partitionId, indexReadLimit, partitionNumPerRange, partitionNum,
+        readBufferSize, storageBasePath, blockIdBitmap, taskIdBitmap, shuffleServerInfoList, hadoopConf, false);
+  }
+
+  public ShuffleReadClientImpl(
+      String storageType,
+      String appId,
+      int shuffleId,
+      int partitionId,
+      int indexReadLimit,
+      int partitionNumPerRange,
+      int partitionNum,
+      int readBufferSize,
+      String storageBasePath,
+      Roaring64NavigableMap blockIdBitmap,
+      Roaring64NavigableMap taskIdBitmap,
+      List<ShuffleServerInfo> shuffleServerInfoList,
+      Configuration hadoopConf,
+      boolean streamReadEnabled) {
+    this(storageType, appId, shuffleId, partitionId, indexReadLimit, partitionNumPerRange, partitionNum,
+        readBufferSize, storageBasePath, blockIdBitmap, taskIdBitmap, shuffleServerInfoList, hadoopConf,
+        streamReadEnabled, false, 0, 0L);
+  }
+
+  public ShuffleReadClientImpl(
+      String storageType,
+      String appId,
+      int shuffleId,
+      int partitionId,
+      int indexReadLimit,
+      int partitionNumPerRange,
+      int partitionNum,
+      int readBufferSize,
+      String storageBasePath,
+      Roaring64NavigableMap blockIdBitmap,
+      Roaring64NavigableMap taskIdBitmap,
+      List<ShuffleServerInfo> shuffleServerInfoList,
+      Configuration hadoopConf,
+      boolean streamReadEnabled,
+      boolean serverFilterEnabled,
+      int prefetchDepth,
+      long prefetchBufferSize) {
+    this(storageType, appId, shuffleId, partitionId, indexReadLimit, partitionNumPerRange, partitionNum,
+        readBufferSize, storageBasePath, blockIdBitmap, taskIdBitmap, shuffleServerInfoList, hadoopConf,
+        streamReadEnabled, serverFilterEnabled, prefetchDepth, prefetchBufferSize, 1);
+  }
+
+  public ShuffleReadClientImpl(
+      String storageType,
+      String appId,
+      int shuffleId,
+      int partitionId,
+      int indexReadLimit,
+      int partitionNumPerRange,
+      int partitionNum,
+      int readBufferSize,
+      String storageBasePath,
+      Roaring64NavigableMap blockIdBitmap,
+      Roaring64NavigableMap taskIdBitmap,
+      List<ShuffleServerInfo> shuffleServerInfoList,
+      Configuration hadoopConf,
+      boolean streamReadEnabled,
+      boolean serverFilterEnabled,
+      int prefetchDepth,
+      long prefetchBufferSize,
+      int hdfsReadConcurrency) {
     this.shuffleId = shuffleId;
     this.partitionId = partitionId;
     this.blockIdBitmap = blockIdBitmap;
@@ -94,7 +163,15 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
     request.setShuffleServerInfoList(shuffleServerInfoList);
     request.setHadoopConf(hadoopConf);
     request.setExpectBlockIds(blockIdBitmap);
-    request.setProcessBlockIds(processedBlockIds);
+    // the processed blocks are updated by the consumer, the prefetch thread skips the fetched blocks instead
+    Roaring64NavigableMap fetchedBlockIds = prefetchDepth > 0 ? Roaring64NavigableMap.bitmapOf() : null;
+    request.setProcessBlockIds(fetchedBlockIds == null ? processedBlockIds : fetchedBlockIds);
+    request.setStreamReadEnabled(streamReadEnabled);
+    request.setHdfsReadConcurrency(hdfsReadConcurrency);
+    if (serverFilterEnabled) {
+      // shuffle server skips the blocks of other tasks and the processed blocks before sending them
+      request.setExpectTaskIds(taskIdBitmap);
+    }
 
     List<Long> removeBlockIds = Lists.newArrayList();
     blockIdBitmap.forEach(bid -> {
@@ -115,6 +192,11 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
     }
 
     clientReadHandler = ShuffleHandlerFactory.getInstance().createShuffleReadHandler(request);
+    if (fetchedBlockIds != null) {
+      prefetcher = new ShuffleDataPrefetcher(clientReadHandler, prefetchDepth, prefetchBufferSize, fetchedBlockIds);
+      // read ahead before the first record is asked, eg, when several partitions are read concurrently
+      prefetcher.start();
+    }
   }
 
   @Override
@@ -172,7 +254,8 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
         copyTime.addAndGet(System.currentTimeMillis() - start);
         start = System.currentTimeMillis();
         expectedCrc = bs.getCrc();
-        actualCrc = ChecksumUtils.getCrc32(readBuffer, bs.getOffset(), bs.getLength());
+        // the checksum is computed with the type of expected one, it is skipped if the writer doesn't compute it
+        actualCrc = ChecksumUtils.getChecksum(expectedCrc, readBuffer, bs.getOffset(), bs.getLength());
         crcCheckTime.addAndGet(System.currentTimeMillis() - start);
       } catch (Exception e) {
         LOG.warn("Can't read data for blockId[" + bs.getBlockId() + "]", e);
@@ -182,7 +265,7 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
             + "], expected:" + expectedCrc + ", actual:" + actualCrc);
       }
       return new CompressedShuffleBlock(ByteBuffer.wrap(readBuffer,
-          bs.getOffset(), bs.getLength()), bs.getUncompressLength());
+          bs.getOffset(), bs.getLength()), bs.getUncompressLength(), ChecksumUtils.getCodecId(expectedCrc));
     }
     // current segment hasn't data, try next segment
     return readShuffleBlockData();
@@ -195,7 +278,19 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
 
   private int read() {
     long start = System.currentTimeMillis();
-    ShuffleDataResult sdr = clientReadHandler.readShuffleData();
+    ShuffleDataResult sdr;
+    if (prefetcher == null) {
+      sdr = clientReadHandler.readShuffleData();
+    } else {
+      // only the time waiting for prefetched data is counted
+      try {
+        sdr = prefetcher.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RssException("Interrupted when waiting for shuffle data of shuffleId["
+            + shuffleId + "], partitionId[" + partitionId + "]");
+      }
+    }
     readDataTime.addAndGet(System.currentTimeMillis() - start);
     if (sdr == null) {
       return 0;
@@ -224,7 +319,15 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
   }
 
   @Override
-  public void close() {
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    // the prefetch thread must exit before the handler is closed, or it may read with a closed handler
+    if (prefetcher != null) {
+      prefetcher.close();
+    }
     if (clientReadHandler != null) {
       clientReadHandler.close();
     }
@@ -234,7 +337,8 @@ public class ShuffleReadClientImpl implements ShuffleReadClient {
   public void logStatics() {
     LOG.info("Metrics for shuffleId[" + shuffleId + "], partitionId[" + partitionId + "]"
         + ", read data cost " + readDataTime + " ms, copy data cost " + copyTime
-        + " ms, crc check cost " + crcCheckTime + " ms");
+        + " ms, crc check cost " + crcCheckTime + " ms"
+        + (prefetcher == null ? "" : ", prefetch data cost " + prefetcher.getReadDataTime() + " ms"));
     clientReadHandler.logConsumedBlockInfo();
   }
 }
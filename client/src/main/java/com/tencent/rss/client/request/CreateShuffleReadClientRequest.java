@@ -40,11 +40,45 @@ public class CreateShuffleReadClientRequest {
   private Roaring64NavigableMap taskIdBitmap;
   private List<ShuffleServerInfo> shuffleServerInfoList;
   private Configuration hadoopConf;
+  private boolean streamReadEnabled;
+  private boolean serverFilterEnabled;
+  private int prefetchDepth;
+  private long prefetchBufferSize;
+  private int hdfsReadConcurrency;
 
   public CreateShuffleReadClientRequest(String appId, int shuffleId, int partitionId, String storageType,
       String basePath, int indexReadLimit, int readBufferSize, int partitionNumPerRange,
       int partitionNum, Roaring64NavigableMap blockIdBitmap, Roaring64NavigableMap taskIdBitmap,
       List<ShuffleServerInfo> shuffleServerInfoList, Configuration hadoopConf) {
+    this(appId, shuffleId, partitionId, storageType, basePath, indexReadLimit, readBufferSize,
+        partitionNumPerRange, partitionNum, blockIdBitmap, taskIdBitmap, shuffleServerInfoList,
+        hadoopConf, false);
+  }
+
+  public CreateShuffleReadClientRequest(String appId, int shuffleId, int partitionId, String storageType,
+      String basePath, int indexReadLimit, int readBufferSize, int partitionNumPerRange,
+      int partitionNum, Roaring64NavigableMap blockIdBitmap, Roaring64NavigableMap taskIdBitmap,
+      List<ShuffleServerInfo> shuffleServerInfoList, Configuration hadoopConf, boolean streamReadEnabled) {
+    this(appId, shuffleId, partitionId, storageType, basePath, indexReadLimit, readBufferSize,
+        partitionNumPerRange, partitionNum, blockIdBitmap, taskIdBitmap, shuffleServerInfoList,
+        hadoopConf, streamReadEnabled, false, 0, 0L);
+  }
+
+  public CreateShuffleReadClientRequest(String appId, int shuffleId, int partitionId, String storageType,
+      String basePath, int indexReadLimit, int readBufferSize, int partitionNumPerRange,
+      int partitionNum, Roaring64NavigableMap blockIdBitmap, Roaring64NavigableMap taskIdBitmap,
+      List<ShuffleServerInfo> shuffleServerInfoList, Configuration hadoopConf, boolean streamReadEnabled,
+      boolean serverFilterEnabled, int prefetchDepth, long prefetchBufferSize) {
+    this(appId, shuffleId, partitionId, storageType, basePath, indexReadLimit, readBufferSize,
+        partitionNumPerRange, partitionNum, blockIdBitmap, taskIdBitmap, shuffleServerInfoList,
+        hadoopConf, streamReadEnabled, serverFilterEnabled, prefetchDepth, prefetchBufferSize, 1);
+  }
+
+  public CreateShuffleReadClientRequest(String appId, int shuffleId, int partitionId, String storageType,
+      String basePath, int indexReadLimit, int readBufferSize, int partitionNumPerRange,
+      int partitionNum, Roaring64NavigableMap blockIdBitmap, Roaring64NavigableMap taskIdBitmap,
+      List<ShuffleServerInfo> shuffleServerInfoList, Configuration hadoopConf, boolean streamReadEnabled,
+      boolean serverFilterEnabled, int prefetchDepth, long prefetchBufferSize, int hdfsReadConcurrency) {
     this.appId = appId;
     this.shuffleId = shuffleId;
     this.partitionId = partitionId;
@@ -58,6 +92,11 @@ public class CreateShuffleReadClientRequest {
     this.taskIdBitmap = taskIdBitmap;
     this.shuffleServerInfoList = shuffleServerInfoList;
     this.hadoopConf = hadoopConf;
+    this.streamReadEnabled = streamReadEnabled;
+    this.serverFilterEnabled = serverFilterEnabled;
+    this.prefetchDepth = prefetchDepth;
+    this.prefetchBufferSize = prefetchBufferSize;
+    this.hdfsReadConcurrency = hdfsReadConcurrency;
   }
 
   public String getAppId() {
@@ -111,4 +150,24 @@ public class CreateShuffleReadClientRequest {
   public Configuration getHadoopConf() {
     return hadoopConf;
   }
+
+  public boolean isStreamReadEnabled() {
+    return streamReadEnabled;
+  }
+
+  public boolean isServerFilterEnabled() {
+    return serverFilterEnabled;
+  }
+
+  public int getPrefetchDepth() {
+    return prefetchDepth;
+  }
+
+  public long getPrefetchBufferSize() {
+    return prefetchBufferSize;
+  }
+
+  public int getHdfsReadConcurrency() {
+    return hdfsReadConcurrency;
+  }
 }
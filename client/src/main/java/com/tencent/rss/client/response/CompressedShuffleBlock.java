@@ -20,14 +20,23 @@ package com.tencent.rss.client.response;
 
 import java.nio.ByteBuffer;
 
+import com.tencent.rss.common.compression.Codec;
+
 public class CompressedShuffleBlock {
 
   private ByteBuffer byteBuffer;
   private int uncompressLength;
+  // the id of the codec which compresses the block
+  private int codecId;
 
   public CompressedShuffleBlock(ByteBuffer byteBuffer, int uncompressLength) {
+    this(byteBuffer, uncompressLength, Codec.Type.LZ4.getId());
+  }
+
+  public CompressedShuffleBlock(ByteBuffer byteBuffer, int uncompressLength, int codecId) {
     this.byteBuffer = byteBuffer;
     this.uncompressLength = uncompressLength;
+    this.codecId = codecId;
   }
 
   public int getUncompressLength() {
@@ -37,4 +46,8 @@ public class CompressedShuffleBlock {
   public ByteBuffer getByteBuffer() {
     return byteBuffer;
   }
+
+  public int getCodecId() {
+    return codecId;
+  }
 }
@@ -53,6 +53,30 @@ public class RssClientConfig {
   // When the size of read buffer reaches the half of JVM region (i.e., 32m),
   // it will incur humongous allocation, so we set it to 14m.
   public static String RSS_CLIENT_READ_BUFFER_SIZE_DEFAULT_VALUE = "14m";
+  // read the local shuffle data of a partition with one server stream instead of a request per segment
+  public static final String RSS_CLIENT_READ_STREAM_ENABLED = "rss.client.read.stream.enabled";
+  public static final boolean RSS_CLIENT_READ_STREAM_ENABLED_DEFAULT_VALUE = false;
+  public static final String RSS_CLIENT_READ_SERVER_FILTER_ENABLED = "rss.client.read.server.filter.enabled";
+  public static final boolean RSS_CLIENT_READ_SERVER_FILTER_ENABLED_DEFAULT_VALUE = false;
+  // the number of results which are read ahead in background, 0 means shuffle data is read by task thread
+  public static final String RSS_CLIENT_READ_PREFETCH_DEPTH = "rss.client.read.prefetch.depth";
+  public static final int RSS_CLIENT_READ_PREFETCH_DEPTH_DEFAULT_VALUE = 0;
+  public static final String RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE = "rss.client.read.prefetch.buffer.size";
+  public static final String RSS_CLIENT_READ_PREFETCH_BUFFER_SIZE_DEFAULT_VALUE = "64m";
+  // the number of partitions which are read concurrently by a reader of coalesced partitions
+  public static final String RSS_CLIENT_READ_PARTITION_CONCURRENCY = "rss.client.read.partition.concurrency";
+  public static final int RSS_CLIENT_READ_PARTITION_CONCURRENCY_DEFAULT_VALUE = 1;
+  // the number of hdfs files which are opened and read concurrently for a partition
+  public static final String RSS_CLIENT_READ_HDFS_CONCURRENCY = "rss.client.read.hdfs.concurrency";
+  public static final int RSS_CLIENT_READ_HDFS_CONCURRENCY_DEFAULT_VALUE = 1;
+  // the codec to compress shuffle blocks, lz4, zstd, snappy or none
+  public static final String RSS_CLIENT_COMPRESSION_CODEC = "rss.client.io.compression.codec";
+  public static final String RSS_CLIENT_COMPRESSION_CODEC_DEFAULT_VALUE = "lz4";
+  public static final String RSS_CLIENT_COMPRESSION_ZSTD_LEVEL = "rss.client.io.compression.zstd.level";
+  public static final int RSS_CLIENT_COMPRESSION_ZSTD_LEVEL_DEFAULT_VALUE = 1;
+  // the checksum of shuffle blocks, crc32, crc32c or none
+  public static final String RSS_CLIENT_CHECKSUM_TYPE = "rss.client.checksum.type";
+  public static final String RSS_CLIENT_CHECKSUM_TYPE_DEFAULT_VALUE = "crc32";
 
   public static String RSS_ACCESS_TIMEOUT_MS = "rss.access.timeout.ms";
   public static int RSS_ACCESS_TIMEOUT_MS_DEFAULT_VALUE = 10000;
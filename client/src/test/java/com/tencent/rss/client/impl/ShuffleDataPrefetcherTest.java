@@ -0,0 +1,86 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package com.tencent.rss.client.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import com.tencent.rss.common.BufferSegment;
+import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.storage.handler.api.ClientReadHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+public class ShuffleDataPrefetcherTest {
+
+  @Test
+  public void closeWhenBufferIsFullTest() throws Exception {
+    ClientReadHandler handler = mock(ClientReadHandler.class);
+    AtomicInteger readCount = new AtomicInteger(0);
+    when(handler.readShuffleData()).thenAnswer(invocation -> createResult(readCount.getAndIncrement()));
+    ShuffleDataPrefetcher prefetcher = new ShuffleDataPrefetcher(
+        handler, 2, Long.MAX_VALUE, Roaring64NavigableMap.bitmapOf());
+    assertNotNull(prefetcher.take());
+    // the consumer stops early, the prefetch task is waiting for free buffer
+    Thread.sleep(100);
+    assertTrue(readCount.get() <= 3);
+    CompletableFuture<Void> closeFuture = CompletableFuture.runAsync(prefetcher::close);
+    closeFuture.get(5, TimeUnit.SECONDS);
+    int count = readCount.get();
+    Thread.sleep(100);
+    assertEquals(count, readCount.get());
+  }
+
+  @Test
+  public void closeWaitsForReadingTest() throws Exception {
+    ClientReadHandler handler = mock(ClientReadHandler.class);
+    CountDownLatch readStarted = new CountDownLatch(1);
+    CountDownLatch readReleased = new CountDownLatch(1);
+    when(handler.readShuffleData()).thenAnswer(invocation -> {
+      readStarted.countDown();
+      readReleased.await();
+      return createResult(0);
+    });
+    ShuffleDataPrefetcher prefetcher = new ShuffleDataPrefetcher(
+        handler, 2, Long.MAX_VALUE, Roaring64NavigableMap.bitmapOf());
+    prefetcher.start();
+    assertTrue(readStarted.await(5, TimeUnit.SECONDS));
+    CompletableFuture<Void> closeFuture = CompletableFuture.runAsync(prefetcher::close);
+    // the handler is still used by the prefetch task, close must wait for it
+    Thread.sleep(100);
+    assertFalse(closeFuture.isDone());
+    readReleased.countDown();
+    closeFuture.get(5, TimeUnit.SECONDS);
+  }
+
+  private ShuffleDataResult createResult(int blockId) {
+    return new ShuffleDataResult(new byte[10],
+        Lists.newArrayList(new BufferSegment(blockId, 0, 10, 10, 0, 0)));
+  }
+}
@@ -448,6 +448,35 @@ public class ShuffleReadClientImplTest extends HdfsTestBase {
     readClient.close();
   }
 
+  @Test
+  public void readWithPrefetchTest() throws Exception {
+    String basePath = HDFS_URI + "clientReadWithPrefetchTest";
+    HdfsShuffleWriteHandler writeHandler =
+        new HdfsShuffleWriteHandler("appId", 0, 1, 1, basePath, "test1", conf);
+
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Roaring64NavigableMap blockIdBitmap = Roaring64NavigableMap.bitmapOf();
+    Roaring64NavigableMap taskIdBitmap = Roaring64NavigableMap.bitmapOf(0);
+    writeTestData(writeHandler, 50, 30, 0, expectedData, blockIdBitmap);
+    writeTestData(writeHandler, 10, 30, 1, Maps.newHashMap(), Roaring64NavigableMap.bitmapOf());
+
+    // every read returns a few blocks, and no more than 2 results or 150 bytes are read ahead
+    ShuffleReadClientImpl readClient = new ShuffleReadClientImpl(StorageType.HDFS.name(), "appId", 0, 1, 100, 1,
+        10, 100, basePath, blockIdBitmap, taskIdBitmap, Lists.newArrayList(), new Configuration(),
+        false, false, 2, 150L);
+
+    TestUtils.validateResult(readClient, expectedData);
+    readClient.checkProcessedBlockIds();
+    readClient.close();
+
+    // the reader can be closed before all data is consumed
+    readClient = new ShuffleReadClientImpl(StorageType.HDFS.name(), "appId", 0, 1, 100, 1,
+        10, 100, basePath, blockIdBitmap, taskIdBitmap, Lists.newArrayList(), new Configuration(),
+        false, false, 2, 150L);
+    assertTrue(readClient.readShuffleBlockData() != null);
+    readClient.close();
+  }
+
   private void writeTestData(
       HdfsShuffleWriteHandler writeHandler,
       int num, int length, long taskAttemptId,
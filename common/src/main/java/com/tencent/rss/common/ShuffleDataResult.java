@@ -18,13 +18,14 @@
 
 package com.tencent.rss.common;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import com.google.common.collect.Lists;
 
 public class ShuffleDataResult {
 
-  private final byte[] data;
+  private final ByteBuffer data;
   private final List<BufferSegment> bufferSegments;
 
   public ShuffleDataResult() {
@@ -36,12 +37,39 @@ public class ShuffleDataResult {
   }
 
   public ShuffleDataResult(byte[] data, List<BufferSegment> bufferSegments) {
+    this(data == null ? null : ByteBuffer.wrap(data), bufferSegments);
+  }
+
+  // the data is shared without copy, eg, the read data is wrapped again with the segments sent by client
+  public ShuffleDataResult(ByteBuffer data) {
+    this(data, Lists.newArrayList());
+  }
+
+  public ShuffleDataResult(ByteBuffer data, List<BufferSegment> bufferSegments) {
     this.data = data;
     this.bufferSegments = bufferSegments;
   }
 
+  // it is copied if the data isn't backed by a whole array, use getDataBuffer to avoid copy
   public byte[] getData() {
-    return data;
+    if (data == null) {
+      return null;
+    }
+    if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0
+        && data.remaining() == data.array().length) {
+      return data.array();
+    }
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return bytes;
+  }
+
+  public ByteBuffer getDataBuffer() {
+    return data == null ? null : data.duplicate();
+  }
+
+  public int getDataLength() {
+    return data == null ? 0 : data.remaining();
   }
 
   public List<BufferSegment> getBufferSegments() {
@@ -49,7 +77,7 @@ public class ShuffleDataResult {
   }
 
   public boolean isEmpty() {
-    return bufferSegments == null || bufferSegments.isEmpty() || data == null || data.length == 0;
+    return bufferSegments == null || bufferSegments.isEmpty() || data == null || data.remaining() == 0;
   }
 
 }
@@ -18,6 +18,8 @@
 
 package com.tencent.rss.common;
 
+import java.nio.ByteBuffer;
+
 public class ShufflePartitionedBlock {
 
   private int length;
@@ -25,6 +27,10 @@ public class ShufflePartitionedBlock {
   private long blockId;
   private int uncompressLength;
   private byte[] data;
+  // payload which isn't backed by its own heap array, eg, a region of an off-heap slab
+  private ByteBuffer dataBuffer;
+  // give back the memory of dataBuffer, it is invoked at most once
+  private Runnable releaser;
   private long taskAttemptId;
 
   public ShufflePartitionedBlock(
@@ -42,6 +48,23 @@ public class ShufflePartitionedBlock {
     this.data = data;
   }
 
+  public ShufflePartitionedBlock(
+      int length,
+      int uncompressLength,
+      long crc,
+      long blockId,
+      long taskAttemptId,
+      ByteBuffer dataBuffer,
+      Runnable releaser) {
+    this.length = length;
+    this.crc = crc;
+    this.blockId = blockId;
+    this.uncompressLength = uncompressLength;
+    this.taskAttemptId = taskAttemptId;
+    this.dataBuffer = dataBuffer;
+    this.releaser = releaser;
+  }
+
   // calculate the data size for this block in memory including metadata which are
   // blockId, crc, taskAttemptId, length, uncompressLength
   public long getSize() {
@@ -60,7 +83,8 @@ public class ShufflePartitionedBlock {
     return length == that.length
         && crc == that.crc
         && blockId == that.blockId
-        && data.equals(that.data);
+        && data == that.data
+        && dataBuffer == that.dataBuffer;
   }
 
   public int getLength() {
@@ -87,12 +111,44 @@ public class ShufflePartitionedBlock {
     this.blockId = blockId;
   }
 
+  // the payload which isn't backed by heap array will be copied,
+  // use getDataBuffer() in the hot path instead
   public byte[] getData() {
+    if (data == null && dataBuffer != null) {
+      byte[] copy = new byte[dataBuffer.remaining()];
+      dataBuffer.duplicate().get(copy);
+      return copy;
+    }
     return data;
   }
 
   public void setData(byte[] data) {
     this.data = data;
+    this.dataBuffer = null;
+  }
+
+  // the returned buffer has its own position and limit, and it can be handed to NIO without copying
+  public ByteBuffer getDataBuffer() {
+    if (dataBuffer != null) {
+      return dataBuffer.duplicate();
+    }
+    if (data == null) {
+      return ByteBuffer.allocate(0);
+    }
+    return ByteBuffer.wrap(data);
+  }
+
+  public boolean isDirect() {
+    return dataBuffer != null && dataBuffer.isDirect();
+  }
+
+  // the payload shouldn't be accessed after the block is released
+  public synchronized void release() {
+    if (releaser != null) {
+      Runnable r = releaser;
+      releaser = null;
+      r.run();
+    }
   }
 
   public int getUncompressLength() {
@@ -0,0 +1,125 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.common.compression;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Compress the data of shuffle blocks. The codec is chosen by the writer, and its id is recorded with
+ * every block (see ChecksumUtils), so the reader decompresses every block with the codec of its writer.
+ * Shuffle server doesn't care about it.
+ */
+public abstract class Codec {
+
+  public enum Type {
+    // the blocks which are written before the codec id is introduced are compressed with lz4
+    LZ4(0),
+    ZSTD(1),
+    SNAPPY(2),
+    NONE(3);
+
+    private final int id;
+
+    Type(int id) {
+      this.id = id;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public static Type fromId(int id) {
+      for (Type type : values()) {
+        if (type.id == id) {
+          return type;
+        }
+      }
+      throw new IllegalArgumentException("Unknown compression codec id " + id);
+    }
+  }
+
+  // the codecs are stateless, and the compression level of zstd isn't used by decompression
+  private static final Map<Type, Codec> DECOMPRESSORS = new EnumMap<>(Type.class);
+
+  static {
+    for (Type type : Type.values()) {
+      DECOMPRESSORS.put(type, newInstance(type, 1));
+    }
+  }
+
+  public static Codec newInstance(String codecName, int zstdLevel) {
+    Type type;
+    try {
+      type = Type.valueOf(codecName.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported compression codec " + codecName);
+    }
+    return newInstance(type, zstdLevel);
+  }
+
+  public static Codec newInstance(Type type, int zstdLevel) {
+    switch (type) {
+      case ZSTD:
+        return new ZstdCodec(zstdLevel);
+      case SNAPPY:
+        return new SnappyCodec();
+      case NONE:
+        return new NoneCodec();
+      default:
+        return new Lz4Codec();
+    }
+  }
+
+  // the shared instance to decompress the blocks which are written with the codec of id
+  public static Codec getDecompressor(int codecId) {
+    return DECOMPRESSORS.get(Type.fromId(codecId));
+  }
+
+  public abstract Type getType();
+
+  public abstract byte[] compress(byte[] data);
+
+  // decompress the remaining data of src to the head of dest, the capacity of dest must be enough
+  public abstract void decompress(ByteBuffer src, int uncompressLength, ByteBuffer dest);
+
+  public byte[] decompress(byte[] data, int uncompressLength) {
+    ByteBuffer dest = ByteBuffer.allocate(uncompressLength);
+    decompress(ByteBuffer.wrap(data), uncompressLength, dest);
+    return dest.array();
+  }
+
+  // the remaining data of buffer, it is copied only if the buffer isn't backed by the whole array
+  protected static byte[] toArray(ByteBuffer buffer) {
+    if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+        && buffer.remaining() == buffer.array().length) {
+      return buffer.array();
+    }
+    byte[] data = new byte[buffer.remaining()];
+    buffer.duplicate().get(data);
+    return data;
+  }
+
+  protected static void copyToHead(byte[] data, ByteBuffer dest) {
+    ByteBuffer head = dest.duplicate();
+    head.clear();
+    head.put(data);
+  }
+}
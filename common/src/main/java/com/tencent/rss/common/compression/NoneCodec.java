@@ -0,0 +1,44 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.common.compression;
+
+import java.nio.ByteBuffer;
+
+// the data is sent as it is, eg, the cpu is the bottleneck or the records have been compressed
+public class NoneCodec extends Codec {
+
+  @Override
+  public Type getType() {
+    return Type.NONE;
+  }
+
+  @Override
+  public byte[] compress(byte[] data) {
+    return data;
+  }
+
+  @Override
+  public void decompress(ByteBuffer src, int uncompressLength, ByteBuffer dest) {
+    ByteBuffer data = src.duplicate();
+    data.limit(data.position() + uncompressLength);
+    ByteBuffer head = dest.duplicate();
+    head.clear();
+    head.put(data);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.common.compression;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.xerial.snappy.Snappy;
+
+import com.tencent.rss.common.exception.RssException;
+
+public class SnappyCodec extends Codec {
+
+  @Override
+  public Type getType() {
+    return Type.SNAPPY;
+  }
+
+  @Override
+  public byte[] compress(byte[] data) {
+    try {
+      return Snappy.compress(data);
+    } catch (IOException e) {
+      throw new RssException("Failed to compress data with snappy due to " + e.getMessage());
+    }
+  }
+
+  @Override
+  public void decompress(ByteBuffer src, int uncompressLength, ByteBuffer dest) {
+    try {
+      int size;
+      if (src.isDirect() && dest.isDirect()) {
+        ByteBuffer head = dest.duplicate();
+        head.clear();
+        size = Snappy.uncompress(src.duplicate(), head);
+      } else {
+        // the native library only accepts direct buffers or arrays
+        byte[] data = new byte[uncompressLength];
+        byte[] compressed = toArray(src);
+        size = Snappy.uncompress(compressed, 0, compressed.length, data, 0);
+        copyToHead(data, dest);
+      }
+      if (size != uncompressLength) {
+        throw new RssException("Unexpected length of snappy data, expected:" + uncompressLength
+            + ", actual:" + size);
+      }
+    } catch (IOException e) {
+      throw new RssException("Failed to decompress data with snappy due to " + e.getMessage());
+    }
+  }
+}
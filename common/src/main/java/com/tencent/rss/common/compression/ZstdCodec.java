@@ -0,0 +1,63 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.common.compression;
+
+import java.nio.ByteBuffer;
+
+import com.github.luben.zstd.Zstd;
+
+import com.tencent.rss.common.exception.RssException;
+
+public class ZstdCodec extends Codec {
+
+  private final int compressionLevel;
+
+  public ZstdCodec(int compressionLevel) {
+    this.compressionLevel = compressionLevel;
+  }
+
+  @Override
+  public Type getType() {
+    return Type.ZSTD;
+  }
+
+  @Override
+  public byte[] compress(byte[] data) {
+    return Zstd.compress(data, compressionLevel);
+  }
+
+  @Override
+  public void decompress(ByteBuffer src, int uncompressLength, ByteBuffer dest) {
+    long size;
+    if (src.isDirect() && dest.isDirect()) {
+      size = Zstd.decompressDirectByteBuffer(dest, 0, uncompressLength, src, src.position(), src.remaining());
+      if (Zstd.isError(size)) {
+        throw new RssException("Failed to decompress zstd data due to " + Zstd.getErrorName(size));
+      }
+    } else {
+      // the native library only accepts direct buffers or arrays
+      byte[] data = Zstd.decompress(toArray(src), uncompressLength);
+      copyToHead(data, dest);
+      size = data.length;
+    }
+    if (size != uncompressLength) {
+      throw new RssException("Unexpected length of zstd data, expected:" + uncompressLength + ", actual:" + size);
+    }
+  }
+}
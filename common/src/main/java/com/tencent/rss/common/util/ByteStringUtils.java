@@ -0,0 +1,87 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.common.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.google.protobuf.ByteOutput;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+public class ByteStringUtils {
+
+  private ByteStringUtils() {
+  }
+
+  /**
+   * Get the content of ByteString as ByteBuffer without copying if it is backed by a single array
+   * or buffer, eg, the ByteString parsed from grpc request. ByteString is immutable, so the returned
+   * buffer must not be modified.
+   */
+  public static ByteBuffer unsafeWrap(ByteString byteString) {
+    SingleSegmentByteOutput output = new SingleSegmentByteOutput();
+    try {
+      UnsafeByteOperations.unsafeWriteTo(byteString, output);
+    } catch (IOException e) {
+      // won't happen because output doesn't throw exception
+      output.aliasable = false;
+    }
+    if (!output.aliasable || output.segmentNum != 1) {
+      return ByteBuffer.wrap(byteString.toByteArray());
+    }
+    return output.segment;
+  }
+
+  // hold the segment if ByteString is written with only one lazy segment
+  private static class SingleSegmentByteOutput extends ByteOutput {
+
+    private ByteBuffer segment;
+    private int segmentNum = 0;
+    private boolean aliasable = true;
+
+    @Override
+    public void write(byte value) {
+      aliasable = false;
+    }
+
+    @Override
+    public void write(byte[] value, int offset, int length) {
+      // the array may be reused by the caller, it can't be referenced
+      aliasable = false;
+    }
+
+    @Override
+    public void writeLazy(byte[] value, int offset, int length) {
+      segment = ByteBuffer.wrap(value, offset, length).slice();
+      segmentNum++;
+    }
+
+    @Override
+    public void write(ByteBuffer value) {
+      aliasable = false;
+    }
+
+    @Override
+    public void writeLazy(ByteBuffer value) {
+      segment = value.slice();
+      segmentNum++;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package com.tencent.rss.common.util;
+
+/**
+ * The algorithm of block checksum. The id is recorded in the high 32 bits of the checksum,
+ * so the reader verifies every block with the algorithm of its writer, and the checksum
+ * of CRC32 is the same as the blocks which are written before the type is introduced.
+ */
+public enum ChecksumType {
+  CRC32(0),
+  CRC32C(1),
+  // the checksum isn't computed, the reader skips the verification
+  NONE(2);
+
+  private final int id;
+
+  ChecksumType(int id) {
+    this.id = id;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public static ChecksumType fromId(int id) {
+    for (ChecksumType type : values()) {
+      if (type.id == id) {
+        return type;
+      }
+    }
+    throw new IllegalArgumentException("Unknown checksum type id " + id);
+  }
+
+  public static ChecksumType fromName(String name) {
+    try {
+      return valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported checksum type " + name);
+    }
+  }
+}
@@ -18,26 +18,35 @@
 
 package com.tencent.rss.common.util;
 
+import java.lang.reflect.Constructor;
 import java.nio.ByteBuffer;
 import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import com.google.common.hash.Hashing;
+
+import com.tencent.rss.common.exception.RssException;
 
 public class ChecksumUtils {
 
-  private static final int LENGTH_PER_CRC = 4 * 1024;
+  // the layout of the checksum: bits 0-31 is the value, bits 32-39 is the checksum type id, and bits 40-47 is
+  // the id of the codec which compresses the block. They are 0 in the blocks which are written before the ids
+  // are introduced, which are CRC32 and LZ4.
+  private static final int TYPE_SHIFT = 32;
+  private static final int CODEC_SHIFT = 40;
+  private static final long VALUE_MASK = 0xFFFFFFFFL;
+  private static final long ID_MASK = 0xFFL;
+  // java.util.zip.CRC32C is intrinsified since Java 9, it is null when running with Java 8
+  private static final Constructor<? extends Checksum> CRC32C_CONSTRUCTOR = findCrc32cConstructor();
 
   public static long getCrc32(byte[] buf) {
     return getCrc32(buf, 0, buf.length);
   }
 
   public static long getCrc32(byte[] buf, int offset, int length) {
+    // update with the whole range at once, so the intrinsic processes it without extra calls
     CRC32 crc32 = new CRC32();
-
-    for (int i = 0; i < length; ) {
-      int len = Math.min(LENGTH_PER_CRC, length - i);
-      crc32.update(buf, i + offset, len);
-      i += len;
-    }
-
+    crc32.update(buf, offset, length);
     return crc32.getValue();
   }
 
@@ -46,9 +55,72 @@ public class ChecksumUtils {
     if (byteBuffer.hasArray()) {
       return getCrc32(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), byteBuffer.remaining());
     } else {
-      byte[] byteArray = new byte[byteBuffer.remaining()];
-      byteBuffer.get(byteArray);
-      return getCrc32(byteArray);
+      // direct buffer is read by the native method without copying it to heap
+      CRC32 crc32 = new CRC32();
+      crc32.update(byteBuffer);
+      return crc32.getValue();
+    }
+  }
+
+  public static long getCrc32c(byte[] buf, int offset, int length) {
+    if (CRC32C_CONSTRUCTOR == null) {
+      return Hashing.crc32c().hashBytes(buf, offset, length).asInt() & VALUE_MASK;
+    }
+    Checksum crc32c;
+    try {
+      crc32c = CRC32C_CONSTRUCTOR.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new RssException("Can't create CRC32C checksum due to " + e.getMessage());
+    }
+    crc32c.update(buf, offset, length);
+    return crc32c.getValue();
+  }
+
+  public static long getChecksum(ChecksumType type, byte[] buf) {
+    return getChecksum(type, buf, 0, buf.length);
+  }
+
+  // the checksum with the type in its high 32 bits
+  public static long getChecksum(ChecksumType type, byte[] buf, int offset, int length) {
+    long value;
+    switch (type) {
+      case CRC32:
+        value = getCrc32(buf, offset, length);
+        break;
+      case CRC32C:
+        value = getCrc32c(buf, offset, length);
+        break;
+      default:
+        value = 0L;
+    }
+    return ((long) type.getId() << TYPE_SHIFT) | value;
+  }
+
+  // compute the checksum with the same type and codec id as the expected one, it can be compared with
+  // the expected one directly
+  public static long getChecksum(long expectedChecksum, byte[] buf, int offset, int length) {
+    return withCodecId(getChecksum(getChecksumType(expectedChecksum), buf, offset, length),
+        getCodecId(expectedChecksum));
+  }
+
+  public static ChecksumType getChecksumType(long checksum) {
+    return ChecksumType.fromId((int) ((checksum >>> TYPE_SHIFT) & ID_MASK));
+  }
+
+  // record the id of the codec which compresses the block in the checksum
+  public static long withCodecId(long checksum, int codecId) {
+    return (checksum & ~(ID_MASK << CODEC_SHIFT)) | ((codecId & ID_MASK) << CODEC_SHIFT);
+  }
+
+  public static int getCodecId(long checksum) {
+    return (int) ((checksum >>> CODEC_SHIFT) & ID_MASK);
+  }
+
+  private static Constructor<? extends Checksum> findCrc32cConstructor() {
+    try {
+      return Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class).getConstructor();
+    } catch (ReflectiveOperationException e) {
+      return null;
     }
   }
 }
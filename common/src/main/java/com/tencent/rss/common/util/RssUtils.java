@@ -165,20 +165,29 @@ public class RssUtils {
 
   public static List<ShuffleDataSegment> transIndexDataToSegments(
       ShuffleIndexResult shuffleIndexResult, int readBufferSize) {
+    return transIndexDataToSegments(shuffleIndexResult, readBufferSize, 0L);
+  }
+
+  // the blocks may be split by the data of other partitions if they share the data file, a new segment is started
+  // if the gap to the previous block is larger than skipThreshold, otherwise the data in the gap is read with them
+  public static List<ShuffleDataSegment> transIndexDataToSegments(
+      ShuffleIndexResult shuffleIndexResult, int readBufferSize, long skipThreshold) {
     if (shuffleIndexResult == null || shuffleIndexResult.isEmpty()) {
       return Lists.newArrayList();
     }
 
     byte[] indexData = shuffleIndexResult.getIndexData();
-    return transIndexDataToSegments(indexData, readBufferSize);
+    return transIndexDataToSegments(indexData, readBufferSize, skipThreshold);
   }
 
-  private static List<ShuffleDataSegment> transIndexDataToSegments(byte[] indexData, int readBufferSize) {
+  private static List<ShuffleDataSegment> transIndexDataToSegments(
+      byte[] indexData, int readBufferSize, long skipThreshold) {
     ByteBuffer byteBuffer = ByteBuffer.wrap(indexData);
     List<BufferSegment> bufferSegments = Lists.newArrayList();
     List<ShuffleDataSegment> dataFileSegments = Lists.newArrayList();
-    int bufferOffset = 0;
+    // the offset of the segment in data file, and the end of its last block
     long fileOffset = -1;
+    long nextOffset = -1;
 
     while (byteBuffer.hasRemaining()) {
       try {
@@ -188,21 +197,24 @@ public class RssUtils {
         long crc = byteBuffer.getLong();
         long blockId = byteBuffer.getLong();
         long taskAttemptId = byteBuffer.getLong();
-        // The index file is written, read and parsed sequentially, so these parsed index segments
-        // index a continuous shuffle data in the corresponding data file and the first segment's
-        // offset field is the offset of these shuffle data in the data file.
+        // The index file is written, read and parsed sequentially, so the blocks are in the order of offset,
+        // and they are continuous in data file unless the file is shared or it is partially written before.
+        if (fileOffset != -1 && (offset < nextOffset || offset - nextOffset > skipThreshold)) {
+          dataFileSegments.add(new ShuffleDataSegment(fileOffset, (int) (nextOffset - fileOffset), bufferSegments));
+          bufferSegments = Lists.newArrayList();
+          fileOffset = -1;
+        }
         if (fileOffset == -1) {
           fileOffset = offset;
         }
 
-        bufferSegments.add(new BufferSegment(blockId, bufferOffset, length, uncompressLength, crc, taskAttemptId));
-        bufferOffset += length;
+        bufferSegments.add(new BufferSegment(
+            blockId, (int) (offset - fileOffset), length, uncompressLength, crc, taskAttemptId));
+        nextOffset = offset + length;
 
-        if (bufferOffset >= readBufferSize) {
-          ShuffleDataSegment sds = new ShuffleDataSegment(fileOffset, bufferOffset, bufferSegments);
-          dataFileSegments.add(sds);
+        if (nextOffset - fileOffset >= readBufferSize) {
+          dataFileSegments.add(new ShuffleDataSegment(fileOffset, (int) (nextOffset - fileOffset), bufferSegments));
           bufferSegments = Lists.newArrayList();
-          bufferOffset = 0;
           fileOffset = -1;
         }
       } catch (BufferUnderflowException ue) {
@@ -211,9 +223,8 @@ public class RssUtils {
       }
     }
 
-    if (bufferOffset > 0) {
-      ShuffleDataSegment sds = new ShuffleDataSegment(fileOffset, bufferOffset, bufferSegments);
-      dataFileSegments.add(sds);
+    if (fileOffset != -1) {
+      dataFileSegments.add(new ShuffleDataSegment(fileOffset, (int) (nextOffset - fileOffset), bufferSegments));
     }
 
     return dataFileSegments;
@@ -20,8 +20,12 @@ package com.tencent.rss.common;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.ByteBuffer;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.Test;
 
 public class ShufflePartitionedBlockTest {
@@ -39,4 +43,29 @@ public class ShufflePartitionedBlockTest {
     ShufflePartitionedBlock b3 = new ShufflePartitionedBlock(1, 1, 2, 3, 3, buf);
     assertArrayEquals(buf, b3.getData());
   }
+
+  @Test
+  public void shufflePartitionedBlockWithBufferTest() {
+    byte[] buf = new byte[3];
+    new Random().nextBytes(buf);
+    ByteBuffer direct = ByteBuffer.allocateDirect(3);
+    direct.put(buf);
+    direct.flip();
+    AtomicInteger released = new AtomicInteger(0);
+
+    ShufflePartitionedBlock b1 = new ShufflePartitionedBlock(3, 3, 2, 3, 1, direct, released::incrementAndGet);
+    assertTrue(b1.isDirect());
+    assertArrayEquals(buf, b1.getData());
+    ByteBuffer view = b1.getDataBuffer();
+    view.get(new byte[3]);
+    // position of view won't affect the block
+    assertEquals(3, b1.getDataBuffer().remaining());
+    b1.release();
+    b1.release();
+    assertEquals(1, released.get());
+
+    ShufflePartitionedBlock b2 = new ShufflePartitionedBlock(3, 3, 2, 3, 1, buf);
+    assertFalse(b2.isDirect());
+    assertEquals(ByteBuffer.wrap(buf), b2.getDataBuffer());
+  }
 }
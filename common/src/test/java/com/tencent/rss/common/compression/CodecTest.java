@@ -0,0 +1,99 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package com.tencent.rss.common.compression;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class CodecTest {
+
+  @Test
+  public void newInstanceTest() {
+    assertTrue(Codec.newInstance("lz4", 1) instanceof Lz4Codec);
+    assertTrue(Codec.newInstance("ZSTD", 1) instanceof ZstdCodec);
+    assertTrue(Codec.newInstance(" snappy ", 1) instanceof SnappyCodec);
+    assertTrue(Codec.newInstance("none", 1) instanceof NoneCodec);
+    assertThrows(IllegalArgumentException.class, () -> Codec.newInstance("gzip", 1));
+  }
+
+  @Test
+  public void decompressorTest() {
+    for (Codec.Type type : Codec.Type.values()) {
+      assertEquals(type, Codec.Type.fromId(type.getId()));
+      assertEquals(type, Codec.newInstance(type.name(), 3).getType());
+      assertEquals(type, Codec.getDecompressor(type.getId()).getType());
+    }
+    // the blocks without codec id are compressed with lz4
+    assertEquals(Codec.Type.LZ4, Codec.getDecompressor(0).getType());
+    assertThrows(IllegalArgumentException.class, () -> Codec.getDecompressor(100));
+
+    // the blocks which are compressed with any level of zstd are decompressed by the shared one
+    byte[] data = randomBytes(1024);
+    byte[] compressed = Codec.newInstance("zstd", 9).compress(data);
+    assertArrayEquals(data, Codec.getDecompressor(Codec.Type.ZSTD.getId()).decompress(compressed, data.length));
+  }
+
+  @Test
+  public void compressionTest() {
+    for (Codec.Type type : Codec.Type.values()) {
+      Codec codec = Codec.newInstance(type.name(), 3);
+      for (int size : new int[]{1, 1024, 512 * 1024}) {
+        byte[] data = randomBytes(size);
+        byte[] compressed = codec.compress(data);
+        assertArrayEquals(data, codec.decompress(compressed, size));
+
+        // decompress to the head of a reused buffer, from heap and direct buffers
+        ByteBuffer heapDest = ByteBuffer.allocate(size + 10);
+        heapDest.position(5);
+        codec.decompress(ByteBuffer.wrap(compressed), size, heapDest);
+        assertArrayEquals(data, head(heapDest, size));
+
+        ByteBuffer directSrc = ByteBuffer.allocateDirect(compressed.length + 3);
+        directSrc.position(3);
+        directSrc.put(compressed);
+        directSrc.position(3);
+        ByteBuffer directDest = ByteBuffer.allocateDirect(size + 10);
+        codec.decompress(directSrc, size, directDest);
+        assertArrayEquals(data, head(directDest, size));
+      }
+    }
+  }
+
+  private byte[] head(ByteBuffer buffer, int size) {
+    byte[] data = new byte[size];
+    ByteBuffer head = buffer.duplicate();
+    head.clear();
+    head.get(data);
+    return data;
+  }
+
+  private byte[] randomBytes(int size) {
+    byte[] data = new byte[size];
+    new Random().nextBytes(data);
+    return data;
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.junit.jupiter.api.Test;
+
+public class ByteStringUtilsTest {
+
+  @Test
+  public void unsafeWrapTest() {
+    byte[] data = new byte[100];
+    new Random().nextBytes(data);
+
+    // the array is referenced without copying
+    ByteBuffer buffer = ByteStringUtils.unsafeWrap(UnsafeByteOperations.unsafeWrap(data));
+    assertSame(data, buffer.array());
+    assertEquals(0, buffer.arrayOffset());
+    assertEquals(ByteBuffer.wrap(data), buffer);
+
+    // sub range of array
+    buffer = ByteStringUtils.unsafeWrap(UnsafeByteOperations.unsafeWrap(data, 10, 20));
+    assertSame(data, buffer.array());
+    assertEquals(10, buffer.arrayOffset());
+    assertEquals(ByteBuffer.wrap(data, 10, 20), buffer);
+
+    // ByteString with many segments is copied
+    ByteString rope = ByteString.copyFrom(data, 0, 50).concat(ByteString.copyFrom(data, 50, 50));
+    buffer = ByteStringUtils.unsafeWrap(rope);
+    assertEquals(ByteBuffer.wrap(data), buffer);
+
+    assertEquals(0, ByteStringUtils.unsafeWrap(ByteString.EMPTY).remaining());
+  }
+}
@@ -19,9 +19,11 @@
 package com.tencent.rss.common.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
@@ -89,4 +91,65 @@ public class ChecksumUtilsTest {
     assertEquals(expectedChecksum, ChecksumUtils.getCrc32(buffer));
 
   }
+
+  @Test
+  public void crc32cTest() {
+    byte[] data = "123456789".getBytes(StandardCharsets.UTF_8);
+    // the check value of CRC32C
+    assertEquals(0xE3069283L, ChecksumUtils.getCrc32c(data, 0, data.length));
+    byte[] padded = new byte[data.length + 2];
+    System.arraycopy(data, 0, padded, 1, data.length);
+    assertEquals(0xE3069283L, ChecksumUtils.getCrc32c(padded, 1, data.length));
+  }
+
+  @Test
+  public void checksumWithTypeTest() {
+    byte[] data = new byte[32 * 1024];
+    new Random().nextBytes(data);
+
+    // crc32 is the same as before, so the old blocks can be verified
+    long crc32 = ChecksumUtils.getChecksum(ChecksumType.CRC32, data);
+    assertEquals(ChecksumUtils.getCrc32(data), crc32);
+    assertEquals(ChecksumType.CRC32, ChecksumUtils.getChecksumType(crc32));
+
+    long crc32c = ChecksumUtils.getChecksum(ChecksumType.CRC32C, data);
+    assertEquals(ChecksumType.CRC32C, ChecksumUtils.getChecksumType(crc32c));
+    assertEquals(ChecksumUtils.getCrc32c(data, 0, data.length), crc32c & 0xFFFFFFFFL);
+    assertEquals(crc32c, ChecksumUtils.getChecksum(crc32c, data, 0, data.length));
+
+    long none = ChecksumUtils.getChecksum(ChecksumType.NONE, data);
+    assertEquals(ChecksumType.NONE, ChecksumUtils.getChecksumType(none));
+    assertEquals(none, ChecksumUtils.getChecksum(none, data, 0, data.length));
+
+    // the corrupted data is detected with the type of expected checksum
+    data[100] ^= 1;
+    assertNotEquals(crc32, ChecksumUtils.getChecksum(crc32, data, 0, data.length));
+    assertNotEquals(crc32c, ChecksumUtils.getChecksum(crc32c, data, 0, data.length));
+  }
+
+  @Test
+  public void checksumWithCodecIdTest() {
+    byte[] data = new byte[1024];
+    new Random().nextBytes(data);
+
+    // the checksum without codec id is the one of lz4
+    long crc32 = ChecksumUtils.getChecksum(ChecksumType.CRC32, data);
+    assertEquals(0, ChecksumUtils.getCodecId(crc32));
+
+    long crc32c = ChecksumUtils.getChecksum(ChecksumType.CRC32C, data);
+    long tagged = ChecksumUtils.withCodecId(crc32c, 3);
+    assertEquals(3, ChecksumUtils.getCodecId(tagged));
+    assertEquals(ChecksumType.CRC32C, ChecksumUtils.getChecksumType(tagged));
+    assertEquals(crc32c & 0xFFFFFFFFL, tagged & 0xFFFFFFFFL);
+    assertEquals(crc32c, ChecksumUtils.withCodecId(tagged, 0));
+    // the codec id is kept, so the computed checksum can be compared with the expected one directly
+    assertEquals(tagged, ChecksumUtils.getChecksum(tagged, data, 0, data.length));
+
+    long none = ChecksumUtils.withCodecId(ChecksumUtils.getChecksum(ChecksumType.NONE, data), 1);
+    assertEquals(ChecksumType.NONE, ChecksumUtils.getChecksumType(none));
+    assertEquals(none, ChecksumUtils.getChecksum(none, data, 0, data.length));
+
+    data[100] ^= 1;
+    assertNotEquals(tagged, ChecksumUtils.getChecksum(tagged, data, 0, data.length));
+  }
 }
@@ -132,6 +132,52 @@ public class RssUtilsTest {
     assertTrue(RssUtils.transIndexDataToSegments(new ShuffleIndexResult(data), readBufferSize).isEmpty());
   }
 
+  @Test
+  public void testShuffleIndexSegmentWithGap() {
+    // the blocks are split by the data of others in the shared data file, and the last block is written
+    // before the others, eg, in another chunk of the index
+    long[] offsets = new long[]{0, 10, 30, 100, 50};
+    ByteBuffer byteBuffer = ByteBuffer.allocate(offsets.length * 40);
+    for (int i = 0; i < offsets.length; i++) {
+      byteBuffer.putLong(offsets[i]);
+      byteBuffer.putInt(10);
+      byteBuffer.putInt(10);
+      byteBuffer.putLong(i);
+      byteBuffer.putLong(i);
+      byteBuffer.putLong(i);
+    }
+    ShuffleIndexResult shuffleIndexResult = new ShuffleIndexResult(byteBuffer.array());
+
+    // the gap of 10 bytes is read with the blocks, the gap of 60 bytes and the backward block start new segments
+    List<ShuffleDataSegment> shuffleDataSegments = RssUtils.transIndexDataToSegments(shuffleIndexResult, 1000, 16);
+    assertEquals(3, shuffleDataSegments.size());
+    assertEquals(0, shuffleDataSegments.get(0).getOffset());
+    assertEquals(40, shuffleDataSegments.get(0).getLength());
+    List<BufferSegment> bufferSegments = shuffleDataSegments.get(0).getBufferSegments();
+    assertEquals(3, bufferSegments.size());
+    assertEquals(0, bufferSegments.get(0).getOffset());
+    assertEquals(10, bufferSegments.get(1).getOffset());
+    assertEquals(30, bufferSegments.get(2).getOffset());
+    assertEquals(100, shuffleDataSegments.get(1).getOffset());
+    assertEquals(10, shuffleDataSegments.get(1).getLength());
+    assertEquals(0, shuffleDataSegments.get(1).getBufferSegments().get(0).getOffset());
+    assertEquals(50, shuffleDataSegments.get(2).getOffset());
+    assertEquals(10, shuffleDataSegments.get(2).getLength());
+
+    // no gap is read without the threshold
+    shuffleDataSegments = RssUtils.transIndexDataToSegments(shuffleIndexResult, 1000);
+    assertEquals(4, shuffleDataSegments.size());
+    assertEquals(0, shuffleDataSegments.get(0).getOffset());
+    assertEquals(20, shuffleDataSegments.get(0).getLength());
+    assertEquals(30, shuffleDataSegments.get(1).getOffset());
+    assertEquals(10, shuffleDataSegments.get(1).getLength());
+
+    // the segment is cut by the read buffer size including the gap
+    shuffleDataSegments = RssUtils.transIndexDataToSegments(shuffleIndexResult, 35, 16);
+    assertEquals(3, shuffleDataSegments.size());
+    assertEquals(40, shuffleDataSegments.get(0).getLength());
+  }
+
   @Test
   public void getMetricNameForHostNameTest() {
     assertEquals("a_b_c", RssUtils.getMetricNameForHostName("a.b.c"));
@@ -20,6 +20,7 @@ package com.tencent.rss.test;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,9 +38,11 @@ import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import com.tencent.rss.client.impl.grpc.ShuffleServerGrpcClient;
 import com.tencent.rss.client.request.RssFinishShuffleRequest;
+import com.tencent.rss.client.request.RssGetShuffleDataStreamRequest;
 import com.tencent.rss.client.request.RssRegisterShuffleRequest;
 import com.tencent.rss.client.request.RssSendCommitRequest;
 import com.tencent.rss.client.request.RssSendShuffleDataRequest;
+import com.tencent.rss.client.response.RssGetShuffleDataStreamResponse;
 import com.tencent.rss.common.BufferSegment;
 import com.tencent.rss.common.PartitionRange;
 import com.tencent.rss.common.ShuffleBlockInfo;
@@ -137,6 +140,44 @@ public class ShuffleServerWithLocalTest extends ShuffleReadWriteBase {
     assertNull(shuffleServers.get(0).getShuffleTaskManager().getPartitionsToBlockIds().get(testAppId));
   }
 
+  @Test
+  public void localStreamReadTest() throws Exception {
+    String testAppId = "localStreamReadTest";
+    RssRegisterShuffleRequest rrsr = new RssRegisterShuffleRequest(testAppId, 0,
+        Lists.newArrayList(new PartitionRange(0, 1)), "");
+    shuffleServerClient.registerShuffle(rrsr);
+
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Roaring64NavigableMap[] bitmaps = new Roaring64NavigableMap[4];
+    Map<Integer, List<ShuffleBlockInfo>> partitionToBlocks = createTestData(bitmaps, expectedData);
+    partitionToBlocks.remove(2);
+    partitionToBlocks.remove(3);
+    Map<Integer, Map<Integer, List<ShuffleBlockInfo>>> shuffleToBlocks = Maps.newHashMap();
+    shuffleToBlocks.put(0, partitionToBlocks);
+    shuffleServerClient.sendShuffleData(new RssSendShuffleDataRequest(testAppId, 3, 1000, shuffleToBlocks));
+    shuffleServerClient.sendCommit(new RssSendCommitRequest(testAppId, 0));
+    shuffleServerClient.finishShuffle(new RssFinishShuffleRequest(testAppId, 0));
+
+    // every block is 25 bytes, so every segment has one block and
+    // the segments of the other partition in the same range are skipped by server
+    for (int partitionId = 0; partitionId < 2; partitionId++) {
+      RssGetShuffleDataStreamResponse response = shuffleServerClient.getShuffleDataStream(
+          new RssGetShuffleDataStreamRequest(testAppId, 0, partitionId, 2, 10, 25, bitmaps[partitionId]));
+      Iterator<ShuffleDataResult> iterator = response.getShuffleDataIterator();
+      Set<Long> expectedBlockIds = transBitmapToSet(bitmaps[partitionId]);
+      int segmentNum = 0;
+      while (iterator.hasNext()) {
+        ShuffleDataResult sdr = iterator.next();
+        validateResult(sdr, Sets.newHashSet(sdr.getBufferSegments().get(0).getBlockId()), expectedData, partitionId);
+        assertTrue(expectedBlockIds.remove(sdr.getBufferSegments().get(0).getBlockId()));
+        segmentNum++;
+      }
+      assertEquals(bitmaps[partitionId].getLongCardinality(), segmentNum);
+      assertTrue(expectedBlockIds.isEmpty());
+      response.close();
+    }
+  }
+
   protected void validateResult(ShuffleDataResult sdr, Set<Long> expectedBlockIds,
       Map<Long, byte[]> expectedData, long expectedTaskAttemptId) {
     byte[] buffer = sdr.getData();
@@ -22,8 +22,10 @@ import com.tencent.rss.client.request.RssAppHeartBeatRequest;
 import com.tencent.rss.client.request.RssFinishShuffleRequest;
 import com.tencent.rss.client.request.RssGetInMemoryShuffleDataRequest;
 import com.tencent.rss.client.request.RssGetShuffleDataRequest;
+import com.tencent.rss.client.request.RssGetShuffleDataStreamRequest;
 import com.tencent.rss.client.request.RssGetShuffleIndexRequest;
 import com.tencent.rss.client.request.RssGetShuffleResultRequest;
+import com.tencent.rss.client.request.RssGetShuffleStorageTierRequest;
 import com.tencent.rss.client.request.RssRegisterShuffleRequest;
 import com.tencent.rss.client.request.RssReportShuffleResultRequest;
 import com.tencent.rss.client.request.RssSendCommitRequest;
@@ -32,8 +34,10 @@ import com.tencent.rss.client.response.RssAppHeartBeatResponse;
 import com.tencent.rss.client.response.RssFinishShuffleResponse;
 import com.tencent.rss.client.response.RssGetInMemoryShuffleDataResponse;
 import com.tencent.rss.client.response.RssGetShuffleDataResponse;
+import com.tencent.rss.client.response.RssGetShuffleDataStreamResponse;
 import com.tencent.rss.client.response.RssGetShuffleIndexResponse;
 import com.tencent.rss.client.response.RssGetShuffleResultResponse;
+import com.tencent.rss.client.response.RssGetShuffleStorageTierResponse;
 import com.tencent.rss.client.response.RssRegisterShuffleResponse;
 import com.tencent.rss.client.response.RssReportShuffleResultResponse;
 import com.tencent.rss.client.response.RssSendCommitResponse;
@@ -59,9 +63,13 @@ public interface ShuffleServerClient {
 
   RssGetShuffleDataResponse getShuffleData(RssGetShuffleDataRequest request);
 
+  RssGetShuffleDataStreamResponse getShuffleDataStream(RssGetShuffleDataStreamRequest request);
+
   RssGetInMemoryShuffleDataResponse getInMemoryShuffleData(
       RssGetInMemoryShuffleDataRequest request);
 
+  RssGetShuffleStorageTierResponse getShuffleStorageTier(RssGetShuffleStorageTierRequest request);
+
   String getDesc();
 
   void close();
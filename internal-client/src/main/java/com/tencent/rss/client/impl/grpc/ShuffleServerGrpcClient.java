@@ -18,6 +18,8 @@
 
 package com.tencent.rss.client.impl.grpc;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -26,6 +28,9 @@ import java.util.concurrent.TimeUnit;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.Context;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,8 +39,10 @@ import com.tencent.rss.client.request.RssAppHeartBeatRequest;
 import com.tencent.rss.client.request.RssFinishShuffleRequest;
 import com.tencent.rss.client.request.RssGetInMemoryShuffleDataRequest;
 import com.tencent.rss.client.request.RssGetShuffleDataRequest;
+import com.tencent.rss.client.request.RssGetShuffleDataStreamRequest;
 import com.tencent.rss.client.request.RssGetShuffleIndexRequest;
 import com.tencent.rss.client.request.RssGetShuffleResultRequest;
+import com.tencent.rss.client.request.RssGetShuffleStorageTierRequest;
 import com.tencent.rss.client.request.RssRegisterShuffleRequest;
 import com.tencent.rss.client.request.RssReportShuffleResultRequest;
 import com.tencent.rss.client.request.RssSendCommitRequest;
@@ -45,8 +52,10 @@ import com.tencent.rss.client.response.RssAppHeartBeatResponse;
 import com.tencent.rss.client.response.RssFinishShuffleResponse;
 import com.tencent.rss.client.response.RssGetInMemoryShuffleDataResponse;
 import com.tencent.rss.client.response.RssGetShuffleDataResponse;
+import com.tencent.rss.client.response.RssGetShuffleDataStreamResponse;
 import com.tencent.rss.client.response.RssGetShuffleIndexResponse;
 import com.tencent.rss.client.response.RssGetShuffleResultResponse;
+import com.tencent.rss.client.response.RssGetShuffleStorageTierResponse;
 import com.tencent.rss.client.response.RssRegisterShuffleResponse;
 import com.tencent.rss.client.response.RssReportShuffleResultResponse;
 import com.tencent.rss.client.response.RssSendCommitResponse;
@@ -55,19 +64,25 @@ import com.tencent.rss.common.BufferSegment;
 import com.tencent.rss.common.PartitionRange;
 import com.tencent.rss.common.RemoteStorageInfo;
 import com.tencent.rss.common.ShuffleBlockInfo;
+import com.tencent.rss.common.ShuffleDataResult;
 import com.tencent.rss.common.exception.RssException;
+import com.tencent.rss.common.util.RssUtils;
 import com.tencent.rss.proto.RssProtos.AppHeartBeatRequest;
 import com.tencent.rss.proto.RssProtos.AppHeartBeatResponse;
 import com.tencent.rss.proto.RssProtos.FinishShuffleRequest;
 import com.tencent.rss.proto.RssProtos.FinishShuffleResponse;
 import com.tencent.rss.proto.RssProtos.GetLocalShuffleDataRequest;
 import com.tencent.rss.proto.RssProtos.GetLocalShuffleDataResponse;
+import com.tencent.rss.proto.RssProtos.GetLocalShuffleDataStreamRequest;
+import com.tencent.rss.proto.RssProtos.GetLocalShuffleDataStreamResponse;
 import com.tencent.rss.proto.RssProtos.GetLocalShuffleIndexRequest;
 import com.tencent.rss.proto.RssProtos.GetLocalShuffleIndexResponse;
 import com.tencent.rss.proto.RssProtos.GetMemoryShuffleDataRequest;
 import com.tencent.rss.proto.RssProtos.GetMemoryShuffleDataResponse;
 import com.tencent.rss.proto.RssProtos.GetShuffleResultRequest;
 import com.tencent.rss.proto.RssProtos.GetShuffleResultResponse;
+import com.tencent.rss.proto.RssProtos.GetShuffleStorageTierRequest;
+import com.tencent.rss.proto.RssProtos.GetShuffleStorageTierResponse;
 import com.tencent.rss.proto.RssProtos.PartitionToBlockIds;
 import com.tencent.rss.proto.RssProtos.RemoteStorage;
 import com.tencent.rss.proto.RssProtos.RemoteStorageConfItem;
@@ -453,6 +468,9 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
         .setPartitionNum(request.getPartitionNum())
         .setOffset(request.getOffset())
         .setLength(request.getLength())
+        .setExpectedTaskIds(serializeBitmap(request.getExpectedTaskIds()))
+        .setProcessedBlockIds(serializeBitmap(request.getProcessedBlockIds()))
+        .addAllSegmentBlocks(toShuffleDataBlockSegments(request.getBufferSegments()))
         .build();
     long start = System.currentTimeMillis();
     GetLocalShuffleDataResponse rpcResponse = blockingStub.getLocalShuffleData(rpcRequest);
@@ -466,8 +484,8 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
     switch (statusCode) {
       case SUCCESS:
         response = new RssGetShuffleDataResponse(
-            ResponseStatusCode.SUCCESS, rpcResponse.getData().toByteArray());
-
+            ResponseStatusCode.SUCCESS, rpcResponse.getData().toByteArray(),
+            toBufferSegments(rpcResponse.getShuffleDataBlockSegmentsList()));
         break;
       default:
         String msg = "Can't get shuffle data from " + host + ":" + port
@@ -478,6 +496,53 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
     return response;
   }
 
+  @Override
+  public RssGetShuffleDataStreamResponse getShuffleDataStream(RssGetShuffleDataStreamRequest request) {
+    String requestInfo = "appId[" + request.getAppId() + "], shuffleId["
+        + request.getShuffleId() + "], partitionId[" + request.getPartitionId() + "]";
+    ByteString expectedBlockIds = serializeBitmap(request.getExpectedBlockIds());
+    GetLocalShuffleDataStreamRequest rpcRequest = GetLocalShuffleDataStreamRequest
+        .newBuilder()
+        .setAppId(request.getAppId())
+        .setShuffleId(request.getShuffleId())
+        .setPartitionId(request.getPartitionId())
+        .setPartitionNumPerRange(request.getPartitionNumPerRange())
+        .setPartitionNum(request.getPartitionNum())
+        .setReadBufferSize(request.getReadBufferSize())
+        .setExpectedBlockIds(expectedBlockIds)
+        .build();
+    // the call is bound to the context, so the stream can be cancelled before it is consumed completely
+    Context.CancellableContext context = Context.current().withCancellation();
+    Context previous = context.attach();
+    Iterator<GetLocalShuffleDataStreamResponse> rpcResponses;
+    try {
+      rpcResponses = blockingStub.getLocalShuffleDataStream(rpcRequest);
+    } finally {
+      context.detach(previous);
+    }
+    Iterator<ShuffleDataResult> shuffleDataIterator = new Iterator<ShuffleDataResult>() {
+      @Override
+      public boolean hasNext() {
+        return rpcResponses.hasNext();
+      }
+
+      @Override
+      public ShuffleDataResult next() {
+        GetLocalShuffleDataStreamResponse rpcResponse = rpcResponses.next();
+        if (rpcResponse.getStatus() != StatusCode.SUCCESS) {
+          String msg = "Can't get shuffle data stream from " + host + ":" + port
+              + " for " + requestInfo + ", errorMsg:" + rpcResponse.getRetMsg();
+          LOG.error(msg);
+          throw new RssException(msg);
+        }
+        return new ShuffleDataResult(rpcResponse.getData().toByteArray(),
+            toBufferSegments(rpcResponse.getShuffleDataBlockSegmentsList()));
+      }
+    };
+    return new RssGetShuffleDataStreamResponse(
+        ResponseStatusCode.SUCCESS, shuffleDataIterator, () -> context.cancel(null));
+  }
+
   @Override
   public RssGetShuffleIndexResponse getShuffleIndex(RssGetShuffleIndexRequest request) {
     GetLocalShuffleIndexRequest rpcRequest = GetLocalShuffleIndexRequest
@@ -512,6 +577,34 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
     return response;
   }
 
+  @Override
+  public RssGetShuffleStorageTierResponse getShuffleStorageTier(RssGetShuffleStorageTierRequest request) {
+    GetShuffleStorageTierRequest rpcRequest = GetShuffleStorageTierRequest
+        .newBuilder()
+        .setAppId(request.getAppId())
+        .setShuffleId(request.getShuffleId())
+        .setPartitionId(request.getPartitionId())
+        .build();
+    GetShuffleStorageTierResponse rpcResponse = blockingStub.getShuffleStorageTier(rpcRequest);
+    String requestInfo = "appId[" + request.getAppId() + "], shuffleId["
+        + request.getShuffleId() + "], partitionId[" + request.getPartitionId() + "]";
+
+    StatusCode statusCode = rpcResponse.getStatus();
+    RssGetShuffleStorageTierResponse response;
+    switch (statusCode) {
+      case SUCCESS:
+        response = new RssGetShuffleStorageTierResponse(ResponseStatusCode.SUCCESS, rpcResponse.getKnown(),
+            rpcResponse.getLocal(), rpcResponse.getRemote(), rpcResponse.getUploaded());
+        break;
+      default:
+        String msg = "Can't get shuffle storage tier from " + host + ":" + port
+            + " for " + requestInfo + ", errorMsg:" + rpcResponse.getRetMsg();
+        LOG.error(msg);
+        throw new RssException(msg);
+    }
+    return response;
+  }
+
   @Override
   public RssGetInMemoryShuffleDataResponse getInMemoryShuffleData(
       RssGetInMemoryShuffleDataRequest request) {
@@ -522,6 +615,8 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
         .setPartitionId(request.getPartitionId())
         .setLastBlockId(request.getLastBlockId())
         .setReadBufferSize(request.getReadBufferSize())
+        .setExpectedTaskIds(serializeBitmap(request.getExpectedTaskIds()))
+        .setProcessedBlockIds(serializeBitmap(request.getProcessedBlockIds()))
         .build();
 
     long start = System.currentTimeMillis();
@@ -574,6 +669,36 @@ public class ShuffleServerGrpcClient extends GrpcClient implements ShuffleServer
     return ret;
   }
 
+  private List<ShuffleDataBlockSegment> toShuffleDataBlockSegments(List<BufferSegment> bufferSegments) {
+    List<ShuffleDataBlockSegment> ret = Lists.newArrayList();
+    if (bufferSegments == null) {
+      return ret;
+    }
+    for (BufferSegment bs : bufferSegments) {
+      ret.add(ShuffleDataBlockSegment
+          .newBuilder()
+          .setBlockId(bs.getBlockId())
+          .setOffset(bs.getOffset())
+          .setLength(bs.getLength())
+          .setUncompressLength(bs.getUncompressLength())
+          .setCrc(bs.getCrc())
+          .setTaskAttemptId(bs.getTaskAttemptId())
+          .build());
+    }
+    return ret;
+  }
+
+  private ByteString serializeBitmap(Roaring64NavigableMap bitmap) {
+    if (bitmap == null) {
+      return ByteString.EMPTY;
+    }
+    try {
+      return UnsafeByteOperations.unsafeWrap(RssUtils.serializeBitMap(bitmap));
+    } catch (IOException e) {
+      throw new RuntimeException("Can't serialize bitmap", e);
+    }
+  }
+
   @VisibleForTesting
   public void adjustTimeout(long timeout) {
     rpcTimeout = timeout;
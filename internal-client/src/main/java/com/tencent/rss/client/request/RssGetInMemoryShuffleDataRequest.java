@@ -18,20 +18,33 @@
 
 package com.tencent.rss.client.request;
 
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
 public class RssGetInMemoryShuffleDataRequest {
   private final String appId;
   private final int shuffleId;
   private final int partitionId;
   private final long lastBlockId;
   private final int readBufferSize;
+  // the blocks are filtered by server if they aren't null
+  private final Roaring64NavigableMap expectedTaskIds;
+  private final Roaring64NavigableMap processedBlockIds;
 
   public RssGetInMemoryShuffleDataRequest(
       String appId, int shuffleId, int partitionId, long lastBlockId, int readBufferSize) {
+    this(appId, shuffleId, partitionId, lastBlockId, readBufferSize, null, null);
+  }
+
+  public RssGetInMemoryShuffleDataRequest(
+      String appId, int shuffleId, int partitionId, long lastBlockId, int readBufferSize,
+      Roaring64NavigableMap expectedTaskIds, Roaring64NavigableMap processedBlockIds) {
     this.appId = appId;
     this.shuffleId = shuffleId;
     this.partitionId = partitionId;
     this.lastBlockId = lastBlockId;
     this.readBufferSize = readBufferSize;
+    this.expectedTaskIds = expectedTaskIds;
+    this.processedBlockIds = processedBlockIds;
   }
 
   public String getAppId() {
@@ -53,4 +66,12 @@ public class RssGetInMemoryShuffleDataRequest {
   public int getReadBufferSize() {
     return readBufferSize;
   }
+
+  public Roaring64NavigableMap getExpectedTaskIds() {
+    return expectedTaskIds;
+  }
+
+  public Roaring64NavigableMap getProcessedBlockIds() {
+    return processedBlockIds;
+  }
 }
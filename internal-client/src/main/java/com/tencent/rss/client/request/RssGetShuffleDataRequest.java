@@ -18,6 +18,12 @@
 
 package com.tencent.rss.client.request;
 
+import java.util.List;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import com.tencent.rss.common.BufferSegment;
+
 public class RssGetShuffleDataRequest {
 
   private final String appId;
@@ -27,9 +33,20 @@ public class RssGetShuffleDataRequest {
   private final int partitionNum;
   private final long offset;
   private final int length;
+  // the blocks are filtered by server if they aren't null
+  private final Roaring64NavigableMap expectedTaskIds;
+  private final Roaring64NavigableMap processedBlockIds;
+  // the blocks in the requested range, they are read from index by client and used by server to filter
+  private final List<BufferSegment> bufferSegments;
 
   public RssGetShuffleDataRequest(String appId, int shuffleId, int partitionId, int partitionNumPerRange,
       int partitionNum, long offset, int length) {
+    this(appId, shuffleId, partitionId, partitionNumPerRange, partitionNum, offset, length, null, null, null);
+  }
+
+  public RssGetShuffleDataRequest(String appId, int shuffleId, int partitionId, int partitionNumPerRange,
+      int partitionNum, long offset, int length, Roaring64NavigableMap expectedTaskIds,
+      Roaring64NavigableMap processedBlockIds, List<BufferSegment> bufferSegments) {
     this.appId = appId;
     this.shuffleId = shuffleId;
     this.partitionId = partitionId;
@@ -37,6 +54,9 @@ public class RssGetShuffleDataRequest {
     this.partitionNum = partitionNum;
     this.offset = offset;
     this.length = length;
+    this.expectedTaskIds = expectedTaskIds;
+    this.processedBlockIds = processedBlockIds;
+    this.bufferSegments = bufferSegments;
   }
 
   public String getAppId() {
@@ -66,4 +86,16 @@ public class RssGetShuffleDataRequest {
   public int getLength() {
     return length;
   }
+
+  public Roaring64NavigableMap getExpectedTaskIds() {
+    return expectedTaskIds;
+  }
+
+  public Roaring64NavigableMap getProcessedBlockIds() {
+    return processedBlockIds;
+  }
+
+  public List<BufferSegment> getBufferSegments() {
+    return bufferSegments;
+  }
 }
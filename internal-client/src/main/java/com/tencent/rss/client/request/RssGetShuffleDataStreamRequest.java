@@ -0,0 +1,71 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.client.request;
+
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+public class RssGetShuffleDataStreamRequest {
+
+  private final String appId;
+  private final int shuffleId;
+  private final int partitionId;
+  private final int partitionNumPerRange;
+  private final int partitionNum;
+  private final int readBufferSize;
+  private final Roaring64NavigableMap expectedBlockIds;
+
+  public RssGetShuffleDataStreamRequest(String appId, int shuffleId, int partitionId, int partitionNumPerRange,
+      int partitionNum, int readBufferSize, Roaring64NavigableMap expectedBlockIds) {
+    this.appId = appId;
+    this.shuffleId = shuffleId;
+    this.partitionId = partitionId;
+    this.partitionNumPerRange = partitionNumPerRange;
+    this.partitionNum = partitionNum;
+    this.readBufferSize = readBufferSize;
+    this.expectedBlockIds = expectedBlockIds;
+  }
+
+  public String getAppId() {
+    return appId;
+  }
+
+  public int getShuffleId() {
+    return shuffleId;
+  }
+
+  public int getPartitionId() {
+    return partitionId;
+  }
+
+  public int getPartitionNumPerRange() {
+    return partitionNumPerRange;
+  }
+
+  public int getPartitionNum() {
+    return partitionNum;
+  }
+
+  public int getReadBufferSize() {
+    return readBufferSize;
+  }
+
+  public Roaring64NavigableMap getExpectedBlockIds() {
+    return expectedBlockIds;
+  }
+}
@@ -18,17 +18,35 @@
 
 package com.tencent.rss.client.response;
 
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import com.tencent.rss.common.BufferSegment;
+
 public class RssGetShuffleDataResponse extends ClientResponse {
 
   private final byte[] shuffleData;
+  // empty if no block is filtered by server
+  private final List<BufferSegment> bufferSegments;
 
   public RssGetShuffleDataResponse(ResponseStatusCode statusCode, byte[] data) {
+    this(statusCode, data, Lists.newArrayList());
+  }
+
+  public RssGetShuffleDataResponse(
+      ResponseStatusCode statusCode, byte[] data, List<BufferSegment> bufferSegments) {
     super(statusCode);
     this.shuffleData = data;
+    this.bufferSegments = bufferSegments;
   }
 
   public byte[] getShuffleData() {
     return shuffleData;
   }
 
+  public List<BufferSegment> getBufferSegments() {
+    return bufferSegments;
+  }
+
 }
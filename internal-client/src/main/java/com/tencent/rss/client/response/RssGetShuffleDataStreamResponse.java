@@ -0,0 +1,46 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.client.response;
+
+import java.util.Iterator;
+
+import com.tencent.rss.common.ShuffleDataResult;
+
+public class RssGetShuffleDataStreamResponse extends ClientResponse {
+
+  private final Iterator<ShuffleDataResult> shuffleDataIterator;
+  private final Runnable cancelHandler;
+
+  public RssGetShuffleDataStreamResponse(
+      ResponseStatusCode statusCode, Iterator<ShuffleDataResult> shuffleDataIterator, Runnable cancelHandler) {
+    super(statusCode);
+    this.shuffleDataIterator = shuffleDataIterator;
+    this.cancelHandler = cancelHandler;
+  }
+
+  // segments are received lazily, the iterator blocks until the next segment arrives
+  public Iterator<ShuffleDataResult> getShuffleDataIterator() {
+    return shuffleDataIterator;
+  }
+
+  // cancel the stream if it isn't consumed completely
+  public void close() {
+    cancelHandler.run();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import com.tencent.rss.common.BufferSegment;
+import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.common.util.RssUtils;
+
+/**
+ * Skip the blocks which the reader doesn't need before they are sent, eg, the blocks of other
+ * partitions in the same range, the blocks of speculative task attempts and the processed blocks.
+ */
+public class ShuffleBlockFilter {
+
+  private final int partitionId;
+  // null if every task attempt is expected
+  private final Roaring64NavigableMap expectedTaskIds;
+  // null if no block is processed
+  private final Roaring64NavigableMap processedBlockIds;
+
+  public ShuffleBlockFilter(
+      int partitionId,
+      Roaring64NavigableMap expectedTaskIds,
+      Roaring64NavigableMap processedBlockIds) {
+    this.partitionId = partitionId;
+    this.expectedTaskIds = expectedTaskIds;
+    this.processedBlockIds = processedBlockIds;
+  }
+
+  // null if the reader doesn't ask for filtering, eg, the client is an old version
+  public static ShuffleBlockFilter create(
+      int partitionId,
+      ByteString expectedTaskIds,
+      ByteString processedBlockIds) throws IOException {
+    if (expectedTaskIds.isEmpty() && processedBlockIds.isEmpty()) {
+      return null;
+    }
+    return new ShuffleBlockFilter(
+        partitionId,
+        expectedTaskIds.isEmpty() ? null : RssUtils.deserializeBitMap(expectedTaskIds.toByteArray()),
+        processedBlockIds.isEmpty() ? null : RssUtils.deserializeBitMap(processedBlockIds.toByteArray()));
+  }
+
+  public boolean accept(long blockId, long taskAttemptId) {
+    long blockPartitionId = (blockId >> Constants.TASK_ATTEMPT_ID_MAX_LENGTH) & Constants.MAX_PARTITION_ID;
+    return blockPartitionId == partitionId
+        && (expectedTaskIds == null || expectedTaskIds.contains(taskAttemptId))
+        && (processedBlockIds == null || !processedBlockIds.contains(blockId));
+  }
+
+  // copy the accepted blocks to a compact buffer, the result is returned as it is if nothing is skipped
+  public ShuffleDataResult filter(ShuffleDataResult result) {
+    List<BufferSegment> bufferSegments = result.getBufferSegments();
+    List<BufferSegment> acceptedSegments = Lists.newArrayList();
+    int length = 0;
+    for (BufferSegment bs : bufferSegments) {
+      if (accept(bs.getBlockId(), bs.getTaskAttemptId())) {
+        acceptedSegments.add(bs);
+        length += bs.getLength();
+      }
+    }
+    if (acceptedSegments.size() == bufferSegments.size()) {
+      return result;
+    }
+    ByteBuffer data = result.getDataBuffer();
+    int base = data.position();
+    byte[] compacted = new byte[length];
+    List<BufferSegment> compactedSegments = Lists.newArrayList();
+    int offset = 0;
+    for (BufferSegment bs : acceptedSegments) {
+      ByteBuffer block = data.duplicate();
+      block.position(base + bs.getOffset());
+      block.get(compacted, offset, bs.getLength());
+      compactedSegments.add(new BufferSegment(bs.getBlockId(), offset, bs.getLength(),
+          bs.getUncompressLength(), bs.getCrc(), bs.getTaskAttemptId()));
+      offset += bs.getLength();
+    }
+    return new ShuffleDataResult(compacted, compactedSegments);
+  }
+}
@@ -18,10 +18,13 @@
 
 package com.tencent.rss.server;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
+import com.google.common.collect.Lists;
+
 import com.tencent.rss.common.ShufflePartitionedBlock;
 import com.tencent.rss.server.buffer.ShuffleBuffer;
 
@@ -37,6 +40,8 @@ public class ShuffleDataFlushEvent {
   private final Supplier<Boolean> valid;
   private final ShuffleBuffer shuffleBuffer;
   private final AtomicInteger retryTimes = new AtomicInteger();
+  // the original events if this one is merged from them
+  private List<ShuffleDataFlushEvent> mergedEvents;
 
   public ShuffleDataFlushEvent(
       long eventId,
@@ -59,6 +64,41 @@ public class ShuffleDataFlushEvent {
     this.shuffleBuffer = shuffleBuffer;
   }
 
+  /**
+   * Merge the events of the same shuffle to write them together, they may belong to different partition ranges.
+   * The merged event takes the range of the first one, so it is flushed to the same storage, and the ranges of
+   * all events are got with {@link #getMergedEvents()}. The merged event has no buffer, the buffers of the
+   * original events should be cleared with {@link #getMergedEvents()} after it is flushed.
+   */
+  public static ShuffleDataFlushEvent merge(List<ShuffleDataFlushEvent> events) {
+    if (events.size() == 1) {
+      return events.get(0);
+    }
+    ShuffleDataFlushEvent first = events.get(0);
+    long size = 0;
+    List<ShufflePartitionedBlock> blocks = Lists.newArrayList();
+    for (ShuffleDataFlushEvent event : events) {
+      if (!first.getAppId().equals(event.getAppId()) || first.getShuffleId() != event.getShuffleId()) {
+        throw new IllegalArgumentException("Can't merge " + event + " into " + first);
+      }
+      size += event.getSize();
+      if (event.getShuffleBlocks() != null) {
+        blocks.addAll(event.getShuffleBlocks());
+      }
+    }
+    ShuffleDataFlushEvent merged = new ShuffleDataFlushEvent(first.getEventId(), first.getAppId(),
+        first.getShuffleId(), first.getStartPartition(), first.getEndPartition(), size, blocks, first.valid, null);
+    merged.mergedEvents = events;
+    return merged;
+  }
+
+  public List<ShuffleDataFlushEvent> getMergedEvents() {
+    if (mergedEvents == null) {
+      return Collections.singletonList(this);
+    }
+    return mergedEvents;
+  }
+
   public List<ShufflePartitionedBlock> getShuffleBlocks() {
     return shuffleBlocks;
   }
@@ -112,6 +152,7 @@ public class ShuffleDataFlushEvent {
         + ", appId=" + appId
         + ", shuffleId=" + shuffleId
         + ", startPartition=" + startPartition
-        + ", endPartition=" + endPartition;
+        + ", endPartition=" + endPartition
+        + (mergedEvents == null ? "" : ", mergedEventNum=" + mergedEvents.size());
   }
 }
@@ -18,17 +18,21 @@
 
 package com.tencent.rss.server;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
 import com.google.common.collect.RangeMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.hadoop.conf.Configuration;
 import org.roaringbitmap.longlong.Roaring64NavigableMap;
@@ -37,8 +41,11 @@ import org.slf4j.LoggerFactory;
 
 import com.tencent.rss.common.ShufflePartitionedBlock;
 import com.tencent.rss.common.config.RssBaseConf;
+import com.tencent.rss.common.util.RssUtils;
 import com.tencent.rss.server.buffer.ShuffleBuffer;
 import com.tencent.rss.server.storage.StorageManager;
+import com.tencent.rss.storage.common.HdfsStorage;
+import com.tencent.rss.storage.common.LocalStorage;
 import com.tencent.rss.storage.common.Storage;
 import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
 import com.tencent.rss.storage.request.CreateShuffleWriteHandlerRequest;
@@ -67,6 +74,16 @@ public class ShuffleFlushManager {
   private final BlockingQueue<PendingShuffleFlushEvent> pendingEvents = Queues.newLinkedBlockingQueue();
   private final long pendingEventTimeoutSec;
   private int processPendingEventIndex = 0;
+  private final boolean groupCommitEnable;
+  private final int groupCommitMaxEvents;
+  private final long groupCommitWaitMs;
+  private final boolean storageIsolationEnable;
+  private final int localStorageFlushThreadNum;
+  private final int hdfsStorageFlushThreadNum;
+  private final int storageFlushQueueSize;
+  private final long flushThreadAliveSec;
+  // storage path -> executor which only flushes the events of the storage
+  private final Map<String, ThreadPoolExecutor> storageExecutors = Maps.newConcurrentMap();
 
   public ShuffleFlushManager(ShuffleServerConf shuffleServerConf, String shuffleServerId, ShuffleServer shuffleServer,
                              StorageManager storageManager) {
@@ -83,21 +100,27 @@ public class ShuffleFlushManager {
         ShuffleServerConf.SERVER_FLUSH_THREAD_POOL_QUEUE_SIZE);
     BlockingQueue<Runnable> waitQueue = Queues.newLinkedBlockingQueue(waitQueueSize);
     int poolSize = shuffleServerConf.getInteger(ShuffleServerConf.SERVER_FLUSH_THREAD_POOL_SIZE);
-    long keepAliveTime = shuffleServerConf.getLong(ShuffleServerConf.SERVER_FLUSH_THREAD_ALIVE);
-    threadPoolExecutor = new ThreadPoolExecutor(poolSize, poolSize, keepAliveTime, TimeUnit.SECONDS, waitQueue);
+    flushThreadAliveSec = shuffleServerConf.getLong(ShuffleServerConf.SERVER_FLUSH_THREAD_ALIVE);
+    threadPoolExecutor = new ThreadPoolExecutor(poolSize, poolSize, flushThreadAliveSec, TimeUnit.SECONDS, waitQueue);
     storageBasePaths = shuffleServerConf.getString(ShuffleServerConf.RSS_STORAGE_BASE_PATH).split(",");
     pendingEventTimeoutSec = shuffleServerConf.getLong(ShuffleServerConf.PENDING_EVENT_TIMEOUT_SEC);
+    groupCommitEnable = shuffleServerConf.getBoolean(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_ENABLE);
+    groupCommitMaxEvents = shuffleServerConf.getInteger(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_MAX_EVENTS);
+    groupCommitWaitMs = shuffleServerConf.getLong(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_WAIT_MS);
+    storageIsolationEnable = shuffleServerConf.getBoolean(ShuffleServerConf.SERVER_FLUSH_STORAGE_ISOLATION_ENABLE);
+    localStorageFlushThreadNum = shuffleServerConf.getInteger(ShuffleServerConf.SERVER_FLUSH_LOCALFILE_THREAD_NUM);
+    hdfsStorageFlushThreadNum = shuffleServerConf.getInteger(ShuffleServerConf.SERVER_FLUSH_HDFS_THREAD_NUM);
+    storageFlushQueueSize = shuffleServerConf.getInteger(ShuffleServerConf.SERVER_FLUSH_STORAGE_QUEUE_SIZE);
     // the thread for flush data
     processEventThread = () -> {
       while (true) {
         try {
-          ShuffleDataFlushEvent event = flushQueue.take();
-          threadPoolExecutor.execute(() -> {
-            ShuffleServerMetrics.gaugeEventQueueSize.set(flushQueue.size());
-            ShuffleServerMetrics.gaugeWriteHandler.inc();
-            flushToFile(event);
-            ShuffleServerMetrics.gaugeWriteHandler.dec();
-          });
+          if (groupCommitEnable) {
+            processEventsInBatch();
+          } else {
+            ShuffleDataFlushEvent event = flushQueue.take();
+            executeFlush(selectStorageQuietly(event), Collections.singletonList(event), () -> flushToFile(event));
+          }
         } catch (Exception e) {
           LOG.error("Exception happened when process event.", e);
         }
@@ -130,11 +153,131 @@ public class ShuffleFlushManager {
     flushQueue.offer(event);
   }
 
+  /**
+   * Run the flush task of the events in the executor of their storage if storage isolation is enabled, so a slow
+   * storage only blocks its own threads. If the queue of the storage is full, the events will be pending until
+   * the storage catches up, instead of occupying the memory of the queue or blocking the dispatcher.
+   */
+  private void executeFlush(Storage storage, List<ShuffleDataFlushEvent> events, Runnable flushTask) {
+    Runnable task = () -> {
+      ShuffleServerMetrics.gaugeEventQueueSize.set(flushQueue.size());
+      ShuffleServerMetrics.gaugeWriteHandler.inc();
+      flushTask.run();
+      ShuffleServerMetrics.gaugeWriteHandler.dec();
+    };
+    if (!storageIsolationEnable || storage == null) {
+      threadPoolExecutor.execute(task);
+      return;
+    }
+    String storagePath = storage.getStoragePath();
+    ThreadPoolExecutor executor = storageExecutors.computeIfAbsent(storagePath, key -> createStorageExecutor(storage));
+    try {
+      executor.execute(() -> {
+        updateStorageQueueSize(storagePath, executor);
+        task.run();
+      });
+      updateStorageQueueSize(storagePath, executor);
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Flush queue of storage[" + storagePath + "] is full, " + events.size() + " events are pending");
+      events.forEach(this::addPendingEvents);
+    }
+  }
+
+  private ThreadPoolExecutor createStorageExecutor(Storage storage) {
+    int threadNum = storage instanceof HdfsStorage ? hdfsStorageFlushThreadNum : localStorageFlushThreadNum;
+    String threadName = storage instanceof HdfsStorage ? storage.getStorageHost() : storage.getStoragePath();
+    LOG.info("Create flush executor with " + threadNum + " threads for storage[" + storage.getStoragePath() + "]");
+    return new ThreadPoolExecutor(threadNum, threadNum, flushThreadAliveSec, TimeUnit.SECONDS,
+        Queues.newLinkedBlockingQueue(storageFlushQueueSize),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("flush-" + threadName + "-%d").build());
+  }
+
+  private void updateStorageQueueSize(String storagePath, ThreadPoolExecutor executor) {
+    ShuffleServerMetrics.gaugeStorageFlushQueueSize.labels(storagePath).set(executor.getQueue().size());
+  }
+
+  // the storage is busy if its flush queue is full, the pending events shouldn't be flushed now
+  private boolean isStorageBusy(Storage storage) {
+    if (!storageIsolationEnable) {
+      return false;
+    }
+    ThreadPoolExecutor executor = storageExecutors.get(storage.getStoragePath());
+    return executor != null && executor.getQueue().remainingCapacity() == 0;
+  }
+
+  @VisibleForTesting
+  int getStorageFlushQueueSize(Storage storage) {
+    ThreadPoolExecutor executor = storageExecutors.get(storage.getStoragePath());
+    return executor == null ? 0 : executor.getQueue().size();
+  }
+
+  private Storage selectStorageQuietly(ShuffleDataFlushEvent event) {
+    try {
+      return storageManager.selectStorage(event);
+    } catch (Exception e) {
+      // flushToFile will handle it
+      LOG.warn("Can't select storage for " + event, e);
+      return null;
+    }
+  }
+
+  /**
+   * Take the events which arrive in a short time as a batch, and merge the events of the same shuffle and the
+   * same local storage. The local storage writes all partition ranges of a shuffle to the coalesced files in
+   * group commit mode, so every merged event is flushed with one data write and one index write, and the disk
+   * sees a few sequential writes instead of many small random writes. The merged events of different shuffles
+   * are flushed by different tasks.
+   */
+  private void processEventsInBatch() throws InterruptedException {
+    List<ShuffleDataFlushEvent> events = Lists.newArrayList(flushQueue.take());
+    long deadline = System.currentTimeMillis() + groupCommitWaitMs;
+    while (events.size() < groupCommitMaxEvents) {
+      long waitMs = deadline - System.currentTimeMillis();
+      ShuffleDataFlushEvent event = waitMs > 0
+          ? flushQueue.poll(waitMs, TimeUnit.MILLISECONDS) : flushQueue.poll();
+      if (event == null) {
+        break;
+      }
+      events.add(event);
+    }
+    // storage -> shuffle -> events, keep the order of events
+    Map<Storage, Map<String, List<ShuffleDataFlushEvent>>> storageToEvents = Maps.newLinkedHashMap();
+    for (ShuffleDataFlushEvent event : events) {
+      Storage storage = selectStorageQuietly(event);
+      if (!(storage instanceof LocalStorage)) {
+        executeFlush(storage, Collections.singletonList(event), () -> flushToFile(event));
+        continue;
+      }
+      String shuffleKey = RssUtils.generateShuffleKey(event.getAppId(), event.getShuffleId());
+      storageToEvents.computeIfAbsent(storage, key -> Maps.newLinkedHashMap())
+          .computeIfAbsent(shuffleKey, key -> Lists.newArrayList())
+          .add(event);
+    }
+    for (Map.Entry<Storage, Map<String, List<ShuffleDataFlushEvent>>> entry : storageToEvents.entrySet()) {
+      Storage storage = entry.getKey();
+      for (List<ShuffleDataFlushEvent> shuffleEvents : entry.getValue().values()) {
+        executeFlush(storage, shuffleEvents, () -> {
+          try {
+            ShuffleDataFlushEvent merged = ShuffleDataFlushEvent.merge(shuffleEvents);
+            // the merged event may be bigger than the threshold of cold storage
+            if (merged == shuffleEvents.get(0) || storageManager.selectStorage(merged) == storage) {
+              flushToFile(merged);
+            } else {
+              shuffleEvents.forEach(this::flushToFile);
+            }
+          } catch (Exception e) {
+            LOG.error("Exception happened when flush " + shuffleEvents.size() + " events in group commit", e);
+          }
+        });
+      }
+    }
+  }
+
   private void flushToFile(ShuffleDataFlushEvent event) {
 
     Storage storage = storageManager.selectStorage(event);
     if (!storage.canWrite()) {
-      addPendingEvents(event);
+      event.getMergedEvents().forEach(this::addPendingEvents);
       return;
     }
 
@@ -190,9 +333,11 @@ public class ShuffleFlushManager {
       // just log the error, don't throw the exception and stop the flush thread
       LOG.error("Exception happened when process flush shuffle data for " + event, e);
     } finally {
-      ShuffleBuffer shuffleBuffer = event.getShuffleBuffer();
-      if (shuffleBuffer != null) {
-        shuffleBuffer.clearInFlushBuffer(event.getEventId());
+      for (ShuffleDataFlushEvent flushedEvent : event.getMergedEvents()) {
+        ShuffleBuffer shuffleBuffer = flushedEvent.getShuffleBuffer();
+        if (shuffleBuffer != null) {
+          shuffleBuffer.clearInFlushBuffer(flushedEvent.getEventId());
+        }
       }
       if (shuffleServer != null) {
         shuffleServer.getShuffleBufferManager().releaseMemory(event.getSize(), true, false);
@@ -211,19 +356,28 @@ public class ShuffleFlushManager {
     if (blocks == null || blocks.size() == 0) {
       return;
     }
-    if (!committedBlockIds.containsKey(appId)) {
-      committedBlockIds.putIfAbsent(appId, Maps.newConcurrentMap());
-    }
-    Map<Integer, Roaring64NavigableMap> shuffleToBlockIds = committedBlockIds.get(appId);
-    shuffleToBlockIds.putIfAbsent(shuffleId, Roaring64NavigableMap.bitmapOf());
-    Roaring64NavigableMap bitmap = shuffleToBlockIds.get(shuffleId);
+    Roaring64NavigableMap bitmap = getOrCreateCommittedBlockIds(appId, shuffleId);
     synchronized (bitmap) {
       for (ShufflePartitionedBlock spb : blocks) {
         bitmap.addLong(spb.getBlockId());
       }
+      // wake up the threads which are waiting for the commit of shuffle
+      bitmap.notifyAll();
     }
   }
 
+  private Roaring64NavigableMap getOrCreateCommittedBlockIds(String appId, int shuffleId) {
+    return committedBlockIds
+        .computeIfAbsent(appId, key -> Maps.newConcurrentMap())
+        .computeIfAbsent(shuffleId, key -> Roaring64NavigableMap.bitmapOf());
+  }
+
+  // the returned bitmap is notified when new blocks are committed, null if nothing is committed yet
+  Roaring64NavigableMap getCommittedBlockIdsIfPresent(String appId, int shuffleId) {
+    Map<Integer, Roaring64NavigableMap> shuffleIdToBlockIds = committedBlockIds.get(appId);
+    return shuffleIdToBlockIds == null ? null : shuffleIdToBlockIds.get(shuffleId);
+  }
+
   public Roaring64NavigableMap getCommittedBlockIds(String appId, Integer shuffleId) {
     Map<Integer, Roaring64NavigableMap> shuffleIdToBlockIds = committedBlockIds.get(appId);
     if (shuffleIdToBlockIds == null) {
@@ -274,6 +428,10 @@ public class ShuffleFlushManager {
     Storage storage = storageManager.selectStorage(event.getEvent());
     if (System.currentTimeMillis() - event.getCreateTimeStamp() > pendingEventTimeoutSec * 1000L) {
       ShuffleServerMetrics.counterTotalDroppedEventNum.inc();
+      ShuffleBuffer shuffleBuffer = event.getEvent().getShuffleBuffer();
+      if (shuffleBuffer != null) {
+        shuffleBuffer.clearInFlushBuffer(event.getEvent().getEventId());
+      }
       if (shuffleServer != null) {
         shuffleServer.getShuffleBufferManager().releaseMemory(
             event.getEvent().getSize(), true, false);
@@ -282,7 +440,7 @@ public class ShuffleFlushManager {
           pendingEventTimeoutSec, event.getEvent());
       return;
     }
-    if (storage.canWrite()) {
+    if (storage.canWrite() && !isStorageBusy(storage)) {
       addToFlushQueue(event.getEvent());
       return;
     }
@@ -123,6 +123,10 @@ public class ShuffleServer {
       healthCheck.stop();
       LOG.info("HealthCheck stopped!");
     }
+    if (shuffleBufferManager != null) {
+      shuffleBufferManager.close();
+      LOG.info("Buffer Manager Stopped!");
+    }
     server.stop();
     LOG.info("RPC Server Stopped!");
   }
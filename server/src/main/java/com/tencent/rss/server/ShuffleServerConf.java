@@ -28,6 +28,7 @@ import com.tencent.rss.common.config.ConfigOptions;
 import com.tencent.rss.common.config.ConfigUtils;
 import com.tencent.rss.common.config.RssBaseConf;
 import com.tencent.rss.common.util.RssUtils;
+import com.tencent.rss.server.buffer.FlushPolicyFactory;
 
 public class ShuffleServerConf extends RssBaseConf {
 
@@ -221,6 +222,27 @@ public class ShuffleServerConf extends RssBaseConf {
       .defaultValue(8L)
       .withDescription("The speed for the uploader");
 
+  public static final ConfigOption<Boolean> UPLOADER_ADAPTIVE_ENABLE = ConfigOptions
+      .key("rss.server.uploader.adaptive.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Adapt the interval and concurrency of the uploader to the growth of disk usage "
+          + "and the measured upload speed");
+
+  public static final ConfigOption<Long> UPLOADER_MIN_INTERVAL_MS = ConfigOptions
+      .key("rss.server.uploader.min.interval.ms")
+      .longType()
+      .checkValue(ConfigUtils.positiveLongValidator, "uploader min interval must be positive")
+      .defaultValue(500L)
+      .withDescription("The min interval for the adaptive uploader when the disk is filling up");
+
+  public static final ConfigOption<Long> UPLOADER_READ_ACTIVE_WINDOW_MS = ConfigOptions
+      .key("rss.server.uploader.read.active.window.ms")
+      .longType()
+      .checkValue(ConfigUtils.non_negativeLongValidator, "uploader read active window must be non-negative")
+      .defaultValue(30000L)
+      .withDescription("The adaptive uploader doesn't upload the shuffle read in this time in normal mode");
+
   public static final ConfigOption<Long> DISK_CAPACITY = ConfigOptions
       .key("rss.server.disk.capacity")
       .longType()
@@ -337,6 +359,185 @@ public class ShuffleServerConf extends RssBaseConf {
       .defaultValue(0L)
       .withDescription("For multistorage, fail times exceed the number, will switch storage");
 
+  public static final ConfigOption<Boolean> SERVER_BUFFER_OFFHEAP_ENABLE = ConfigOptions
+      .key("rss.server.buffer.offheap.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Whether to store the data of shuffle blocks in pooled off-heap memory");
+
+  public static final ConfigOption<Long> SERVER_BUFFER_OFFHEAP_SLAB_SIZE = ConfigOptions
+      .key("rss.server.buffer.offheap.slab.size")
+      .longType()
+      .checkValue(ConfigUtils.positiveLongValidator, "off-heap slab size must be positive")
+      .defaultValue(4L * 1024L * 1024L)
+      .withDescription("The size of off-heap slab, block which is bigger than it won't be pooled");
+
+  public static final ConfigOption<Integer> SERVER_BUFFER_OFFHEAP_ARENA_NUM = ConfigOptions
+      .key("rss.server.buffer.offheap.arena.num")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "off-heap arena number must be positive")
+      .defaultValue(8)
+      .withDescription("The number of arenas which allocate off-heap memory concurrently");
+
+  public static final ConfigOption<Boolean> SERVER_BUFFER_FLUSH_ASYNC_ENABLE = ConfigOptions
+      .key("rss.server.buffer.flush.async.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Whether to pick and flush buffers in a background thread when the high watermark "
+          + "is reached, otherwise the thread which caches data will do it");
+
+  public static final ConfigOption<String> SERVER_BUFFER_FLUSH_POLICY = ConfigOptions
+      .key("rss.server.buffer.flush.policy")
+      .stringType()
+      .checkValue(FlushPolicyFactory::isValidPolicy, "flush policy must be LARGEST_FIRST, AGE_FIRST or HYBRID")
+      .defaultValue("LARGEST_FIRST")
+      .withDescription("Policy to pick buffers to flush when the high watermark is reached, "
+          + "LARGEST_FIRST, AGE_FIRST or HYBRID");
+
+  public static final ConfigOption<Long> SERVER_BUFFER_FLUSH_MIN_SIZE = ConfigOptions
+      .key("rss.server.buffer.flush.min.size")
+      .longType()
+      .checkValue(ConfigUtils.non_negativeLongValidator, "min flush size must be non-negative")
+      .defaultValue(1024L * 1024L)
+      .withDescription("Buffer which is smaller than it is kept in memory, "
+          + "unless flushing bigger buffers can't release enough memory");
+
+  public static final ConfigOption<Boolean> SERVER_LOCAL_WRITER_CACHE_ENABLE = ConfigOptions
+      .key("rss.server.localstorage.writer.cache.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Whether to keep the files of partitions open between flushes of local storage");
+
+  public static final ConfigOption<Integer> SERVER_LOCAL_WRITER_CACHE_MAX_NUM = ConfigOptions
+      .key("rss.server.localstorage.writer.cache.max.num")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "writer cache max num must be positive")
+      .defaultValue(1000)
+      .withDescription("Max number of partition ranges whose data and index files are kept open for every disk");
+
+  public static final ConfigOption<Long> SERVER_LOCAL_WRITER_CACHE_IDLE_TIMEOUT_MS = ConfigOptions
+      .key("rss.server.localstorage.writer.cache.idle.timeout.ms")
+      .longType()
+      .checkValue(ConfigUtils.positiveLongValidator, "writer cache idle timeout must be positive")
+      .defaultValue(60L * 1000L)
+      .withDescription("The open files will be closed if they aren't written in this time");
+
+  public static final ConfigOption<Boolean> SERVER_FLUSH_GROUP_COMMIT_ENABLE = ConfigOptions
+      .key("rss.server.flush.group.commit.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Whether to batch the flush events of the same local storage, and write the events "
+          + "of the same shuffle in the batch together. All partition ranges of a shuffle share the same data and "
+          + "index files in every local storage, so it can't be used with the shuffle uploader");
+
+  public static final ConfigOption<Integer> SERVER_FLUSH_GROUP_COMMIT_MAX_EVENTS = ConfigOptions
+      .key("rss.server.flush.group.commit.max.events")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "group commit max events must be positive")
+      .defaultValue(64)
+      .withDescription("Max number of flush events in one batch");
+
+  public static final ConfigOption<Long> SERVER_FLUSH_GROUP_COMMIT_WAIT_MS = ConfigOptions
+      .key("rss.server.flush.group.commit.wait.ms")
+      .longType()
+      .checkValue(ConfigUtils.non_negativeLongValidator, "group commit wait time must be non-negative")
+      .defaultValue(5L)
+      .withDescription("Max time to wait for more flush events after the first one of a batch is taken (ms)");
+
+  public static final ConfigOption<Boolean> SERVER_FLUSH_STORAGE_ISOLATION_ENABLE = ConfigOptions
+      .key("rss.server.flush.storage.isolation.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Whether to flush the events of every storage with its own threads and queue, "
+          + "so a slow disk or hdfs only slows down its own partitions");
+
+  public static final ConfigOption<Integer> SERVER_FLUSH_LOCALFILE_THREAD_NUM = ConfigOptions
+      .key("rss.server.flush.localfile.threadPool.size")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "flush thread num of local disk must be positive")
+      .defaultValue(2)
+      .withDescription("Number of flush threads for every local disk if storage isolation is enabled");
+
+  public static final ConfigOption<Integer> SERVER_FLUSH_HDFS_THREAD_NUM = ConfigOptions
+      .key("rss.server.flush.hdfs.threadPool.size")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "flush thread num of hdfs must be positive")
+      .defaultValue(10)
+      .withDescription("Number of flush threads for every remote storage if storage isolation is enabled");
+
+  public static final ConfigOption<Integer> SERVER_FLUSH_STORAGE_QUEUE_SIZE = ConfigOptions
+      .key("rss.server.flush.storage.queue.size")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "flush queue size of storage must be positive")
+      .defaultValue(1000)
+      .withDescription("Max number of flush tasks waiting for one storage, the events will be pending "
+          + "until the storage catches up if it is full");
+
+  public static final ConfigOption<String> SERVER_LOCAL_READ_MODE = ConfigOptions
+      .key("rss.server.localstorage.read.mode")
+      .stringType()
+      .defaultValue("STREAM")
+      .withDescription("How to read local shuffle files, STREAM opens files for every request, "
+          + "CHANNEL reads from cached file channels");
+
+  public static final ConfigOption<Integer> SERVER_LOCAL_READ_CHANNEL_CACHE_MAX_NUM = ConfigOptions
+      .key("rss.server.localstorage.read.channel.cache.max.num")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "read channel cache max num must be positive")
+      .defaultValue(1000)
+      .withDescription("Max number of files which are kept open for reading for every disk "
+          + "if the read mode is CHANNEL");
+
+  public static final ConfigOption<Long> SERVER_LOCAL_INDEX_CACHE_SIZE = ConfigOptions
+      .key("rss.server.localstorage.index.cache.size")
+      .longType()
+      .checkValue(ConfigUtils.non_negativeLongValidator, "index cache size must be non-negative")
+      .defaultValue(0L)
+      .withDescription("Max size of index data of local files which is cached in memory, 0 means no cache");
+
+  public static final ConfigOption<Boolean> SERVER_HDFS_COALESCED_ENABLE = ConfigOptions
+      .key("rss.server.hdfs.coalesced.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Whether to append all partitions of a shuffle to a few files for every shuffle server "
+          + "instead of the files for every partition range, to reduce the number of files in hdfs");
+
+  public static final ConfigOption<Integer> SERVER_HDFS_COALESCED_FILE_NUM = ConfigOptions
+      .key("rss.server.hdfs.coalesced.file.num")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "coalesced file num must be positive")
+      .defaultValue(1)
+      .withDescription("Number of files of a shuffle for every shuffle server if the coalesced layout is used, "
+          + "the writes of the same file are serialized");
+
+  public static final ConfigOption<Boolean> SERVER_HDFS_WRITER_CACHE_ENABLE = ConfigOptions
+      .key("rss.server.hdfs.writer.cache.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Whether to keep the output streams of hdfs files open between flushes, "
+          + "the data is made visible to readers with hflush after every flush");
+
+  public static final ConfigOption<Integer> SERVER_HDFS_WRITER_CACHE_MAX_NUM = ConfigOptions
+      .key("rss.server.hdfs.writer.cache.max.num")
+      .intType()
+      .checkValue(ConfigUtils.positiveIntegerValidator2, "hdfs writer cache max num must be positive")
+      .defaultValue(1000)
+      .withDescription("Max number of data and index file pairs whose streams are kept open for every remote storage");
+
+  public static final ConfigOption<Long> SERVER_HDFS_WRITER_CACHE_IDLE_TIMEOUT_MS = ConfigOptions
+      .key("rss.server.hdfs.writer.cache.idle.timeout.ms")
+      .longType()
+      .checkValue(ConfigUtils.positiveLongValidator, "hdfs writer cache idle timeout must be positive")
+      .defaultValue(60L * 1000L)
+      .withDescription("The open streams will be closed if they aren't written in this time");
+
+  public static final ConfigOption<Boolean> SERVER_HDFS_WRITER_HSYNC_ENABLE = ConfigOptions
+      .key("rss.server.hdfs.writer.hsync.enable")
+      .booleanType()
+      .defaultValue(false)
+      .withDescription("Whether to use hsync instead of hflush after every flush if the streams are kept open, "
+          + "hsync also persists the data to the disks of DataNodes");
+
   public ShuffleServerConf() {
   }
 
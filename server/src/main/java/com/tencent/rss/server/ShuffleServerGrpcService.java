@@ -18,6 +18,8 @@
 
 package com.tencent.rss.server;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -28,7 +30,9 @@ import com.google.protobuf.ByteString;
 import com.google.protobuf.UnsafeByteOperations;
 import io.grpc.Context;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,10 +40,13 @@ import com.tencent.rss.common.BufferSegment;
 import com.tencent.rss.common.PartitionRange;
 import com.tencent.rss.common.RemoteStorageInfo;
 import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.common.ShuffleDataSegment;
 import com.tencent.rss.common.ShuffleIndexResult;
 import com.tencent.rss.common.ShufflePartitionedBlock;
 import com.tencent.rss.common.ShufflePartitionedData;
 import com.tencent.rss.common.config.RssBaseConf;
+import com.tencent.rss.common.util.ByteStringUtils;
+import com.tencent.rss.common.util.RssUtils;
 import com.tencent.rss.proto.RssProtos;
 import com.tencent.rss.proto.RssProtos.AppHeartBeatRequest;
 import com.tencent.rss.proto.RssProtos.AppHeartBeatResponse;
@@ -47,12 +54,16 @@ import com.tencent.rss.proto.RssProtos.FinishShuffleRequest;
 import com.tencent.rss.proto.RssProtos.FinishShuffleResponse;
 import com.tencent.rss.proto.RssProtos.GetLocalShuffleDataRequest;
 import com.tencent.rss.proto.RssProtos.GetLocalShuffleDataResponse;
+import com.tencent.rss.proto.RssProtos.GetLocalShuffleDataStreamRequest;
+import com.tencent.rss.proto.RssProtos.GetLocalShuffleDataStreamResponse;
 import com.tencent.rss.proto.RssProtos.GetLocalShuffleIndexRequest;
 import com.tencent.rss.proto.RssProtos.GetLocalShuffleIndexResponse;
 import com.tencent.rss.proto.RssProtos.GetMemoryShuffleDataRequest;
 import com.tencent.rss.proto.RssProtos.GetMemoryShuffleDataResponse;
 import com.tencent.rss.proto.RssProtos.GetShuffleResultRequest;
 import com.tencent.rss.proto.RssProtos.GetShuffleResultResponse;
+import com.tencent.rss.proto.RssProtos.GetShuffleStorageTierRequest;
+import com.tencent.rss.proto.RssProtos.GetShuffleStorageTierResponse;
 import com.tencent.rss.proto.RssProtos.PartitionToBlockIds;
 import com.tencent.rss.proto.RssProtos.RemoteStorageConfItem;
 import com.tencent.rss.proto.RssProtos.ReportShuffleResultRequest;
@@ -70,7 +81,12 @@ import com.tencent.rss.proto.RssProtos.ShufflePartitionRange;
 import com.tencent.rss.proto.RssProtos.ShuffleRegisterRequest;
 import com.tencent.rss.proto.RssProtos.ShuffleRegisterResponse;
 import com.tencent.rss.proto.ShuffleServerGrpc.ShuffleServerImplBase;
+import com.tencent.rss.server.buffer.OffHeapBlockAllocator;
+import com.tencent.rss.server.storage.MultiStorageManager;
+import com.tencent.rss.server.storage.ShuffleStorageTier;
+import com.tencent.rss.server.storage.StorageManager;
 import com.tencent.rss.storage.common.StorageReadMetrics;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
 
 public class ShuffleServerGrpcService extends ShuffleServerImplBase {
 
@@ -156,6 +172,7 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
       }
       final long start = System.currentTimeMillis();
       List<ShufflePartitionedData> shufflePartitionedData = toPartitionedData(req);
+      int cachedNum = 0;
       for (ShufflePartitionedData spd : shufflePartitionedData) {
         String shuffleDataInfo = "appId[" + appId + "], shuffleId[" + shuffleId
             + "], partitionId[" + spd.getPartitionId() + "]";
@@ -170,6 +187,7 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
             responseMessage = errorMsg;
             break;
           } else {
+            cachedNum++;
             // remove require bufferId, the memory should be updated already
             shuffleServer
                 .getShuffleTaskManager().removeRequireBufferId(requireBufferId);
@@ -185,6 +203,12 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
           break;
         }
       }
+      // the data which isn't cached won't be flushed, release it here
+      for (int i = cachedNum; i < shufflePartitionedData.size(); i++) {
+        for (ShufflePartitionedBlock block : shufflePartitionedData.get(i).getBlockList()) {
+          block.release();
+        }
+      }
       reply = SendShuffleDataResponse.newBuilder().setStatus(valueOf(ret)).setRetMsg(responseMessage).build();
       LOG.debug("Cache Shuffle Data for appId[" + appId + "], shuffleId[" + shuffleId
           + "], cost " + (System.currentTimeMillis() - start)
@@ -402,14 +426,27 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
             partitionNumPerRange, partitionNum, storageType, offset, length);
         long readTime = System.currentTimeMillis() - start;
         ShuffleServerMetrics.counterTotalReadTime.inc(readTime);
-        ShuffleServerMetrics.counterTotalReadDataSize.inc(sdr.getData().length);
-        ShuffleServerMetrics.counterTotalReadLocalDataFileSize.inc(sdr.getData().length);
+        ShuffleServerMetrics.counterTotalReadDataSize.inc(sdr.getDataLength());
+        ShuffleServerMetrics.counterTotalReadLocalDataFileSize.inc(sdr.getDataLength());
         LOG.info("Successfully getShuffleData cost {} ms for shuffle"
             + " data with {}", readTime, requestInfo);
-        reply = GetLocalShuffleDataResponse.newBuilder()
+        GetLocalShuffleDataResponse.Builder builder = GetLocalShuffleDataResponse.newBuilder()
             .setStatus(valueOf(status))
-            .setRetMsg(msg)
-            .setData(UnsafeByteOperations.unsafeWrap(sdr.getData()))
+            .setRetMsg(msg);
+        // the blocks of segment are sent by the client which has read the index, so it isn't read again here
+        ShuffleBlockFilter filter = request.getSegmentBlocksCount() == 0 ? null : ShuffleBlockFilter.create(
+            partitionId, request.getExpectedTaskIds(), request.getProcessedBlockIds());
+        if (filter != null) {
+          ShuffleDataResult filteredResult = filter.filter(new ShuffleDataResult(sdr.getDataBuffer(),
+              toBufferSegments(request.getSegmentBlocksList())));
+          // the whole segment is returned if no block is needed, the response can't be empty
+          if (!filteredResult.isEmpty() && filteredResult.getDataLength() < sdr.getDataLength()) {
+            sdr = filteredResult;
+            builder.addAllShuffleDataBlockSegments(toShuffleDataBlockSegments(sdr.getBufferSegments()));
+          }
+        }
+        reply = builder
+            .setData(UnsafeByteOperations.unsafeWrap(sdr.getDataBuffer()))
             .build();
       } catch (Exception e) {
         status = StatusCode.INTERNAL_ERROR;
@@ -435,6 +472,69 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
     responseObserver.onCompleted();
   }
 
+  @Override
+  public void getLocalShuffleDataStream(GetLocalShuffleDataStreamRequest request,
+      StreamObserver<GetLocalShuffleDataStreamResponse> responseObserver) {
+    String appId = request.getAppId();
+    int shuffleId = request.getShuffleId();
+    int partitionId = request.getPartitionId();
+    int partitionNumPerRange = request.getPartitionNumPerRange();
+    int partitionNum = request.getPartitionNum();
+    String requestInfo = "appId[" + appId + "], shuffleId[" + shuffleId + "], partitionId["
+        + partitionId + "]";
+
+    shuffleServer.getStorageManager()
+        .selectStorage(new ShuffleDataReadEvent(appId, shuffleId, partitionId))
+        .updateReadMetrics(new StorageReadMetrics(appId, shuffleId));
+
+    List<ShuffleDataSegment> segments;
+    try {
+      ShuffleIndexResult shuffleIndexResult = shuffleServer.getShuffleTaskManager().getShuffleIndex(
+          appId, shuffleId, partitionId, partitionNumPerRange, partitionNum);
+      int indexLength = shuffleIndexResult.isEmpty() ? 0 : shuffleIndexResult.getIndexData().length;
+      ShuffleServerMetrics.counterTotalReadDataSize.inc(indexLength);
+      ShuffleServerMetrics.counterTotalReadLocalIndexFileSize.inc(indexLength);
+      segments = filterSegments(shuffleIndexResult, request);
+    } catch (Exception e) {
+      String msg = "Error happened when get shuffle index for " + requestInfo + ", " + e.getMessage();
+      LOG.error(msg, e);
+      responseObserver.onNext(GetLocalShuffleDataStreamResponse.newBuilder()
+          .setStatus(valueOf(StatusCode.INTERNAL_ERROR))
+          .setRetMsg(msg)
+          .build());
+      responseObserver.onCompleted();
+      return;
+    }
+
+    // segments are read one by one when the transport is ready, so the client controls the pace
+    ServerCallStreamObserver<GetLocalShuffleDataStreamResponse> serverObserver =
+        (ServerCallStreamObserver<GetLocalShuffleDataStreamResponse>) responseObserver;
+    LocalShuffleDataStreamSender sender = new LocalShuffleDataStreamSender(
+        request, segments, serverObserver, requestInfo);
+    serverObserver.setOnCancelHandler(sender::cancel);
+    serverObserver.setOnReadyHandler(sender);
+  }
+
+  // only keep the segments which contain expected blocks, all segments are kept if nothing is specified
+  private List<ShuffleDataSegment> filterSegments(
+      ShuffleIndexResult shuffleIndexResult, GetLocalShuffleDataStreamRequest request) throws IOException {
+    if (shuffleIndexResult == null || shuffleIndexResult.isEmpty()) {
+      return Lists.newArrayList();
+    }
+    // the blocks are split by the data of other partitions in coalesced files
+    List<ShuffleDataSegment> segments = RssUtils.transIndexDataToSegments(shuffleIndexResult,
+        request.getReadBufferSize(), ShuffleStorageUtils.getCoalescedSkipThreshold(request.getReadBufferSize()));
+    if (request.getExpectedBlockIds().isEmpty()) {
+      return segments;
+    }
+    Roaring64NavigableMap expectedBlockIds =
+        RssUtils.deserializeBitMap(request.getExpectedBlockIds().toByteArray());
+    return segments.stream()
+        .filter(segment -> segment.getBufferSegments().stream()
+            .anyMatch(bs -> expectedBlockIds.contains(bs.getBlockId())))
+        .collect(Collectors.toList());
+  }
+
   @Override
   public void getLocalShuffleIndex(GetLocalShuffleIndexRequest request,
       StreamObserver<GetLocalShuffleIndexResponse> responseObserver) {
@@ -499,6 +599,40 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
     responseObserver.onCompleted();
   }
 
+  @Override
+  public void getShuffleStorageTier(GetShuffleStorageTierRequest request,
+      StreamObserver<GetShuffleStorageTierResponse> responseObserver) {
+    String appId = request.getAppId();
+    int shuffleId = request.getShuffleId();
+    int partitionId = request.getPartitionId();
+    GetShuffleStorageTierResponse.Builder builder = GetShuffleStorageTierResponse.newBuilder()
+        .setStatus(valueOf(StatusCode.SUCCESS))
+        .setRetMsg("OK");
+    try {
+      StorageManager storageManager = shuffleServer.getStorageManager();
+      // only multiple storages track the tiers, the client reads all tiers if they are unknown
+      if (storageManager instanceof MultiStorageManager) {
+        ShuffleStorageTier tier = ((MultiStorageManager) storageManager).getStorageTier(
+            appId, shuffleId, partitionId);
+        if (tier != null) {
+          builder.setKnown(true)
+              .setLocal(tier.isLocal())
+              .setRemote(tier.isRemote())
+              .setUploaded(tier.isUploaded());
+        }
+      }
+    } catch (Exception e) {
+      String msg = "Error happened when get shuffle storage tier for appId[" + appId + "], shuffleId["
+          + shuffleId + "], partitionId[" + partitionId + "], " + e.getMessage();
+      LOG.error(msg, e);
+      builder = GetShuffleStorageTierResponse.newBuilder()
+          .setStatus(valueOf(StatusCode.INTERNAL_ERROR))
+          .setRetMsg(msg);
+    }
+    responseObserver.onNext(builder.build());
+    responseObserver.onCompleted();
+  }
+
   @Override
   public void getMemoryShuffleData(GetMemoryShuffleDataRequest request,
       StreamObserver<GetMemoryShuffleDataResponse> responseObserver) {
@@ -517,8 +651,10 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
     // todo: if can get the exact memory size?
     if (shuffleServer.getShuffleBufferManager().requireReadMemoryWithRetry(readBufferSize)) {
       try {
+        ShuffleBlockFilter filter = ShuffleBlockFilter.create(
+            partitionId, request.getExpectedTaskIds(), request.getProcessedBlockIds());
         ShuffleDataResult shuffleDataResult = shuffleServer.getShuffleTaskManager()
-            .getInMemoryShuffleData(appId, shuffleId, partitionId, blockId, readBufferSize);
+            .getInMemoryShuffleData(appId, shuffleId, partitionId, blockId, readBufferSize, filter);
         byte[] data = new byte[]{};
         List<BufferSegment> bufferSegments = Lists.newArrayList();
         if (shuffleDataResult != null) {
@@ -583,18 +719,45 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
       return new ShufflePartitionedBlock[]{};
     }
     ShufflePartitionedBlock[] ret = new ShufflePartitionedBlock[blocks.size()];
+    OffHeapBlockAllocator allocator = shuffleServer.getShuffleBufferManager().getOffHeapBlockAllocator();
     int i = 0;
     for (ShuffleBlock block : blocks) {
-      ret[i] = new ShufflePartitionedBlock(
+      if (allocator != null) {
+        ret[i] = allocator.allocate(
+            block.getLength(),
+            block.getUncompressLength(),
+            block.getCrc(),
+            block.getBlockId(),
+            block.getTaskAttemptId(),
+            block.getData().asReadOnlyByteBuffer());
+      } else {
+        ret[i] = toHeapPartitionedBlock(block);
+      }
+      i++;
+    }
+    return ret;
+  }
+
+  // reference the data of ShuffleBlock instead of copying it
+  private ShufflePartitionedBlock toHeapPartitionedBlock(ShuffleBlock block) {
+    ByteBuffer data = ByteStringUtils.unsafeWrap(block.getData());
+    if (data.hasArray() && data.arrayOffset() == 0 && data.remaining() == data.array().length) {
+      return new ShufflePartitionedBlock(
           block.getLength(),
           block.getUncompressLength(),
           block.getCrc(),
           block.getBlockId(),
           block.getTaskAttemptId(),
-          block.getData().toByteArray());
-      i++;
+          data.array());
     }
-    return ret;
+    return new ShufflePartitionedBlock(
+        block.getLength(),
+        block.getUncompressLength(),
+        block.getCrc(),
+        block.getBlockId(),
+        block.getTaskAttemptId(),
+        data,
+        null);
   }
 
   private Map<Integer, long[]> toPartitionBlocksMap(List<PartitionToBlockIds> partitionToBlockIds) {
@@ -620,6 +783,15 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
     return partitionRanges;
   }
 
+  private List<BufferSegment> toBufferSegments(List<ShuffleDataBlockSegment> blockSegments) {
+    List<BufferSegment> bufferSegments = Lists.newArrayList();
+    for (ShuffleDataBlockSegment sdbs : blockSegments) {
+      bufferSegments.add(new BufferSegment(sdbs.getBlockId(), sdbs.getOffset(), sdbs.getLength(),
+          sdbs.getUncompressLength(), sdbs.getCrc(), sdbs.getTaskAttemptId()));
+    }
+    return bufferSegments;
+  }
+
   private List<ShuffleDataBlockSegment> toShuffleDataBlockSegments(
       List<BufferSegment> bufferSegments) {
     List<ShuffleDataBlockSegment> shuffleDataBlockSegments = Lists.newArrayList();
@@ -639,4 +811,102 @@ public class ShuffleServerGrpcService extends ShuffleServerImplBase {
     }
     return shuffleDataBlockSegments;
   }
+
+  private class LocalShuffleDataStreamSender implements Runnable {
+
+    private final GetLocalShuffleDataStreamRequest request;
+    private final List<ShuffleDataSegment> segments;
+    private final ServerCallStreamObserver<GetLocalShuffleDataStreamResponse> observer;
+    private final String requestInfo;
+    private final String storageType;
+    private final long start = System.currentTimeMillis();
+    private volatile boolean cancelled = false;
+    private boolean completed = false;
+    private int segmentIndex = 0;
+
+    LocalShuffleDataStreamSender(
+        GetLocalShuffleDataStreamRequest request,
+        List<ShuffleDataSegment> segments,
+        ServerCallStreamObserver<GetLocalShuffleDataStreamResponse> observer,
+        String requestInfo) {
+      this.request = request;
+      this.segments = segments;
+      this.observer = observer;
+      this.requestInfo = requestInfo;
+      this.storageType = shuffleServer.getShuffleServerConf().get(RssBaseConf.RSS_STORAGE_TYPE);
+    }
+
+    // called by grpc whenever the stream can accept more messages
+    @Override
+    public synchronized void run() {
+      if (completed) {
+        return;
+      }
+      while (!cancelled && observer.isReady() && segmentIndex < segments.size()) {
+        if (!send(segments.get(segmentIndex))) {
+          completed = true;
+          observer.onCompleted();
+          return;
+        }
+        segmentIndex++;
+      }
+      if (cancelled) {
+        completed = true;
+        LOG.warn("Stream of shuffle data is cancelled after " + segmentIndex + " segments for " + requestInfo);
+      } else if (segmentIndex == segments.size()) {
+        completed = true;
+        observer.onCompleted();
+        LOG.info("Successfully stream " + segments.size() + " segments of shuffle data cost "
+            + (System.currentTimeMillis() - start) + " ms for " + requestInfo);
+      }
+    }
+
+    void cancel() {
+      cancelled = true;
+    }
+
+    private boolean send(ShuffleDataSegment segment) {
+      int length = segment.getLength();
+      if (!shuffleServer.getShuffleBufferManager().requireReadMemoryWithRetry(length)) {
+        sendError("Can't require memory to get shuffle data");
+        return false;
+      }
+      try {
+        long readStart = System.currentTimeMillis();
+        ShuffleDataResult sdr = shuffleServer.getShuffleTaskManager().getShuffleData(
+            request.getAppId(), request.getShuffleId(), request.getPartitionId(),
+            request.getPartitionNumPerRange(), request.getPartitionNum(), storageType,
+            segment.getOffset(), length);
+        ShuffleServerMetrics.counterTotalReadTime.inc(System.currentTimeMillis() - readStart);
+        ShuffleServerMetrics.counterTotalReadDataSize.inc(sdr.getDataLength());
+        ShuffleServerMetrics.counterTotalReadLocalDataFileSize.inc(sdr.getDataLength());
+        if (sdr.getDataLength() != length) {
+          sendError("Expect " + length + " bytes from offset " + segment.getOffset()
+              + ", but read " + sdr.getDataLength() + " bytes");
+          return false;
+        }
+        observer.onNext(GetLocalShuffleDataStreamResponse.newBuilder()
+            .setStatus(valueOf(StatusCode.SUCCESS))
+            .setRetMsg("OK")
+            .addAllShuffleDataBlockSegments(toShuffleDataBlockSegments(segment.getBufferSegments()))
+            .setData(UnsafeByteOperations.unsafeWrap(sdr.getDataBuffer()))
+            .build());
+        return true;
+      } catch (Exception e) {
+        LOG.error("Error happened when stream shuffle data for " + requestInfo, e);
+        sendError("Error happened when get shuffle data, " + e.getMessage());
+        return false;
+      } finally {
+        shuffleServer.getShuffleBufferManager().releaseReadMemory(length);
+      }
+    }
+
+    private void sendError(String msg) {
+      LOG.error(msg + " for " + requestInfo);
+      observer.onNext(GetLocalShuffleDataStreamResponse.newBuilder()
+          .setStatus(valueOf(StatusCode.INTERNAL_ERROR))
+          .setRetMsg(msg + " for " + requestInfo)
+          .build());
+    }
+  }
 }
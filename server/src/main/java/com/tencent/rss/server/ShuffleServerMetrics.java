@@ -48,11 +48,16 @@ public class ShuffleServerMetrics {
   private static final String EVENT_SIZE_THRESHOLD_LEVEL3 = "event_size_threshold_level3";
   private static final String EVENT_SIZE_THRESHOLD_LEVEL4 = "event_size_threshold_level4";
   private static final String EVENT_QUEUE_SIZE = "event_queue_size";
+  private static final String STORAGE_FLUSH_QUEUE_SIZE = "storage_flush_queue_size";
   private static final String TOTAL_READ_DATA = "total_read_data";
   private static final String TOTAL_READ_LOCAL_DATA_FILE = "total_read_local_data_file";
   private static final String TOTAL_READ_LOCAL_INDEX_FILE = "total_read_local_index_file";
   private static final String TOTAL_READ_MEMORY_DATA = "total_read_memory_data";
   private static final String TOTAL_READ_TIME = "total_read_time";
+  private static final String TOTAL_LOCAL_INDEX_CACHE_HIT = "total_local_index_cache_hit";
+  private static final String TOTAL_LOCAL_INDEX_CACHE_MISS = "total_local_index_cache_miss";
+  private static final String TOTAL_READ_HANDLER_CACHE_HIT = "total_read_handler_cache_hit";
+  private static final String TOTAL_READ_HANDLER_CACHE_MISS = "total_read_handler_cache_miss";
 
   private static final String REGISTERED_SHUFFLE = "registered_shuffle";
   private static final String REGISTERED_SHUFFLE_ENGINE = "registered_shuffle_engine";
@@ -60,6 +65,7 @@ public class ShuffleServerMetrics {
   private static final String ALLOCATED_BUFFER_SIZE = "allocated_buffer_size";
   private static final String IN_FLUSH_BUFFER_SIZE = "in_flush_buffer_size";
   private static final String USED_BUFFER_SIZE = "used_buffer_size";
+  private static final String OFF_HEAP_BUFFER_SIZE = "off_heap_buffer_size";
   private static final String TOTAL_UPLOAD_SIZE = "total_upload_size";
   private static final String TOTAL_UPLOAD_TIME_S = "total_upload_time_s";
   private static final String TOTAL_DROPPED_EVENT_NUM = "total_dropped_event_num";
@@ -91,6 +97,10 @@ public class ShuffleServerMetrics {
   public static Counter counterTotalReadLocalIndexFileSize;
   public static Counter counterTotalReadMemoryDataSize;
   public static Counter counterTotalReadTime;
+  public static Counter counterLocalIndexCacheHit;
+  public static Counter counterLocalIndexCacheMiss;
+  public static Counter counterReadHandlerCacheHit;
+  public static Counter counterReadHandlerCacheMiss;
   public static Counter counterTotalUploadSize;
   public static Counter counterTotalUploadTimeS;
   public static Counter counterTotalDroppedEventNum;
@@ -108,8 +118,10 @@ public class ShuffleServerMetrics {
   public static Gauge gaugeAllocatedBufferSize;
   public static Gauge gaugeInFlushBufferSize;
   public static Gauge gaugeUsedBufferSize;
+  public static Gauge gaugeOffHeapBufferSize;
   public static Gauge gaugeWriteHandler;
   public static Gauge gaugeEventQueueSize;
+  public static Gauge gaugeStorageFlushQueueSize;
   public static Gauge gaugeAppNum;
   public static Gauge gaugeTotalPartitionNum;
   public static Map<String, Counter> counterRemoteStorageTotalWrite;
@@ -229,6 +241,10 @@ public class ShuffleServerMetrics {
     counterTotalReadLocalIndexFileSize = metricsManager.addCounter(TOTAL_READ_LOCAL_INDEX_FILE);
     counterTotalReadMemoryDataSize = metricsManager.addCounter(TOTAL_READ_MEMORY_DATA);
     counterTotalReadTime = metricsManager.addCounter(TOTAL_READ_TIME);
+    counterLocalIndexCacheHit = metricsManager.addCounter(TOTAL_LOCAL_INDEX_CACHE_HIT);
+    counterLocalIndexCacheMiss = metricsManager.addCounter(TOTAL_LOCAL_INDEX_CACHE_MISS);
+    counterReadHandlerCacheHit = metricsManager.addCounter(TOTAL_READ_HANDLER_CACHE_HIT);
+    counterReadHandlerCacheMiss = metricsManager.addCounter(TOTAL_READ_HANDLER_CACHE_MISS);
     counterTotalUploadSize = metricsManager.addCounter(TOTAL_UPLOAD_SIZE);
     counterTotalUploadTimeS = metricsManager.addCounter(TOTAL_UPLOAD_TIME_S);
     counterTotalDroppedEventNum = metricsManager.addCounter(TOTAL_DROPPED_EVENT_NUM);
@@ -246,8 +262,10 @@ public class ShuffleServerMetrics {
     gaugeAllocatedBufferSize = metricsManager.addGauge(ALLOCATED_BUFFER_SIZE);
     gaugeInFlushBufferSize = metricsManager.addGauge(IN_FLUSH_BUFFER_SIZE);
     gaugeUsedBufferSize = metricsManager.addGauge(USED_BUFFER_SIZE);
+    gaugeOffHeapBufferSize = metricsManager.addGauge(OFF_HEAP_BUFFER_SIZE);
     gaugeWriteHandler = metricsManager.addGauge(TOTAL_WRITE_HANDLER);
     gaugeEventQueueSize = metricsManager.addGauge(EVENT_QUEUE_SIZE);
+    gaugeStorageFlushQueueSize = metricsManager.addGauge(STORAGE_FLUSH_QUEUE_SIZE, "storage");
     gaugeAppNum = metricsManager.addGauge(APP_NUM_WITH_NODE);
     gaugeTotalPartitionNum = metricsManager.addGauge(PARTITION_NUM_WITH_NODE);
   }
@@ -54,11 +54,14 @@ import com.tencent.rss.server.buffer.ShuffleBufferManager;
 import com.tencent.rss.server.storage.StorageManager;
 import com.tencent.rss.storage.common.Storage;
 import com.tencent.rss.storage.common.StorageReadMetrics;
+import com.tencent.rss.storage.handler.api.ServerReadHandler;
 import com.tencent.rss.storage.request.CreateShuffleReadHandlerRequest;
 
 public class ShuffleTaskManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(ShuffleTaskManager.class);
+  // poll interval of commit before the first flush of shuffle creates the committed bitmap
+  private static final long FIRST_COMMIT_CHECK_INTERVAL_MS = 100L;
   private final ShuffleFlushManager shuffleFlushManager;
   private final ScheduledExecutorService scheduledExecutorService;
   private final ScheduledExecutorService expiredAppCleanupExecutorService;
@@ -160,7 +163,6 @@ public class ShuffleTaskManager {
     long start = System.currentTimeMillis();
     refreshAppId(appId);
     Roaring64NavigableMap cachedBlockIds = getCachedBlockIds(appId, shuffleId);
-    Roaring64NavigableMap cloneBlockIds;
     commitLocks.putIfAbsent(appId, Maps.newConcurrentMap());
     Map<Integer, Object> shuffleLevelLocks = commitLocks.get(appId);
     shuffleLevelLocks.putIfAbsent(shuffleId, new Object());
@@ -170,34 +172,61 @@ public class ShuffleTaskManager {
       if (System.currentTimeMillis() - start > commitTimeout) {
         throw new RuntimeException("Shuffle data commit timeout for " + commitTimeout + " ms");
       }
-      byte[] bitmapBytes;
+      Roaring64NavigableMap remainBlockIds = Roaring64NavigableMap.bitmapOf();
       synchronized (cachedBlockIds) {
-        bitmapBytes = RssUtils.serializeBitMap(cachedBlockIds);
+        remainBlockIds.or(cachedBlockIds);
       }
-      cloneBlockIds = RssUtils.deserializeBitMap(bitmapBytes);
-      long expectedCommitted = cloneBlockIds.getLongCardinality();
+      long expectedCommitted = remainBlockIds.getLongCardinality();
       shuffleBufferManager.commitShuffleTask(appId, shuffleId);
-      Roaring64NavigableMap committedBlockIds;
-      Roaring64NavigableMap cloneCommittedBlockIds;
       long checkInterval = 1000L;
+      long lastCheckTime = System.currentTimeMillis();
       while (true) {
-        committedBlockIds = shuffleFlushManager.getCommittedBlockIds(appId, shuffleId);
-        synchronized (committedBlockIds) {
-          bitmapBytes = RssUtils.serializeBitMap(committedBlockIds);
+        // the committed bitmap is notified after every flush, so the check is done as soon as blocks are flushed.
+        // It isn't created here, otherwise a late commit would leak the bitmap of the removed app.
+        Roaring64NavigableMap committedBlockIds =
+            shuffleFlushManager.getCommittedBlockIdsIfPresent(appId, shuffleId);
+        long committedNum = -1L;
+        if (committedBlockIds != null) {
+          // only the remaining blocks are probed, so the work under the lock shrinks as blocks are committed
+          Roaring64NavigableMap newCommittedBlockIds = Roaring64NavigableMap.bitmapOf();
+          synchronized (committedBlockIds) {
+            LongIterator iterator = remainBlockIds.getLongIterator();
+            while (iterator.hasNext()) {
+              long blockId = iterator.next();
+              if (committedBlockIds.contains(blockId)) {
+                newCommittedBlockIds.addLong(blockId);
+              }
+            }
+            committedNum = committedBlockIds.getLongCardinality();
+          }
+          remainBlockIds.andNot(newCommittedBlockIds);
         }
-        cloneCommittedBlockIds = RssUtils.deserializeBitMap(bitmapBytes);
-        cloneBlockIds.andNot(cloneCommittedBlockIds);
-        if (cloneBlockIds.isEmpty()) {
+        if (remainBlockIds.isEmpty()) {
           break;
         }
-        Thread.sleep(checkInterval);
-        if (System.currentTimeMillis() - start > commitTimeout) {
+        long currentTime = System.currentTimeMillis();
+        if (currentTime - start > commitTimeout) {
           throw new RuntimeException("Shuffle data commit timeout for " + commitTimeout + " ms");
         }
-        LOG.info("Checking commit result for appId[" + appId + "], shuffleId[" + shuffleId
-            + "], expect committed[" + expectedCommitted
-            + "], remain[" + cloneBlockIds.getLongCardinality() + "]");
-        checkInterval = Math.min(checkInterval * 2, commitCheckIntervalMax);
+        if (currentTime - lastCheckTime >= checkInterval) {
+          LOG.info("Checking commit result for appId[" + appId + "], shuffleId[" + shuffleId
+              + "], expect committed[" + expectedCommitted
+              + "], remain[" + remainBlockIds.getLongCardinality() + "]");
+          lastCheckTime = currentTime;
+          checkInterval = Math.min(checkInterval * 2, commitCheckIntervalMax);
+        }
+        // wake up periodically in case the bitmap is created or removed in the meantime
+        long waitMs = Math.max(1L, Math.min(checkInterval, commitTimeout - (currentTime - start)));
+        if (committedBlockIds == null) {
+          Thread.sleep(Math.min(waitMs, FIRST_COMMIT_CHECK_INTERVAL_MS));
+        } else {
+          synchronized (committedBlockIds) {
+            // skip waiting if blocks are committed after the check, the notification is missed
+            if (committedBlockIds.getLongCardinality() == committedNum) {
+              committedBlockIds.wait(waitMs);
+            }
+          }
+        }
       }
       LOG.info("Finish commit for appId[" + appId + "], shuffleId[" + shuffleId
           + "] with expectedCommitted[" + expectedCommitted + "], cost "
@@ -326,8 +355,14 @@ public class ShuffleTaskManager {
 
   public ShuffleDataResult getInMemoryShuffleData(
       String appId, Integer shuffleId, Integer partitionId, long blockId, int readBufferSize) {
+    return getInMemoryShuffleData(appId, shuffleId, partitionId, blockId, readBufferSize, null);
+  }
+
+  public ShuffleDataResult getInMemoryShuffleData(
+      String appId, Integer shuffleId, Integer partitionId, long blockId, int readBufferSize,
+      ShuffleBlockFilter filter) {
     return shuffleBufferManager.getShuffleData(appId,
-        shuffleId, partitionId, blockId, readBufferSize);
+        shuffleId, partitionId, blockId, readBufferSize, filter);
   }
 
   public ShuffleDataResult getShuffleData(
@@ -345,7 +380,7 @@ public class ShuffleTaskManager {
     request.setRssBaseConf(conf);
     Storage storage = storageManager.selectStorage(new ShuffleDataReadEvent(appId, shuffleId, partitionId));
 
-    return storage.getOrCreateReadHandler(request).getShuffleData(offset, length);
+    return getReadHandler(storage, request).getShuffleData(offset, length);
   }
 
   public ShuffleIndexResult getShuffleIndex(
@@ -366,7 +401,17 @@ public class ShuffleTaskManager {
     request.setRssBaseConf(conf);
 
     Storage storage = storageManager.selectStorage(new ShuffleDataReadEvent(appId, shuffleId, partitionId));
-    return storage.getOrCreateReadHandler(request).getShuffleIndex();
+    return getReadHandler(storage, request).getShuffleIndex();
+  }
+
+  // read handler is cached by storage until the application is removed
+  private ServerReadHandler getReadHandler(Storage storage, CreateShuffleReadHandlerRequest request) {
+    if (storage.containsReadHandler(request)) {
+      ShuffleServerMetrics.counterReadHandlerCacheHit.inc();
+    } else {
+      ShuffleServerMetrics.counterReadHandlerCacheMiss.inc();
+    }
+    return storage.getOrCreateReadHandler(request);
   }
 
   public void checkResourceStatus() {
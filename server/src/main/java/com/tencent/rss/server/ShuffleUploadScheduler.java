@@ -0,0 +1,124 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package com.tencent.rss.server;
+
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+
+import com.tencent.rss.common.util.ByteUnit;
+
+/**
+ * ShuffleUploadScheduler decides how often and how many threads the uploader of a disk uses.
+ * The growth of disk usage is estimated with the moving average of disk size slope, and the uploader
+ * runs more frequently with more threads as the time to reach the high watermark of write gets short.
+ * The upload speed of a thread is measured for every remote storage and shared by the uploaders
+ * of all disks, it replaces the reference upload speed to estimate the concurrency and timeout.
+ * It isn't thread safe except the upload speed, and it is only used by the daemon thread of uploader.
+ */
+public class ShuffleUploadScheduler {
+
+  // use all threads if the disk will reach the high watermark in these max upload intervals
+  @VisibleForTesting
+  static final int PRESSURE_CYCLES = 10;
+  // ignore the small upload whose speed is dominated by the overhead of remote storage
+  private static final long MIN_SPEED_SAMPLE_SIZE = (long) ByteUnit.MiB.toBytes(1);
+  private static final double ALPHA = 0.3;
+  // remote storage path -> upload speed of a thread in bytes per second
+  private static final ConcurrentMap<String, Double> UPLOAD_SPEEDS = Maps.newConcurrentMap();
+
+  private final String remoteStoragePath;
+  private final int maxConcurrency;
+  private final long minIntervalMs;
+  private final long maxIntervalMs;
+  private final double referenceSpeed;
+  private long lastDiskSize;
+  private long lastSampleTs = -1;
+  // bytes per second
+  private double diskSlope = 0;
+
+  public ShuffleUploadScheduler(
+      String remoteStoragePath,
+      int maxConcurrency,
+      long minIntervalMs,
+      long maxIntervalMs,
+      long referenceUploadSpeedMBS) {
+    this.remoteStoragePath = remoteStoragePath;
+    this.maxConcurrency = maxConcurrency;
+    this.minIntervalMs = Math.min(minIntervalMs, maxIntervalMs);
+    this.maxIntervalMs = maxIntervalMs;
+    this.referenceSpeed = ByteUnit.MiB.toBytes(referenceUploadSpeedMBS);
+  }
+
+  public void updateDiskSize(long diskSize, long now) {
+    if (lastSampleTs >= 0 && now > lastSampleTs) {
+      double slope = (diskSize - lastDiskSize) * 1000.0 / (now - lastSampleTs);
+      diskSlope = ALPHA * slope + (1 - ALPHA) * diskSlope;
+    }
+    lastDiskSize = diskSize;
+    lastSampleTs = now;
+  }
+
+  public long getTimeToFullMs(long diskSize, long capacity, double highWaterMarkOfWrite) {
+    double limit = capacity * highWaterMarkOfWrite / 100;
+    if (diskSize >= limit) {
+      return 0;
+    }
+    if (diskSlope <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return (long) ((limit - diskSize) * 1000 / diskSlope);
+  }
+
+  public int getConcurrency(boolean forceUpload, long timeToFullMs) {
+    if (forceUpload || timeToFullMs < PRESSURE_CYCLES * maxIntervalMs) {
+      return maxConcurrency;
+    }
+    // one more thread than the growth needs to catch up with the data which isn't uploaded
+    long needed = (long) Math.ceil(Math.max(diskSlope, 0) / getUploadSpeed()) + 1;
+    return (int) Math.min(needed, maxConcurrency);
+  }
+
+  public long getIntervalMs(long timeToFullMs) {
+    return Math.max(minIntervalMs, Math.min(maxIntervalMs, timeToFullMs / PRESSURE_CYCLES));
+  }
+
+  public void updateUploadSpeed(long uploadSize, long costMs, int threadNum) {
+    if (uploadSize < MIN_SPEED_SAMPLE_SIZE || costMs <= 0 || threadNum <= 0) {
+      return;
+    }
+    double speed = uploadSize * 1000.0 / costMs / threadNum;
+    UPLOAD_SPEEDS.merge(remoteStoragePath, speed, (old, cur) -> ALPHA * cur + (1 - ALPHA) * old);
+  }
+
+  public long getUploadSpeedMBS() {
+    return Math.max(1L, ByteUnit.BYTE.toMiB((long) getUploadSpeed()));
+  }
+
+  private double getUploadSpeed() {
+    return Math.max(1.0, UPLOAD_SPEEDS.getOrDefault(remoteStoragePath, referenceSpeed));
+  }
+
+  @VisibleForTesting
+  double getDiskSlope() {
+    return diskSlope;
+  }
+}
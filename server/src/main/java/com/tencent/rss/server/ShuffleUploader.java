@@ -59,6 +59,10 @@ import com.tencent.rss.storage.util.StorageType;
  * In normal mode, shuffle data will be upload only when it is finished and the shuffle
  * files Both mode will leave the uploaded data to be delete by the cleaner.
  *
+ * If the adaptive mode is enabled, the interval and thread number are decided by ShuffleUploadScheduler
+ * with the growth of disk usage and the measured upload speed, and normal mode only uploads the cold
+ * shuffles which aren't read recently, the one not read for the longest time is first.
+ *
  * The underlying handle to upload files to remote storage support HDFS at present, but
  * it will support other storage type (eg, COS, OZONE) and will add more optional parameters,
  * so ShuffleUploader use Joshua Bloch builder pattern to construct and validate the parameters.
@@ -81,9 +85,12 @@ public class ShuffleUploader {
   private final long maxShuffleSize;
   private final long maxForceUploadExpireTimeS;
   private final double cleanupThreshold;
+  private final long readActiveWindowMs;
+  private final ShuffleUploadScheduler scheduler;
 
   private final ExecutorService executorService;
   private volatile boolean isStopped;
+  private long currentUploadIntervalMS;
 
   public ShuffleUploader(Builder builder) {
     this.localStorage = builder.localStorage;
@@ -99,6 +106,12 @@ public class ShuffleUploader {
     this.maxShuffleSize = builder.maxShuffleSize;
     this.maxForceUploadExpireTimeS = builder.maxForceUploadExpireTimeS;
     this.cleanupThreshold = builder.cleanupThreshold;
+    this.readActiveWindowMs = builder.readActiveWindowMs;
+    this.currentUploadIntervalMS = uploadIntervalMS;
+    this.scheduler = builder.adaptiveEnable
+        ? new ShuffleUploadScheduler(
+            hdfsBasePath, uploadThreadNum, builder.minUploadIntervalMS, uploadIntervalMS, referenceUploadSpeedMBS)
+        : null;
 
     Runnable runnable = () -> {
       run();
@@ -131,6 +144,9 @@ public class ShuffleUploader {
     private long maxShuffleSize = (long) ByteUnit.MiB.toBytes(256);
     private long maxForceUploadExpireTimeS;
     private double cleanupThreshold;
+    private boolean adaptiveEnable;
+    private long minUploadIntervalMS;
+    private long readActiveWindowMs;
 
     public Builder() {
       // use HDFS and not force upload by default
@@ -148,6 +164,9 @@ public class ShuffleUploader {
       uploadCombineThresholdMB = conf.get(ShuffleServerConf.UPLOAD_COMBINE_THRESHOLD_MB);
       referenceUploadSpeedMBS = conf.get(ShuffleServerConf.REFERENCE_UPLOAD_SPEED_MBS);
       cleanupThreshold = conf.get(ShuffleServerConf.CLEANUP_THRESHOLD);
+      adaptiveEnable = conf.get(ShuffleServerConf.UPLOADER_ADAPTIVE_ENABLE);
+      minUploadIntervalMS = conf.get(ShuffleServerConf.UPLOADER_MIN_INTERVAL_MS);
+      readActiveWindowMs = conf.get(ShuffleServerConf.UPLOADER_READ_ACTIVE_WINDOW_MS);
 
       hdfsBasePath = conf.get(ShuffleServerConf.UPLOADER_BASE_PATH);
       if (StringUtils.isEmpty(hdfsBasePath)) {
@@ -190,8 +209,8 @@ public class ShuffleUploader {
         long uploadTime = System.currentTimeMillis() - start;
         ShuffleServerMetrics.counterTotalUploadTimeS.inc(uploadTime / 1000.0);
 
-        if (uploadTime < uploadIntervalMS) {
-          Uninterruptibles.sleepUninterruptibly(uploadIntervalMS - uploadTime, TimeUnit.MILLISECONDS);
+        if (uploadTime < currentUploadIntervalMS) {
+          Uninterruptibles.sleepUninterruptibly(currentUploadIntervalMS - uploadTime, TimeUnit.MILLISECONDS);
         }
       } catch (Exception e) {
         LOG.error("{} - upload exception: {}", Thread.currentThread().getName(), ExceptionUtils.getStackTrace(e));
@@ -217,7 +236,19 @@ public class ShuffleUploader {
     LOG.debug("Upload force mode is {}, disk size is {}, shuffle keys are {}",
         forceUpload, localStorage.getDiskSize(), localStorage.getShuffleMetaSet());
 
-    List<ShuffleFileInfo> shuffleFileInfos = selectShuffleFiles(uploadThreadNum, forceUpload);
+    int concurrency = uploadThreadNum;
+    if (scheduler != null) {
+      long diskSize = localStorage.getDiskSize();
+      scheduler.updateDiskSize(diskSize, System.currentTimeMillis());
+      long timeToFullMs = scheduler.getTimeToFullMs(
+          diskSize, localStorage.getCapacity(), localStorage.getHighWaterMarkOfWrite());
+      concurrency = scheduler.getConcurrency(forceUpload, timeToFullMs);
+      currentUploadIntervalMS = scheduler.getIntervalMs(timeToFullMs);
+      LOG.debug("Adaptive upload with disk slope {} B/s, time to full {}ms, concurrency {}, interval {}ms",
+          scheduler.getDiskSlope(), timeToFullMs, concurrency, currentUploadIntervalMS);
+    }
+
+    List<ShuffleFileInfo> shuffleFileInfos = selectShuffleFiles(concurrency, forceUpload);
     if (shuffleFileInfos == null || shuffleFileInfos.isEmpty()) {
       cleanUploadedShuffle(Sets.newHashSet());
       return;
@@ -280,6 +311,8 @@ public class ShuffleUploader {
       Set<String> successUploadShuffles  = Sets.newHashSet();
       List<Future<ShuffleUploadResult>> futures =
           executorService.invokeAll(callableList, uploadTimeoutS, TimeUnit.SECONDS);
+      long uploadCostMs = System.currentTimeMillis() - startTimeMs;
+      long uploadedSize = 0;
       for (Future<ShuffleUploadResult> future : futures) {
         if (future.isDone()) {
           ShuffleUploadResult shuffleUploadResult = future.get();
@@ -287,6 +320,7 @@ public class ShuffleUploader {
             LOG.info("shuffleUploadResult is empty..");
             continue;
           }
+          uploadedSize += shuffleUploadResult.getSize();
           LOG.info("force mode enable {} upload shuffle {} partitions: {}", forceUpload,
               shuffleUploadResult.getShuffleKey(), shuffleUploadResult.getPartitions().size());
           LOG.debug("upload partitions detail: {}", shuffleUploadResult.getPartitions());
@@ -306,6 +340,9 @@ public class ShuffleUploader {
           future.cancel(true);
         }
       }
+      if (scheduler != null) {
+        scheduler.updateUploadSpeed(uploadedSize, uploadCostMs, Math.min(callableList.size(), uploadThreadNum));
+      }
       cleanUploadedShuffle(successUploadShuffles);
     } catch (Exception e) {
       LOG.error(
@@ -322,6 +359,8 @@ public class ShuffleUploader {
   }
 
   private void deleteForceUploadPartitions(String shuffleKey, List<Integer> partitions) {
+    // the shuffle is locked exclusively, so the writers won't be reopened until files are deleted
+    localStorage.closeFiles(shuffleKey);
     int failDeleteFiles = 0;
     for (int partition : partitions) {
       String filePrefix = ShuffleStorageUtils.generateAbsoluteFilePrefix(
@@ -353,7 +392,8 @@ public class ShuffleUploader {
     } else {
       size = totalSize / uploadThreadNum;
     }
-    long cur = ByteUnit.BYTE.toMiB(size) / referenceUploadSpeedMBS;
+    long uploadSpeedMBS = scheduler == null ? referenceUploadSpeedMBS : scheduler.getUploadSpeedMBS();
+    long cur = ByteUnit.BYTE.toMiB(size) / uploadSpeedMBS;
     if (cur <= defaultUploadTimeoutS) {
       cur =  defaultUploadTimeoutS * 2;
     } else {
@@ -371,7 +411,10 @@ public class ShuffleUploader {
   @VisibleForTesting
   List<ShuffleFileInfo> selectShuffleFiles(int num, boolean forceUpload) {
     List<ShuffleFileInfo> shuffleFileInfoList = Lists.newLinkedList();
-    List<String> shuffleKeys = localStorage.getSortedShuffleKeys(!forceUpload, num);
+    // the shuffles which are being read won't be uploaded in adaptive normal mode
+    List<String> shuffleKeys = scheduler != null && !forceUpload
+        ? localStorage.getColdShuffleKeys(num, readActiveWindowMs)
+        : localStorage.getSortedShuffleKeys(!forceUpload, num);
     if (shuffleKeys.isEmpty()) {
       return Lists.newArrayList();
     }
@@ -476,6 +519,8 @@ public class ShuffleUploader {
         String shufflePath = ShuffleStorageUtils.getFullShuffleDataFolder(localStorage.getBasePath(), shuffleKey);
         long start = System.currentTimeMillis();
         try {
+          // the cached writers, channels and index must be dropped before the files are deleted
+          localStorage.closeFiles(shuffleKey);
           File baseFolder = new File(shufflePath);
           FileUtils.deleteDirectory(baseFolder);
           LOG.info("Clean shuffle {}", shuffleKey);
@@ -0,0 +1,67 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Pick buffers in the order which is decided by subclass. Buffers smaller than minFlushSize are
+ * kept in memory for readers and to avoid tiny writes, unless the bigger ones aren't enough.
+ */
+public abstract class AbstractFlushPolicy implements FlushPolicy {
+
+  private final long minFlushSize;
+
+  protected AbstractFlushPolicy(long minFlushSize) {
+    this.minFlushSize = minFlushSize;
+  }
+
+  // sort candidates, the first one will be flushed first
+  protected abstract void sort(List<FlushCandidate> candidates);
+
+  @Override
+  public List<FlushCandidate> pick(List<FlushCandidate> candidates, long expectedFlushSize) {
+    List<FlushCandidate> sortedCandidates = Lists.newArrayList(candidates);
+    sort(sortedCandidates);
+    List<FlushCandidate> picked = Lists.newArrayList();
+    long pickedSize = 0L;
+    for (FlushCandidate candidate : sortedCandidates) {
+      if (pickedSize > expectedFlushSize) {
+        return picked;
+      }
+      if (candidate.getSize() >= minFlushSize) {
+        picked.add(candidate);
+        pickedSize += candidate.getSize();
+      }
+    }
+    // the big buffers aren't enough, pick the small ones as well
+    for (FlushCandidate candidate : sortedCandidates) {
+      if (pickedSize > expectedFlushSize) {
+        break;
+      }
+      if (candidate.getSize() < minFlushSize) {
+        picked.add(candidate);
+        pickedSize += candidate.getSize();
+      }
+    }
+    return picked;
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+/**
+ * Snapshot of the buffer which can be picked by FlushPolicy.
+ */
+public class FlushCandidate {
+
+  private final String appId;
+  private final int shuffleId;
+  private final int startPartition;
+  private final int endPartition;
+  private final ShuffleBuffer buffer;
+  private final long size;
+  private final long shuffleSize;
+  private final long age;
+
+  public FlushCandidate(
+      String appId,
+      int shuffleId,
+      int startPartition,
+      int endPartition,
+      ShuffleBuffer buffer,
+      long currentTime) {
+    this(appId, shuffleId, startPartition, endPartition, buffer, buffer.getSize(), currentTime);
+  }
+
+  public FlushCandidate(
+      String appId,
+      int shuffleId,
+      int startPartition,
+      int endPartition,
+      ShuffleBuffer buffer,
+      long shuffleSize,
+      long currentTime) {
+    this.appId = appId;
+    this.shuffleId = shuffleId;
+    this.startPartition = startPartition;
+    this.endPartition = endPartition;
+    this.buffer = buffer;
+    this.size = buffer.getSize();
+    this.shuffleSize = Math.max(size, shuffleSize);
+    this.age = Math.max(0L, currentTime - buffer.getFirstAppendTime());
+  }
+
+  public String getAppId() {
+    return appId;
+  }
+
+  public int getShuffleId() {
+    return shuffleId;
+  }
+
+  public int getStartPartition() {
+    return startPartition;
+  }
+
+  public int getEndPartition() {
+    return endPartition;
+  }
+
+  public ShuffleBuffer getBuffer() {
+    return buffer;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  // data size of all buffers of the shuffle, it is the size of this buffer if it isn't known
+  public long getShuffleSize() {
+    return shuffleSize;
+  }
+
+  // how long the oldest data in buffer has been kept, in milliseconds
+  public long getAge() {
+    return age;
+  }
+
+  @Override
+  public String toString() {
+    return "appId[" + appId + "], shuffleId[" + shuffleId + "], partitions[" + startPartition
+        + "-" + endPartition + "], size[" + size + "], age[" + age + "ms]";
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+import com.tencent.rss.server.ShuffleServerConf;
+
+public class FlushPolicyFactory {
+
+  private ShuffleServerConf conf;
+
+  public FlushPolicyFactory(ShuffleServerConf conf) {
+    this.conf = conf;
+  }
+
+  public FlushPolicy getFlushPolicy() {
+    String policy = conf.get(ShuffleServerConf.SERVER_BUFFER_FLUSH_POLICY);
+    long minFlushSize = conf.getSizeAsBytes(ShuffleServerConf.SERVER_BUFFER_FLUSH_MIN_SIZE);
+    if (PolicyName.LARGEST_FIRST.name().equals(policy)) {
+      return new LargestFirstFlushPolicy(minFlushSize);
+    } else if (PolicyName.AGE_FIRST.name().equals(policy)) {
+      return new AgeFirstFlushPolicy(minFlushSize);
+    } else if (PolicyName.HYBRID.name().equals(policy)) {
+      return new HybridFlushPolicy(minFlushSize);
+    } else {
+      throw new IllegalArgumentException("Unsupported flush policy " + policy);
+    }
+  }
+
+  public static boolean isValidPolicy(String policy) {
+    for (PolicyName name : PolicyName.values()) {
+      if (name.name().equals(policy)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private enum PolicyName {
+    LARGEST_FIRST,
+    AGE_FIRST,
+    HYBRID
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rank buffers with both size and age, which are normalized by the max value of candidates.
+ */
+public class HybridFlushPolicy extends AbstractFlushPolicy {
+
+  public HybridFlushPolicy(long minFlushSize) {
+    super(minFlushSize);
+  }
+
+  @Override
+  protected void sort(List<FlushCandidate> candidates) {
+    long maxSize = 1L;
+    long maxAge = 1L;
+    for (FlushCandidate candidate : candidates) {
+      maxSize = Math.max(maxSize, candidate.getSize());
+      maxAge = Math.max(maxAge, candidate.getAge());
+    }
+    final double sizeBase = maxSize;
+    final double ageBase = maxAge;
+    candidates.sort(Comparator.comparingDouble(
+        (FlushCandidate candidate) -> candidate.getSize() / sizeBase + candidate.getAge() / ageBase).reversed());
+  }
+}
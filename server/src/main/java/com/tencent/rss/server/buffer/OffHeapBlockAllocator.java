@@ -0,0 +1,198 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Queues;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.server.ShuffleServerMetrics;
+
+/**
+ * Allocate the payload of shuffle blocks from off-heap slabs to keep the heap small.
+ * Blocks are carved from the current slab of an arena, and every slab counts the blocks
+ * which still reference it. The slab will be recycled after it is retired by the arena
+ * and all of its blocks are released, eg, flushed to storage or removed with the application.
+ */
+public class OffHeapBlockAllocator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapBlockAllocator.class);
+
+  private final int slabSize;
+  private final int maxFreeSlabNum;
+  private final Arena[] arenas;
+  private final Queue<Slab> freeSlabs = Queues.newConcurrentLinkedQueue();
+  private final AtomicInteger freeSlabNum = new AtomicInteger(0);
+  // direct memory which is held by slabs and unpooled blocks
+  private final AtomicLong allocatedSize = new AtomicLong(0L);
+
+  public OffHeapBlockAllocator(int slabSize, int arenaNum, long capacity) {
+    this.slabSize = slabSize;
+    this.maxFreeSlabNum = (int) Math.max(1, capacity / slabSize);
+    this.arenas = new Arena[arenaNum];
+    for (int i = 0; i < arenaNum; i++) {
+      arenas[i] = new Arena();
+    }
+    LOG.info("Init off-heap block allocator with slabSize[" + slabSize + "], arenaNum["
+        + arenaNum + "], maxFreeSlabNum[" + maxFreeSlabNum + "]");
+  }
+
+  // copy the data to off-heap memory, the returned block must be released after it is flushed or dropped
+  public ShufflePartitionedBlock allocate(
+      int length,
+      int uncompressLength,
+      long crc,
+      long blockId,
+      long taskAttemptId,
+      ByteBuffer data) {
+    int size = data.remaining();
+    try {
+      if (size > slabSize) {
+        // big block won't be pooled, the memory will be freed by gc
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(data);
+        buffer.flip();
+        updateAllocatedSize(size);
+        return new ShufflePartitionedBlock(length, uncompressLength, crc, blockId, taskAttemptId,
+            buffer, () -> updateAllocatedSize(-size));
+      }
+      Arena arena = arenas[(int) (Thread.currentThread().getId() % arenas.length)];
+      Region region = arena.allocate(size);
+      ByteBuffer buffer = region.buffer;
+      buffer.put(data);
+      buffer.flip();
+      return new ShufflePartitionedBlock(length, uncompressLength, crc, blockId, taskAttemptId,
+          buffer, region.slab::release);
+    } catch (OutOfMemoryError e) {
+      // direct memory is exhausted, fallback to heap
+      LOG.warn("Can't allocate " + size + " bytes off-heap memory for block[" + blockId
+          + "], allocated[" + allocatedSize.get() + "], fallback to heap");
+      byte[] bytes = new byte[size];
+      data.get(bytes);
+      return new ShufflePartitionedBlock(length, uncompressLength, crc, blockId, taskAttemptId, bytes);
+    }
+  }
+
+  public long getAllocatedSize() {
+    return allocatedSize.get();
+  }
+
+  @VisibleForTesting
+  int getFreeSlabNum() {
+    return freeSlabNum.get();
+  }
+
+  private Slab newSlab() {
+    Slab slab = freeSlabs.poll();
+    if (slab != null) {
+      freeSlabNum.decrementAndGet();
+      return slab;
+    }
+    slab = new Slab(ByteBuffer.allocateDirect(slabSize));
+    updateAllocatedSize(slabSize);
+    return slab;
+  }
+
+  private void recycle(Slab slab) {
+    if (freeSlabNum.incrementAndGet() <= maxFreeSlabNum) {
+      slab.reset();
+      freeSlabs.offer(slab);
+    } else {
+      // too many free slabs, the memory will be freed by gc
+      freeSlabNum.decrementAndGet();
+      updateAllocatedSize(-slabSize);
+    }
+  }
+
+  private void updateAllocatedSize(long delta) {
+    ShuffleServerMetrics.gaugeOffHeapBufferSize.set(allocatedSize.addAndGet(delta));
+  }
+
+  private class Arena {
+
+    private Slab current;
+
+    synchronized Region allocate(int size) {
+      if (current == null || current.remaining() < size) {
+        if (current != null) {
+          // retire the slab, it will be recycled after all blocks in it are released
+          current.release();
+          current = null;
+        }
+        current = newSlab();
+      }
+      return new Region(current, current.slice(size));
+    }
+  }
+
+  private static class Region {
+
+    private final Slab slab;
+    private final ByteBuffer buffer;
+
+    Region(Slab slab, ByteBuffer buffer) {
+      this.slab = slab;
+      this.buffer = buffer;
+    }
+  }
+
+  private class Slab {
+
+    private final ByteBuffer buffer;
+    // 1 for the arena which is using the slab and 1 for every block in it
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+    // guarded by the arena
+    private int position = 0;
+
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    int remaining() {
+      return buffer.capacity() - position;
+    }
+
+    ByteBuffer slice(int size) {
+      ByteBuffer region = buffer.duplicate();
+      region.position(position);
+      region.limit(position + size);
+      position += size;
+      refCnt.incrementAndGet();
+      return region.slice();
+    }
+
+    void release() {
+      if (refCnt.decrementAndGet() == 0) {
+        recycle(this);
+      }
+    }
+
+    void reset() {
+      position = 0;
+      refCnt.set(1);
+    }
+  }
+}
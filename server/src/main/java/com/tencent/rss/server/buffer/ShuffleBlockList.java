@@ -0,0 +1,84 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.tencent.rss.common.ShufflePartitionedBlock;
+
+/**
+ * Append-only list of blocks which is stored in fixed size chunks, so it never copies blocks when it grows.
+ * The position of every block is indexed by blockId to resume the memory read from lastBlockId directly.
+ * It isn't thread safe, and it is guarded by ShuffleBuffer.
+ */
+public class ShuffleBlockList extends AbstractList<ShufflePartitionedBlock> {
+
+  private static final int CHUNK_SHIFT = 7;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final List<ShufflePartitionedBlock[]> chunks = Lists.newArrayList();
+  private final Map<Long, Integer> blockIdToIndex = Maps.newHashMap();
+  private int size = 0;
+
+  @Override
+  public boolean add(ShufflePartitionedBlock block) {
+    if ((size & CHUNK_MASK) == 0 && (size >> CHUNK_SHIFT) == chunks.size()) {
+      chunks.add(new ShufflePartitionedBlock[CHUNK_SIZE]);
+    }
+    chunks.get(size >> CHUNK_SHIFT)[size & CHUNK_MASK] = block;
+    // keep the first one if blockId is duplicated, it is the same as searching from the head
+    blockIdToIndex.putIfAbsent(block.getBlockId(), size);
+    size++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public ShufflePartitionedBlock get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return chunks.get(index >> CHUNK_SHIFT)[index & CHUNK_MASK];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    chunks.clear();
+    blockIdToIndex.clear();
+    size = 0;
+    modCount++;
+  }
+
+  // the position of block, -1 if it doesn't exist
+  public int indexOfBlockId(long blockId) {
+    Integer index = blockIdToIndex.get(blockId);
+    return index == null ? -1 : index;
+  }
+}
@@ -18,14 +18,14 @@
 
 package com.tencent.rss.server.buffer;
 
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Supplier;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +34,7 @@ import com.tencent.rss.common.ShuffleDataResult;
 import com.tencent.rss.common.ShufflePartitionedBlock;
 import com.tencent.rss.common.ShufflePartitionedData;
 import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.server.ShuffleBlockFilter;
 import com.tencent.rss.server.ShuffleDataFlushEvent;
 import com.tencent.rss.server.ShuffleFlushManager;
 
@@ -43,23 +44,29 @@ public class ShuffleBuffer {
 
   private final long capacity;
   private long size;
+  // the time when the first block which isn't in flush is appended
+  private long firstAppendTime;
   // blocks will be added to inFlushBlockMap as <eventId, blocks> pair
   // it will be removed after flush to storage
   // the strategy ensure that shuffle is in memory or storage
-  private List<ShufflePartitionedBlock> blocks;
-  private Map<Long, List<ShufflePartitionedBlock>> inFlushBlockMap;
+  private ShuffleBlockList blocks;
+  // sorted by eventId which is the order of data received
+  private NavigableMap<Long, ShuffleBlockList> inFlushBlockMap;
 
   public ShuffleBuffer(long capacity) {
     this.capacity = capacity;
     this.size = 0;
-    this.blocks = new LinkedList<>();
-    this.inFlushBlockMap = Maps.newConcurrentMap();
+    this.blocks = new ShuffleBlockList();
+    this.inFlushBlockMap = new ConcurrentSkipListMap<>();
   }
 
   public int append(ShufflePartitionedData data) {
     int mSize = 0;
 
     synchronized (this) {
+      if (blocks.isEmpty()) {
+        firstAppendTime = System.currentTimeMillis();
+      }
       for (ShufflePartitionedBlock block : data.getBlockList()) {
         blocks.add(block);
         mSize += block.getSize();
@@ -79,8 +86,8 @@ public class ShuffleBuffer {
     if (blocks.isEmpty()) {
       return null;
     }
-    // buffer will be cleared, and new list must be created for async flush
-    List<ShufflePartitionedBlock> spBlocks = new LinkedList<>(blocks);
+    // the list is handed over to async flush without copy, and new list is created for buffer
+    ShuffleBlockList spBlocks = blocks;
     long eventId = ShuffleFlushManager.ATOMIC_EVENT_ID.getAndIncrement();
     final ShuffleDataFlushEvent event = new ShuffleDataFlushEvent(
         eventId,
@@ -93,7 +100,7 @@ public class ShuffleBuffer {
         isValid,
         this);
     inFlushBlockMap.put(eventId, spBlocks);
-    blocks.clear();
+    blocks = new ShuffleBlockList();
     size = 0;
     return event;
   }
@@ -106,16 +113,35 @@ public class ShuffleBuffer {
     return size;
   }
 
+  public long getFirstAppendTime() {
+    return firstAppendTime;
+  }
+
   public boolean isFull() {
     return size > capacity;
   }
 
+  // blocks are released here because readers copy data from them in this buffer's lock
   public synchronized void clearInFlushBuffer(long eventId) {
-    inFlushBlockMap.remove(eventId);
+    ShuffleBlockList flushedBlocks = inFlushBlockMap.remove(eventId);
+    if (flushedBlocks != null) {
+      for (ShufflePartitionedBlock block : flushedBlocks) {
+        block.release();
+      }
+    }
+  }
+
+  // release the blocks which aren't in flush, the in flush blocks will be released after flush
+  public synchronized void release() {
+    for (ShufflePartitionedBlock block : blocks) {
+      block.release();
+    }
+    blocks.clear();
+    size = 0;
   }
 
   @VisibleForTesting
-  public Map<Long, List<ShufflePartitionedBlock>> getInFlushBlockMap() {
+  public Map<Long, ShuffleBlockList> getInFlushBlockMap() {
     return inFlushBlockMap;
   }
 
@@ -124,12 +150,35 @@ public class ShuffleBuffer {
   // todo: if block was flushed, it's possible to get duplicated data
   public synchronized ShuffleDataResult getShuffleData(
       long lastBlockId, int readBufferSize) {
+    return getShuffleData(lastBlockId, readBufferSize, null);
+  }
+
+  // the blocks which aren't accepted by filter are skipped, filter is null if all blocks are needed
+  public synchronized ShuffleDataResult getShuffleData(
+      long lastBlockId, int readBufferSize, ShuffleBlockFilter filter) {
     try {
-      List<BufferSegment> bufferSegments = Lists.newArrayList();
-      List<ShufflePartitionedBlock> readBlocks = Lists.newArrayList();
-      updateBufferSegmentsAndResultBlocks(
-          lastBlockId, readBufferSize, bufferSegments, readBlocks);
-      if (!bufferSegments.isEmpty()) {
+      long nextBlockId = lastBlockId;
+      while (true) {
+        List<BufferSegment> bufferSegments = Lists.newArrayList();
+        List<ShufflePartitionedBlock> readBlocks = Lists.newArrayList();
+        updateBufferSegmentsAndResultBlocks(
+            nextBlockId, readBufferSize, bufferSegments, readBlocks);
+        if (bufferSegments.isEmpty()) {
+          break;
+        }
+        if (filter != null) {
+          long scannedBlockId = bufferSegments.get(bufferSegments.size() - 1).getBlockId();
+          filterBlocks(filter, bufferSegments, readBlocks);
+          if (bufferSegments.isEmpty() && scannedBlockId == nextBlockId) {
+            // no progress, it only happens with duplicated blockIds
+            break;
+          }
+          nextBlockId = scannedBlockId;
+          if (bufferSegments.isEmpty()) {
+            // all scanned blocks are skipped, continue with the next blocks
+            continue;
+          }
+        }
         int length = calculateDataLength(bufferSegments);
         byte[] data = new byte[length];
         // copy result data
@@ -142,6 +191,24 @@ public class ShuffleBuffer {
     return new ShuffleDataResult();
   }
 
+  private void filterBlocks(
+      ShuffleBlockFilter filter,
+      List<BufferSegment> bufferSegments,
+      List<ShufflePartitionedBlock> readBlocks) {
+    List<ShufflePartitionedBlock> scannedBlocks = Lists.newArrayList(readBlocks);
+    bufferSegments.clear();
+    readBlocks.clear();
+    int offset = 0;
+    for (ShufflePartitionedBlock block : scannedBlocks) {
+      if (filter.accept(block.getBlockId(), block.getTaskAttemptId())) {
+        bufferSegments.add(new BufferSegment(block.getBlockId(), offset, block.getLength(),
+            block.getUncompressLength(), block.getCrc(), block.getTaskAttemptId()));
+        readBlocks.add(block);
+        offset += block.getLength();
+      }
+    }
+  }
+
   // here is the rule to read data in memory:
   // 1. read from inFlushBlockMap order by eventId asc, then from blocks
   // 2. if can't find lastBlockId, means related data may be flushed to storage, repeat step 1
@@ -151,7 +218,6 @@ public class ShuffleBuffer {
       List<BufferSegment> bufferSegments,
       List<ShufflePartitionedBlock> resultBlocks) {
     long nextBlockId = lastBlockId;
-    List<Long> sortedEventId = sortFlushingEventId();
     int offset = 0;
     boolean hasLastBlockId = false;
     // read from inFlushBlockMap first to make sure the order of
@@ -159,14 +225,14 @@ public class ShuffleBuffer {
     // The number of events means how many batches are in flushing status,
     // it should be less than 5, or there has some problem with storage
     if (!inFlushBlockMap.isEmpty()) {
-      for (Long eventId : sortedEventId) {
+      for (ShuffleBlockList inFlushBlocks : inFlushBlockMap.values()) {
         // update bufferSegments with different strategy according to lastBlockId
         if (nextBlockId == Constants.INVALID_BLOCK_ID) {
-          updateSegmentsWithoutBlockId(offset, inFlushBlockMap.get(eventId), readBufferSize,
+          updateSegmentsWithoutBlockId(offset, inFlushBlocks, readBufferSize,
               bufferSegments, resultBlocks);
           hasLastBlockId = true;
         } else {
-          hasLastBlockId = updateSegmentsWithBlockId(offset, inFlushBlockMap.get(eventId),
+          hasLastBlockId = updateSegmentsWithBlockId(offset, inFlushBlocks,
               readBufferSize, nextBlockId, bufferSegments, resultBlocks);
           // if last blockId is found, read from begin with next cached blocks
           if (hasLastBlockId) {
@@ -211,9 +277,9 @@ public class ShuffleBuffer {
     for (ShufflePartitionedBlock block : readBlocks) {
       // fill shuffle data
       try {
-        System.arraycopy(block.getData(), 0, data, offset, block.getLength());
+        block.getDataBuffer().get(data, offset, block.getLength());
       } catch (Exception e) {
-        LOG.error("Unexpect exception for System.arraycopy, length["
+        LOG.error("Unexpect exception for copy block data, length["
             + block.getLength() + "], offset["
             + offset + "], dataLength[" + data.length + "]", e);
         throw e;
@@ -222,67 +288,52 @@ public class ShuffleBuffer {
     }
   }
 
-  private List<Long> sortFlushingEventId() {
-    List<Long> eventIdList = Lists.newArrayList(inFlushBlockMap.keySet());
-    eventIdList.sort((id1, id2) -> {
-      if (id1 > id2) {
-        return 1;
-      }
-      return -1;
-    });
-    return eventIdList;
-  }
-
   private void updateSegmentsWithoutBlockId(
       int offset,
-      List<ShufflePartitionedBlock> cachedBlocks,
+      ShuffleBlockList cachedBlocks,
       long readBufferSize,
       List<BufferSegment> bufferSegments,
       List<ShufflePartitionedBlock> readBlocks) {
-    int currentOffset = offset;
     // read from first block
-    for (ShufflePartitionedBlock block : cachedBlocks) {
-      // add bufferSegment with block
-      bufferSegments.add(new BufferSegment(block.getBlockId(), currentOffset, block.getLength(),
-          block.getUncompressLength(), block.getCrc(), block.getTaskAttemptId()));
-      readBlocks.add(block);
-      // update offset
-      currentOffset += block.getLength();
-      // check if length >= request buffer size
-      if (currentOffset >= readBufferSize) {
-        break;
-      }
-    }
+    updateSegments(offset, cachedBlocks, 0, readBufferSize, bufferSegments, readBlocks);
   }
 
   private boolean updateSegmentsWithBlockId(
       int offset,
-      List<ShufflePartitionedBlock> cachedBlocks,
+      ShuffleBlockList cachedBlocks,
       long readBufferSize,
       long lastBlockId,
       List<BufferSegment> bufferSegments,
       List<ShufflePartitionedBlock> readBlocks) {
+    // find lastBlockId by index, then read from next block
+    int lastIndex = cachedBlocks.indexOfBlockId(lastBlockId);
+    if (lastIndex < 0) {
+      return false;
+    }
+    updateSegments(offset, cachedBlocks, lastIndex + 1, readBufferSize, bufferSegments, readBlocks);
+    return true;
+  }
+
+  private void updateSegments(
+      int offset,
+      ShuffleBlockList cachedBlocks,
+      int startIndex,
+      long readBufferSize,
+      List<BufferSegment> bufferSegments,
+      List<ShufflePartitionedBlock> readBlocks) {
     int currentOffset = offset;
-    // find lastBlockId, then read from next block
-    boolean foundBlockId = false;
-    for (ShufflePartitionedBlock block : cachedBlocks) {
-      if (!foundBlockId) {
-        // find lastBlockId
-        if (block.getBlockId() == lastBlockId) {
-          foundBlockId = true;
-        }
-        continue;
-      }
+    for (int i = startIndex; i < cachedBlocks.size(); i++) {
+      ShufflePartitionedBlock block = cachedBlocks.get(i);
       // add bufferSegment with block
       bufferSegments.add(new BufferSegment(block.getBlockId(), currentOffset, block.getLength(),
           block.getUncompressLength(), block.getCrc(), block.getTaskAttemptId()));
       readBlocks.add(block);
       // update offset
       currentOffset += block.getLength();
+      // check if length >= request buffer size
       if (currentOffset >= readBufferSize) {
         break;
       }
     }
-    return foundBlockId;
   }
 }
@@ -22,8 +22,10 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -31,15 +33,15 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 import com.google.common.collect.RangeMap;
-import com.google.common.collect.Sets;
 import com.google.common.collect.TreeRangeMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.tencent.rss.common.ShuffleDataResult;
 import com.tencent.rss.common.ShufflePartitionedData;
-import com.tencent.rss.common.util.Constants;
-import com.tencent.rss.common.util.RssUtils;
+import com.tencent.rss.server.ShuffleBlockFilter;
 import com.tencent.rss.server.ShuffleDataFlushEvent;
 import com.tencent.rss.server.ShuffleFlushManager;
 import com.tencent.rss.server.ShuffleServerConf;
@@ -51,11 +53,20 @@ public class ShuffleBufferManager {
   private static final Logger LOG = LoggerFactory.getLogger(ShuffleBufferManager.class);
 
   private final ShuffleFlushManager shuffleFlushManager;
+  private final OffHeapBlockAllocator offHeapBlockAllocator;
+  private final FlushPolicy flushPolicy;
   private long capacity;
   private long readCapacity;
   private int retryNum;
   private long highWaterMark;
   private long lowWaterMark;
+  // only one thread picks and flushes buffers at a time, the others go ahead without waiting
+  private final AtomicBoolean isFlushing = new AtomicBoolean(false);
+  // signal the flush thread if flush is async, null if it is done by the thread which caches data
+  private final Semaphore flushSignal;
+  private final AtomicBoolean isFlushRequested = new AtomicBoolean(false);
+  private final Thread flushThread;
+  private volatile boolean isClosed = false;
 
   protected long bufferSize = 0;
   protected AtomicLong preAllocatedSize = new AtomicLong(0L);
@@ -77,6 +88,36 @@ public class ShuffleBufferManager {
         * conf.get(ShuffleServerConf.SERVER_MEMORY_SHUFFLE_HIGHWATERMARK_PERCENTAGE));
     this.lowWaterMark = (long)(capacity / 100
         * conf.get(ShuffleServerConf.SERVER_MEMORY_SHUFFLE_LOWWATERMARK_PERCENTAGE));
+    this.flushPolicy = new FlushPolicyFactory(conf).getFlushPolicy();
+    if (conf.get(ShuffleServerConf.SERVER_BUFFER_OFFHEAP_ENABLE)) {
+      this.offHeapBlockAllocator = new OffHeapBlockAllocator(
+          (int) conf.getSizeAsBytes(ShuffleServerConf.SERVER_BUFFER_OFFHEAP_SLAB_SIZE),
+          conf.get(ShuffleServerConf.SERVER_BUFFER_OFFHEAP_ARENA_NUM),
+          capacity);
+    } else {
+      this.offHeapBlockAllocator = null;
+    }
+    if (conf.get(ShuffleServerConf.SERVER_BUFFER_FLUSH_ASYNC_ENABLE)) {
+      this.flushSignal = new Semaphore(0);
+      this.flushThread = new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("bufferFlushTrigger")
+          .build()
+          .newThread(this::processFlushSignal);
+      flushThread.start();
+    } else {
+      this.flushSignal = null;
+      this.flushThread = null;
+    }
+  }
+
+  // stop the flush thread, the buffers which aren't flushed are left to the caller
+  public void close() {
+    isClosed = true;
+    if (flushThread != null) {
+      flushThread.interrupt();
+      Uninterruptibles.joinUninterruptibly(flushThread, 5, TimeUnit.SECONDS);
+    }
   }
 
   public StatusCode registerBuffer(String appId, int shuffleId, int startPartition, int endPartition) {
@@ -112,8 +153,8 @@ public class ShuffleBufferManager {
     int size = buffer.append(spd);
     updateSize(size, isPreAllocated);
     updateShuffleSize(appId, shuffleId, size);
-    synchronized (this) {
-      flushIfNecessary();
+    if (needToFlush()) {
+      triggerFlush();
     }
     return StatusCode.SUCCESS;
   }
@@ -145,6 +186,12 @@ public class ShuffleBufferManager {
   public ShuffleDataResult getShuffleData(
       String appId, int shuffleId, int partitionId, long blockId,
       int readBufferSize) {
+    return getShuffleData(appId, shuffleId, partitionId, blockId, readBufferSize, null);
+  }
+
+  public ShuffleDataResult getShuffleData(
+      String appId, int shuffleId, int partitionId, long blockId,
+      int readBufferSize, ShuffleBlockFilter filter) {
     Map.Entry<Range<Integer>, ShuffleBuffer> entry = getShuffleBufferEntry(
         appId, shuffleId, partitionId);
     if (entry == null) {
@@ -155,20 +202,59 @@ public class ShuffleBufferManager {
     if (buffer == null) {
       return null;
     }
-    return buffer.getShuffleData(blockId, readBufferSize);
+    return buffer.getShuffleData(blockId, readBufferSize, filter);
+  }
+
+  // if data size in buffer > highWaterMark, the flush is required
+  private boolean needToFlush() {
+    return usedMemory.get() - preAllocatedSize.get() - inFlushSize.get() > highWaterMark;
+  }
+
+  private void triggerFlush() {
+    if (flushSignal != null) {
+      // wake up the flush thread only once until it starts to work
+      if (isFlushRequested.compareAndSet(false, true)) {
+        flushSignal.release();
+      }
+    } else {
+      flushIfNecessary();
+    }
+  }
+
+  private void processFlushSignal() {
+    while (!isClosed) {
+      try {
+        flushSignal.acquire();
+        isFlushRequested.set(false);
+        flushIfNecessary();
+      } catch (InterruptedException e) {
+        if (!isClosed) {
+          LOG.warn("Buffer flush thread is interrupted", e);
+        }
+        return;
+      } catch (Exception e) {
+        LOG.error("Unexpected exception happened when flush buffer", e);
+      }
+    }
   }
 
   void flushIfNecessary() {
-    // if data size in buffer > highWaterMark, do the flush
-    if (usedMemory.get() - preAllocatedSize.get() - inFlushSize.get() > highWaterMark) {
-      LOG.info("Start to flush with usedMemory[{}], preAllocatedSize[{}], inFlushSize[{}]",
-          usedMemory.get(), preAllocatedSize.get(), inFlushSize.get());
-      Map<String, Set<Integer>> pickedShuffle = pickFlushedShuffle();
-      flush(pickedShuffle);
+    // skip if the other thread is picking, the next cached data will check the watermark again
+    if (!isFlushing.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      if (needToFlush()) {
+        LOG.info("Start to flush with usedMemory[{}], preAllocatedSize[{}], inFlushSize[{}]",
+            usedMemory.get(), preAllocatedSize.get(), inFlushSize.get());
+        flush(pickFlushedBuffers());
+      }
+    } finally {
+      isFlushing.set(false);
     }
   }
 
-  public synchronized void commitShuffleTask(String appId, int shuffleId) {
+  public void commitShuffleTask(String appId, int shuffleId) {
     RangeMap<Integer, ShuffleBuffer> buffers = bufferPool.get(appId).get(shuffleId);
     for (Map.Entry<Range<Integer>, ShuffleBuffer> entry : buffers.asMapOfRanges().entrySet()) {
       ShuffleBuffer buffer = entry.getValue();
@@ -204,6 +290,7 @@ public class ShuffleBufferManager {
           for (ShuffleBuffer buffer : buffers) {
             ShuffleServerMetrics.gaugeTotalPartitionNum.dec();
             size += buffer.getSize();
+            buffer.release();
           }
         }
       }
@@ -214,14 +301,17 @@ public class ShuffleBufferManager {
     bufferPool.remove(appId);
   }
 
-  public synchronized boolean requireMemory(long size, boolean isPreAllocated) {
-    if (capacity - usedMemory.get() >= size) {
-      usedMemory.addAndGet(size);
-      ShuffleServerMetrics.gaugeUsedBufferSize.set(usedMemory.get());
-      if (isPreAllocated) {
-        requirePreAllocatedSize(size);
+  public boolean requireMemory(long size, boolean isPreAllocated) {
+    long current = usedMemory.get();
+    while (capacity - current >= size) {
+      if (usedMemory.compareAndSet(current, current + size)) {
+        ShuffleServerMetrics.gaugeUsedBufferSize.set(usedMemory.get());
+        if (isPreAllocated) {
+          requirePreAllocatedSize(size);
+        }
+        return true;
       }
-      return true;
+      current = usedMemory.get();
     }
     LOG.debug("Require memory failed with " + size + " bytes, usedMemory[" + usedMemory.get()
         + "] include preAllocation[" + preAllocatedSize.get()
@@ -230,12 +320,13 @@ public class ShuffleBufferManager {
   }
 
   public void releaseMemory(long size, boolean isReleaseFlushMemory, boolean isReleasePreAllocation) {
-    if (usedMemory.get() >= size) {
-      usedMemory.addAndGet(-size);
-    } else {
-      LOG.warn("Current allocated memory[" + usedMemory.get()
+    long current = usedMemory.get();
+    while (!usedMemory.compareAndSet(current, Math.max(0L, current - size))) {
+      current = usedMemory.get();
+    }
+    if (current < size) {
+      LOG.warn("Current allocated memory[" + current
           + "] is less than released[" + size + "], set allocated memory to 0");
-      usedMemory.set(0L);
     }
 
     ShuffleServerMetrics.gaugeUsedBufferSize.set(usedMemory.get());
@@ -250,23 +341,25 @@ public class ShuffleBufferManager {
   }
 
   private void releaseFlushMemory(long size) {
-    if (inFlushSize.get() >= size) {
-      inFlushSize.addAndGet(-size);
-    } else {
-      LOG.warn("Current in flush memory[" + inFlushSize.get()
+    long current = inFlushSize.get();
+    while (!inFlushSize.compareAndSet(current, Math.max(0L, current - size))) {
+      current = inFlushSize.get();
+    }
+    if (current < size) {
+      LOG.warn("Current in flush memory[" + current
           + "] is less than released[" + size + "], set allocated memory to 0");
-      inFlushSize.set(0L);
     }
     ShuffleServerMetrics.gaugeInFlushBufferSize.set(inFlushSize.get());
   }
 
   public boolean requireReadMemoryWithRetry(long size) {
     for (int i = 0; i < retryNum; i++) {
-      synchronized (this) {
-        if (readDataMemory.get() + size < readCapacity) {
-          readDataMemory.addAndGet(size);
+      long current = readDataMemory.get();
+      while (current + size < readCapacity) {
+        if (readDataMemory.compareAndSet(current, current + size)) {
           return true;
         }
+        current = readDataMemory.get();
       }
       LOG.info("Can't require[" + size + "] for read data, current[" + readDataMemory.get()
           + "], capacity[" + readCapacity + "], re-try " + i + " times");
@@ -280,35 +373,20 @@ public class ShuffleBufferManager {
   }
 
   public void releaseReadMemory(long size) {
-    if (readDataMemory.get() >= size) {
-      readDataMemory.addAndGet(-size);
-    } else {
-      LOG.warn("Current read memory[" + readDataMemory.get()
+    long current = readDataMemory.get();
+    while (!readDataMemory.compareAndSet(current, Math.max(0L, current - size))) {
+      current = readDataMemory.get();
+    }
+    if (current < size) {
+      LOG.warn("Current read memory[" + current
           + "] is less than released[" + size + "], set read memory to 0");
-      readDataMemory.set(0L);
     }
   }
 
-  // flush the buffer with required map which is <appId -> shuffleId>
-  public synchronized void flush(Map<String, Set<Integer>> requiredFlush) {
-    for (Map.Entry<String, Map<Integer, RangeMap<Integer,
-        ShuffleBuffer>>> appIdToBuffers : bufferPool.entrySet()) {
-      String appId = appIdToBuffers.getKey();
-      if (requiredFlush.containsKey(appId)) {
-        for (Map.Entry<Integer, RangeMap<Integer, ShuffleBuffer>> shuffleIdToBuffers :
-            appIdToBuffers.getValue().entrySet()) {
-          int shuffleId = shuffleIdToBuffers.getKey();
-          Set<Integer> requiredShuffleId = requiredFlush.get(appId);
-          if (requiredShuffleId != null && requiredShuffleId.contains(shuffleId)) {
-            for (Map.Entry<Range<Integer>, ShuffleBuffer> rangeEntry :
-                shuffleIdToBuffers.getValue().asMapOfRanges().entrySet()) {
-              Range<Integer> range = rangeEntry.getKey();
-              flushBuffer(rangeEntry.getValue(), appId, shuffleId,
-                  range.lowerEndpoint(), range.upperEndpoint());
-            }
-          }
-        }
-      }
+  public void flush(List<FlushCandidate> candidates) {
+    for (FlushCandidate candidate : candidates) {
+      flushBuffer(candidate.getBuffer(), candidate.getAppId(), candidate.getShuffleId(),
+          candidate.getStartPartition(), candidate.getEndPartition());
     }
   }
 
@@ -346,6 +424,11 @@ public class ShuffleBufferManager {
     return getShuffleBufferEntry(appId, shuffleId, partitionId).getValue();
   }
 
+  // null if the data of blocks is stored in heap
+  public OffHeapBlockAllocator getOffHeapBlockAllocator() {
+    return offHeapBlockAllocator;
+  }
+
   public long getUsedMemory() {
     return usedMemory.get();
   }
@@ -374,72 +457,53 @@ public class ShuffleBufferManager {
     return preAllocatedSize.get();
   }
 
-  // sort for shuffle according to data size, then pick properly data which will be flushed
-  private Map<String, Set<Integer>> pickFlushedShuffle() {
-    // create list for sort
-    List<Entry<String, AtomicLong>> sizeList = generateSizeList();
-    sizeList.sort((entry1, entry2) -> {
-      if (entry1 == null && entry2 == null) {
-        return 0;
-      }
-      if (entry1 == null) {
-        return 1;
-      }
-      if (entry2 == null) {
-        return -1;
-      }
-      if (entry1.getValue().get() > entry2.getValue().get()) {
-        return -1;
-      } else if (entry1.getValue().get() == entry2.getValue().get()) {
-        return 0;
+  private long getShuffleSize(String appId, int shuffleId) {
+    Map<Integer, AtomicLong> shuffleIdToSize = shuffleSizeMap.get(appId);
+    if (shuffleIdToSize == null) {
+      return 0L;
+    }
+    AtomicLong shuffleSize = shuffleIdToSize.get(shuffleId);
+    return shuffleSize == null ? 0L : shuffleSize.get();
+  }
+
+  // pick buffers according to flush policy, then they will be flushed
+  private List<FlushCandidate> pickFlushedBuffers() {
+    List<FlushCandidate> candidates = Lists.newArrayList();
+    long currentTime = System.currentTimeMillis();
+    for (Map.Entry<String, Map<Integer, RangeMap<Integer, ShuffleBuffer>>> appIdToBuffers : bufferPool.entrySet()) {
+      String appId = appIdToBuffers.getKey();
+      for (Map.Entry<Integer, RangeMap<Integer, ShuffleBuffer>> shuffleIdToBuffers :
+          appIdToBuffers.getValue().entrySet()) {
+        int shuffleId = shuffleIdToBuffers.getKey();
+        long shuffleSize = getShuffleSize(appId, shuffleId);
+        for (Map.Entry<Range<Integer>, ShuffleBuffer> rangeEntry :
+            shuffleIdToBuffers.getValue().asMapOfRanges().entrySet()) {
+          if (rangeEntry.getValue().getSize() > 0) {
+            Range<Integer> range = rangeEntry.getKey();
+            candidates.add(new FlushCandidate(appId, shuffleId, range.lowerEndpoint(),
+                range.upperEndpoint(), rangeEntry.getValue(), shuffleSize, currentTime));
+          }
+        }
       }
-      return 1;
-    });
+    }
 
-    Map<String, Set<Integer>> pickedShuffle = Maps.newHashMap();
     // The algorithm here is to flush data size > highWaterMark - lowWaterMark
     // the remain data in buffer maybe more than lowWaterMark
     // because shuffle server is still receiving data, but it should be ok
     long expectedFlushSize = highWaterMark - lowWaterMark;
+    List<FlushCandidate> picked = flushPolicy.pick(candidates, expectedFlushSize);
     long pickedFlushSize = 0L;
     int printIndex = 0;
     int printMax = 10;
-    for (Map.Entry<String, AtomicLong> entry : sizeList) {
-      long size = entry.getValue().get();
-      pickedFlushSize += size;
-      String appIdShuffleIdKey = entry.getKey();
-      addPickedShuffle(appIdShuffleIdKey, pickedShuffle);
+    for (FlushCandidate candidate : picked) {
+      pickedFlushSize += candidate.getSize();
       // print detail picked info
       if (printIndex < printMax) {
-        LOG.info("Pick application_shuffleId[{}] with {} bytes", appIdShuffleIdKey, size);
+        LOG.info("Pick buffer with {}", candidate);
         printIndex++;
       }
-      if (pickedFlushSize > expectedFlushSize) {
-        LOG.info("Finish flush pick with {} bytes", pickedFlushSize);
-        break;
-      }
     }
-    return pickedShuffle;
-  }
-
-  private List<Map.Entry<String, AtomicLong>> generateSizeList() {
-    Map<String, AtomicLong> sizeMap = Maps.newHashMap();
-    for (Map.Entry<String, Map<Integer, AtomicLong>> appEntry : shuffleSizeMap.entrySet()) {
-      String appId = appEntry.getKey();
-      for (Map.Entry<Integer, AtomicLong> shuffleEntry : appEntry.getValue().entrySet()) {
-        Integer shuffleId = shuffleEntry.getKey();
-        sizeMap.put(RssUtils.generateShuffleKey(appId, shuffleId), shuffleEntry.getValue());
-      }
-    }
-    return Lists.newArrayList(sizeMap.entrySet());
-  }
-
-  private void addPickedShuffle(String key, Map<String, Set<Integer>> pickedShuffle) {
-    String[] splits = key.split(Constants.KEY_SPLIT_CHAR);
-    String appId = splits[0];
-    Integer shuffleId = Integer.parseInt(splits[1]);
-    pickedShuffle.putIfAbsent(appId, Sets.newHashSet());
-    Set<Integer> shuffleIdSet = pickedShuffle.get(appId);
-    shuffleIdSet.add(shuffleId);
+    LOG.info("Finish flush pick with {} bytes in {} buffers", pickedFlushSize, picked.size());
+    return picked;
   }
 }
@@ -45,12 +45,23 @@ public class HdfsStorageManager extends SingleStorageManager {
   private static final Logger LOG = LoggerFactory.getLogger(HdfsStorageManager.class);
 
   private final Configuration hadoopConf;
+  private final boolean coalesced;
+  private final int coalescedFileNum;
+  private final int writerCacheMaxNum;
+  private final long writerCacheIdleTimeoutMs;
+  private final boolean hsync;
   private Map<String, HdfsStorage> appIdToStorages = Maps.newConcurrentMap();
   private Map<String, HdfsStorage> pathToStorages = Maps.newConcurrentMap();
 
   HdfsStorageManager(ShuffleServerConf conf) {
     super(conf);
     hadoopConf = conf.getHadoopConf();
+    coalesced = conf.get(ShuffleServerConf.SERVER_HDFS_COALESCED_ENABLE);
+    coalescedFileNum = conf.get(ShuffleServerConf.SERVER_HDFS_COALESCED_FILE_NUM);
+    writerCacheMaxNum = conf.get(ShuffleServerConf.SERVER_HDFS_WRITER_CACHE_ENABLE)
+        ? conf.get(ShuffleServerConf.SERVER_HDFS_WRITER_CACHE_MAX_NUM) : 0;
+    writerCacheIdleTimeoutMs = conf.get(ShuffleServerConf.SERVER_HDFS_WRITER_CACHE_IDLE_TIMEOUT_MS);
+    hsync = conf.get(ShuffleServerConf.SERVER_HDFS_WRITER_HSYNC_ENABLE);
   }
 
   @Override
@@ -95,7 +106,10 @@ public class HdfsStorageManager extends SingleStorageManager {
           remoteStorageHadoopConf.setStrings(entry.getKey(), entry.getValue());
         }
       }
-      pathToStorages.putIfAbsent(remoteStorage, new HdfsStorage(remoteStorage, remoteStorageHadoopConf));
+      // the storage is created only once, its writer cache has a cleaner task which must be closed
+      pathToStorages.computeIfAbsent(remoteStorage, path -> new HdfsStorage(
+          path, remoteStorageHadoopConf, coalesced, coalescedFileNum,
+          writerCacheMaxNum, writerCacheIdleTimeoutMs, hsync));
       // registerRemoteStorage may be called in different threads,
       // make sure metrics won't be created duplicated
       // there shouldn't have performance issue because
@@ -106,6 +120,11 @@ public class HdfsStorageManager extends SingleStorageManager {
     appIdToStorages.putIfAbsent(appId, pathToStorages.get(remoteStorage));
   }
 
+  @Override
+  public void stop() {
+    pathToStorages.values().forEach(HdfsStorage::close);
+  }
+
   private HdfsStorage getStorageByAppId(String appId) {
     if (!appIdToStorages.containsKey(appId)) {
       String msg = "Can't find HDFS storage for appId[" + appId + "]";
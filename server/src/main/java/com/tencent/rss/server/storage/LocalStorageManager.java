@@ -38,7 +38,9 @@ import com.tencent.rss.storage.common.LocalStorage;
 import com.tencent.rss.storage.common.Storage;
 import com.tencent.rss.storage.factory.ShuffleHandlerFactory;
 import com.tencent.rss.storage.handler.api.ShuffleDeleteHandler;
+import com.tencent.rss.storage.handler.impl.LocalFileIndexCache;
 import com.tencent.rss.storage.request.CreateShuffleDeleteHandlerRequest;
+import com.tencent.rss.storage.util.LocalFileReadMode;
 import com.tencent.rss.storage.util.ShuffleStorageUtils;
 import com.tencent.rss.storage.util.StorageType;
 
@@ -64,6 +66,20 @@ public class LocalStorageManager extends SingleStorageManager {
     if (highWaterMarkOfWrite < lowWaterMarkOfWrite) {
       throw new IllegalArgumentException("highWaterMarkOfWrite must be larger than lowWaterMarkOfWrite");
     }
+    int writerCacheMaxNum = conf.get(ShuffleServerConf.SERVER_LOCAL_WRITER_CACHE_ENABLE)
+        ? conf.get(ShuffleServerConf.SERVER_LOCAL_WRITER_CACHE_MAX_NUM) : 0;
+    long writerCacheIdleTimeoutMs = conf.get(ShuffleServerConf.SERVER_LOCAL_WRITER_CACHE_IDLE_TIMEOUT_MS);
+    LocalFileReadMode readMode = LocalFileReadMode.valueOf(conf.get(ShuffleServerConf.SERVER_LOCAL_READ_MODE));
+    int channelCacheMaxNum = conf.get(ShuffleServerConf.SERVER_LOCAL_READ_CHANNEL_CACHE_MAX_NUM);
+    long indexCacheSize = conf.get(ShuffleServerConf.SERVER_LOCAL_INDEX_CACHE_SIZE);
+    // the index cache is shared by all disks
+    LocalFileIndexCache indexCache = indexCacheSize > 0
+        ? new LocalFileIndexCache(indexCacheSize,
+            () -> ShuffleServerMetrics.counterLocalIndexCacheHit.inc(),
+            () -> ShuffleServerMetrics.counterLocalIndexCacheMiss.inc())
+        : null;
+    // the flushed events of a shuffle are written to the same files in group commit mode
+    boolean coalesced = conf.get(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_ENABLE);
     for (String storagePath : storageBasePaths) {
       localStorages.add(LocalStorage.newBuilder()
           .basePath(storagePath)
@@ -71,6 +87,12 @@ public class LocalStorageManager extends SingleStorageManager {
           .lowWaterMarkOfWrite(lowWaterMarkOfWrite)
           .highWaterMarkOfWrite(highWaterMarkOfWrite)
           .shuffleExpiredTimeoutMs(shuffleExpiredTimeoutMs)
+          .writerCacheMaxNum(writerCacheMaxNum)
+          .writerCacheIdleTimeoutMs(writerCacheIdleTimeoutMs)
+          .readMode(readMode)
+          .channelCacheMaxNum(channelCacheMaxNum)
+          .indexCache(indexCache)
+          .coalesced(coalesced)
           .build());
     }
     this.checker = new LocalStorageChecker(conf, localStorages);
@@ -20,13 +20,17 @@ package com.tencent.rss.server.storage;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.roaringbitmap.RoaringBitmap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.tencent.rss.common.RemoteStorageInfo;
+import com.tencent.rss.common.util.RssUtils;
 import com.tencent.rss.server.Checker;
 import com.tencent.rss.server.ShuffleDataFlushEvent;
 import com.tencent.rss.server.ShuffleDataReadEvent;
@@ -47,6 +51,8 @@ public class MultiStorageManager implements StorageManager {
   private final boolean uploadShuffleEnable;
   private final long flushColdStorageThresholdSize;
   private final long fallBackTimes;
+  // shuffleKey -> partitions which are flushed to cold storage directly
+  private final Map<String, RoaringBitmap> coldStoragePartitions = Maps.newConcurrentMap();
 
   MultiStorageManager(ShuffleServerConf conf, String shuffleServerId) {
     warmStorageManager = new LocalStorageManager(conf);
@@ -58,6 +64,10 @@ public class MultiStorageManager implements StorageManager {
       if (!(warmStorageManager instanceof LocalStorageManager)) {
         throw new IllegalArgumentException("Only LOCALFILE type support upload shuffle");
       }
+      // the uploader copies the files of every partition range, but the ranges share the files in group commit mode
+      if (conf.get(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_ENABLE)) {
+        throw new IllegalArgumentException("Upload shuffle isn't supported if flush group commit is enabled");
+      }
       LocalStorageManager localStorageManager = (LocalStorageManager) warmStorageManager;
       for (LocalStorage storage :localStorageManager.getStorages()) {
         uploaders.add(new ShuffleUploader.Builder()
@@ -109,10 +119,50 @@ public class MultiStorageManager implements StorageManager {
       }
       return warmStorageManager.write(storage, handler, event);
     } else {
+      if (storageManager == coldStorageManager) {
+        // record before writing, the partially written data of a failed event can be read too
+        addColdStoragePartitions(event);
+      }
       return storageManager.write(storage, handler, event);
     }
   }
 
+  private void addColdStoragePartitions(ShuffleDataFlushEvent event) {
+    RoaringBitmap partitions = coldStoragePartitions.computeIfAbsent(
+        RssUtils.generateShuffleKey(event.getAppId(), event.getShuffleId()), key -> RoaringBitmap.bitmapOf());
+    synchronized (partitions) {
+      partitions.add((long) event.getStartPartition(), (long) event.getEndPartition() + 1);
+    }
+  }
+
+  /**
+   * Get the storage tiers of the partition from the metadata of local storage and the partitions which
+   * are flushed to cold storage, null if they are unknown, eg, the metadata of the shuffle is removed
+   * after the shuffle is uploaded.
+   */
+  public ShuffleStorageTier getStorageTier(String appId, int shuffleId, int partitionId) {
+    Storage storage = warmStorageManager.selectStorage(new ShuffleDataReadEvent(appId, shuffleId, partitionId));
+    if (!(storage instanceof LocalStorage)) {
+      return null;
+    }
+    LocalStorage localStorage = (LocalStorage) storage;
+    String shuffleKey = RssUtils.generateShuffleKey(appId, shuffleId);
+    if (!localStorage.containsShuffle(shuffleKey)) {
+      return null;
+    }
+    boolean remote = false;
+    RoaringBitmap partitions = coldStoragePartitions.get(shuffleKey);
+    if (partitions != null) {
+      synchronized (partitions) {
+        remote = partitions.contains(partitionId);
+      }
+    }
+    return new ShuffleStorageTier(
+        localStorage.containsPartition(shuffleKey, partitionId),
+        remote,
+        localStorage.isPartitionUploaded(shuffleKey, partitionId));
+  }
+
   private StorageManager selectStorageManager(ShuffleDataFlushEvent event) {
     if (event.getSize() > flushColdStorageThresholdSize) {
       return coldStorageManager;
@@ -135,6 +185,8 @@ public class MultiStorageManager implements StorageManager {
         uploader.stop();
       }
     }
+    warmStorageManager.stop();
+    coldStorageManager.stop();
   }
 
   @Override
@@ -147,6 +199,9 @@ public class MultiStorageManager implements StorageManager {
     LOG.info("Start to remove resource of appId: {}, shuffles: {}", appId, shuffleSet.toString());
     warmStorageManager.removeResources(appId, shuffleSet);
     coldStorageManager.removeResources(appId, shuffleSet);
+    for (Integer shuffleId : shuffleSet) {
+      coldStoragePartitions.remove(RssUtils.generateShuffleKey(appId, shuffleId));
+    }
   }
 
   public StorageManager getColdStorageManager() {
@@ -0,0 +1,54 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.storage;
+
+/**
+ * The storage tiers which hold the data of a partition on the shuffle server.
+ * A partition may be in several tiers, eg, it is flushed to remote storage directly for big events,
+ * or it is written to local disk again after the uploader moves the previous data in force mode.
+ */
+public class ShuffleStorageTier {
+
+  private final boolean local;
+  private final boolean remote;
+  private final boolean uploaded;
+
+  public ShuffleStorageTier(boolean local, boolean remote, boolean uploaded) {
+    this.local = local;
+    this.remote = remote;
+    this.uploaded = uploaded;
+  }
+
+  public boolean isLocal() {
+    return local;
+  }
+
+  public boolean isRemote() {
+    return remote;
+  }
+
+  public boolean isUploaded() {
+    return uploaded;
+  }
+
+  @Override
+  public String toString() {
+    return "ShuffleStorageTier{local=" + local + ", remote=" + remote + ", uploaded=" + uploaded + "}";
+  }
+}
@@ -19,9 +19,11 @@
 package com.tencent.rss.server.storage;
 
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Uninterruptibles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -114,10 +116,14 @@ public abstract class SingleStorageManager implements StorageManager {
       length += block.getLength();
       blockNum++;
     }
-    List<Integer> partitions = Lists.newArrayList();
-    for (int partition = event.getStartPartition(); partition <= event.getEndPartition(); partition++) {
-      partitions.add(partition);
+    // the merged event may contain the partition ranges of the whole shuffle
+    Set<Integer> partitionSet = Sets.newTreeSet();
+    for (ShuffleDataFlushEvent mergedEvent : event.getMergedEvents()) {
+      for (int partition = mergedEvent.getStartPartition(); partition <= mergedEvent.getEndPartition(); partition++) {
+        partitionSet.add(partition);
+      }
     }
+    List<Integer> partitions = Lists.newArrayList(partitionSet);
     return new StorageWriteMetrics(
         event.getSize(),
         blockNum,
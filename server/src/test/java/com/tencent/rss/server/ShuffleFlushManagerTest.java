@@ -21,8 +21,10 @@ package com.tencent.rss.server;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
@@ -44,21 +46,37 @@ import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import com.tencent.rss.common.BufferSegment;
 import com.tencent.rss.common.RemoteStorageInfo;
 import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.common.ShuffleDataSegment;
+import com.tencent.rss.common.ShuffleIndexResult;
 import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.common.ShufflePartitionedData;
 import com.tencent.rss.common.config.RssBaseConf;
 import com.tencent.rss.common.util.ChecksumUtils;
+import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.common.util.RssUtils;
+import com.tencent.rss.server.buffer.ShuffleBuffer;
 import com.tencent.rss.server.storage.HdfsStorageManager;
 import com.tencent.rss.server.storage.StorageManager;
 import com.tencent.rss.server.storage.StorageManagerFactory;
 import com.tencent.rss.storage.HdfsTestBase;
 import com.tencent.rss.storage.common.AbstractStorage;
+import com.tencent.rss.storage.common.LocalStorage;
+import com.tencent.rss.storage.common.Storage;
+import com.tencent.rss.storage.handler.api.ServerReadHandler;
+import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
 import com.tencent.rss.storage.handler.impl.HdfsClientReadHandler;
+import com.tencent.rss.storage.request.CreateShuffleReadHandlerRequest;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
 import com.tencent.rss.storage.util.StorageType;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ShuffleFlushManagerTest extends HdfsTestBase {
 
@@ -266,6 +284,157 @@ public class ShuffleFlushManagerTest extends HdfsTestBase {
     assertEquals(0, storage.getHandlerSize());
   }
 
+  @Test
+  public void groupCommitTest(@TempDir File tempDir) throws Exception {
+    String appId1 = "groupCommitTest_appId1";
+    String appId2 = "groupCommitTest_appId2";
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.setString(ShuffleServerConf.RSS_STORAGE_BASE_PATH, tempDir.getAbsolutePath());
+    serverConf.setString(ShuffleServerConf.RSS_STORAGE_TYPE, StorageType.LOCALFILE.name());
+    serverConf.setLong(ShuffleServerConf.DISK_CAPACITY, 1024L * 1024L * 1024L);
+    serverConf.setBoolean(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_ENABLE, true);
+    serverConf.setLong(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_WAIT_MS, 500L);
+    StorageManager storageManager =
+        StorageManagerFactory.getInstance().createStorageManager("shuffleServerId", serverConf);
+    ShuffleFlushManager manager =
+        new ShuffleFlushManager(serverConf, "shuffleServerId", null, storageManager);
+
+    // 3 events of the same partition are merged, and the in flush blocks of all of them are cleared
+    ShuffleBuffer shuffleBuffer = new ShuffleBuffer(1024 * 1024);
+    List<ShuffleDataFlushEvent> events = Lists.newArrayList();
+    List<ShufflePartitionedBlock> expectedBlocks = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      List<ShufflePartitionedBlock> blocks = createBlock(5, 32);
+      expectedBlocks.addAll(blocks);
+      shuffleBuffer.append(new ShufflePartitionedData(0, blocks.toArray(new ShufflePartitionedBlock[0])));
+      events.add(shuffleBuffer.toFlushEvent(appId1, 1, 0, 1, null));
+    }
+    assertEquals(3, shuffleBuffer.getInFlushBlockMap().size());
+    events.forEach(manager::addToFlushQueue);
+    manager.addToFlushQueue(createShuffleDataFlushEvent(appId2, 1, 0, 1, null));
+    waitForFlush(manager, appId1, 1, 15);
+    waitForFlush(manager, appId2, 1, 5);
+    assertEquals(15, manager.getCommittedBlockIds(appId1, 1).getLongCardinality());
+    assertEquals(5, manager.getCommittedBlockIds(appId2, 1).getLongCardinality());
+    for (ShufflePartitionedBlock block : expectedBlocks) {
+      assertTrue(manager.getCommittedBlockIds(appId1, 1).contains(block.getBlockId()));
+    }
+    assertTrue(shuffleBuffer.getInFlushBlockMap().isEmpty());
+
+    ShuffleDataFlushEvent merged = ShuffleDataFlushEvent.merge(events);
+    assertEquals(3, merged.getMergedEvents().size());
+    assertEquals(15, merged.getShuffleBlocks().size());
+    assertEquals(events.stream().mapToLong(ShuffleDataFlushEvent::getSize).sum(), merged.getSize());
+  }
+
+  @Test
+  public void groupCommitCoalesceRangesTest(@TempDir File tempDir) throws Exception {
+    String appId = "groupCommitCoalesceRangesTest_appId";
+    int partitionNum = 10;
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.setString(ShuffleServerConf.RSS_STORAGE_BASE_PATH, tempDir.getAbsolutePath());
+    serverConf.setString(ShuffleServerConf.RSS_STORAGE_TYPE, StorageType.LOCALFILE.name());
+    serverConf.setLong(ShuffleServerConf.DISK_CAPACITY, 1024L * 1024L * 1024L);
+    serverConf.setBoolean(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_ENABLE, true);
+    serverConf.setLong(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_WAIT_MS, 500L);
+    StorageManager storageManager =
+        StorageManagerFactory.getInstance().createStorageManager("shuffleServerId", serverConf);
+    ShuffleFlushManager manager =
+        new ShuffleFlushManager(serverConf, "shuffleServerId", null, storageManager);
+
+    // the events of N partition ranges of a shuffle are flushed by 1 write
+    Map<Integer, List<ShufflePartitionedBlock>> partitionToBlocks = Maps.newHashMap();
+    List<ShuffleDataFlushEvent> events = Lists.newArrayList();
+    for (int partition = 0; partition < partitionNum; partition++) {
+      List<ShufflePartitionedBlock> blocks = createBlock(5, 32, partition);
+      partitionToBlocks.put(partition, blocks);
+      events.add(new ShuffleDataFlushEvent(ATOMIC_LONG.getAndIncrement(),
+          appId, 1, partition, partition, 5 * 32, blocks, null, null));
+    }
+    double writeNum = ShuffleServerMetrics.counterWriteTotal.get();
+    events.forEach(manager::addToFlushQueue);
+    waitForFlush(manager, appId, 1, 5 * partitionNum);
+    assertEquals(1, ShuffleServerMetrics.counterWriteTotal.get() - writeNum, 0.5);
+    assertEquals(5 * partitionNum, manager.getCommittedBlockIds(appId, 1).getLongCardinality());
+
+    // all ranges are in the shared files, and every range is read back
+    assertEquals(1, new File(tempDir, appId + "/1").listFiles().length);
+    Storage storage = storageManager.selectStorage(events.get(0));
+    for (int partition = 0; partition < partitionNum; partition++) {
+      CreateShuffleReadHandlerRequest request = new CreateShuffleReadHandlerRequest();
+      request.setAppId(appId);
+      request.setShuffleId(1);
+      request.setPartitionId(partition);
+      request.setPartitionNumPerRange(1);
+      request.setPartitionNum(partitionNum);
+      ServerReadHandler readHandler = storage.getOrCreateReadHandler(request);
+      ShuffleIndexResult shuffleIndexResult = readHandler.getShuffleIndex();
+      Map<Long, ShufflePartitionedBlock> expectedBlocks = Maps.newHashMap();
+      partitionToBlocks.get(partition).forEach(block -> expectedBlocks.put(block.getBlockId(), block));
+      Set<Long> actualBlockIds = Sets.newHashSet();
+      for (ShuffleDataSegment segment : RssUtils.transIndexDataToSegments(
+          shuffleIndexResult, 1024, ShuffleStorageUtils.getCoalescedSkipThreshold(1024))) {
+        byte[] data = readHandler.getShuffleData(segment.getOffset(), segment.getLength()).getData();
+        for (BufferSegment bs : segment.getBufferSegments()) {
+          byte[] blockData = new byte[bs.getLength()];
+          System.arraycopy(data, bs.getOffset(), blockData, 0, bs.getLength());
+          assertEquals(expectedBlocks.get(bs.getBlockId()).getCrc(), ChecksumUtils.getCrc32(blockData));
+          actualBlockIds.add(bs.getBlockId());
+        }
+      }
+      assertEquals(expectedBlocks.keySet(), actualBlockIds);
+    }
+  }
+
+  @Test
+  public void storageIsolationTest(@TempDir File tempDir) throws Exception {
+    String slowAppId = "storageIsolationTest_slow";
+    String fastAppId = "storageIsolationTest_fast";
+    ShuffleServerConf serverConf = new ShuffleServerConf();
+    serverConf.setString(ShuffleServerConf.RSS_STORAGE_BASE_PATH, tempDir.getAbsolutePath());
+    serverConf.setString(ShuffleServerConf.RSS_STORAGE_TYPE, StorageType.LOCALFILE.name());
+    serverConf.setBoolean(ShuffleServerConf.SERVER_FLUSH_STORAGE_ISOLATION_ENABLE, true);
+    serverConf.setInteger(ShuffleServerConf.SERVER_FLUSH_LOCALFILE_THREAD_NUM, 1);
+    serverConf.setInteger(ShuffleServerConf.SERVER_FLUSH_STORAGE_QUEUE_SIZE, 1);
+    LocalStorage slowStorage = mockLocalStorage("/slow");
+    LocalStorage fastStorage = mockLocalStorage("/fast");
+    CountDownLatch latch = new CountDownLatch(1);
+    StorageManager storageManager = mock(StorageManager.class);
+    when(storageManager.selectStorage(any(ShuffleDataFlushEvent.class))).thenAnswer(invocation -> {
+      ShuffleDataFlushEvent event = invocation.getArgument(0);
+      return slowAppId.equals(event.getAppId()) ? slowStorage : fastStorage;
+    });
+    when(storageManager.write(eq(slowStorage), any(), any())).thenAnswer(invocation -> {
+      latch.await();
+      return true;
+    });
+    when(storageManager.write(eq(fastStorage), any(), any())).thenReturn(true);
+    ShuffleFlushManager manager =
+        new ShuffleFlushManager(serverConf, "shuffleServerId", null, storageManager);
+
+    // 1 event is being flushed, 1 event is in queue and the others are pending
+    for (int i = 0; i < 3; i++) {
+      manager.addToFlushQueue(createShuffleDataFlushEvent(slowAppId, 1, i, i, null));
+    }
+    manager.addToFlushQueue(createShuffleDataFlushEvent(fastAppId, 1, 0, 0, null));
+    // the slow storage doesn't block the other one
+    waitForFlush(manager, fastAppId, 1, 5);
+    assertEquals(0, manager.getCommittedBlockIds(slowAppId, 1).getLongCardinality());
+    assertEquals(1, manager.getStorageFlushQueueSize(slowStorage));
+    latch.countDown();
+    waitForFlush(manager, slowAppId, 1, 15);
+    assertEquals(15, manager.getCommittedBlockIds(slowAppId, 1).getLongCardinality());
+  }
+
+  private LocalStorage mockLocalStorage(String path) throws Exception {
+    LocalStorage storage = mock(LocalStorage.class);
+    when(storage.getStoragePath()).thenReturn(path);
+    when(storage.canWrite()).thenReturn(true);
+    ShuffleWriteHandler handler = mock(ShuffleWriteHandler.class);
+    when(storage.getOrCreateWriteHandler(any())).thenReturn(handler);
+    return storage;
+  }
+
   private void waitForFlush(ShuffleFlushManager manager,
       String appId, int shuffleId, int expectedBlockNum) throws Exception {
     int retry = 0;
@@ -299,6 +468,20 @@ public class ShuffleFlushManagerTest extends HdfsTestBase {
     return blocks;
   }
 
+  private List<ShufflePartitionedBlock> createBlock(int num, int length, int partitionId) {
+    List<ShufflePartitionedBlock> blocks = Lists.newArrayList();
+    for (int i = 0; i < num; i++) {
+      byte[] buf = new byte[length];
+      new Random().nextBytes(buf);
+      long blockId = ((long) ATOMIC_INT.incrementAndGet()
+          << (Constants.PARTITION_ID_MAX_LENGTH + Constants.TASK_ATTEMPT_ID_MAX_LENGTH))
+          + ((long) partitionId << Constants.TASK_ATTEMPT_ID_MAX_LENGTH);
+      blocks.add(new ShufflePartitionedBlock(
+          length, length, ChecksumUtils.getCrc32(buf), blockId, 0, buf));
+    }
+    return blocks;
+  }
+
   private void validate(String appId, int shuffleId, int partitionId, List<ShufflePartitionedBlock> blocks,
       int partitionNumPerRange, String basePath) {
     Roaring64NavigableMap expectBlockIds = Roaring64NavigableMap.bitmapOf();
@@ -18,6 +18,7 @@
 
 package com.tencent.rss.server;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -31,6 +32,7 @@ import com.tencent.rss.common.RemoteStorageInfo;
 import org.apache.hadoop.conf.Configuration;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import com.tencent.rss.common.BufferSegment;
@@ -50,6 +52,7 @@ import com.tencent.rss.storage.util.StorageType;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -223,6 +226,42 @@ public class ShuffleTaskManagerTest extends HdfsTestBase {
     }
   }
 
+  @Test
+  public void commitShuffleNotifiedTest(@TempDir File tempDir) throws Exception {
+    String confFile = ClassLoader.getSystemResource("server.conf").getFile();
+    ShuffleServerConf conf = new ShuffleServerConf(confFile);
+    conf.set(ShuffleServerConf.RSS_STORAGE_TYPE, StorageType.LOCALFILE.name());
+    conf.set(ShuffleServerConf.RSS_STORAGE_BASE_PATH, tempDir.getAbsolutePath());
+    conf.set(ShuffleServerConf.DISK_CAPACITY, 1024L * 1024L * 1024L);
+    conf.set(ShuffleServerConf.SERVER_COMMIT_TIMEOUT, 10000L);
+    conf.set(ShuffleServerConf.HEALTH_CHECK_ENABLE, false);
+    ShuffleServer shuffleServer = new ShuffleServer(conf);
+    ShuffleFlushManager shuffleFlushManager = shuffleServer.getShuffleFlushManager();
+    ShuffleTaskManager shuffleTaskManager = new ShuffleTaskManager(conf, shuffleFlushManager,
+        shuffleServer.getShuffleBufferManager(), shuffleServer.getStorageManager());
+    String appId = "commitShuffleNotifiedTest";
+    int shuffleId = 1;
+    shuffleTaskManager.registerShuffle(
+        appId, shuffleId, Lists.newArrayList(new PartitionRange(0, 0)), RemoteStorageInfo.EMPTY_REMOTE_STORAGE);
+    ShufflePartitionedData partitionedData = createPartitionedData(0, 2, 20);
+    StatusCode sc = shuffleTaskManager.cacheShuffleData(appId, shuffleId, false, partitionedData);
+    shuffleTaskManager.updateCachedBlockIds(appId, shuffleId, partitionedData.getBlockList());
+    assertEquals(StatusCode.SUCCESS, sc);
+
+    long start = System.currentTimeMillis();
+    shuffleTaskManager.commitShuffle(appId, shuffleId);
+    // commit returns once the blocks are flushed, it doesn't check them again after 1s
+    assertTrue(System.currentTimeMillis() - start < 1000);
+    assertEquals(2, shuffleFlushManager.getCommittedBlockIds(appId, shuffleId).getLongCardinality());
+
+    // the late commit after the app is removed doesn't create the committed bitmap again
+    shuffleTaskManager.registerShuffle(
+        appId, 2, Lists.newArrayList(new PartitionRange(0, 0)), RemoteStorageInfo.EMPTY_REMOTE_STORAGE);
+    shuffleFlushManager.removeResources(appId);
+    shuffleTaskManager.commitShuffle(appId, 2);
+    assertNull(shuffleFlushManager.getCommittedBlockIdsIfPresent(appId, 2));
+  }
+
   @Test
   public void clearTest() throws Exception {
     ShuffleServerConf conf = new ShuffleServerConf();
@@ -0,0 +1,83 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+
+package com.tencent.rss.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShuffleUploadSchedulerTest {
+
+  private static final long MB = 1024 * 1024L;
+
+  @Test
+  public void scheduleTest() {
+    ShuffleUploadScheduler scheduler = new ShuffleUploadScheduler("hdfs://scheduleTest", 4, 500, 10000, 8);
+    // the disk isn't growing
+    long timeToFullMs = scheduler.getTimeToFullMs(0, 1000 * MB, 90);
+    assertEquals(Long.MAX_VALUE, timeToFullMs);
+    assertEquals(1, scheduler.getConcurrency(false, timeToFullMs));
+    assertEquals(4, scheduler.getConcurrency(true, timeToFullMs));
+    assertEquals(10000, scheduler.getIntervalMs(timeToFullMs));
+
+    // the disk is growing slowly
+    scheduler.updateDiskSize(0, 0);
+    scheduler.updateDiskSize(20 * MB, 1000);
+    timeToFullMs = scheduler.getTimeToFullMs(20 * MB, 1000 * MB, 90);
+    assertTrue(timeToFullMs > ShuffleUploadScheduler.PRESSURE_CYCLES * 10000L);
+    assertEquals(2, scheduler.getConcurrency(false, timeToFullMs));
+    assertEquals(10000, scheduler.getIntervalMs(timeToFullMs));
+
+    // the disk will reach the high watermark soon
+    scheduler.updateDiskSize(620 * MB, 2000);
+    timeToFullMs = scheduler.getTimeToFullMs(620 * MB, 1000 * MB, 90);
+    assertTrue(timeToFullMs < ShuffleUploadScheduler.PRESSURE_CYCLES * 10000L);
+    assertEquals(4, scheduler.getConcurrency(false, timeToFullMs));
+    assertEquals(500, scheduler.getIntervalMs(timeToFullMs));
+
+    // the disk reaches the high watermark
+    assertEquals(0, scheduler.getTimeToFullMs(900 * MB, 1000 * MB, 90));
+    assertEquals(500, scheduler.getIntervalMs(0));
+  }
+
+  @Test
+  public void uploadSpeedTest() {
+    ShuffleUploadScheduler scheduler1 = new ShuffleUploadScheduler("hdfs://uploadSpeedTest1", 4, 500, 10000, 8);
+    ShuffleUploadScheduler scheduler2 = new ShuffleUploadScheduler("hdfs://uploadSpeedTest1", 4, 500, 10000, 8);
+    ShuffleUploadScheduler scheduler3 = new ShuffleUploadScheduler("hdfs://uploadSpeedTest2", 4, 500, 10000, 8);
+    assertEquals(8, scheduler1.getUploadSpeedMBS());
+
+    // small upload is ignored
+    scheduler1.updateUploadSpeed(100 * 1024, 1000, 1);
+    assertEquals(8, scheduler1.getUploadSpeedMBS());
+
+    // the speed is measured for every thread and shared by the same remote storage
+    scheduler1.updateUploadSpeed(100 * MB, 1000, 2);
+    assertEquals(50, scheduler1.getUploadSpeedMBS());
+    assertEquals(50, scheduler2.getUploadSpeedMBS());
+    assertEquals(8, scheduler3.getUploadSpeedMBS());
+
+    // the speed is smoothed
+    scheduler2.updateUploadSpeed(100 * MB, 10000, 1);
+    long speed = scheduler1.getUploadSpeedMBS();
+    assertTrue(speed > 10 && speed < 50);
+  }
+}
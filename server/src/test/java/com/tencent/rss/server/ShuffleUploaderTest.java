@@ -48,8 +48,10 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -565,7 +567,7 @@ public class ShuffleUploaderTest  {
       conf.setString(ShuffleServerConf.UPLOAD_STORAGE_TYPE, StorageType.HDFS.name());
       conf.setString(ShuffleServerConf.UPLOADER_BASE_PATH, "hdfs://test");
 
-      LocalStorage localStorage = LocalStorage.newBuilder()
+      LocalStorage localStorage = spy(LocalStorage.newBuilder()
           .basePath(tempDir.getAbsolutePath())
           .cleanupThreshold(50)
           .highWaterMarkOfWrite(100)
@@ -573,7 +575,7 @@ public class ShuffleUploaderTest  {
           .capacity(100)
           .cleanIntervalMs(5000)
           .shuffleExpiredTimeoutMs(1)
-          .build();
+          .build());
 
       File baseDir = new File(tempDir, "app-1");
       baseDir.mkdir();
@@ -616,6 +618,8 @@ public class ShuffleUploaderTest  {
 
       assertFalse(dir1.exists());
       assertTrue(dir2.exists());
+      // the cached files are closed before the shuffle folder is deleted
+      verify(localStorage, atLeastOnce()).closeFiles("app-1/1");
       localStorage.updateReadMetrics(new StorageReadMetrics("app-1/2", 2));
       uploader.cleanUploadedShuffle(Sets.newHashSet("app-1/2"));
       assertTrue(dir2.exists());
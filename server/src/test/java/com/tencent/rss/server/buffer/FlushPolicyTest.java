@@ -0,0 +1,112 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.Test;
+
+import com.tencent.rss.server.ShuffleServerConf;
+
+public class FlushPolicyTest extends BufferTestBase {
+
+  @Test
+  public void largestFirstTest() {
+    // size of buffers: 132, 532, 42
+    List<FlushCandidate> candidates = createCandidates(new int[]{100, 500, 10}, new long[]{0, 0, 0});
+    List<FlushCandidate> picked = new LargestFirstFlushPolicy(0).pick(candidates, 500);
+    assertEquals(1, picked.size());
+    assertEquals(candidates.get(1), picked.get(0));
+
+    picked = new LargestFirstFlushPolicy(0).pick(candidates, 600);
+    assertEquals(2, picked.size());
+    assertEquals(candidates.get(1), picked.get(0));
+    assertEquals(candidates.get(0), picked.get(1));
+
+    // small buffer is kept in memory if the big ones are enough
+    picked = new LargestFirstFlushPolicy(200).pick(candidates, 100);
+    assertEquals(1, picked.size());
+    // otherwise it is picked as well
+    picked = new LargestFirstFlushPolicy(200).pick(candidates, 600);
+    assertEquals(2, picked.size());
+    picked = new LargestFirstFlushPolicy(200).pick(candidates, 1000);
+    assertEquals(3, picked.size());
+
+    // the buffer of the largest shuffle is the first one even if it is smaller
+    ShuffleBuffer buffer = new ShuffleBuffer(100000);
+    buffer.append(createData(50));
+    candidates.add(new FlushCandidate("appId", 3, 0, 0, buffer, 1000, buffer.getFirstAppendTime()));
+    picked = new LargestFirstFlushPolicy(0).pick(candidates, 50);
+    assertEquals(1, picked.size());
+    assertEquals(candidates.get(3), picked.get(0));
+  }
+
+  @Test
+  public void ageFirstTest() {
+    List<FlushCandidate> candidates = createCandidates(new int[]{100, 500, 10}, new long[]{1000, 0, 3000});
+    List<FlushCandidate> picked = new AgeFirstFlushPolicy(0).pick(candidates, 150);
+    assertEquals(2, picked.size());
+    assertEquals(candidates.get(2), picked.get(0));
+    assertEquals(candidates.get(0), picked.get(1));
+
+    // the oldest one is too small
+    picked = new AgeFirstFlushPolicy(100).pick(candidates, 100);
+    assertEquals(1, picked.size());
+    assertEquals(candidates.get(0), picked.get(0));
+  }
+
+  @Test
+  public void hybridTest() {
+    List<FlushCandidate> candidates = createCandidates(new int[]{300, 500, 10}, new long[]{3000, 0, 2000});
+    List<FlushCandidate> picked = new HybridFlushPolicy(0).pick(candidates, 100);
+    assertEquals(1, picked.size());
+    // big and old buffer is the first one
+    assertEquals(candidates.get(0), picked.get(0));
+    picked = new HybridFlushPolicy(0).pick(candidates, 500);
+    assertEquals(2, picked.size());
+    assertEquals(candidates.get(1), picked.get(1));
+  }
+
+  @Test
+  public void flushPolicyFactoryTest() {
+    ShuffleServerConf conf = new ShuffleServerConf();
+    assertTrue(new FlushPolicyFactory(conf).getFlushPolicy() instanceof LargestFirstFlushPolicy);
+    conf.setString(ShuffleServerConf.SERVER_BUFFER_FLUSH_POLICY, "HYBRID");
+    assertTrue(new FlushPolicyFactory(conf).getFlushPolicy() instanceof HybridFlushPolicy);
+    // unknown policy is rejected by the config option
+    conf.setString(ShuffleServerConf.SERVER_BUFFER_FLUSH_POLICY, "UNKNOWN");
+    assertThrows(IllegalArgumentException.class, () -> new FlushPolicyFactory(conf).getFlushPolicy());
+  }
+
+  private List<FlushCandidate> createCandidates(int[] dataLengths, long[] ages) {
+    List<FlushCandidate> candidates = Lists.newArrayList();
+    for (int i = 0; i < dataLengths.length; i++) {
+      ShuffleBuffer buffer = new ShuffleBuffer(100000);
+      buffer.append(createData(dataLengths[i]));
+      long time = buffer.getFirstAppendTime() + ages[i];
+      candidates.add(new FlushCandidate("appId", i, 0, 0, buffer, time));
+    }
+    return candidates;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available.
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.common.ShufflePartitionedData;
+import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.server.ShuffleDataFlushEvent;
+
+public class OffHeapBlockAllocatorTest extends BufferTestBase {
+
+  @Test
+  public void allocateTest() {
+    OffHeapBlockAllocator allocator = new OffHeapBlockAllocator(100, 1, 1000);
+    byte[] data1 = randomBytes(60);
+    byte[] data2 = randomBytes(60);
+    ShufflePartitionedBlock block1 = allocator.allocate(60, 60, 1, 1, 1, ByteBuffer.wrap(data1));
+    assertTrue(block1.isDirect());
+    assertArrayEquals(data1, block1.getData());
+    assertEquals(100, allocator.getAllocatedSize());
+    // the first slab hasn't enough space
+    ShufflePartitionedBlock block2 = allocator.allocate(60, 60, 1, 2, 1, ByteBuffer.wrap(data2));
+    assertArrayEquals(data2, block2.getData());
+    assertArrayEquals(data1, block1.getData());
+    assertEquals(200, allocator.getAllocatedSize());
+
+    // the retired slab is recycled after all blocks are released
+    assertEquals(0, allocator.getFreeSlabNum());
+    block1.release();
+    assertEquals(1, allocator.getFreeSlabNum());
+    // release again won't change anything
+    block1.release();
+    assertEquals(1, allocator.getFreeSlabNum());
+
+    // the free slab is reused
+    ShufflePartitionedBlock block3 = allocator.allocate(60, 60, 1, 3, 1, ByteBuffer.wrap(data1));
+    assertEquals(0, allocator.getFreeSlabNum());
+    assertEquals(200, allocator.getAllocatedSize());
+    assertArrayEquals(data1, block3.getData());
+
+    // big block isn't pooled
+    byte[] data3 = randomBytes(150);
+    ShufflePartitionedBlock block4 = allocator.allocate(150, 150, 1, 4, 1, ByteBuffer.wrap(data3));
+    assertArrayEquals(data3, block4.getData());
+    assertEquals(350, allocator.getAllocatedSize());
+    block4.release();
+    assertEquals(200, allocator.getAllocatedSize());
+    block2.release();
+    block3.release();
+  }
+
+  @Test
+  public void bufferWithOffHeapBlockTest() {
+    OffHeapBlockAllocator allocator = new OffHeapBlockAllocator(1000, 1, 1000);
+    ShuffleBuffer shuffleBuffer = new ShuffleBuffer(200);
+    byte[] data = randomBytes(50);
+    ShufflePartitionedBlock block = allocator.allocate(50, 50, 1, 1, 1, ByteBuffer.wrap(data));
+    shuffleBuffer.append(new ShufflePartitionedData(1, new ShufflePartitionedBlock[]{block}));
+    ShuffleDataResult sdr = shuffleBuffer.getShuffleData(Constants.INVALID_BLOCK_ID, 100);
+    assertArrayEquals(data, sdr.getData());
+
+    ShuffleDataFlushEvent event = shuffleBuffer.toFlushEvent("appId", 0, 0, 1, null);
+    assertFalse(event.getShuffleBlocks().isEmpty());
+    sdr = shuffleBuffer.getShuffleData(Constants.INVALID_BLOCK_ID, 100);
+    assertArrayEquals(data, sdr.getData());
+    shuffleBuffer.clearInFlushBuffer(event.getEventId());
+    // slab is still used by arena
+    assertEquals(0, allocator.getFreeSlabNum());
+    assertEquals(1000, allocator.getAllocatedSize());
+  }
+
+  private byte[] randomBytes(int len) {
+    byte[] data = new byte[len];
+    new Random().nextBytes(data);
+    return data;
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.server.buffer;
+
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+
+import com.tencent.rss.common.ShufflePartitionedData;
+import com.tencent.rss.server.ShuffleFlushManager;
+import com.tencent.rss.server.ShuffleServerConf;
+import com.tencent.rss.server.ShuffleServerMetrics;
+import com.tencent.rss.server.StatusCode;
+import com.tencent.rss.storage.util.StorageType;
+
+/**
+ * Compare the time of caching data by one thread with the time of many threads doing the same work each.
+ * It isn't a unit test because the result depends on the machine, run it with:
+ * java -cp [test classpath] com.tencent.rss.server.buffer.ShuffleBufferManagerBenchmark [threadNum] [blockNum]
+ */
+public class ShuffleBufferManagerBenchmark extends BufferTestBase {
+
+  private final ShuffleBufferManager shuffleBufferManager;
+
+  public ShuffleBufferManagerBenchmark() {
+    ShuffleServerConf conf = new ShuffleServerConf();
+    File dataDir = new File(Files.createTempDir(), "data");
+    conf.setString(ShuffleServerConf.RSS_STORAGE_TYPE, StorageType.LOCALFILE.name());
+    conf.setString(ShuffleServerConf.RSS_STORAGE_BASE_PATH, dataDir.getAbsolutePath());
+    conf.set(ShuffleServerConf.SERVER_BUFFER_CAPACITY, 1024L * 1024L * 1024L * 4);
+    conf.set(ShuffleServerConf.SERVER_BUFFER_FLUSH_ASYNC_ENABLE, true);
+    shuffleBufferManager = new ShuffleBufferManager(conf, mock(ShuffleFlushManager.class));
+  }
+
+  public static void main(String[] args) throws Exception {
+    int threadNum = args.length > 0
+        ? Integer.parseInt(args[0]) : Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    int blockNum = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    ShuffleServerMetrics.register();
+    ShuffleBufferManagerBenchmark benchmark = new ShuffleBufferManagerBenchmark();
+    try {
+      benchmark.run(threadNum, blockNum);
+    } finally {
+      benchmark.shuffleBufferManager.close();
+      ShuffleServerMetrics.clear();
+    }
+  }
+
+  private void run(int threadNum, int blockNum) throws Exception {
+    String appId = "shuffleBufferManagerBenchmark";
+    for (int i = 0; i <= threadNum + 1; i++) {
+      shuffleBufferManager.registerBuffer(appId, i, 0, 0);
+    }
+    // warm up
+    cacheShuffleDataConcurrently(appId, 0, 1, blockNum);
+    long singleCostNs = cacheShuffleDataConcurrently(appId, 1, 1, blockNum);
+    long concurrentCostNs = cacheShuffleDataConcurrently(appId, 2, threadNum, blockNum);
+    double speedup = singleCostNs * (double) threadNum / concurrentCostNs;
+    System.out.println("Cache " + blockNum + " blocks per thread, 1 thread cost " + singleCostNs / 1000000
+        + "ms, " + threadNum + " threads cost " + concurrentCostNs / 1000000 + "ms, speedup " + speedup);
+  }
+
+  // every thread caches blockNum blocks to its own shuffle, return the wall time in nanoseconds
+  private long cacheShuffleDataConcurrently(
+      String appId, int firstShuffleId, int threadNum, int blockNum) throws Exception {
+    List<List<ShufflePartitionedData>> data = Lists.newArrayList();
+    for (int i = 0; i < threadNum; i++) {
+      List<ShufflePartitionedData> spds = Lists.newArrayList();
+      for (int j = 0; j < blockNum; j++) {
+        spds.add(createData(0, 64));
+      }
+      data.add(spds);
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(threadNum);
+    List<Future<?>> futures = Lists.newArrayList();
+    long start = System.nanoTime();
+    for (int i = 0; i < threadNum; i++) {
+      int shuffleId = firstShuffleId + i;
+      List<ShufflePartitionedData> spds = data.get(i);
+      futures.add(executorService.submit(() -> {
+        for (ShufflePartitionedData spd : spds) {
+          if (shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, spd) != StatusCode.SUCCESS) {
+            throw new IllegalStateException("Failed to cache data of shuffle " + shuffleId);
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    long cost = System.nanoTime() - start;
+    executorService.shutdownNow();
+    return cost;
+  }
+}
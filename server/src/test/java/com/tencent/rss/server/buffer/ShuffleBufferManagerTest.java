@@ -18,6 +18,7 @@
 
 package com.tencent.rss.server.buffer;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.RangeMap;
 import com.google.common.io.Files;
 import com.tencent.rss.common.ShuffleDataResult;
@@ -31,20 +32,31 @@ import com.tencent.rss.server.StatusCode;
 import com.tencent.rss.server.storage.StorageManager;
 import com.tencent.rss.server.storage.StorageManagerFactory;
 import com.tencent.rss.storage.util.StorageType;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -69,6 +81,11 @@ public class ShuffleBufferManagerTest extends BufferTestBase {
     shuffleBufferManager = new ShuffleBufferManager(conf, mockShuffleFlushManager);
   }
 
+  @AfterEach
+  public void tearDown() {
+    shuffleBufferManager.close();
+  }
+
   @Test
   public void registerBufferTest() {
     String appId = "registerBufferTest";
@@ -369,34 +386,177 @@ public class ShuffleBufferManagerTest extends BufferTestBase {
     shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(6, 64));
     assertEquals(384, shuffleBufferManager.getUsedMemory());
     shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(8, 64));
-    waitForFlush(shuffleFlushManager, appId, shuffleId, 5);
-    assertEquals(0, shuffleBufferManager.getUsedMemory());
+    // 4 buffers are enough to reach low water mark, the last one is kept in memory
+    waitForFlush(shuffleFlushManager, appId, shuffleId, 7);
+    assertEquals(96, shuffleBufferManager.getUsedMemory());
     assertEquals(0, shuffleBufferManager.getInFlushSize());
+    assertEquals(96, shuffleBufferManager.getShuffleBuffer(appId, shuffleId, 8).getSize());
 
     shuffleBufferManager.registerBuffer("bufferSizeTest1", shuffleId, 0, 1);
     shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(0, 32));
-    assertEquals(64, shuffleBufferManager.getUsedMemory());
+    assertEquals(160, shuffleBufferManager.getUsedMemory());
     shuffleBufferManager.cacheShuffleData("bufferSizeTest1", shuffleId, false, createData(0, 32));
-    assertEquals(128, shuffleBufferManager.getUsedMemory());
+    assertEquals(224, shuffleBufferManager.getUsedMemory());
     assertEquals(2, shuffleBufferManager.getBufferPool().keySet().size());
     shuffleBufferManager.removeBuffer(appId);
     assertEquals(64, shuffleBufferManager.getUsedMemory());
     assertEquals(1, shuffleBufferManager.getBufferPool().keySet().size());
   }
 
+  @Test
+  public void concurrentRequireMemoryTest() throws Exception {
+    int threadNum = 16;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadNum);
+    AtomicInteger requiredNum = new AtomicInteger(0);
+    List<Future<?>> futures = Lists.newArrayList();
+    for (int i = 0; i < threadNum; i++) {
+      futures.add(executorService.submit(() -> {
+        while (shuffleBufferManager.requireMemory(1, false)) {
+          requiredNum.incrementAndGet();
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    // memory is never over required
+    assertEquals(500, requiredNum.get());
+    assertEquals(500, shuffleBufferManager.getUsedMemory());
+
+    futures.clear();
+    for (int i = 0; i < threadNum; i++) {
+      futures.add(executorService.submit(() -> {
+        for (int j = 0; j < 1000; j++) {
+          shuffleBufferManager.releaseMemory(1, false, false);
+          shuffleBufferManager.requireMemory(1, false);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    assertEquals(500, shuffleBufferManager.getUsedMemory());
+    executorService.shutdownNow();
+    executorService.awaitTermination(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void asyncFlushTest() {
+    conf.set(ShuffleServerConf.SERVER_BUFFER_FLUSH_ASYNC_ENABLE, true);
+    shuffleBufferManager.close();
+    shuffleBufferManager = new ShuffleBufferManager(conf, mockShuffleFlushManager);
+    String appId = "asyncFlushTest";
+    int shuffleId = 1;
+    shuffleBufferManager.registerBuffer(appId, shuffleId, 0, 1);
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(0, 300));
+    verify(mockShuffleFlushManager, never()).addToFlushQueue(any());
+    // reach high water mark, flush is done by the background thread
+    shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(0, 100));
+    verify(mockShuffleFlushManager, timeout(5000).times(1)).addToFlushQueue(any());
+    assertEquals(464, shuffleBufferManager.getInFlushSize());
+    assertEquals(0, shuffleBufferManager.getShuffleBuffer(appId, shuffleId, 0).getSize());
+  }
+
+  @Test
+  public void concurrentRequireAndReleaseMemoryTest() throws Exception {
+    int threadNum = 16;
+    long capacity = 500;
+    ExecutorService executorService = Executors.newFixedThreadPool(threadNum);
+    // the memory which is required successfully and isn't released yet
+    AtomicLong requiredSize = new AtomicLong(0);
+    AtomicLong maxRequiredSize = new AtomicLong(0);
+    AtomicInteger failedNum = new AtomicInteger(0);
+    List<Future<?>> futures = Lists.newArrayList();
+    for (int i = 0; i < threadNum; i++) {
+      long size = i % 4 + 1;
+      boolean isPreAllocated = i % 2 == 0;
+      futures.add(executorService.submit(() -> {
+        for (int j = 0; j < 10000; j++) {
+          if (shuffleBufferManager.requireMemory(size, isPreAllocated)) {
+            maxRequiredSize.accumulateAndGet(requiredSize.addAndGet(size), Math::max);
+            requiredSize.addAndGet(-size);
+            shuffleBufferManager.releaseMemory(size, false, isPreAllocated);
+          } else {
+            failedNum.incrementAndGet();
+          }
+          if (shuffleBufferManager.getUsedMemory() > capacity) {
+            fail("Memory is over required: " + shuffleBufferManager.getUsedMemory());
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executorService.shutdownNow();
+    executorService.awaitTermination(10, TimeUnit.SECONDS);
+    // every required byte is released exactly once, and the memory is never over required
+    assertTrue(maxRequiredSize.get() <= capacity);
+    assertEquals(0, shuffleBufferManager.getUsedMemory());
+    assertEquals(0, shuffleBufferManager.getPreAllocatedSize());
+    assertEquals(0, shuffleBufferManager.getInFlushSize());
+
+    // all the memory can be required again
+    assertTrue(shuffleBufferManager.requireMemory(capacity, false));
+    assertFalse(shuffleBufferManager.requireMemory(1, false));
+  }
+
+  @Test
+  public void concurrentCacheShuffleDataTest() throws Exception {
+    conf.set(ShuffleServerConf.SERVER_BUFFER_CAPACITY, 1024L * 1024L * 1024L);
+    conf.set(ShuffleServerConf.SERVER_BUFFER_FLUSH_ASYNC_ENABLE, true);
+    shuffleBufferManager.close();
+    shuffleBufferManager = new ShuffleBufferManager(conf, mockShuffleFlushManager);
+    int threadNum = 8;
+    int blockNum = 2000;
+    String appId = "concurrentCacheShuffleDataTest";
+    for (int i = 0; i < threadNum; i++) {
+      shuffleBufferManager.registerBuffer(appId, i, 0, 0);
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(threadNum);
+    List<Future<?>> futures = Lists.newArrayList();
+    for (int i = 0; i < threadNum; i++) {
+      int shuffleId = i;
+      futures.add(executorService.submit(() -> {
+        for (int j = 0; j < blockNum; j++) {
+          assertEquals(StatusCode.SUCCESS,
+              shuffleBufferManager.cacheShuffleData(appId, shuffleId, false, createData(0, 64)));
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executorService.shutdownNow();
+
+    // every cached block is accounted exactly once and nothing is flushed below the watermark
+    long bufferSize = 0;
+    for (int i = 0; i < threadNum; i++) {
+      ShuffleBuffer buffer = shuffleBufferManager.getShuffleBuffer(appId, i, 0);
+      assertEquals(blockNum, buffer.getBlocks().size());
+      bufferSize += buffer.getSize();
+    }
+    assertEquals(bufferSize, shuffleBufferManager.getUsedMemory());
+    verify(mockShuffleFlushManager, never()).addToFlushQueue(any());
+  }
+
   private void waitForFlush(ShuffleFlushManager shuffleFlushManager,
       String appId, int shuffleId, int expectedBlockNum) throws Exception {
     int retry = 0;
     long committedCount = 0;
+    long inFlushSize = 0;
     do {
       committedCount = shuffleFlushManager.getCommittedBlockIds(appId, shuffleId).getLongCardinality();
-      if (committedCount < expectedBlockNum) {
+      // the block ids are committed before the memory is released, and the used memory is released
+      // before the in flush size
+      inFlushSize = shuffleBufferManager.getInFlushSize();
+      if (committedCount < expectedBlockNum || inFlushSize > 0) {
         Thread.sleep(500);
       }
       retry++;
       if (retry > 10) {
         fail("Flush data time out");
       }
-    } while (committedCount < expectedBlockNum);
+    } while (committedCount < expectedBlockNum || inFlushSize > 0);
   }
 }
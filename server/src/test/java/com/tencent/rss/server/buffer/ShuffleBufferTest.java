@@ -23,11 +23,15 @@ import com.tencent.rss.common.BufferSegment;
 import com.tencent.rss.common.ShuffleDataResult;
 import com.tencent.rss.common.ShufflePartitionedBlock;
 import com.tencent.rss.common.ShufflePartitionedData;
+import com.tencent.rss.common.util.ChecksumUtils;
 import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.server.ShuffleBlockFilter;
 import com.tencent.rss.server.ShuffleDataFlushEvent;
 import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
@@ -431,6 +435,91 @@ public class ShuffleBufferTest extends BufferTestBase {
     assertArrayEquals(expectedData, sdr.getData());
   }
 
+  @Test
+  public void getShuffleDataWithManyBlocksTest() {
+    ShuffleBuffer shuffleBuffer = new ShuffleBuffer(100000);
+    List<ShufflePartitionedBlock> expectedBlocks = Lists.newArrayList();
+    for (int i = 0; i < 300; i++) {
+      ShufflePartitionedData spd = createData(10);
+      shuffleBuffer.append(spd);
+      expectedBlocks.add(spd.getBlockList()[0]);
+    }
+    // resume from the block in the middle of chunks
+    ShuffleDataResult sdr = shuffleBuffer.getShuffleData(expectedBlocks.get(199).getBlockId(), 50);
+    compareBufferSegment(expectedBlocks, sdr.getBufferSegments(), 200, 5);
+
+    // blocks are moved to flush event without copy
+    ShuffleDataFlushEvent event = shuffleBuffer.toFlushEvent("appId", 0, 0, 1, null);
+    assertEquals(300, event.getShuffleBlocks().size());
+    assertEquals(0, shuffleBuffer.getBlocks().size());
+    ShufflePartitionedData spd = createData(10);
+    shuffleBuffer.append(spd);
+    expectedBlocks.add(spd.getBlockList()[0]);
+    sdr = shuffleBuffer.getShuffleData(expectedBlocks.get(298).getBlockId(), 50);
+    compareBufferSegment(expectedBlocks, sdr.getBufferSegments(), 299, 2);
+  }
+
+  @Test
+  public void getShuffleDataWithFilterTest() {
+    ShuffleBuffer shuffleBuffer = new ShuffleBuffer(100000);
+    List<ShufflePartitionedBlock> blocks = Lists.newArrayList();
+    // the first 3 blocks belong to task 2, the last block belongs to another partition
+    for (int i = 0; i < 6; i++) {
+      long taskAttemptId = i < 3 ? 2 : 1;
+      int partitionId = i == 5 ? 2 : 1;
+      long blockId = ((long) i << (Constants.PARTITION_ID_MAX_LENGTH + Constants.TASK_ATTEMPT_ID_MAX_LENGTH))
+          + ((long) partitionId << Constants.TASK_ATTEMPT_ID_MAX_LENGTH) + taskAttemptId;
+      byte[] buf = new byte[10];
+      new Random().nextBytes(buf);
+      ShufflePartitionedBlock block = new ShufflePartitionedBlock(
+          10, 10, ChecksumUtils.getCrc32(buf), blockId, taskAttemptId, buf);
+      shuffleBuffer.append(new ShufflePartitionedData(partitionId, new ShufflePartitionedBlock[]{block}));
+      blocks.add(block);
+    }
+    Roaring64NavigableMap expectedTaskIds = Roaring64NavigableMap.bitmapOf(1);
+    Roaring64NavigableMap processedBlockIds = Roaring64NavigableMap.bitmapOf(blocks.get(3).getBlockId());
+    ShuffleBlockFilter filter = new ShuffleBlockFilter(1, expectedTaskIds, processedBlockIds);
+
+    // the first 3 blocks are skipped, and the read continues with the next blocks
+    ShuffleDataResult sdr = shuffleBuffer.getShuffleData(Constants.INVALID_BLOCK_ID, 20, filter);
+    compareBufferSegment(blocks, sdr.getBufferSegments(), 4, 1);
+    assertArrayEquals(blocks.get(4).getData(), sdr.getData());
+
+    // the block of other partition is skipped
+    sdr = shuffleBuffer.getShuffleData(blocks.get(4).getBlockId(), 20, filter);
+    assertTrue(sdr.isEmpty());
+
+    // the data is the same as before without filter
+    sdr = shuffleBuffer.getShuffleData(Constants.INVALID_BLOCK_ID, 100);
+    compareBufferSegment(blocks, sdr.getBufferSegments(), 0, 6);
+  }
+
+  @Test
+  public void filterSegmentTest() {
+    // 3 blocks of the segment, the offsets are relative to the segment as the client sends them
+    byte[] data = new byte[30];
+    new Random().nextBytes(data);
+    List<BufferSegment> bufferSegments = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      long blockId = ((long) i << (Constants.PARTITION_ID_MAX_LENGTH + Constants.TASK_ATTEMPT_ID_MAX_LENGTH))
+          + (1L << Constants.TASK_ATTEMPT_ID_MAX_LENGTH) + i;
+      bufferSegments.add(new BufferSegment(blockId, i * 10, 10, 10, i, i));
+    }
+
+    ShuffleBlockFilter filter = new ShuffleBlockFilter(1, Roaring64NavigableMap.bitmapOf(0, 2), null);
+    ShuffleDataResult sdr = filter.filter(new ShuffleDataResult(data, bufferSegments));
+    assertEquals(2, sdr.getBufferSegments().size());
+    assertEquals(10, sdr.getBufferSegments().get(1).getOffset());
+    byte[] expectedData = new byte[20];
+    System.arraycopy(data, 0, expectedData, 0, 10);
+    System.arraycopy(data, 20, expectedData, 10, 10);
+    assertArrayEquals(expectedData, sdr.getData());
+
+    // nothing is copied if all blocks are accepted
+    ShuffleDataResult origin = new ShuffleDataResult(data, bufferSegments);
+    assertTrue(origin == new ShuffleBlockFilter(1, null, null).filter(origin));
+  }
+
   private byte[] getExpectedData(ShufflePartitionedData... spds ) {
     int size = 0;
     for (ShufflePartitionedData spd : spds) {
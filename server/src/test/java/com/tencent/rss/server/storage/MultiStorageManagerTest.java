@@ -21,20 +21,43 @@ package com.tencent.rss.server.storage;
 import java.util.List;
 
 import com.google.common.collect.Lists;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import com.tencent.rss.common.RemoteStorageInfo;
 import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.common.util.RssUtils;
 import com.tencent.rss.server.ShuffleDataFlushEvent;
+import com.tencent.rss.server.ShuffleDataReadEvent;
 import com.tencent.rss.server.ShuffleServerConf;
+import com.tencent.rss.server.ShuffleServerMetrics;
 import com.tencent.rss.storage.common.HdfsStorage;
 import com.tencent.rss.storage.common.LocalStorage;
+import com.tencent.rss.storage.common.Storage;
+import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
 import com.tencent.rss.storage.util.StorageType;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class MultiStorageManagerTest {
 
+  @BeforeAll
+  public static void setup() {
+    ShuffleServerMetrics.register();
+  }
+
+  @AfterAll
+  public static void clear() {
+    ShuffleServerMetrics.clear();
+  }
+
   @Test
   public void selectStorageManagerTest() {
     String remoteStorage = "test";
@@ -54,4 +77,67 @@ public class MultiStorageManagerTest {
         1, appId, 1, 1, 1, 1000000, blocks, null, null);
     assertTrue((manager.selectStorage(event) instanceof HdfsStorage));
   }
+
+  @Test
+  public void getStorageTierTest() {
+    String appId = "getStorageTierTest_appId";
+    ShuffleServerConf conf = new ShuffleServerConf();
+    conf.setLong(ShuffleServerConf.FLUSH_COLD_STORAGE_THRESHOLD_SIZE, 2000L);
+    conf.setString(ShuffleServerConf.RSS_STORAGE_BASE_PATH, "test");
+    conf.setLong(ShuffleServerConf.DISK_CAPACITY, 1024L * 1024L * 1024L);
+    conf.setString(ShuffleServerConf.RSS_STORAGE_TYPE, StorageType.LOCALFILE_HDFS_2.name());
+    MultiStorageManager manager = new MultiStorageManager(conf, "shuffleServerId");
+    manager.registerRemoteStorage(appId, new RemoteStorageInfo("test"));
+    // the tiers are unknown without metadata
+    assertNull(manager.getStorageTier(appId, 1, 1));
+
+    LocalStorage localStorage = (LocalStorage) manager.selectStorage(new ShuffleDataReadEvent(appId, 1, 1));
+    String shuffleKey = RssUtils.generateShuffleKey(appId, 1);
+    localStorage.createMetadataIfNotExist(shuffleKey);
+    localStorage.updateWrite(shuffleKey, 100, Lists.newArrayList(1, 2));
+    ShuffleStorageTier tier = manager.getStorageTier(appId, 1, 1);
+    assertTrue(tier.isLocal());
+    assertFalse(tier.isRemote());
+    assertFalse(tier.isUploaded());
+    tier = manager.getStorageTier(appId, 1, 3);
+    assertFalse(tier.isLocal() || tier.isRemote() || tier.isUploaded());
+
+    // the files are kept after uploading in normal mode
+    localStorage.updateUploadedShuffle(shuffleKey, 50, Lists.newArrayList(1));
+    tier = manager.getStorageTier(appId, 1, 1);
+    assertTrue(tier.isLocal());
+    assertTrue(tier.isUploaded());
+    // the files are deleted after uploading in force mode
+    localStorage.removeShuffle(shuffleKey, 50, Lists.newArrayList(2));
+    tier = manager.getStorageTier(appId, 1, 2);
+    assertFalse(tier.isLocal());
+    assertTrue(tier.isUploaded());
+
+    // the big event is flushed to cold storage
+    List<ShufflePartitionedBlock> blocks = Lists.newArrayList(new ShufflePartitionedBlock(100, 1000, 1, 1, 1L, null));
+    ShuffleDataFlushEvent event = new ShuffleDataFlushEvent(
+        1, appId, 1, 3, 4, 1000000, blocks, null, null);
+    Storage storage = mock(Storage.class);
+    when(storage.lockShuffleShared(any())).thenReturn(true);
+    assertTrue(manager.write(storage, mock(ShuffleWriteHandler.class), event));
+    tier = manager.getStorageTier(appId, 1, 4);
+    assertFalse(tier.isLocal());
+    assertTrue(tier.isRemote());
+    assertFalse(manager.getStorageTier(appId, 1, 1).isRemote());
+
+    localStorage.removeResources(shuffleKey);
+    assertNull(manager.getStorageTier(appId, 1, 4));
+  }
+
+  @Test
+  public void uploadWithGroupCommitTest() {
+    ShuffleServerConf conf = new ShuffleServerConf();
+    conf.setString(ShuffleServerConf.RSS_STORAGE_BASE_PATH, "test");
+    conf.setLong(ShuffleServerConf.DISK_CAPACITY, 1024L * 1024L * 1024L);
+    conf.setString(ShuffleServerConf.RSS_STORAGE_TYPE, StorageType.LOCALFILE_HDFS.name());
+    conf.setBoolean(ShuffleServerConf.UPLOADER_ENABLE, true);
+    conf.setBoolean(ShuffleServerConf.SERVER_FLUSH_GROUP_COMMIT_ENABLE, true);
+    // the partition ranges share the files in group commit mode, they can't be uploaded separately
+    assertThrows(IllegalArgumentException.class, () -> new MultiStorageManager(conf, "shuffleServerId"));
+  }
 }
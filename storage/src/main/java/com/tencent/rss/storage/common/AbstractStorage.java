@@ -58,17 +58,28 @@ public abstract class AbstractStorage implements Storage {
   public ServerReadHandler getOrCreateReadHandler(CreateShuffleReadHandlerRequest request) {
     readerHandlers.computeIfAbsent(request.getAppId(), key -> Maps.newConcurrentMap());
     Map<String, ServerReadHandler> map = readerHandlers.get(request.getAppId());
+    String partitionKey = generateReadPartitionKey(request);
+    map.computeIfAbsent(partitionKey, key -> newReadHandler(request));
+    return map.get(partitionKey);
+  }
+
+  @Override
+  public boolean containsReadHandler(CreateShuffleReadHandlerRequest request) {
+    Map<String, ServerReadHandler> map = readerHandlers.get(request.getAppId());
+    return map != null && map.containsKey(generateReadPartitionKey(request));
+  }
+
+  // all partitions in the same range share one read handler
+  private String generateReadPartitionKey(CreateShuffleReadHandlerRequest request) {
     int[] range = ShuffleStorageUtils.getPartitionRange(
         request.getPartitionId(),
         request.getPartitionNumPerRange(),
         request.getPartitionNum());
-    String partitionKey = RssUtils.generatePartitionKey(
+    return RssUtils.generatePartitionKey(
         request.getAppId(),
         request.getShuffleId(),
         range[0]
     );
-    map.computeIfAbsent(partitionKey, key -> newReadHandler(request));
-    return map.get(partitionKey);
   }
 
   protected abstract ServerReadHandler newReadHandler(CreateShuffleReadHandlerRequest request);
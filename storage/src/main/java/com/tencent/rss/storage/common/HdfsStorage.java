@@ -20,16 +20,22 @@ package com.tencent.rss.storage.common;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Map;
 
+import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.tencent.rss.common.util.RssUtils;
 import com.tencent.rss.storage.handler.api.ServerReadHandler;
 import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
+import com.tencent.rss.storage.handler.impl.CoalescedHdfsShuffleWriteHandler;
+import com.tencent.rss.storage.handler.impl.HdfsFileWriterCache;
 import com.tencent.rss.storage.handler.impl.HdfsShuffleWriteHandler;
 import com.tencent.rss.storage.request.CreateShuffleReadHandlerRequest;
 import com.tencent.rss.storage.request.CreateShuffleWriteHandlerRequest;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
 
 public class HdfsStorage extends AbstractStorage {
 
@@ -38,10 +44,38 @@ public class HdfsStorage extends AbstractStorage {
   private final String storagePath;
   private final Configuration conf;
   private String storageHost;
+  // the partition ranges of a shuffle share the coalesced files, appId -> key of file -> handler
+  private final boolean coalesced;
+  private final int coalescedFileNum;
+  private final Map<String, Map<String, ShuffleWriteHandler>> coalescedWriteHandlers = Maps.newConcurrentMap();
+  // null if the files are opened and closed for every write
+  private final HdfsFileWriterCache writerCache;
 
   public HdfsStorage(String path, Configuration conf) {
+    this(path, conf, false, 1);
+  }
+
+  public HdfsStorage(String path, Configuration conf, boolean coalesced, int coalescedFileNum) {
+    this(path, conf, coalesced, coalescedFileNum, 0, 0L, false);
+  }
+
+  public HdfsStorage(
+      String path,
+      Configuration conf,
+      boolean coalesced,
+      int coalescedFileNum,
+      int writerCacheMaxNum,
+      long writerCacheIdleTimeoutMs,
+      boolean hsync) {
     this.storagePath = path;
     this.conf = conf;
+    this.coalesced = coalesced;
+    this.coalescedFileNum = Math.max(1, coalescedFileNum);
+    if (writerCacheMaxNum > 0) {
+      this.writerCache = new HdfsFileWriterCache(writerCacheMaxNum, writerCacheIdleTimeoutMs, hsync, conf);
+    } else {
+      this.writerCache = null;
+    }
     try {
       URI uri = new URI(path);
       storageHost = uri.getHost();
@@ -98,6 +132,9 @@ public class HdfsStorage extends AbstractStorage {
 
   @Override
   ShuffleWriteHandler newWriteHandler(CreateShuffleWriteHandlerRequest request) {
+    if (coalesced) {
+      return getOrCreateCoalescedWriteHandler(request);
+    }
     try {
       return new HdfsShuffleWriteHandler(
           request.getAppId(),
@@ -106,13 +143,43 @@ public class HdfsStorage extends AbstractStorage {
           request.getEndPartition(),
           storagePath,
           request.getFileNamePrefix(),
-          conf
+          conf,
+          writerCache
       );
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
+  private ShuffleWriteHandler getOrCreateCoalescedWriteHandler(CreateShuffleWriteHandlerRequest request) {
+    int fileIndex = request.getStartPartition() % coalescedFileNum;
+    String key = RssUtils.generatePartitionKey(request.getAppId(), request.getShuffleId(), fileIndex);
+    return coalescedWriteHandlers.computeIfAbsent(request.getAppId(), appId -> Maps.newConcurrentMap())
+        .computeIfAbsent(key, k -> {
+          try {
+            return new CoalescedHdfsShuffleWriteHandler(
+                request.getAppId(),
+                request.getShuffleId(),
+                storagePath,
+                request.getFileNamePrefix() + "-" + fileIndex,
+                conf,
+                writerCache);
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        });
+  }
+
+  @Override
+  public void removeHandlers(String appId) {
+    super.removeHandlers(appId);
+    coalescedWriteHandlers.remove(appId);
+    // the files of the app will be deleted, their streams must be closed
+    if (writerCache != null) {
+      writerCache.removeWriters(ShuffleStorageUtils.getFullShuffleDataFolder(storagePath, appId));
+    }
+  }
+
   @Override
   protected ServerReadHandler newReadHandler(CreateShuffleReadHandlerRequest request) {
     throw new RuntimeException("Hdfs storage don't support to read from sever");
@@ -126,4 +193,11 @@ public class HdfsStorage extends AbstractStorage {
   public Configuration getConf() {
     return conf;
   }
+
+  // close the cached streams when the storage isn't used any more
+  public void close() {
+    if (writerCache != null) {
+      writerCache.close();
+    }
+  }
 }
@@ -21,11 +21,13 @@ package com.tencent.rss.storage.common;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
 import org.apache.commons.io.FileUtils;
 import org.roaringbitmap.RoaringBitmap;
@@ -35,10 +37,17 @@ import org.slf4j.LoggerFactory;
 import com.tencent.rss.common.util.RssUtils;
 import com.tencent.rss.storage.handler.api.ServerReadHandler;
 import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
+import com.tencent.rss.storage.handler.impl.CoalescedLocalFileServerReadHandler;
+import com.tencent.rss.storage.handler.impl.CoalescedLocalFileWriteHandler;
+import com.tencent.rss.storage.handler.impl.LocalFileChannelCache;
+import com.tencent.rss.storage.handler.impl.LocalFileIndexCache;
 import com.tencent.rss.storage.handler.impl.LocalFileServerReadHandler;
 import com.tencent.rss.storage.handler.impl.LocalFileWriteHandler;
+import com.tencent.rss.storage.handler.impl.LocalFileWriterCache;
 import com.tencent.rss.storage.request.CreateShuffleReadHandlerRequest;
 import com.tencent.rss.storage.request.CreateShuffleWriteHandlerRequest;
+import com.tencent.rss.storage.util.LocalFileReadMode;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
 
 public class LocalStorage extends AbstractStorage {
 
@@ -53,6 +62,16 @@ public class LocalStorage extends AbstractStorage {
   private final double lowWaterMarkOfWrite;
   private final long shuffleExpiredTimeoutMs;
   private final Queue<String> expiredShuffleKeys = Queues.newLinkedBlockingQueue();
+  // null if files are opened and closed for every write
+  private final LocalFileWriterCache writerCache;
+  private final LocalFileReadMode readMode;
+  // null if files are opened for every read request
+  private final LocalFileChannelCache channelCache;
+  // null if index isn't cached, it may be shared by all local storages
+  private final LocalFileIndexCache indexCache;
+  // the partition ranges of a shuffle share the coalesced files, appId -> shuffleKey -> handler
+  private final boolean coalesced;
+  private final Map<String, Map<String, ShuffleWriteHandler>> coalescedWriteHandlers = Maps.newConcurrentMap();
 
   private LocalStorageMeta metaData = new LocalStorageMeta();
   private boolean isSpaceEnough = true;
@@ -67,6 +86,19 @@ public class LocalStorage extends AbstractStorage {
     this.lowWaterMarkOfWrite = builder.lowWaterMarkOfWrite;
     this.capacity = builder.capacity;
     this.shuffleExpiredTimeoutMs = builder.shuffleExpiredTimeoutMs;
+    if (builder.writerCacheMaxNum > 0) {
+      this.writerCache = new LocalFileWriterCache(builder.writerCacheMaxNum, builder.writerCacheIdleTimeoutMs);
+    } else {
+      this.writerCache = null;
+    }
+    this.readMode = builder.readMode;
+    if (readMode != LocalFileReadMode.STREAM) {
+      this.channelCache = new LocalFileChannelCache(builder.channelCacheMaxNum);
+    } else {
+      this.channelCache = null;
+    }
+    this.indexCache = builder.indexCache;
+    this.coalesced = builder.coalesced;
 
     File baseFolder = new File(basePath);
     try {
@@ -148,24 +180,52 @@ public class LocalStorage extends AbstractStorage {
 
   @Override
   ShuffleWriteHandler newWriteHandler(CreateShuffleWriteHandlerRequest request) {
+    if (coalesced) {
+      return coalescedWriteHandlers.computeIfAbsent(request.getAppId(), appId -> Maps.newConcurrentMap())
+          .computeIfAbsent(RssUtils.generateShuffleKey(request.getAppId(), request.getShuffleId()),
+              key -> new CoalescedLocalFileWriteHandler(
+                  request.getAppId(),
+                  request.getShuffleId(),
+                  basePath,
+                  request.getFileNamePrefix(),
+                  writerCache,
+                  indexCache));
+    }
     return new LocalFileWriteHandler(request.getAppId(),
         request.getShuffleId(),
         request.getStartPartition(),
         request.getEndPartition(),
         basePath,
-        request.getFileNamePrefix()
+        request.getFileNamePrefix(),
+        writerCache,
+        indexCache
     );
   }
 
   @Override
   protected ServerReadHandler newReadHandler(CreateShuffleReadHandlerRequest request) {
+    if (coalesced) {
+      return new CoalescedLocalFileServerReadHandler(
+          request.getAppId(),
+          request.getShuffleId(),
+          request.getPartitionId(),
+          request.getPartitionNumPerRange(),
+          request.getPartitionNum(),
+          basePath,
+          readMode,
+          channelCache,
+          indexCache);
+    }
     return new LocalFileServerReadHandler(
         request.getAppId(),
         request.getShuffleId(),
         request.getPartitionId(),
         request.getPartitionNumPerRange(),
         request.getPartitionNum(),
-        basePath);
+        basePath,
+        readMode,
+        channelCache,
+        indexCache);
   }
 
   @Override
@@ -182,6 +242,12 @@ public class LocalStorage extends AbstractStorage {
     return basePath;
   }
 
+  @Override
+  public void removeHandlers(String appId) {
+    super.removeHandlers(appId);
+    coalescedWriteHandlers.remove(appId);
+  }
+
   public void createMetadataIfNotExist(String shuffleKey) {
     metaData.createMetadataIfNotExist(shuffleKey);
   }
@@ -219,6 +285,18 @@ public class LocalStorage extends AbstractStorage {
     metaData.addUploadedShufflePartitionList(shuffleKey, partitions);
   }
 
+  public boolean containsShuffle(String shuffleKey) {
+    return metaData.containsShuffle(shuffleKey);
+  }
+
+  public boolean containsPartition(String shuffleKey, int partition) {
+    return metaData.containsPartition(shuffleKey, partition);
+  }
+
+  public boolean isPartitionUploaded(String shuffleKey, int partition) {
+    return metaData.isPartitionUploaded(shuffleKey, partition);
+  }
+
   public long getDiskSize() {
     return metaData.getDiskSize().longValue();
   }
@@ -251,6 +329,10 @@ public class LocalStorage extends AbstractStorage {
   // add the shuffle key back to the expiredShuffleKeys if get lock but fail to acquire write lock.
   public void removeResources(String shuffleKey) {
     LOG.info("Start to remove resource of {}", shuffleKey);
+    closeFiles(shuffleKey);
+    if (writerCache != null) {
+      writerCache.closeIdleWriters();
+    }
     ReadWriteLock lock = metaData.getLock(shuffleKey);
     if (lock == null) {
       LOG.info("Ignore shuffle {} for its resource was removed already", shuffleKey);
@@ -275,6 +357,25 @@ public class LocalStorage extends AbstractStorage {
     }
   }
 
+  // close the cached files and drop the cached index of shuffle, it must be called before the files are deleted
+  public void closeFiles(String shuffleKey) {
+    String shuffleFolder = ShuffleStorageUtils.getFullShuffleDataFolder(basePath, shuffleKey);
+    if (writerCache != null) {
+      writerCache.removeWriters(shuffleFolder);
+    }
+    if (channelCache != null) {
+      channelCache.removeChannels(shuffleFolder);
+    }
+    if (indexCache != null) {
+      indexCache.invalidateAll(shuffleFolder);
+    }
+  }
+
+  @VisibleForTesting
+  LocalFileWriterCache getWriterCache() {
+    return writerCache;
+  }
+
   public ReadWriteLock getLock(String shuffleKey) {
     return metaData.getLock(shuffleKey);
   }
@@ -287,11 +388,17 @@ public class LocalStorage extends AbstractStorage {
     return metaData.getSortedShuffleKeys(checkRead, num);
   }
 
+  public List<String> getColdShuffleKeys(int num, long readActiveWindowMs) {
+    return metaData.getColdShuffleKeys(num, readActiveWindowMs);
+  }
+
   public Set<String> getShuffleMetaSet() {
     return metaData.getShuffleMetaSet();
   }
 
+  // the partitions are uploaded in force mode before their files are removed
   public void removeShuffle(String shuffleKey, long size, List<Integer> partitions) {
+    metaData.addForceUploadedShufflePartitionList(shuffleKey, partitions);
     metaData.removeShufflePartitionList(shuffleKey, partitions);
     metaData.updateDiskSize(-size);
     metaData.updateShuffleSize(shuffleKey, -size);
@@ -317,6 +424,12 @@ public class LocalStorage extends AbstractStorage {
     private String basePath;
     private long cleanIntervalMs;
     private long shuffleExpiredTimeoutMs;
+    private int writerCacheMaxNum = 0;
+    private long writerCacheIdleTimeoutMs;
+    private LocalFileReadMode readMode = LocalFileReadMode.STREAM;
+    private int channelCacheMaxNum;
+    private LocalFileIndexCache indexCache;
+    private boolean coalesced = false;
 
     private Builder() {
     }
@@ -356,6 +469,36 @@ public class LocalStorage extends AbstractStorage {
       return this;
     }
 
+    public Builder writerCacheMaxNum(int writerCacheMaxNum) {
+      this.writerCacheMaxNum = writerCacheMaxNum;
+      return this;
+    }
+
+    public Builder writerCacheIdleTimeoutMs(long writerCacheIdleTimeoutMs) {
+      this.writerCacheIdleTimeoutMs = writerCacheIdleTimeoutMs;
+      return this;
+    }
+
+    public Builder readMode(LocalFileReadMode readMode) {
+      this.readMode = readMode;
+      return this;
+    }
+
+    public Builder channelCacheMaxNum(int channelCacheMaxNum) {
+      this.channelCacheMaxNum = channelCacheMaxNum;
+      return this;
+    }
+
+    public Builder indexCache(LocalFileIndexCache indexCache) {
+      this.indexCache = indexCache;
+      return this;
+    }
+
+    public Builder coalesced(boolean coalesced) {
+      this.coalesced = coalesced;
+      return this;
+    }
+
     public LocalStorage build() {
       return new LocalStorage(this);
     }
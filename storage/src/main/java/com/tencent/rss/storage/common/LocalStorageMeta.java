@@ -38,7 +38,7 @@ import org.slf4j.LoggerFactory;
  *  And each dimensions contains two aspects, status data and indicator data.
  *  Disk status data contains writable flag, Shuffle status data contains stable, uploading, deleting flag.
  *  Disk indicator data contains size, fileNum, shuffleNum, Shuffle indicator contains size, partition list,
- *  uploaded partition list and uploaded size.
+ *  uploaded partition list, force uploaded partition list and uploaded size.
  */
 public class LocalStorageMeta {
 
@@ -68,6 +68,30 @@ public class LocalStorageMeta {
         .map(Entry::getKey).collect(Collectors.toList());
   }
 
+  // the read shuffles which are not read in readActiveWindowMs, the one not read for the longest time is first
+  public List<String> getColdShuffleKeys(int hint, long readActiveWindowMs) {
+    long now = System.currentTimeMillis();
+    List<Map.Entry<String, ShuffleMeta>> shuffleMetaList = shuffleMetaMap
+        .entrySet()
+        .stream()
+        .filter(e -> e.getValue().isStartRead() && e.getValue().getNotUploadedSize() > 0
+            && now - e.getValue().getShuffleLastReadTs() > readActiveWindowMs)
+        .collect(Collectors.toList());
+
+    shuffleMetaList.sort((Entry<String, ShuffleMeta> o1, Entry<String, ShuffleMeta> o2) -> {
+      int cmp = Long.compare(o1.getValue().getShuffleLastReadTs(), o2.getValue().getShuffleLastReadTs());
+      if (cmp != 0) {
+        return cmp;
+      }
+      return -Long.compare(o1.getValue().getSize().longValue(), o2.getValue().getSize().longValue());
+    });
+
+    return shuffleMetaList
+        .subList(0, Math.min(shuffleMetaList.size(), hint))
+        .stream()
+        .map(Entry::getKey).collect(Collectors.toList());
+  }
+
   public RoaringBitmap getNotUploadedPartitions(String shuffleKey) {
     ShuffleMeta shuffleMeta = getShuffleMeta(shuffleKey);
     if (shuffleMeta == null) {
@@ -127,6 +151,47 @@ public class LocalStorageMeta {
     }
   }
 
+  // the partitions were uploaded and deleted in force mode, they may be written to local disk again
+  public void addForceUploadedShufflePartitionList(String shuffleKey, List<Integer> partitions) {
+    ShuffleMeta shuffleMeta = getShuffleMeta(shuffleKey);
+    if (shuffleMeta != null) {
+      RoaringBitmap bitmap = shuffleMeta.forceUploadedPartitionBitmap;
+      synchronized (bitmap) {
+        partitions.forEach(p -> bitmap.add(p));
+      }
+    }
+  }
+
+  public boolean containsShuffle(String shuffleKey) {
+    return shuffleMetaMap.containsKey(shuffleKey);
+  }
+
+  public boolean containsPartition(String shuffleKey, int partition) {
+    ShuffleMeta shuffleMeta = getShuffleMeta(shuffleKey);
+    if (shuffleMeta == null) {
+      return false;
+    }
+    synchronized (shuffleMeta.partitionBitmap) {
+      return shuffleMeta.partitionBitmap.contains(partition);
+    }
+  }
+
+  // whether the partition is uploaded to remote storage in normal mode or force mode
+  public boolean isPartitionUploaded(String shuffleKey, int partition) {
+    ShuffleMeta shuffleMeta = getShuffleMeta(shuffleKey);
+    if (shuffleMeta == null) {
+      return false;
+    }
+    synchronized (shuffleMeta.uploadedPartitionBitmap) {
+      if (shuffleMeta.uploadedPartitionBitmap.contains(partition)) {
+        return true;
+      }
+    }
+    synchronized (shuffleMeta.forceUploadedPartitionBitmap) {
+      return shuffleMeta.forceUploadedPartitionBitmap.contains(partition);
+    }
+  }
+
   public void prepareStartRead(String shuffleId) {
     ShuffleMeta shuffleMeta = getShuffleMeta(shuffleId);
     if (shuffleMeta != null) {
@@ -218,6 +283,7 @@ public class LocalStorageMeta {
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final AtomicBoolean isStartRead = new AtomicBoolean(false);
     private final RoaringBitmap uploadedPartitionBitmap = RoaringBitmap.bitmapOf();
+    private final RoaringBitmap forceUploadedPartitionBitmap = RoaringBitmap.bitmapOf();
     private AtomicLong lastReadTs = new AtomicLong(-1L);
 
     public AtomicLong getSize() {
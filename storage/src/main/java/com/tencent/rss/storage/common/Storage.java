@@ -46,6 +46,8 @@ public interface Storage {
 
   ServerReadHandler getOrCreateReadHandler(CreateShuffleReadHandlerRequest request);
 
+  boolean containsReadHandler(CreateShuffleReadHandlerRequest request);
+
   CreateShuffleWriteHandlerRequest getCreateWriterHandlerRequest(String appId, int shuffleId, int partition);
 
   void removeHandlers(String appId);
@@ -33,6 +33,7 @@ import com.tencent.rss.storage.handler.impl.HdfsShuffleDeleteHandler;
 import com.tencent.rss.storage.handler.impl.LocalFileDeleteHandler;
 import com.tencent.rss.storage.handler.impl.LocalFileQuorumClientReadHandler;
 import com.tencent.rss.storage.handler.impl.MemoryQuorumClientReadHandler;
+import com.tencent.rss.storage.handler.impl.ShuffleStorageTierPlanner;
 import com.tencent.rss.storage.handler.impl.UploadedHdfsClientReadHandler;
 import com.tencent.rss.storage.request.CreateShuffleDeleteHandlerRequest;
 import com.tencent.rss.storage.request.CreateShuffleReadHandlerRequest;
@@ -65,7 +66,8 @@ public class ShuffleHandlerFactory {
           request.getExpectBlockIds(),
           request.getProcessBlockIds(),
           request.getStorageBasePath(),
-          request.getHadoopConf());
+          request.getHadoopConf(),
+          request.getHdfsReadConcurrency());
     } else if (StorageType.LOCALFILE.name().equals(request.getStorageType())) {
       List<ShuffleServerInfo> shuffleServerInfoList = request.getShuffleServerInfoList();
       List<ShuffleServerClient> shuffleServerClients = shuffleServerInfoList.stream().map(
@@ -74,14 +76,16 @@ public class ShuffleHandlerFactory {
       return new LocalFileQuorumClientReadHandler(request.getAppId(), request.getShuffleId(), request.getPartitionId(),
           request.getIndexReadLimit(), request.getPartitionNumPerRange(), request.getPartitionNum(),
           request.getReadBufferSize(), request.getExpectBlockIds(), request.getProcessBlockIds(),
-          shuffleServerClients);
+          shuffleServerClients, request.isStreamReadEnabled(), request.getExpectTaskIds());
     } else if (StorageType.LOCALFILE_HDFS.name().equals(request.getStorageType())) {
       List<ShuffleServerInfo> shuffleServerInfoList = request.getShuffleServerInfoList();
       List<ShuffleServerClient> shuffleServerClients = shuffleServerInfoList.stream().map(
           ssi -> ShuffleServerClientFactory.getInstance().getShuffleServerClient(
               ClientType.GRPC.name(), ssi)).collect(
           Collectors.toList());
-      return new ComposedClientReadHandler(() -> {
+      ShuffleStorageTierPlanner planner = createStorageTierPlanner(request, shuffleServerClients);
+      return new ComposedClientReadHandler(request.getExpectBlockIds(), request.getProcessBlockIds(),
+          planner::planLocalAndHdfs, () -> {
         return new LocalFileQuorumClientReadHandler(
             request.getAppId(),
             request.getShuffleId(),
@@ -92,7 +96,7 @@ public class ShuffleHandlerFactory {
             request.getReadBufferSize(),
             request.getExpectBlockIds(),
             request.getProcessBlockIds(),
-            shuffleServerClients);
+            shuffleServerClients, request.isStreamReadEnabled(), request.getExpectTaskIds());
       }, () -> {
         return new HdfsClientReadHandler(
             request.getAppId(),
@@ -105,7 +109,8 @@ public class ShuffleHandlerFactory {
             request.getExpectBlockIds(),
             request.getProcessBlockIds(),
             request.getStorageBasePath(),
-            request.getHadoopConf());
+            request.getHadoopConf(),
+            request.getHdfsReadConcurrency());
       });
     } else if (StorageType.LOCALFILE_HDFS_2.name().equals(request.getStorageType())) {
       List<ShuffleServerInfo> shuffleServerInfoList = request.getShuffleServerInfoList();
@@ -113,8 +118,9 @@ public class ShuffleHandlerFactory {
           ssi -> ShuffleServerClientFactory.getInstance().getShuffleServerClient(
               ClientType.GRPC.name(), ssi)).collect(
           Collectors.toList());
-
-      return new ComposedClientReadHandler(() -> {
+      ShuffleStorageTierPlanner planner = createStorageTierPlanner(request, shuffleServerClients);
+      return new ComposedClientReadHandler(request.getExpectBlockIds(), request.getProcessBlockIds(),
+          planner::plan, () -> {
         return new LocalFileQuorumClientReadHandler(
           request.getAppId(),
           request.getShuffleId(),
@@ -125,7 +131,7 @@ public class ShuffleHandlerFactory {
           request.getReadBufferSize(),
           request.getExpectBlockIds(),
           request.getProcessBlockIds(),
-          shuffleServerClients);
+          shuffleServerClients, request.isStreamReadEnabled(), request.getExpectTaskIds());
       }, () -> {
         return new HdfsClientReadHandler(
             request.getAppId(),
@@ -138,7 +144,8 @@ public class ShuffleHandlerFactory {
             request.getExpectBlockIds(),
             request.getProcessBlockIds(),
             request.getStorageBasePath(),
-            request.getHadoopConf());
+            request.getHadoopConf(),
+            request.getHdfsReadConcurrency());
       }, () -> {
         return new UploadedHdfsClientReadHandler(
             request.getAppId(),
@@ -164,12 +171,13 @@ public class ShuffleHandlerFactory {
           request.getShuffleId(),
           request.getPartitionId(),
           request.getReadBufferSize(),
-          shuffleServerClients);
+          shuffleServerClients,
+          request.getExpectTaskIds());
       ClientReadHandler localClientReadHandler = new LocalFileQuorumClientReadHandler(request.getAppId(),
           request.getShuffleId(), request.getPartitionId(), request.getIndexReadLimit(),
           request.getPartitionNumPerRange(), request.getPartitionNum(),
           request.getReadBufferSize(), request.getExpectBlockIds(), request.getProcessBlockIds(),
-          shuffleServerClients);
+          shuffleServerClients, request.isStreamReadEnabled(), request.getExpectTaskIds());
       return new ComposedClientReadHandler(memoryClientReadHandler, localClientReadHandler);
     } else if (StorageType.MEMORY_HDFS.name().equals(request.getStorageType())) {
       List<ShuffleServerInfo> shuffleServerInfoList = request.getShuffleServerInfoList();
@@ -177,13 +185,15 @@ public class ShuffleHandlerFactory {
           ssi -> ShuffleServerClientFactory.getInstance().getShuffleServerClient(
               ClientType.GRPC.name(), ssi)).collect(
           Collectors.toList());
-      return new ComposedClientReadHandler(() -> {
+      return new ComposedClientReadHandler(request.getExpectBlockIds(), request.getProcessBlockIds(),
+          null, () -> {
         return new MemoryQuorumClientReadHandler(
           request.getAppId(),
           request.getShuffleId(),
           request.getPartitionId(),
           request.getReadBufferSize(),
-          shuffleServerClients);
+          shuffleServerClients,
+          request.getExpectTaskIds());
       }, () -> {
         return new HdfsClientReadHandler(
             request.getAppId(),
@@ -196,7 +206,8 @@ public class ShuffleHandlerFactory {
             request.getExpectBlockIds(),
             request.getProcessBlockIds(),
             request.getStorageBasePath(),
-            request.getHadoopConf());
+            request.getHadoopConf(),
+            request.getHdfsReadConcurrency());
       });
     } else if (StorageType.MEMORY_LOCALFILE_HDFS.name().equals(request.getStorageType())) {
       List<ShuffleServerInfo> shuffleServerInfoList = request.getShuffleServerInfoList();
@@ -204,19 +215,25 @@ public class ShuffleHandlerFactory {
           ssi -> ShuffleServerClientFactory.getInstance().getShuffleServerClient(
               ClientType.GRPC.name(), ssi)).collect(
           Collectors.toList());
-      return new ComposedClientReadHandler(() -> {
+      ShuffleStorageTierPlanner planner = createStorageTierPlanner(request, shuffleServerClients);
+      // the data in memory isn't tracked by the planner, it is always read first
+      return new ComposedClientReadHandler(request.getExpectBlockIds(), request.getProcessBlockIds(), () -> {
+        boolean[] tiers = planner.planLocalAndHdfs();
+        return tiers == null ? null : new boolean[] {true, tiers[0], tiers[1]};
+      }, () -> {
         return new MemoryQuorumClientReadHandler(
             request.getAppId(),
             request.getShuffleId(),
             request.getPartitionId(),
             request.getReadBufferSize(),
-            shuffleServerClients);
+            shuffleServerClients,
+            request.getExpectTaskIds());
       }, () -> {
         return new LocalFileQuorumClientReadHandler(request.getAppId(),
             request.getShuffleId(), request.getPartitionId(), request.getIndexReadLimit(),
             request.getPartitionNumPerRange(), request.getPartitionNum(),
             request.getReadBufferSize(), request.getExpectBlockIds(), request.getProcessBlockIds(),
-            shuffleServerClients);
+            shuffleServerClients, request.isStreamReadEnabled(), request.getExpectTaskIds());
       }, () -> {
         return  new HdfsClientReadHandler(
             request.getAppId(),
@@ -229,7 +246,8 @@ public class ShuffleHandlerFactory {
             request.getExpectBlockIds(),
             request.getProcessBlockIds(),
             request.getStorageBasePath(),
-            request.getHadoopConf());
+            request.getHadoopConf(),
+            request.getHdfsReadConcurrency());
       });
     } else {
       throw new UnsupportedOperationException(
@@ -237,6 +255,16 @@ public class ShuffleHandlerFactory {
     }
   }
 
+  private ShuffleStorageTierPlanner createStorageTierPlanner(
+      CreateShuffleReadHandlerRequest request,
+      List<ShuffleServerClient> shuffleServerClients) {
+    return new ShuffleStorageTierPlanner(
+        request.getAppId(),
+        request.getShuffleId(),
+        request.getPartitionId(),
+        shuffleServerClients);
+  }
+
   public ShuffleDeleteHandler createShuffleDeleteHandler(CreateShuffleDeleteHandlerRequest request) {
     if (StorageType.HDFS.name().equals(request.getStorageType())) {
       return new HdfsShuffleDeleteHandler(request.getConf());
@@ -0,0 +1,136 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.common.ShuffleDataSegment;
+import com.tencent.rss.common.ShuffleIndexResult;
+import com.tencent.rss.storage.common.FileBasedShuffleSegment;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
+
+/**
+ * Read the files written by CoalescedHdfsShuffleWriteHandler. Only the headers of the index chunks and the
+ * index of the partition are read, the indexes of other partitions are skipped with the lengths in headers.
+ * The offsets in the index are the positions in the data file, so only the data of the partition is read.
+ */
+public class CoalescedHdfsShuffleReadHandler extends HdfsShuffleReadHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CoalescedHdfsShuffleReadHandler.class);
+
+  private final int partitionId;
+
+  public CoalescedHdfsShuffleReadHandler(
+      String appId,
+      int shuffleId,
+      int partitionId,
+      String filePrefix,
+      int readBufferSize,
+      Roaring64NavigableMap expectBlockIds,
+      Roaring64NavigableMap processBlockIds,
+      Configuration conf,
+      boolean positionalRead) throws IOException {
+    super(appId, shuffleId, partitionId, filePrefix, readBufferSize, expectBlockIds, processBlockIds, conf,
+        positionalRead);
+    this.partitionId = partitionId;
+  }
+
+  @Override
+  protected ShuffleIndexResult readShuffleIndex() {
+    long start = System.currentTimeMillis();
+    try {
+      long fileLen = indexReader.getFileLen();
+      List<byte[]> partitionIndexes = Lists.newArrayList();
+      int partitionIndexLen = 0;
+      int chunkNum = 0;
+      long offset = 0;
+      while (offset + Integer.BYTES <= fileLen) {
+        // the tail of the file may be written partially
+        byte[] partitionNumBytes = indexReader.read(offset, Integer.BYTES);
+        if (partitionNumBytes.length != Integer.BYTES) {
+          break;
+        }
+        int partitionNum = ByteBuffer.wrap(partitionNumBytes).getInt();
+        if (partitionNum <= 0 || offset + ShuffleStorageUtils.getIndexFileHeaderLen(partitionNum) > fileLen) {
+          LOG.warn("Invalid index header at offset {} in {}.index", offset, filePrefix);
+          break;
+        }
+        byte[] headerBytes = indexReader.read(offset, (int) ShuffleStorageUtils.getIndexFileHeaderLen(partitionNum));
+        ShuffleIndexHeader header = ShuffleIndexHeader.extractHeader(ByteBuffer.wrap(headerBytes));
+        if (header == null) {
+          LOG.warn("Fail to read index header at offset {} in {}.index", offset, filePrefix);
+          break;
+        }
+        long indexOffset = offset + header.getHeaderLen();
+        for (ShuffleIndexHeader.Entry entry : header.getIndexes()) {
+          int indexLength = (int) entry.getPartitionIndexLength();
+          if (entry.getPartitionId() == partitionId && indexLength > 0 && indexOffset + indexLength <= fileLen) {
+            byte[] partitionIndex = indexReader.readPositional(indexOffset, indexLength);
+            if (partitionIndex.length == indexLength) {
+              partitionIndexes.add(partitionIndex);
+              partitionIndexLen += indexLength;
+            }
+          }
+          indexOffset += indexLength;
+        }
+        offset = indexOffset;
+        chunkNum++;
+      }
+      ByteBuffer result = ByteBuffer.allocate(partitionIndexLen);
+      partitionIndexes.forEach(result::put);
+      LOG.info("Read index files {}.index with {} chunks for {} ms",
+          filePrefix, chunkNum, System.currentTimeMillis() - start);
+      return new ShuffleIndexResult(result.array());
+    } catch (Exception e) {
+      LOG.info("Fail to read index files {}.index", filePrefix);
+    }
+    return new ShuffleIndexResult();
+  }
+
+  // the blocks of the partition aren't continuous in data file, they are split by the data of other partitions
+  @Override
+  protected List<ShuffleDataSegment> getShuffleDataSegments(ShuffleIndexResult shuffleIndexResult) {
+    List<FileBasedShuffleSegment> segments = Lists.newArrayList();
+    ByteBuffer indexData = ByteBuffer.wrap(shuffleIndexResult.getIndexData());
+    while (indexData.remaining() >= FileBasedShuffleSegment.SEGMENT_SIZE) {
+      long offset = indexData.getLong();
+      int length = indexData.getInt();
+      int uncompressLength = indexData.getInt();
+      long crc = indexData.getLong();
+      long blockId = indexData.getLong();
+      long taskAttemptId = indexData.getLong();
+      segments.add(new FileBasedShuffleSegment(blockId, offset, length, uncompressLength, crc, taskAttemptId));
+    }
+    List<ShuffleDataSegment> shuffleDataSegments = Lists.newArrayList();
+    for (DataFileSegment dataFileSegment : ShuffleStorageUtils.mergeSegments(
+        filePrefix, segments, readBufferSize, ShuffleStorageUtils.getCoalescedSkipThreshold(readBufferSize))) {
+      shuffleDataSegments.add(new ShuffleDataSegment(
+          dataFileSegment.getOffset(), dataFileSegment.getLength(), dataFileSegment.getBufferSegments()));
+    }
+    return shuffleDataSegments;
+  }
+}
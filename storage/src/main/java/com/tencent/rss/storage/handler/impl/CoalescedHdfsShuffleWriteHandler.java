@@ -0,0 +1,197 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.storage.common.FileBasedShuffleSegment;
+import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
+
+/**
+ * Write all partitions of a shuffle to the same data and index files of the shuffle server.
+ * Every write appends the blocks grouped by partition to the data file, and appends a chunk to the index file,
+ * which is a ShuffleIndexHeader with the index length and data length of every partition, followed by the index
+ * of these partitions in the same order. The offsets in the index are the positions in the whole data file,
+ * so the reader picks the index of its partition from all chunks and reads only the data of its partition.
+ */
+public class CoalescedHdfsShuffleWriteHandler implements ShuffleWriteHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CoalescedHdfsShuffleWriteHandler.class);
+
+  private final Configuration hadoopConf;
+  private final String basePath;
+  private final String fileNamePrefix;
+  private final Lock writeLock = new ReentrantLock();
+  private int failTimes = 0;
+  // keep the files open between writes if it isn't null
+  private final HdfsFileWriterCache writerCache;
+
+  public CoalescedHdfsShuffleWriteHandler(
+      String appId,
+      int shuffleId,
+      String storageBasePath,
+      String fileNamePrefix,
+      Configuration hadoopConf) throws IOException, IllegalStateException {
+    this(appId, shuffleId, storageBasePath, fileNamePrefix, hadoopConf, null);
+  }
+
+  public CoalescedHdfsShuffleWriteHandler(
+      String appId,
+      int shuffleId,
+      String storageBasePath,
+      String fileNamePrefix,
+      Configuration hadoopConf,
+      HdfsFileWriterCache writerCache) throws IOException, IllegalStateException {
+    this.hadoopConf = hadoopConf;
+    this.writerCache = writerCache;
+    this.fileNamePrefix = fileNamePrefix;
+    this.basePath = ShuffleStorageUtils.getFullShuffleDataFolder(storageBasePath,
+        ShuffleStorageUtils.getCoalescedDataPath(appId, shuffleId));
+    // the folder may be created by other Shuffle Server
+    ShuffleStorageUtils.createDirIfNotExist(
+        ShuffleStorageUtils.getFileSystemForPath(new Path(basePath), hadoopConf), basePath);
+  }
+
+  @Override
+  public void write(
+      List<ShufflePartitionedBlock> shuffleBlocks) throws IOException, IllegalStateException {
+    final long start = System.currentTimeMillis();
+    Map<Integer, List<ShufflePartitionedBlock>> partitionToBlocks = Maps.newTreeMap();
+    for (ShufflePartitionedBlock block : shuffleBlocks) {
+      partitionToBlocks.computeIfAbsent(getPartitionId(block.getBlockId()), key -> Lists.newArrayList()).add(block);
+    }
+    writeLock.lock();
+    try {
+      if (writerCache == null) {
+        writeWithNewWriters(partitionToBlocks, shuffleBlocks.size());
+      } else {
+        writeWithCachedWriters(partitionToBlocks, shuffleBlocks.size());
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    LOG.debug(
+        "Write handler write {} blocks of {} partitions cost {} ms for {}",
+        shuffleBlocks.size(),
+        partitionToBlocks.size(),
+        (System.currentTimeMillis() - start),
+        fileNamePrefix);
+  }
+
+  private void writeWithNewWriters(
+      Map<Integer, List<ShufflePartitionedBlock>> partitionToBlocks, int blockNum) throws IOException {
+    HdfsFileWriter dataWriter = null;
+    HdfsFileWriter indexWriter = null;
+    try {
+      // Write to HDFS will be failed with lease problem, and can't write the same file again
+      // change the prefix of file name if write failed before
+      dataWriter = createWriter(ShuffleStorageUtils.generateDataFileName(fileNamePrefix + "_" + failTimes));
+      indexWriter = createWriter(ShuffleStorageUtils.generateIndexFileName(fileNamePrefix + "_" + failTimes));
+      writeBlocks(dataWriter, indexWriter, partitionToBlocks);
+    } catch (Exception e) {
+      LOG.warn("Write failed with " + blockNum + " blocks for " + fileNamePrefix + "_" + failTimes, e);
+      failTimes++;
+      throw new RuntimeException(e);
+    } finally {
+      if (dataWriter != null) {
+        dataWriter.close();
+      }
+      if (indexWriter != null) {
+        indexWriter.close();
+      }
+    }
+  }
+
+  private void writeWithCachedWriters(
+      Map<Integer, List<ShufflePartitionedBlock>> partitionToBlocks, int blockNum) {
+    HdfsFileWriterCache.CachedWriters writers = null;
+    try {
+      writers = writerCache.acquire(basePath, fileNamePrefix + "_" + failTimes);
+      writeBlocks(writers.getDataWriter(), writers.getIndexWriter(), partitionToBlocks);
+      writers.sync();
+    } catch (Exception e) {
+      LOG.warn("Write failed with " + blockNum + " blocks for " + fileNamePrefix + "_" + failTimes, e);
+      // the files may be partially written, write the following data to new files
+      if (writers != null) {
+        writerCache.invalidate(writers);
+      }
+      failTimes++;
+      throw new RuntimeException(e);
+    } finally {
+      if (writers != null) {
+        writers.release();
+      }
+    }
+  }
+
+  private void writeBlocks(
+      HdfsFileWriter dataWriter,
+      HdfsFileWriter indexWriter,
+      Map<Integer, List<ShufflePartitionedBlock>> partitionToBlocks) throws IOException {
+    List<Integer> partitions = Lists.newArrayList();
+    List<Long> indexLengths = Lists.newArrayList();
+    List<Long> dataLengths = Lists.newArrayList();
+    List<FileBasedShuffleSegment> segments = Lists.newArrayList();
+    for (Map.Entry<Integer, List<ShufflePartitionedBlock>> entry : partitionToBlocks.entrySet()) {
+      long partitionStart = dataWriter.nextOffset();
+      for (ShufflePartitionedBlock block : entry.getValue()) {
+        long startOffset = dataWriter.nextOffset();
+        dataWriter.writeData(block.getDataBuffer());
+        segments.add(new FileBasedShuffleSegment(block.getBlockId(), startOffset, block.getLength(),
+            block.getUncompressLength(), block.getCrc(), block.getTaskAttemptId()));
+      }
+      partitions.add(entry.getKey());
+      indexLengths.add((long) entry.getValue().size() * FileBasedShuffleSegment.SEGMENT_SIZE);
+      dataLengths.add(dataWriter.nextOffset() - partitionStart);
+    }
+    // the index is written after the data, so the reader never sees the index of incomplete data
+    indexWriter.writeHeader(partitions, indexLengths, dataLengths);
+    for (FileBasedShuffleSegment segment : segments) {
+      indexWriter.writeIndex(segment);
+    }
+  }
+
+  private int getPartitionId(long blockId) {
+    return (int) ((blockId >> Constants.TASK_ATTEMPT_ID_MAX_LENGTH) & Constants.MAX_PARTITION_ID);
+  }
+
+  private HdfsFileWriter createWriter(String fileName) throws IOException, IllegalStateException {
+    return new HdfsFileWriter(new Path(basePath, fileName), hadoopConf);
+  }
+
+  @VisibleForTesting
+  public void setFailTimes(int failTimes) {
+    this.failTimes = failTimes;
+  }
+}
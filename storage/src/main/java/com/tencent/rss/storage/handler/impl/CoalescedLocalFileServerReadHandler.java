@@ -0,0 +1,139 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.common.ShuffleIndexResult;
+import com.tencent.rss.storage.util.LocalFileReadMode;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
+
+/**
+ * Read the files written by CoalescedLocalFileWriteHandler. Only the headers of the index chunks and the
+ * index of the partition range are read, the indexes of other partitions are skipped with the lengths in headers.
+ * The offsets in the index are the positions in the shared data file, so only the data of the range is read.
+ */
+public class CoalescedLocalFileServerReadHandler extends LocalFileServerReadHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CoalescedLocalFileServerReadHandler.class);
+
+  private final int startPartition;
+  private final int endPartition;
+
+  public CoalescedLocalFileServerReadHandler(
+      String appId,
+      int shuffleId,
+      int partitionId,
+      int partitionNumPerRange,
+      int partitionNum,
+      String path,
+      LocalFileReadMode readMode,
+      LocalFileChannelCache channelCache,
+      LocalFileIndexCache indexCache) {
+    super(appId, shuffleId, partitionId,
+        ShuffleStorageUtils.getFullShuffleDataFolder(path, ShuffleStorageUtils.getCoalescedDataPath(appId, shuffleId)),
+        readMode, channelCache, indexCache);
+    // the handler is shared by all partitions of the range
+    int[] range = ShuffleStorageUtils.getPartitionRange(partitionId, partitionNumPerRange, partitionNum);
+    this.startPartition = range[0];
+    this.endPartition = range[1];
+  }
+
+  @Override
+  protected String getIndexCacheKey() {
+    return getIndexFileName() + "#" + startPartition;
+  }
+
+  @Override
+  protected ShuffleIndexResult readShuffleIndex() {
+    String indexFileName = getIndexFileName();
+    LocalFileChannelCache channelCache = getChannelCache();
+    try {
+      if (channelCache == null) {
+        try (FileChannel channel = FileChannel.open(Paths.get(indexFileName), StandardOpenOption.READ)) {
+          return readRangeIndex(channel);
+        }
+      }
+      LocalFileChannelCache.CachedChannel cachedChannel = channelCache.acquire(indexFileName);
+      try {
+        return readRangeIndex(cachedChannel.getChannel());
+      } finally {
+        cachedChannel.release();
+      }
+    } catch (Exception e) {
+      LOG.error("Fail to read index of partitions [" + startPartition + ", " + endPartition + "] from "
+          + indexFileName, e);
+      return new ShuffleIndexResult();
+    }
+  }
+
+  private ShuffleIndexResult readRangeIndex(FileChannel channel) throws IOException {
+    long start = System.currentTimeMillis();
+    String indexFileName = getIndexFileName();
+    long fileLen = channel.size();
+    List<byte[]> rangeIndexes = Lists.newArrayList();
+    int rangeIndexLen = 0;
+    int chunkNum = 0;
+    long offset = 0;
+    while (offset + Integer.BYTES <= fileLen) {
+      int partitionNum = ByteBuffer.wrap(read(channel, offset, Integer.BYTES)).getInt();
+      if (partitionNum <= 0) {
+        LOG.warn("Invalid index header at offset {} in {}", offset, indexFileName);
+        break;
+      }
+      long headerLen = ShuffleStorageUtils.getIndexFileHeaderLen(partitionNum);
+      if (offset + headerLen > fileLen) {
+        // the tail of the file is being written
+        break;
+      }
+      ShuffleIndexHeader header =
+          ShuffleIndexHeader.extractHeader(ByteBuffer.wrap(read(channel, offset, (int) headerLen)));
+      if (header == null) {
+        LOG.warn("Fail to read index header at offset {} in {}", offset, indexFileName);
+        break;
+      }
+      long indexOffset = offset + headerLen;
+      for (ShuffleIndexHeader.Entry entry : header.getIndexes()) {
+        int indexLength = (int) entry.getPartitionIndexLength();
+        if (entry.getPartitionId() >= startPartition && entry.getPartitionId() <= endPartition
+            && indexLength > 0 && indexOffset + indexLength <= fileLen) {
+          rangeIndexes.add(read(channel, indexOffset, indexLength));
+          rangeIndexLen += indexLength;
+        }
+        indexOffset += indexLength;
+      }
+      offset = indexOffset;
+      chunkNum++;
+    }
+    ByteBuffer result = ByteBuffer.allocate(rangeIndexLen);
+    rangeIndexes.forEach(result::put);
+    LOG.debug("Read index of partitions [{}, {}] from {} with {} chunks for {} ms",
+        startPartition, endPartition, indexFileName, chunkNum, System.currentTimeMillis() - start);
+    return new ShuffleIndexResult(result.array());
+  }
+}
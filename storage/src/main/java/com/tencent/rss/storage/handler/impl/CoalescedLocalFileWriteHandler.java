@@ -0,0 +1,179 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.storage.common.FileBasedShuffleSegment;
+import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
+
+/**
+ * Write all partitions of a shuffle in the local storage to the same data and index files, so the blocks of many
+ * partition ranges are flushed with one gathering write of data and one write of index. Every write appends
+ * the blocks grouped by partition to the data file, and appends a chunk to the index file, which is a
+ * ShuffleIndexHeader with the index length and data length of every partition, followed by the index of these
+ * partitions in the same order. The offsets in the index are the positions in the whole data file.
+ */
+public class CoalescedLocalFileWriteHandler implements ShuffleWriteHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CoalescedLocalFileWriteHandler.class);
+
+  private final String fileNamePrefix;
+  private final String basePath;
+  // files are opened and closed for every write if it is null
+  private final LocalFileWriterCache writerCache;
+  // null if index isn't cached
+  private final LocalFileIndexCache indexCache;
+
+  public CoalescedLocalFileWriteHandler(
+      String appId,
+      int shuffleId,
+      String storageBasePath,
+      String fileNamePrefix,
+      LocalFileWriterCache writerCache,
+      LocalFileIndexCache indexCache) {
+    this.fileNamePrefix = fileNamePrefix;
+    this.writerCache = writerCache;
+    this.indexCache = indexCache;
+    this.basePath = ShuffleStorageUtils.getFullShuffleDataFolder(storageBasePath,
+        ShuffleStorageUtils.getCoalescedDataPath(appId, shuffleId));
+    createBasePath();
+  }
+
+  private void createBasePath() {
+    File baseFolder = new File(basePath);
+    if (!baseFolder.exists()) {
+      try {
+        baseFolder.mkdirs();
+      } catch (Exception e) {
+        if (!baseFolder.exists()) {
+          LOG.error("Can't create shuffle folder:" + basePath, e);
+          throw e;
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized void write(
+      List<ShufflePartitionedBlock> shuffleBlocks) throws IOException, IllegalStateException {
+    // Ignore this write, if the shuffle directory is deleted after its app heartbeat times out.
+    File baseFolder = new File(basePath);
+    if (!baseFolder.exists()) {
+      LOG.warn("{} don't exist, the app or shuffle may be deleted", baseFolder.getAbsolutePath());
+      if (writerCache != null) {
+        writerCache.removeWriters(basePath);
+      }
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    Map<Integer, List<ShufflePartitionedBlock>> partitionToBlocks = Maps.newTreeMap();
+    for (ShufflePartitionedBlock block : shuffleBlocks) {
+      partitionToBlocks.computeIfAbsent(getPartitionId(block.getBlockId()), key -> Lists.newArrayList()).add(block);
+    }
+    try {
+      writeFiles(partitionToBlocks, shuffleBlocks.size());
+    } finally {
+      // the index of all partitions in the file is changed even if the write fails
+      if (indexCache != null) {
+        indexCache.invalidateAll(basePath);
+      }
+    }
+    LOG.debug(
+        "Write handler write {} blocks of {} partitions cost {} ms for {}",
+        shuffleBlocks.size(),
+        partitionToBlocks.size(),
+        (System.currentTimeMillis() - start),
+        basePath);
+  }
+
+  private void writeFiles(
+      Map<Integer, List<ShufflePartitionedBlock>> partitionToBlocks, int blockNum) throws IOException {
+    if (writerCache == null) {
+      try (LocalFileWriter dataWriter = createWriter(ShuffleStorageUtils.generateDataFileName(fileNamePrefix));
+          LocalFileWriter indexWriter = createWriter(ShuffleStorageUtils.generateIndexFileName(fileNamePrefix))) {
+        writeBlocks(dataWriter, indexWriter, partitionToBlocks, blockNum);
+      }
+    } else {
+      LocalFileWriterCache.CachedWriters writers = writerCache.acquire(basePath, fileNamePrefix);
+      boolean success = false;
+      try {
+        writeBlocks(writers.getDataWriter(), writers.getIndexWriter(), partitionToBlocks, blockNum);
+        success = true;
+      } finally {
+        if (!success) {
+          // files may be partially written, the offset will be reset by reopening them
+          writerCache.invalidate(writers);
+        }
+        writers.release();
+      }
+    }
+  }
+
+  private void writeBlocks(
+      LocalFileWriter dataWriter,
+      LocalFileWriter indexWriter,
+      Map<Integer, List<ShufflePartitionedBlock>> partitionToBlocks,
+      int blockNum) throws IOException {
+    ByteBuffer[] dataBuffers = new ByteBuffer[blockNum];
+    List<FileBasedShuffleSegment> segments = Lists.newArrayListWithCapacity(blockNum);
+    List<Integer> partitions = Lists.newArrayList();
+    List<Long> indexLengths = Lists.newArrayList();
+    List<Long> dataLengths = Lists.newArrayList();
+    long startOffset = dataWriter.nextOffset();
+    for (Map.Entry<Integer, List<ShufflePartitionedBlock>> entry : partitionToBlocks.entrySet()) {
+      long partitionStart = startOffset;
+      for (ShufflePartitionedBlock block : entry.getValue()) {
+        ByteBuffer dataBuffer = block.getDataBuffer();
+        dataBuffers[segments.size()] = dataBuffer;
+        segments.add(new FileBasedShuffleSegment(block.getBlockId(), startOffset, block.getLength(),
+            block.getUncompressLength(), block.getCrc(), block.getTaskAttemptId()));
+        startOffset += dataBuffer.remaining();
+      }
+      partitions.add(entry.getKey());
+      indexLengths.add((long) entry.getValue().size() * FileBasedShuffleSegment.SEGMENT_SIZE);
+      dataLengths.add(startOffset - partitionStart);
+    }
+    // write data of all partitions with one call, the index is written after the data is ready,
+    // so the reader never sees the index of incomplete data
+    dataWriter.writeData(dataBuffers);
+    indexWriter.writeIndex(partitions, indexLengths, dataLengths, segments);
+  }
+
+  private int getPartitionId(long blockId) {
+    return (int) ((blockId >> Constants.TASK_ATTEMPT_ID_MAX_LENGTH) & Constants.MAX_PARTITION_ID);
+  }
+
+  private LocalFileWriter createWriter(String fileName) throws IOException {
+    return new LocalFileWriter(new File(basePath, fileName));
+  }
+}
@@ -18,9 +18,12 @@
 
 package com.tencent.rss.storage.handler.impl;
 
+import java.util.Arrays;
 import java.util.concurrent.Callable;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +50,16 @@ public class ComposedClientReadHandler implements ClientReadHandler {
   private static final int FROZEN = 4;
   private int currentHandler = HOT;
   private final int topLevelOfHandler;
+  // the levels which have been read, indexed by level
+  private final boolean[] readLevels = new boolean[FROZEN + 1];
+
+  // null if the handlers are read in sequence until the top level
+  private Roaring64NavigableMap expectBlockIds;
+  private Roaring64NavigableMap processBlockIds;
+  private Callable<boolean[]> levelPlanner;
+  private boolean planned = false;
+  // whether the levels hold data, indexed by level - 1, null if it is unknown
+  private boolean[] levelPlan;
 
   private long hotReadBlockNum = 0L;
   private long warmReadBlockNum = 0L;
@@ -79,6 +92,7 @@ public class ComposedClientReadHandler implements ClientReadHandler {
     }
   }
 
+  @SafeVarargs
   public ComposedClientReadHandler(Callable<ClientReadHandler>... creators) {
     topLevelOfHandler = creators.length;
     if (topLevelOfHandler > 0) {
@@ -95,6 +109,24 @@ public class ComposedClientReadHandler implements ClientReadHandler {
     }
   }
 
+  /**
+   * Read the handlers by plan instead of probing them in sequence. The remaining handlers are skipped
+   * once all expected blocks are processed, and the planner tells which of them hold data of the
+   * partition when the blocks can't be read from the current handler. The skipped handlers are read
+   * at last if some blocks are still missing, because the data may be moved between tiers after planning.
+   */
+  @SafeVarargs
+  public ComposedClientReadHandler(
+      Roaring64NavigableMap expectBlockIds,
+      Roaring64NavigableMap processBlockIds,
+      Callable<boolean[]> levelPlanner,
+      Callable<ClientReadHandler>... creators) {
+    this(creators);
+    this.expectBlockIds = expectBlockIds;
+    this.processBlockIds = processBlockIds;
+    this.levelPlanner = levelPlanner;
+  }
+
   @Override
   public ShuffleDataResult readShuffleData() {
     ShuffleDataResult shuffleDataResult = null;
@@ -133,17 +165,70 @@ public class ComposedClientReadHandler implements ClientReadHandler {
     // when is no data for current handler, and the upmostLevel is not reached,
     // then try next one if there has
     if (shuffleDataResult == null || shuffleDataResult.isEmpty()) {
-      if (currentHandler < topLevelOfHandler) {
-        currentHandler++;
-      } else {
+      readLevels[currentHandler] = true;
+      int nextHandler = getNextHandler();
+      if (nextHandler < 0) {
         return null;
       }
+      currentHandler = nextHandler;
       return readShuffleData();
     }
 
     return shuffleDataResult;
   }
 
+  // the next level to read after the current handler has no more data, -1 if there is nothing to read
+  private int getNextHandler() {
+    if (expectBlockIds == null) {
+      return currentHandler < topLevelOfHandler ? currentHandler + 1 : -1;
+    }
+    if (isAllBlocksProcessed()) {
+      return -1;
+    }
+    boolean[] plan = getLevelPlan();
+    for (int level = currentHandler + 1; level <= topLevelOfHandler; level++) {
+      if (!readLevels[level] && (plan == null || plan[level - 1])) {
+        return level;
+      }
+    }
+    for (int level = HOT; level <= topLevelOfHandler; level++) {
+      if (!readLevels[level]) {
+        LOG.info("Blocks are missing after reading the planned handlers, read the skipped "
+            + getHandlerName(level) + " handler");
+        return level;
+      }
+    }
+    return -1;
+  }
+
+  private boolean isAllBlocksProcessed() {
+    LongIterator it = expectBlockIds.getLongIterator();
+    while (it.hasNext()) {
+      if (!processBlockIds.contains(it.next())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean[] getLevelPlan() {
+    if (!planned) {
+      planned = true;
+      if (levelPlanner != null) {
+        try {
+          levelPlan = levelPlanner.call();
+        } catch (Exception e) {
+          LOG.warn("Failed to plan the handlers to read, read all of them", e);
+        }
+        if (levelPlan != null) {
+          LOG.info("Plan to read handlers " + Arrays.toString(levelPlan) + " after "
+              + getCurrentHandlerName() + " handler");
+        }
+      }
+    }
+    return levelPlan;
+  }
+
   private ClientReadHandler createReadHandlerIfNotExist(Callable<ClientReadHandler> creator) throws Exception {
     if (creator == null) {
       throw new IllegalStateException("creator " + getCurrentHandlerName() + " handler doesn't exist");
@@ -152,8 +237,12 @@ public class ComposedClientReadHandler implements ClientReadHandler {
   }
 
   private String getCurrentHandlerName() {
+    return getHandlerName(currentHandler);
+  }
+
+  private String getHandlerName(int level) {
     String name = "UNKNOWN";
-    switch (currentHandler) {
+    switch (level) {
       case HOT:
         name = "HOT";
         break;
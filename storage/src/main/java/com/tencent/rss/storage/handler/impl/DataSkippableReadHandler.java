@@ -58,6 +58,11 @@ public abstract class DataSkippableReadHandler extends AbstractClientReadHandler
 
   protected abstract ShuffleDataResult readShuffleData(ShuffleDataSegment segment);
 
+  // the blocks in index are continuous in data file by default
+  protected List<ShuffleDataSegment> getShuffleDataSegments(ShuffleIndexResult shuffleIndexResult) {
+    return RssUtils.transIndexDataToSegments(shuffleIndexResult, readBufferSize);
+  }
+
   public ShuffleDataResult readShuffleData() {
     if (shuffleDataSegments.isEmpty()) {
       ShuffleIndexResult shuffleIndexResult = readShuffleIndex();
@@ -65,7 +70,7 @@ public abstract class DataSkippableReadHandler extends AbstractClientReadHandler
         return null;
       }
 
-      shuffleDataSegments = RssUtils.transIndexDataToSegments(shuffleIndexResult, readBufferSize);
+      shuffleDataSegments = getShuffleDataSegments(shuffleIndexResult);
     }
 
     // We should skip unexpected and processed segments when handler is read
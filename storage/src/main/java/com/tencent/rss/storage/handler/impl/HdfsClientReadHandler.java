@@ -18,11 +18,19 @@
 
 package com.tencent.rss.storage.handler.impl;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -33,6 +41,7 @@ import org.slf4j.LoggerFactory;
 
 import com.tencent.rss.common.BufferSegment;
 import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.common.exception.RssException;
 import com.tencent.rss.common.util.Constants;
 import com.tencent.rss.storage.util.ShuffleStorageUtils;
 
@@ -40,6 +49,10 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HdfsClientReadHandler.class);
 
+  // the files are opened and read by the shared threads when readConcurrency > 1
+  private static final ExecutorService READ_EXECUTOR = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hdfs-client-read-%d").build());
+
   protected final int partitionNumPerRange;
   protected final int partitionNum;
   protected final int readBufferSize;
@@ -49,6 +62,14 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
   protected final Configuration hadoopConf;
   protected final List<HdfsShuffleReadHandler> readHandlers = Lists.newArrayList();
   private int readHandlerIndex;
+  // the number of files which are opened and read at the same time
+  protected final int readConcurrency;
+  private final Queue<String> unopenedFilePrefixes = Queues.newArrayDeque();
+  private final Queue<PendingRead> pendingReads = Queues.newArrayDeque();
+  private boolean initialized = false;
+  private boolean closed = false;
+  // whether the files are written by CoalescedHdfsShuffleWriteHandler
+  private boolean coalesced = false;
 
   private long readBlockNum = 0L;
   private long readLength = 0L;
@@ -66,6 +87,23 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
       Roaring64NavigableMap processBlockIds,
       String storageBasePath,
       Configuration hadoopConf) {
+    this(appId, shuffleId, partitionId, indexReadLimit, partitionNumPerRange, partitionNum, readBufferSize,
+        expectBlockIds, processBlockIds, storageBasePath, hadoopConf, 1);
+  }
+
+  public HdfsClientReadHandler(
+      String appId,
+      int shuffleId,
+      int partitionId,
+      int indexReadLimit,
+      int partitionNumPerRange,
+      int partitionNum,
+      int readBufferSize,
+      Roaring64NavigableMap expectBlockIds,
+      Roaring64NavigableMap processBlockIds,
+      String storageBasePath,
+      Configuration hadoopConf,
+      int readConcurrency) {
     this.appId = appId;
     this.shuffleId = shuffleId;
     this.partitionId = partitionId;
@@ -77,6 +115,7 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
     this.storageBasePath = storageBasePath;
     this.hadoopConf = hadoopConf;
     this.readHandlerIndex = 0;
+    this.readConcurrency = Math.max(1, readConcurrency);
   }
 
   protected void init(String fullShufflePath) {
@@ -95,21 +134,33 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
       // get all index files
       indexFiles = fs.listStatus(baseFolder,
           file -> file.getName().endsWith(Constants.SHUFFLE_INDEX_FILE_SUFFIX));
+    } catch (FileNotFoundException e) {
+      LOG.info(baseFolder + " doesn't exist");
+      return;
     } catch (Exception e) {
       LOG.error(failedGetIndexFileMsg, e);
       return;
     }
 
     if (indexFiles != null && indexFiles.length != 0) {
+      if (readConcurrency > 1) {
+        // the files will be opened when they are read
+        List<String> filePrefixes = Lists.newArrayList();
+        for (FileStatus status : indexFiles) {
+          filePrefixes.add(getFileNamePrefix(status.getPath().toUri().toString()));
+        }
+        filePrefixes.sort(Comparator.naturalOrder());
+        unopenedFilePrefixes.addAll(filePrefixes);
+        LOG.info("Find " + filePrefixes.size() + " index files for shuffleId[" + shuffleId + "], partitionId["
+            + partitionId + "] in " + baseFolder);
+        return;
+      }
       for (FileStatus status : indexFiles) {
         LOG.info("Find index file for shuffleId[" + shuffleId + "], partitionId["
             + partitionId + "] " + status.getPath());
         String filePrefix = getFileNamePrefix(status.getPath().toUri().toString());
         try {
-          HdfsShuffleReadHandler handler = new HdfsShuffleReadHandler(
-              appId, shuffleId, partitionId, filePrefix,
-              readBufferSize, expectBlockIds, processBlockIds, hadoopConf);
-          readHandlers.add(handler);
+          readHandlers.add(createReadHandler(filePrefix, processBlockIds, false));
         } catch (Exception e) {
           LOG.warn("Can't create ShuffleReaderHandler for " + filePrefix, e);
         }
@@ -120,12 +171,12 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
 
   @Override
   public ShuffleDataResult readShuffleData() {
+    if (readConcurrency > 1) {
+      return readShuffleDataConcurrently();
+    }
     // init lazily like LocalFileClientRead
     if (readHandlers.isEmpty()) {
-      String fullShufflePath = ShuffleStorageUtils.getFullShuffleDataFolder(storageBasePath,
-        ShuffleStorageUtils.getShuffleDataPathWithRange(appId,
-          shuffleId, partitionId, partitionNumPerRange, partitionNum));
-      init(fullShufflePath);
+      initReadHandlers();
     }
 
     if (readHandlerIndex >= readHandlers.size()) {
@@ -147,6 +198,99 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
     return shuffleDataResult;
   }
 
+  /**
+   * Every file has one read in flight, and at most readConcurrency files are opened at the same time.
+   * The data is read with positioned reads in the shared threads, the results of the files are returned
+   * in turn. The processed blocks are updated by the caller, so every file skips the blocks which have been
+   * processed when it is opened, and the duplicated blocks in different files are dropped by the caller.
+   */
+  private ShuffleDataResult readShuffleDataConcurrently() {
+    if (!initialized) {
+      initialized = true;
+      initReadHandlers();
+    }
+    while (true) {
+      while (pendingReads.size() < readConcurrency && !unopenedFilePrefixes.isEmpty()) {
+        pendingReads.add(submitRead(new PendingRead(unopenedFilePrefixes.poll(), copyProcessBlockIds())));
+      }
+      PendingRead read = pendingReads.poll();
+      if (read == null) {
+        return new ShuffleDataResult();
+      }
+      ShuffleDataResult result = read.getResult();
+      if (result != null) {
+        // read the next segment of the file in background
+        pendingReads.add(submitRead(read));
+        return result;
+      }
+      // the file is finished, open the next one
+      closeReadHandler(read.handler);
+    }
+  }
+
+  private PendingRead submitRead(PendingRead read) {
+    read.future = READ_EXECUTOR.submit(() -> {
+      if (read.handler == null) {
+        try {
+          HdfsShuffleReadHandler handler = createReadHandler(read.filePrefix, read.processBlockIds, true);
+          synchronized (this) {
+            if (closed) {
+              handler.close();
+              return null;
+            }
+            readHandlers.add(handler);
+          }
+          read.handler = handler;
+        } catch (Exception e) {
+          LOG.warn("Can't create ShuffleReaderHandler for " + read.filePrefix, e);
+          return null;
+        }
+      }
+      return read.handler.readShuffleData();
+    });
+    return read;
+  }
+
+  protected void initReadHandlers() {
+    coalesced = false;
+    init(getFullShufflePath());
+    if (readHandlers.isEmpty() && unopenedFilePrefixes.isEmpty()) {
+      // all partitions of a shuffle server are in the same files if the coalesced layout is used
+      coalesced = true;
+      init(ShuffleStorageUtils.getFullShuffleDataFolder(storageBasePath,
+          ShuffleStorageUtils.getCoalescedDataPath(appId, shuffleId)));
+    }
+  }
+
+  private HdfsShuffleReadHandler createReadHandler(
+      String filePrefix, Roaring64NavigableMap processBlockIds, boolean positionalRead) throws IOException {
+    if (coalesced) {
+      return new CoalescedHdfsShuffleReadHandler(appId, shuffleId, partitionId, filePrefix,
+          readBufferSize, expectBlockIds, processBlockIds, hadoopConf, positionalRead);
+    }
+    return new HdfsShuffleReadHandler(appId, shuffleId, partitionId, filePrefix,
+        readBufferSize, expectBlockIds, processBlockIds, hadoopConf, positionalRead);
+  }
+
+  private synchronized void closeReadHandler(HdfsShuffleReadHandler handler) {
+    if (handler != null && readHandlers.remove(handler)) {
+      handler.close();
+    }
+  }
+
+  // the handler reads a copy of processed blocks in other thread, because they are updated by the caller
+  private Roaring64NavigableMap copyProcessBlockIds() {
+    Roaring64NavigableMap copy = Roaring64NavigableMap.bitmapOf();
+    copy.or(processBlockIds);
+    return copy;
+  }
+
+  protected String getFullShufflePath() {
+    return ShuffleStorageUtils.getFullShuffleDataFolder(storageBasePath,
+        ShuffleStorageUtils.getShuffleDataPathWithRange(appId,
+            shuffleId, partitionId, partitionNumPerRange, partitionNum));
+  }
+
   protected String getFileNamePrefix(String fileName) {
     int point = fileName.lastIndexOf(".");
     return fileName.substring(0, point);
@@ -154,6 +298,10 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
 
   @Override
   public synchronized void close() {
+    closed = true;
+    for (PendingRead read : pendingReads) {
+      read.future.cancel(false);
+    }
     for (HdfsShuffleReadHandler handler : readHandlers) {
       handler.close();
     }
@@ -182,4 +330,29 @@ public class HdfsClientReadHandler extends AbstractClientReadHandler {
     LOG.info("Client read " + readBlockNum + " blocks,"
         + " bytes:" +  readLength + "  uncompressed bytes:" + readUncompressLength);
   }
+
+  private static class PendingRead {
+
+    private final String filePrefix;
+    private final Roaring64NavigableMap processBlockIds;
+    // it is created by the first read, and is only used by one read at the same time
+    private volatile HdfsShuffleReadHandler handler;
+    private Future<ShuffleDataResult> future;
+
+    PendingRead(String filePrefix, Roaring64NavigableMap processBlockIds) {
+      this.filePrefix = filePrefix;
+      this.processBlockIds = processBlockIds;
+    }
+
+    ShuffleDataResult getResult() {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RssException("Interrupted when reading " + filePrefix);
+      } catch (ExecutionException e) {
+        throw new RssException("Fail to read " + filePrefix + " due to " + e.getCause().getMessage());
+      }
+    }
+  }
 }
@@ -37,6 +37,7 @@ public class HdfsFileReader implements FileReader, Closeable {
   private static final Logger LOG = LoggerFactory.getLogger(HdfsFileReader.class);
   private Path path;
   private Configuration hadoopConf;
+  private FileSystem fileSystem;
   private FSDataInputStream fsDataInputStream;
 
   public HdfsFileReader(Path path, Configuration hadoopConf) throws IOException, IllegalStateException {
@@ -46,7 +47,7 @@ public class HdfsFileReader implements FileReader, Closeable {
   }
 
   private void createStream() throws IOException, IllegalStateException {
-    FileSystem fileSystem = ShuffleStorageUtils.getFileSystemForPath(path, hadoopConf);
+    fileSystem = ShuffleStorageUtils.getFileSystemForPath(path, hadoopConf);
 
     if (!fileSystem.isFile(path)) {
       String msg = path + " don't exist or is not a file.";
@@ -70,6 +71,19 @@ public class HdfsFileReader implements FileReader, Closeable {
     return new byte[0];
   }
 
+  // positioned read doesn't change the offset of the stream, so the segments can be read concurrently
+  public byte[] readPositional(long offset, int length) {
+    try {
+      byte[] buf = new byte[length];
+      fsDataInputStream.readFully(offset, buf);
+      return buf;
+    } catch (Exception e) {
+      LOG.warn("Can't read data for path:" + path + " with offset["
+          + offset + "], length[" + length + "]", e);
+    }
+    return new byte[0];
+  }
+
   public byte[] read() {
     try {
       return IOUtils.toByteArray(fsDataInputStream);
@@ -79,6 +93,10 @@ public class HdfsFileReader implements FileReader, Closeable {
     }
   }
 
+  public long getFileLen() throws IOException {
+    return fileSystem.getFileStatus(path).getLen();
+  }
+
   public long getOffset() throws IOException {
     return fsDataInputStream.getPos();
   }
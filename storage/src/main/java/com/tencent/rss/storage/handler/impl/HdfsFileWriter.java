@@ -39,6 +39,7 @@ import com.tencent.rss.storage.util.ShuffleStorageUtils;
 public class HdfsFileWriter implements Closeable {
 
   private static final Logger LOG = LoggerFactory.getLogger(HdfsFileWriter.class);
+  private static final int COPY_CHUNK_SIZE = 64 * 1024;
 
   private Path path;
   private Configuration hadoopConf;
@@ -85,9 +86,13 @@ public class HdfsFileWriter implements Closeable {
       fsDataOutputStream.write(
           byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), byteBuffer.remaining());
     } else {
-      byte[] byteArray = new byte[byteBuffer.remaining()];
-      byteBuffer.get(byteArray);
-      fsDataOutputStream.write(byteArray);
+      // copy with small chunk to avoid allocating the whole data in heap, eg, off-heap block
+      byte[] chunk = new byte[Math.min(byteBuffer.remaining(), COPY_CHUNK_SIZE)];
+      while (byteBuffer.hasRemaining()) {
+        int length = Math.min(byteBuffer.remaining(), chunk.length);
+        byteBuffer.get(chunk, 0, length);
+        fsDataOutputStream.write(chunk, 0, length);
+      }
     }
     nextOffset = fsDataOutputStream.getPos();
   }
@@ -105,6 +110,7 @@ public class HdfsFileWriter implements Closeable {
   public void writeHeader(List<Integer> partitionList,
       List<Long> indexFileSizeList,
       List<Long> dataFileSizeList) throws IOException {
+    long start = fsDataOutputStream.getPos();
     ByteBuffer headerContentBuf = ByteBuffer.allocate(
         (int)ShuffleStorageUtils.getIndexFileHeaderLen(partitionList.size()) - ShuffleStorageUtils.getHeaderCrcLen());
     fsDataOutputStream.writeInt(partitionList.size());
@@ -120,7 +126,7 @@ public class HdfsFileWriter implements Closeable {
     headerContentBuf.flip();
     fsDataOutputStream.writeLong(ChecksumUtils.getCrc32(headerContentBuf));
     long len = ShuffleStorageUtils.getIndexFileHeaderLen(partitionList.size());
-    if (fsDataOutputStream.getPos() != (long) len) {
+    if (fsDataOutputStream.getPos() - start != len) {
       throw new IOException("Fail to write index header");
     }
   }
@@ -135,6 +141,15 @@ public class HdfsFileWriter implements Closeable {
     }
   }
 
+  // hflush makes the data visible to new readers, hsync also persists it to the disks of DataNodes
+  public void sync(boolean hsync) throws IOException {
+    if (hsync) {
+      fsDataOutputStream.hsync();
+    } else {
+      fsDataOutputStream.hflush();
+    }
+  }
+
   @Override
   public synchronized void close() throws IOException {
     if (fsDataOutputStream != null) {
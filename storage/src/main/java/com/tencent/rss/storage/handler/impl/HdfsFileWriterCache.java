@@ -0,0 +1,268 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
+
+/**
+ * Keep the data and index streams of hdfs files open for the life of the shuffle, so flush doesn't
+ * append or create the files with the NameNode every time. The written data is made visible to readers
+ * with hflush, or hsync if it is required, at the end of every flush. The number of cached writers is
+ * limited with LRU, and the idle writers are closed periodically or when shuffle resources are removed.
+ * The files of removed folders can't be acquired again, so a late flush doesn't reopen them.
+ */
+public class HdfsFileWriterCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HdfsFileWriterCache.class);
+  private static final String PATH_SEPARATOR = "/";
+  private static final ScheduledExecutorService CLEANER = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hdfs-writer-cache-cleaner-%d").build());
+  // the flush events of an app may be processed a while after its resources are removed
+  private static final long REMOVED_FOLDER_EXPIRE_MS = 10 * 60 * 1000L;
+
+  private final int maxNum;
+  private final long idleTimeoutMs;
+  private final boolean hsync;
+  private final Configuration hadoopConf;
+  // the eldest accessed writers is the first one, guarded by this
+  private final LinkedHashMap<String, CachedWriters> writers = new LinkedHashMap<>(16, 0.75f, true);
+  // prefix of removed folder -> the time it is removed, guarded by this
+  private final Map<String, Long> removedFolders = Maps.newHashMap();
+  private final ScheduledFuture<?> cleanerFuture;
+  // guarded by this
+  private boolean closed = false;
+
+  public HdfsFileWriterCache(int maxNum, long idleTimeoutMs, boolean hsync, Configuration hadoopConf) {
+    this.maxNum = maxNum;
+    this.idleTimeoutMs = idleTimeoutMs;
+    this.hsync = hsync;
+    this.hadoopConf = hadoopConf;
+    long interval = Math.max(1L, idleTimeoutMs / 2);
+    cleanerFuture = CLEANER.scheduleWithFixedDelay(this::closeIdleWriters, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  // the returned writers is locked by current thread, and it must be released after writing
+  public CachedWriters acquire(String basePath, String fileNamePrefix) throws IOException {
+    String key = String.join(PATH_SEPARATOR, basePath, fileNamePrefix);
+    while (true) {
+      CachedWriters cachedWriters;
+      List<CachedWriters> evictedWriters;
+      synchronized (this) {
+        if (closed) {
+          throw new IllegalStateException("Writer cache is closed, can't write " + key);
+        }
+        if (isRemoved(key)) {
+          throw new IllegalStateException("The folder of " + key + " is removed");
+        }
+        cachedWriters = writers.computeIfAbsent(key, k -> new CachedWriters(k, basePath, fileNamePrefix));
+        cachedWriters.lastAccessTime = System.currentTimeMillis();
+        evictedWriters = evict(cachedWriters.lastAccessTime);
+      }
+      closeWriters(evictedWriters);
+      cachedWriters.lock.lock();
+      if (!cachedWriters.closed) {
+        try {
+          cachedWriters.open();
+        } catch (IOException | IllegalStateException e) {
+          invalidate(cachedWriters);
+          cachedWriters.release();
+          throw e;
+        }
+        return cachedWriters;
+      }
+      // it is evicted by the other thread, try again
+      cachedWriters.release();
+    }
+  }
+
+  // close the writers, eg, the files may be partially written after failure
+  public void invalidate(CachedWriters cachedWriters) {
+    synchronized (this) {
+      writers.remove(cachedWriters.key, cachedWriters);
+    }
+    cachedWriters.close();
+  }
+
+  // close all writers in the folder and reject the following writes to it, it should be called before files
+  // are deleted
+  public void removeWriters(String folder) {
+    String prefix = folder + PATH_SEPARATOR;
+    List<CachedWriters> removedWriters = Lists.newArrayList();
+    synchronized (this) {
+      removedFolders.put(prefix, System.currentTimeMillis());
+      Iterator<Map.Entry<String, CachedWriters>> iterator = writers.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, CachedWriters> entry = iterator.next();
+        if (entry.getKey().startsWith(prefix)) {
+          removedWriters.add(entry.getValue());
+          iterator.remove();
+        }
+      }
+    }
+    closeWriters(removedWriters);
+  }
+
+  public void closeIdleWriters() {
+    List<CachedWriters> evictedWriters;
+    synchronized (this) {
+      long currentTime = System.currentTimeMillis();
+      evictedWriters = evict(currentTime);
+      removedFolders.values().removeIf(removedTime -> currentTime - removedTime > REMOVED_FOLDER_EXPIRE_MS);
+    }
+    closeWriters(evictedWriters);
+  }
+
+  // stop the cleaner and close all writers, the cache can't be used after it
+  public void close() {
+    cleanerFuture.cancel(false);
+    List<CachedWriters> closedWriters;
+    synchronized (this) {
+      closed = true;
+      closedWriters = Lists.newArrayList(writers.values());
+      writers.clear();
+    }
+    closeWriters(closedWriters);
+  }
+
+  @VisibleForTesting
+  public synchronized int getSize() {
+    return writers.size();
+  }
+
+  private boolean isRemoved(String key) {
+    for (String prefix : removedFolders.keySet()) {
+      if (key.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<CachedWriters> evict(long currentTime) {
+    List<CachedWriters> evictedWriters = Lists.newArrayList();
+    Iterator<CachedWriters> iterator = writers.values().iterator();
+    while (iterator.hasNext()) {
+      CachedWriters cachedWriters = iterator.next();
+      if (writers.size() <= maxNum && currentTime - cachedWriters.lastAccessTime <= idleTimeoutMs) {
+        break;
+      }
+      evictedWriters.add(cachedWriters);
+      iterator.remove();
+    }
+    return evictedWriters;
+  }
+
+  private void closeWriters(List<CachedWriters> cachedWritersList) {
+    for (CachedWriters cachedWriters : cachedWritersList) {
+      cachedWriters.close();
+    }
+  }
+
+  public class CachedWriters {
+
+    private final String key;
+    private final String basePath;
+    private final String fileNamePrefix;
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by cache
+    private long lastAccessTime;
+    // guarded by lock
+    private boolean closed = false;
+    private HdfsFileWriter dataWriter;
+    private HdfsFileWriter indexWriter;
+
+    CachedWriters(String key, String basePath, String fileNamePrefix) {
+      this.key = key;
+      this.basePath = basePath;
+      this.fileNamePrefix = fileNamePrefix;
+    }
+
+    private void open() throws IOException {
+      if (dataWriter == null) {
+        dataWriter = new HdfsFileWriter(
+            new Path(basePath, ShuffleStorageUtils.generateDataFileName(fileNamePrefix)), hadoopConf);
+      }
+      if (indexWriter == null) {
+        indexWriter = new HdfsFileWriter(
+            new Path(basePath, ShuffleStorageUtils.generateIndexFileName(fileNamePrefix)), hadoopConf);
+      }
+    }
+
+    private void close() {
+      lock.lock();
+      try {
+        closed = true;
+        closeWriter(dataWriter);
+        closeWriter(indexWriter);
+        dataWriter = null;
+        indexWriter = null;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void closeWriter(HdfsFileWriter writer) {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException e) {
+          LOG.warn("Fail to close writer of " + key, e);
+        }
+      }
+    }
+
+    public HdfsFileWriter getDataWriter() {
+      return dataWriter;
+    }
+
+    public HdfsFileWriter getIndexWriter() {
+      return indexWriter;
+    }
+
+    // make the written data visible to readers, the data is flushed before the index which refers to it
+    public void sync() throws IOException {
+      dataWriter.sync(hsync);
+      indexWriter.sync(hsync);
+    }
+
+    public void release() {
+      lock.unlock();
+    }
+  }
+}
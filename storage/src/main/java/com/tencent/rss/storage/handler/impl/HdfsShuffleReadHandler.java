@@ -42,6 +42,7 @@ public class HdfsShuffleReadHandler extends DataSkippableReadHandler {
   protected final String filePrefix;
   protected final HdfsFileReader indexReader;
   protected final HdfsFileReader dataReader;
+  private final boolean positionalRead;
 
   public HdfsShuffleReadHandler(
       String appId,
@@ -52,8 +53,22 @@ public class HdfsShuffleReadHandler extends DataSkippableReadHandler {
       Roaring64NavigableMap expectBlockIds,
       Roaring64NavigableMap processBlockIds,
       Configuration conf) throws IOException {
+    this(appId, shuffleId, partitionId, filePrefix, readBufferSize, expectBlockIds, processBlockIds, conf, false);
+  }
+
+  public HdfsShuffleReadHandler(
+      String appId,
+      int shuffleId,
+      int partitionId,
+      String filePrefix,
+      int readBufferSize,
+      Roaring64NavigableMap expectBlockIds,
+      Roaring64NavigableMap processBlockIds,
+      Configuration conf,
+      boolean positionalRead) throws IOException {
     super(appId, shuffleId, partitionId, readBufferSize, expectBlockIds, processBlockIds);
     this.filePrefix = filePrefix;
+    this.positionalRead = positionalRead;
     this.indexReader = createHdfsReader(ShuffleStorageUtils.generateIndexFileName(filePrefix), conf);
     this.dataReader = createHdfsReader(ShuffleStorageUtils.generateDataFileName(filePrefix), conf);
   }
@@ -98,7 +113,8 @@ public class HdfsShuffleReadHandler extends DataSkippableReadHandler {
   }
 
   protected byte[] readShuffleData(long offset, int expectedLength) {
-    byte[] data = dataReader.read(offset, expectedLength);
+    byte[] data = positionalRead
+        ? dataReader.readPositional(offset, expectedLength) : dataReader.read(offset, expectedLength);
     if (data.length != expectedLength) {
       LOG.warn("Fail to read expected[{}] data, actual[{}] from file {}.data",
           expectedLength, data.length, filePrefix);
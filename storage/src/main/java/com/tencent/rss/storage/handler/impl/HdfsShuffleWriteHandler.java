@@ -44,6 +44,8 @@ public class HdfsShuffleWriteHandler implements ShuffleWriteHandler {
   private String fileNamePrefix;
   private Lock writeLock = new ReentrantLock();
   private int failTimes = 0;
+  // keep the files open between writes if it isn't null
+  private HdfsFileWriterCache writerCache;
 
   public HdfsShuffleWriteHandler(
       String appId,
@@ -53,7 +55,20 @@ public class HdfsShuffleWriteHandler implements ShuffleWriteHandler {
       String storageBasePath,
       String fileNamePrefix,
       Configuration hadoopConf) throws IOException, IllegalStateException {
+    this(appId, shuffleId, startPartition, endPartition, storageBasePath, fileNamePrefix, hadoopConf, null);
+  }
+
+  public HdfsShuffleWriteHandler(
+      String appId,
+      int shuffleId,
+      int startPartition,
+      int endPartition,
+      String storageBasePath,
+      String fileNamePrefix,
+      Configuration hadoopConf,
+      HdfsFileWriterCache writerCache) throws IOException, IllegalStateException {
     this.hadoopConf = hadoopConf;
+    this.writerCache = writerCache;
     this.fileNamePrefix = fileNamePrefix;
     this.basePath = ShuffleStorageUtils.getFullShuffleDataFolder(storageBasePath,
         ShuffleStorageUtils.getShuffleDataPath(appId, shuffleId, startPartition, endPartition));
@@ -82,43 +97,12 @@ public class HdfsShuffleWriteHandler implements ShuffleWriteHandler {
   public void write(
       List<ShufflePartitionedBlock> shuffleBlocks) throws IOException, IllegalStateException {
     final long start = System.currentTimeMillis();
-    HdfsFileWriter dataWriter = null;
-    HdfsFileWriter indexWriter = null;
     writeLock.lock();
     try {
-      try {
-        final long ss = System.currentTimeMillis();
-        // Write to HDFS will be failed with lease problem, and can't write the same file again
-        // change the prefix of file name if write failed before
-        String dataFileName = ShuffleStorageUtils.generateDataFileName(fileNamePrefix + "_" + failTimes);
-        String indexFileName = ShuffleStorageUtils.generateIndexFileName(fileNamePrefix + "_" + failTimes);
-        dataWriter = createWriter(dataFileName);
-        indexWriter = createWriter(indexFileName);
-        for (ShufflePartitionedBlock block : shuffleBlocks) {
-          long blockId = block.getBlockId();
-          long crc = block.getCrc();
-          long startOffset = dataWriter.nextOffset();
-          dataWriter.writeData(block.getData());
-
-          FileBasedShuffleSegment segment = new FileBasedShuffleSegment(
-              blockId, startOffset, block.getLength(), block.getUncompressLength(), crc, block.getTaskAttemptId());
-          indexWriter.writeIndex(segment);
-        }
-        LOG.debug(
-            "Write handler inside cost {} ms for {}",
-            (System.currentTimeMillis() - ss),
-            fileNamePrefix);
-      } catch (Exception e) {
-        LOG.warn("Write failed with " + shuffleBlocks.size() + " blocks for " + fileNamePrefix + "_" + failTimes, e);
-        failTimes++;
-        throw new RuntimeException(e);
-      } finally {
-        if (dataWriter != null) {
-          dataWriter.close();
-        }
-        if (indexWriter != null) {
-          indexWriter.close();
-        }
+      if (writerCache == null) {
+        writeWithNewWriters(shuffleBlocks);
+      } else {
+        writeWithCachedWriters(shuffleBlocks);
       }
     } finally {
       writeLock.unlock();
@@ -130,6 +114,74 @@ public class HdfsShuffleWriteHandler implements ShuffleWriteHandler {
         fileNamePrefix);
   }
 
+  private void writeWithNewWriters(List<ShufflePartitionedBlock> shuffleBlocks) throws IOException {
+    HdfsFileWriter dataWriter = null;
+    HdfsFileWriter indexWriter = null;
+    try {
+      final long ss = System.currentTimeMillis();
+      // Write to HDFS will be failed with lease problem, and can't write the same file again
+      // change the prefix of file name if write failed before
+      String dataFileName = ShuffleStorageUtils.generateDataFileName(fileNamePrefix + "_" + failTimes);
+      String indexFileName = ShuffleStorageUtils.generateIndexFileName(fileNamePrefix + "_" + failTimes);
+      dataWriter = createWriter(dataFileName);
+      indexWriter = createWriter(indexFileName);
+      writeBlocks(dataWriter, indexWriter, shuffleBlocks);
+      LOG.debug(
+          "Write handler inside cost {} ms for {}",
+          (System.currentTimeMillis() - ss),
+          fileNamePrefix);
+    } catch (Exception e) {
+      LOG.warn("Write failed with " + shuffleBlocks.size() + " blocks for " + fileNamePrefix + "_" + failTimes, e);
+      failTimes++;
+      throw new RuntimeException(e);
+    } finally {
+      if (dataWriter != null) {
+        dataWriter.close();
+      }
+      if (indexWriter != null) {
+        indexWriter.close();
+      }
+    }
+  }
+
+  // the streams are kept open, and the data is visible to readers after sync
+  private void writeWithCachedWriters(List<ShufflePartitionedBlock> shuffleBlocks) {
+    HdfsFileWriterCache.CachedWriters writers = null;
+    try {
+      writers = writerCache.acquire(basePath, fileNamePrefix + "_" + failTimes);
+      writeBlocks(writers.getDataWriter(), writers.getIndexWriter(), shuffleBlocks);
+      writers.sync();
+    } catch (Exception e) {
+      LOG.warn("Write failed with " + shuffleBlocks.size() + " blocks for " + fileNamePrefix + "_" + failTimes, e);
+      // the files may be partially written, write the following data to new files
+      if (writers != null) {
+        writerCache.invalidate(writers);
+      }
+      failTimes++;
+      throw new RuntimeException(e);
+    } finally {
+      if (writers != null) {
+        writers.release();
+      }
+    }
+  }
+
+  private void writeBlocks(
+      HdfsFileWriter dataWriter,
+      HdfsFileWriter indexWriter,
+      List<ShufflePartitionedBlock> shuffleBlocks) throws IOException {
+    for (ShufflePartitionedBlock block : shuffleBlocks) {
+      long blockId = block.getBlockId();
+      long crc = block.getCrc();
+      long startOffset = dataWriter.nextOffset();
+      dataWriter.writeData(block.getDataBuffer());
+
+      FileBasedShuffleSegment segment = new FileBasedShuffleSegment(
+          blockId, startOffset, block.getLength(), block.getUncompressLength(), crc, block.getTaskAttemptId());
+      indexWriter.writeIndex(segment);
+    }
+  }
+
   private HdfsFileWriter createWriter(String fileName) throws IOException, IllegalStateException {
     Path path = new Path(basePath, fileName);
     HdfsFileWriter writer = new HdfsFileWriter(path, hadoopConf);
@@ -0,0 +1,129 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keep the read channels of local shuffle files open, so read requests don't open and close files.
+ * The number of cached channels is limited with LRU. Every channel counts its readers, and it is
+ * closed after it is evicted and all readers release it.
+ */
+public class LocalFileChannelCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LocalFileChannelCache.class);
+  private static final String PATH_SEPARATOR = "/";
+
+  private final int maxNum;
+  // the eldest accessed channel is the first one, guarded by this
+  private final LinkedHashMap<String, CachedChannel> channels = new LinkedHashMap<>(16, 0.75f, true);
+
+  public LocalFileChannelCache(int maxNum) {
+    this.maxNum = maxNum;
+  }
+
+  // the returned channel must be released after reading
+  public CachedChannel acquire(String path) throws IOException {
+    CachedChannel cachedChannel;
+    List<CachedChannel> evictedChannels = Lists.newArrayList();
+    synchronized (this) {
+      cachedChannel = channels.get(path);
+      if (cachedChannel == null) {
+        cachedChannel = new CachedChannel(path, FileChannel.open(Paths.get(path), StandardOpenOption.READ));
+        channels.put(path, cachedChannel);
+      }
+      cachedChannel.refCnt.incrementAndGet();
+      Iterator<CachedChannel> iterator = channels.values().iterator();
+      while (channels.size() > maxNum && iterator.hasNext()) {
+        evictedChannels.add(iterator.next());
+        iterator.remove();
+      }
+    }
+    releaseChannels(evictedChannels);
+    return cachedChannel;
+  }
+
+  // close all channels in the folder, it should be called before files are deleted
+  public void removeChannels(String folder) {
+    String prefix = folder + PATH_SEPARATOR;
+    List<CachedChannel> removedChannels = Lists.newArrayList();
+    synchronized (this) {
+      Iterator<Map.Entry<String, CachedChannel>> iterator = channels.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, CachedChannel> entry = iterator.next();
+        if (entry.getKey().startsWith(prefix)) {
+          removedChannels.add(entry.getValue());
+          iterator.remove();
+        }
+      }
+    }
+    releaseChannels(removedChannels);
+  }
+
+  @VisibleForTesting
+  public synchronized int getSize() {
+    return channels.size();
+  }
+
+  private void releaseChannels(List<CachedChannel> cachedChannels) {
+    for (CachedChannel cachedChannel : cachedChannels) {
+      cachedChannel.release();
+    }
+  }
+
+  public static class CachedChannel {
+
+    private final String path;
+    private final FileChannel channel;
+    // 1 for the cache and 1 for every reader
+    private final AtomicInteger refCnt = new AtomicInteger(1);
+
+    CachedChannel(String path, FileChannel channel) {
+      this.path = path;
+      this.channel = channel;
+    }
+
+    public FileChannel getChannel() {
+      return channel;
+    }
+
+    public void release() {
+      if (refCnt.decrementAndGet() == 0) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          LOG.warn("Fail to close channel of " + path, e);
+        }
+      }
+    }
+  }
+}
@@ -18,18 +18,25 @@
 
 package com.tencent.rss.storage.handler.impl;
 
+import java.util.Iterator;
+import java.util.List;
+
 import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.tencent.rss.client.api.ShuffleServerClient;
 import com.tencent.rss.client.request.RssGetShuffleDataRequest;
+import com.tencent.rss.client.request.RssGetShuffleDataStreamRequest;
 import com.tencent.rss.client.request.RssGetShuffleIndexRequest;
 import com.tencent.rss.client.response.RssGetShuffleDataResponse;
+import com.tencent.rss.client.response.RssGetShuffleDataStreamResponse;
 import com.tencent.rss.common.ShuffleDataResult;
 import com.tencent.rss.common.ShuffleDataSegment;
 import com.tencent.rss.common.ShuffleIndexResult;
 import com.tencent.rss.common.exception.RssException;
+import com.tencent.rss.common.util.RssUtils;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
 
 public class LocalFileClientReadHandler extends DataSkippableReadHandler {
   private static final Logger LOG = LoggerFactory.getLogger(
@@ -37,6 +44,11 @@ public class LocalFileClientReadHandler extends DataSkippableReadHandler {
   private final int partitionNumPerRange;
   private final int partitionNum;
   private ShuffleServerClient shuffleServerClient;
+  // read the whole partition with one server stream instead of a request per segment
+  private final boolean streamReadEnabled;
+  private RssGetShuffleDataStreamResponse streamResponse;
+  // the blocks of other tasks and the processed blocks are skipped by server if it isn't null
+  private final Roaring64NavigableMap expectTaskIds;
 
   LocalFileClientReadHandler(
       String appId,
@@ -48,13 +60,46 @@ public class LocalFileClientReadHandler extends DataSkippableReadHandler {
       int readBufferSize,
       Roaring64NavigableMap expectBlockIds,
       Roaring64NavigableMap processBlockIds,
-      ShuffleServerClient shuffleServerClient) {
+      ShuffleServerClient shuffleServerClient,
+      boolean streamReadEnabled,
+      Roaring64NavigableMap expectTaskIds) {
     super(appId, shuffleId, partitionId, readBufferSize, expectBlockIds, processBlockIds);
     this.shuffleServerClient = shuffleServerClient;
+    this.streamReadEnabled = streamReadEnabled;
+    this.expectTaskIds = expectTaskIds;
     this.partitionNumPerRange = partitionNumPerRange;
     this.partitionNum = partitionNum;
   }
 
+  @Override
+  public ShuffleDataResult readShuffleData() {
+    if (!streamReadEnabled) {
+      return super.readShuffleData();
+    }
+    try {
+      if (streamResponse == null) {
+        // the processed blocks are skipped if the stream is opened after another replica failed
+        Roaring64NavigableMap pendingBlockIds = Roaring64NavigableMap.bitmapOf();
+        pendingBlockIds.or(expectBlockIds);
+        pendingBlockIds.andNot(processBlockIds);
+        streamResponse = shuffleServerClient.getShuffleDataStream(new RssGetShuffleDataStreamRequest(
+            appId, shuffleId, partitionId, partitionNumPerRange, partitionNum, readBufferSize, pendingBlockIds));
+      }
+      Iterator<ShuffleDataResult> iterator = streamResponse.getShuffleDataIterator();
+      return iterator.hasNext() ? iterator.next() : null;
+    } catch (Exception e) {
+      throw new RssException("Failed to read shuffle data stream with "
+          + shuffleServerClient.getClientInfo() + " due to " + e.getMessage());
+    }
+  }
+
+  @Override
+  public void close() {
+    if (streamResponse != null) {
+      streamResponse.close();
+    }
+  }
+
   @Override
   public ShuffleIndexResult readShuffleIndex() {
     ShuffleIndexResult shuffleIndexResult = null;
@@ -69,6 +114,14 @@ public class LocalFileClientReadHandler extends DataSkippableReadHandler {
     return shuffleIndexResult;
   }
 
+  // the blocks are split by the data of other partitions if the server writes coalesced files,
+  // the segments are the same as before if the blocks are continuous
+  @Override
+  protected List<ShuffleDataSegment> getShuffleDataSegments(ShuffleIndexResult shuffleIndexResult) {
+    return RssUtils.transIndexDataToSegments(
+        shuffleIndexResult, readBufferSize, ShuffleStorageUtils.getCoalescedSkipThreshold(readBufferSize));
+  }
+
   @Override
   public ShuffleDataResult readShuffleData(ShuffleDataSegment shuffleDataSegment) {
     ShuffleDataResult result = null;
@@ -80,9 +133,15 @@ public class LocalFileClientReadHandler extends DataSkippableReadHandler {
     }
     RssGetShuffleDataRequest request = new RssGetShuffleDataRequest(
         appId, shuffleId, partitionId, partitionNumPerRange, partitionNum,
-        shuffleDataSegment.getOffset(), expectedLength);
+        shuffleDataSegment.getOffset(), expectedLength, expectTaskIds,
+        expectTaskIds == null ? null : processBlockIds,
+        expectTaskIds == null ? null : shuffleDataSegment.getBufferSegments());
     try {
       RssGetShuffleDataResponse response = shuffleServerClient.getShuffleData(request);
+      if (!response.getBufferSegments().isEmpty()) {
+        // some blocks are skipped by server, the data is compacted with the returned segments
+        return new ShuffleDataResult(response.getShuffleData(), response.getBufferSegments());
+      }
       result = new ShuffleDataResult(response.getShuffleData(), shuffleDataSegment.getBufferSegments());
     } catch (Exception e) {
       throw new RssException("Failed to read shuffle data with "
@@ -0,0 +1,88 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Cache the index data of local shuffle files, because every reader of the partition reads the whole index.
+ * The cache is weighted by the size of index data, and the index is invalidated when data is appended
+ * to the partition or the files are deleted.
+ */
+public class LocalFileIndexCache {
+
+  private static final String PATH_SEPARATOR = "/";
+
+  private final Cache<String, byte[]> cache;
+  private final Runnable hitListener;
+  private final Runnable missListener;
+  // increased by every invalidation, the index which is read before invalidation can't be cached, guarded by this
+  private long version = 0;
+
+  public LocalFileIndexCache(long capacity, Runnable hitListener, Runnable missListener) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(capacity)
+        .weigher((String path, byte[] data) -> data.length)
+        .build();
+    this.hitListener = hitListener;
+    this.missListener = missListener;
+  }
+
+  // null if the index isn't cached, the returned data must not be modified
+  public byte[] get(String indexFile) {
+    byte[] data = cache.getIfPresent(indexFile);
+    if (data == null) {
+      missListener.run();
+    } else {
+      hitListener.run();
+    }
+    return data;
+  }
+
+  // it should be called before the index file is read
+  public synchronized long getVersion() {
+    return version;
+  }
+
+  // the data is cached only if the index isn't changed since the version is got
+  public synchronized void put(String indexFile, byte[] data, long expectedVersion) {
+    if (version == expectedVersion) {
+      cache.put(indexFile, data);
+    }
+  }
+
+  public synchronized void invalidate(String indexFile) {
+    version++;
+    cache.invalidate(indexFile);
+  }
+
+  // invalidate the index of all partitions in the folder, eg, the files of shuffle are deleted
+  public synchronized void invalidateAll(String folder) {
+    version++;
+    String prefix = folder + PATH_SEPARATOR;
+    cache.asMap().keySet().removeIf(path -> path.startsWith(prefix));
+  }
+
+  @VisibleForTesting
+  public long getSize() {
+    return cache.size();
+  }
+}
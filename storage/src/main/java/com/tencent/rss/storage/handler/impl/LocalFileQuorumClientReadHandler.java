@@ -51,6 +51,23 @@ public class LocalFileQuorumClientReadHandler extends AbstractClientReadHandler
     Roaring64NavigableMap expectBlockIds,
     Roaring64NavigableMap processBlockIds,
     List<ShuffleServerClient> shuffleServerClients) {
+    this(appId, shuffleId, partitionId, indexReadLimit, partitionNumPerRange, partitionNum, readBufferSize,
+        expectBlockIds, processBlockIds, shuffleServerClients, false, null);
+  }
+
+  public LocalFileQuorumClientReadHandler(
+    String appId,
+    int shuffleId,
+    int partitionId,
+    int indexReadLimit,
+    int partitionNumPerRange,
+    int partitionNum,
+    int readBufferSize,
+    Roaring64NavigableMap expectBlockIds,
+    Roaring64NavigableMap processBlockIds,
+    List<ShuffleServerClient> shuffleServerClients,
+    boolean streamReadEnabled,
+    Roaring64NavigableMap expectTaskIds) {
       this.appId = appId;
       this.shuffleId = shuffleId;
       this.partitionId = partitionId;
@@ -66,7 +83,9 @@ public class LocalFileQuorumClientReadHandler extends AbstractClientReadHandler
           readBufferSize,
           expectBlockIds,
           processBlockIds,
-          client
+          client,
+          streamReadEnabled,
+          expectTaskIds
         ));
       }
   }
@@ -91,6 +110,13 @@ public class LocalFileQuorumClientReadHandler extends AbstractClientReadHandler
     return result;
   }
 
+  @Override
+  public void close() {
+    for (LocalFileClientReadHandler handler : handlers) {
+      handler.close();
+    }
+  }
+
   @Override
   public void updateConsumedBlockInfo(BufferSegment bs) {
     if (bs == null) {
@@ -18,8 +18,12 @@
 
 package com.tencent.rss.storage.handler.impl;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,16 +33,24 @@ import com.tencent.rss.common.ShuffleIndexResult;
 import com.tencent.rss.common.util.Constants;
 import com.tencent.rss.storage.common.FileBasedShuffleSegment;
 import com.tencent.rss.storage.handler.api.ServerReadHandler;
+import com.tencent.rss.storage.util.LocalFileReadMode;
 import com.tencent.rss.storage.util.ShuffleStorageUtils;
 
 public class LocalFileServerReadHandler implements ServerReadHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(LocalFileServerReadHandler.class);
-  private String indexFileName = "";
-  private String dataFileName = "";
+  // empty until the index file is found, the handler is cached before the partition is flushed
+  private volatile String indexFileName = "";
+  private volatile String dataFileName = "";
+  private String fullShufflePath;
   private String appId;
   private int shuffleId;
   private int partitionId;
+  private final LocalFileReadMode readMode;
+  // null if files are opened for every request
+  private final LocalFileChannelCache channelCache;
+  // null if index isn't cached
+  private final LocalFileIndexCache indexCache;
 
   public LocalFileServerReadHandler(
       String appId,
@@ -47,47 +59,62 @@ public class LocalFileServerReadHandler implements ServerReadHandler {
       int partitionNumPerRange,
       int partitionNum,
       String path) {
-    this.appId = appId;
-    this.shuffleId = shuffleId;
-    this.partitionId = partitionId;
-    init(appId, shuffleId, partitionId, partitionNumPerRange, partitionNum, path);
+    this(appId, shuffleId, partitionId, partitionNumPerRange, partitionNum, path,
+        LocalFileReadMode.STREAM, null, null);
   }
 
-  private void init(
+  public LocalFileServerReadHandler(
       String appId,
       int shuffleId,
       int partitionId,
       int partitionNumPerRange,
       int partitionNum,
-      String path) {
-
-    long start = System.currentTimeMillis();
-    prepareFilePath(appId, shuffleId, partitionId, partitionNumPerRange, partitionNum, path);
-    LOG.debug("Prepare for appId[" + appId + "], shuffleId[" + shuffleId + "], partitionId[" + partitionId
-        + "] cost " + (System.currentTimeMillis() - start) + " ms");
+      String path,
+      LocalFileReadMode readMode,
+      LocalFileChannelCache channelCache,
+      LocalFileIndexCache indexCache) {
+    this(appId, shuffleId, partitionId, ShuffleStorageUtils.getFullShuffleDataFolder(path,
+        ShuffleStorageUtils.getShuffleDataPathWithRange(
+            appId, shuffleId, partitionId, partitionNumPerRange, partitionNum)),
+        readMode, channelCache, indexCache);
   }
 
-  private void prepareFilePath(
+  // read the only data and index files in the folder
+  protected LocalFileServerReadHandler(
       String appId,
       int shuffleId,
       int partitionId,
-      int partitionNumPerRange,
-      int partitionNum,
-      String storageBasePath) {
-    String fullShufflePath = ShuffleStorageUtils.getFullShuffleDataFolder(storageBasePath,
-        ShuffleStorageUtils.getShuffleDataPathWithRange(
-            appId, shuffleId, partitionId, partitionNumPerRange, partitionNum));
+      String fullShufflePath,
+      LocalFileReadMode readMode,
+      LocalFileChannelCache channelCache,
+      LocalFileIndexCache indexCache) {
+    this.appId = appId;
+    this.shuffleId = shuffleId;
+    this.partitionId = partitionId;
+    this.fullShufflePath = fullShufflePath;
+    this.readMode = channelCache == null ? LocalFileReadMode.STREAM : readMode;
+    this.channelCache = channelCache;
+    this.indexCache = indexCache;
+    init();
+  }
 
-    File baseFolder = new File(fullShufflePath);
-    if (!baseFolder.exists()) {
+  private void init() {
+    long start = System.currentTimeMillis();
+    if (!new File(fullShufflePath).exists()) {
       // the partition doesn't exist in this base folder, skip
       throw new RuntimeException("Can't find folder " + fullShufflePath);
     }
+    prepareFilePath();
+    LOG.debug("Prepare for appId[" + appId + "], shuffleId[" + shuffleId + "], partitionId[" + partitionId
+        + "] cost " + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  private void prepareFilePath() {
     File[] indexFiles;
-    String failedGetIndexFileMsg = "No index file found in  " + storageBasePath;
+    String failedGetIndexFileMsg = "No index file found in  " + fullShufflePath;
     try {
       // get all index files
-      indexFiles = baseFolder.listFiles(new FilenameFilter() {
+      indexFiles = new File(fullShufflePath).listFiles(new FilenameFilter() {
         @Override
         public boolean accept(File dir, String name) {
           return name.endsWith(Constants.SHUFFLE_INDEX_FILE_SUFFIX);
@@ -102,8 +129,25 @@ public class LocalFileServerReadHandler implements ServerReadHandler {
         throw new RuntimeException("More index file than expected: " + indexFiles.length);
       }
       String fileNamePrefix = getFileNamePrefix(indexFiles[0].getName());
-      indexFileName = fullShufflePath + "/" + ShuffleStorageUtils.generateIndexFileName(fileNamePrefix);
       dataFileName = fullShufflePath + "/" + ShuffleStorageUtils.generateDataFileName(fileNamePrefix);
+      // index file name is assigned at last, non-empty means both paths are resolved
+      indexFileName = fullShufflePath + "/" + ShuffleStorageUtils.generateIndexFileName(fileNamePrefix);
+    }
+  }
+
+  // the paths are resolved only once after they are found, the folder isn't scanned for every request
+  private void resolveFilePathIfNecessary() {
+    if (!indexFileName.isEmpty()) {
+      return;
+    }
+    synchronized (this) {
+      if (indexFileName.isEmpty()) {
+        try {
+          prepareFilePath();
+        } catch (Exception e) {
+          LOG.warn("Can't resolve shuffle files in " + fullShufflePath, e);
+        }
+      }
     }
   }
 
@@ -118,6 +162,10 @@ public class LocalFileServerReadHandler implements ServerReadHandler {
 
   @Override
   public ShuffleDataResult getShuffleData(long offset, int length) {
+    resolveFilePathIfNecessary();
+    if (readMode != LocalFileReadMode.STREAM) {
+      return getShuffleDataFromChannel(offset, length);
+    }
     byte[] readBuffer = new byte[0];
 
     try {
@@ -135,8 +183,78 @@ public class LocalFileServerReadHandler implements ServerReadHandler {
     return new ShuffleDataResult(readBuffer);
   }
 
+  private ShuffleDataResult getShuffleDataFromChannel(long offset, int length) {
+    try {
+      long start = System.currentTimeMillis();
+      LocalFileChannelCache.CachedChannel cachedChannel = channelCache.acquire(dataFileName);
+      byte[] data;
+      try {
+        data = read(cachedChannel.getChannel(), offset, length);
+      } finally {
+        cachedChannel.release();
+      }
+      LOG.debug(
+          "Read File segment: {}, offset[{}], length[{}], cost: {} ms, for appId[{}], shuffleId[{}], partitionId[{}]",
+          dataFileName, offset, length, System.currentTimeMillis() - start, appId, shuffleId, partitionId);
+      return new ShuffleDataResult(data);
+    } catch (Exception e) {
+      LOG.warn("Can't read data for " + dataFileName + ", offset[" + offset + "], length[" + length + "]", e);
+      return new ShuffleDataResult(new byte[0]);
+    }
+  }
+
+  protected byte[] read(FileChannel channel, long offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, offset + buffer.position()) < 0) {
+        throw new EOFException("Expect " + length + " bytes from offset " + offset
+            + ", but only read " + buffer.position() + " bytes");
+      }
+    }
+    return buffer.array();
+  }
+
   @Override
   public ShuffleIndexResult getShuffleIndex() {
+    resolveFilePathIfNecessary();
+    if (indexFileName.isEmpty()) {
+      return new ShuffleIndexResult();
+    }
+    if (indexCache == null) {
+      return readShuffleIndex();
+    }
+    String cacheKey = getIndexCacheKey();
+    byte[] indexData = indexCache.get(cacheKey);
+    if (indexData != null) {
+      return new ShuffleIndexResult(indexData);
+    }
+    long version = indexCache.getVersion();
+    ShuffleIndexResult shuffleIndexResult = readShuffleIndex();
+    if (!shuffleIndexResult.isEmpty()) {
+      indexCache.put(cacheKey, shuffleIndexResult.getIndexData(), version);
+    }
+    return shuffleIndexResult;
+  }
+
+  // the key must start with the folder of index file, so the cache is invalidated with the folder
+  protected String getIndexCacheKey() {
+    return indexFileName;
+  }
+
+  protected String getIndexFileName() {
+    return indexFileName;
+  }
+
+  // null if files are opened for every request
+  protected LocalFileChannelCache getChannelCache() {
+    return channelCache;
+  }
+
+  // it is called after the index file is found
+  protected ShuffleIndexResult readShuffleIndex() {
+    if (readMode != LocalFileReadMode.STREAM) {
+      return getShuffleIndexFromChannel();
+    }
     int indexNum = 0;
     int len = 0;
     try (LocalFileReader reader = createFileReader(indexFileName)) {
@@ -150,4 +268,22 @@ public class LocalFileServerReadHandler implements ServerReadHandler {
       return new ShuffleIndexResult();
     }
   }
+
+  private ShuffleIndexResult getShuffleIndexFromChannel() {
+    int len = 0;
+    try {
+      LocalFileChannelCache.CachedChannel cachedChannel = channelCache.acquire(indexFileName);
+      try {
+        FileChannel channel = cachedChannel.getChannel();
+        // the index may be appended by flush, only read the complete segments
+        len = (int) (channel.size() / FileBasedShuffleSegment.SEGMENT_SIZE) * FileBasedShuffleSegment.SEGMENT_SIZE;
+        return new ShuffleIndexResult(read(channel, 0, len));
+      } finally {
+        cachedChannel.release();
+      }
+    } catch (Exception e) {
+      LOG.error("Fail to read index file {} len {}", indexFileName, len, e);
+      return new ShuffleIndexResult();
+    }
+  }
 }
@@ -20,9 +20,11 @@ package com.tencent.rss.storage.handler.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,6 +39,10 @@ public class LocalFileWriteHandler implements ShuffleWriteHandler {
 
   private String fileNamePrefix;
   private String basePath;
+  // files are opened and closed for every write if it is null
+  private LocalFileWriterCache writerCache;
+  // null if index isn't cached
+  private LocalFileIndexCache indexCache;
 
   public LocalFileWriteHandler(
       String appId,
@@ -45,7 +51,32 @@ public class LocalFileWriteHandler implements ShuffleWriteHandler {
       int endPartition,
       String storageBasePath,
       String fileNamePrefix) {
+    this(appId, shuffleId, startPartition, endPartition, storageBasePath, fileNamePrefix, null);
+  }
+
+  public LocalFileWriteHandler(
+      String appId,
+      int shuffleId,
+      int startPartition,
+      int endPartition,
+      String storageBasePath,
+      String fileNamePrefix,
+      LocalFileWriterCache writerCache) {
+    this(appId, shuffleId, startPartition, endPartition, storageBasePath, fileNamePrefix, writerCache, null);
+  }
+
+  public LocalFileWriteHandler(
+      String appId,
+      int shuffleId,
+      int startPartition,
+      int endPartition,
+      String storageBasePath,
+      String fileNamePrefix,
+      LocalFileWriterCache writerCache,
+      LocalFileIndexCache indexCache) {
     this.fileNamePrefix = fileNamePrefix;
+    this.writerCache = writerCache;
+    this.indexCache = indexCache;
     this.basePath = ShuffleStorageUtils.getFullShuffleDataFolder(storageBasePath,
         ShuffleStorageUtils.getShuffleDataPath(appId, shuffleId, startPartition, endPartition));
     createBasePath();
@@ -95,31 +126,20 @@ public class LocalFileWriteHandler implements ShuffleWriteHandler {
     File baseFolder = new File(basePath);
     if (!baseFolder.exists()) {
       LOG.warn("{} don't exist, the app or shuffle may be deleted", baseFolder.getAbsolutePath());
+      if (writerCache != null) {
+        writerCache.removeWriters(basePath);
+      }
       return;
     }
 
     long accessTime = System.currentTimeMillis();
-    String dataFileName = ShuffleStorageUtils.generateDataFileName(fileNamePrefix);
-    String indexFileName = ShuffleStorageUtils.generateIndexFileName(fileNamePrefix);
-
-    try (LocalFileWriter dataWriter = createWriter(dataFileName);
-        LocalFileWriter indexWriter = createWriter(indexFileName)) {
-
-      long startTime = System.currentTimeMillis();
-      for (ShufflePartitionedBlock block : shuffleBlocks) {
-        long blockId = block.getBlockId();
-        long crc = block.getCrc();
-        long startOffset = dataWriter.nextOffset();
-        dataWriter.writeData(block.getData());
-
-        FileBasedShuffleSegment segment = new FileBasedShuffleSegment(
-            blockId, startOffset, block.getLength(), block.getUncompressLength(), crc, block.getTaskAttemptId());
-        indexWriter.writeIndex(segment);
+    try {
+      writeFiles(shuffleBlocks);
+    } finally {
+      // the index is changed even if the write fails
+      if (indexCache != null) {
+        indexCache.invalidate(basePath + "/" + ShuffleStorageUtils.generateIndexFileName(fileNamePrefix));
       }
-      LOG.debug(
-          "Write handler write {} blocks cost {} ms without file open close",
-          shuffleBlocks.size(),
-          (System.currentTimeMillis() - startTime));
     }
     LOG.debug(
         "Write handler write {} blocks cost {} ms with file open close",
@@ -127,6 +147,54 @@ public class LocalFileWriteHandler implements ShuffleWriteHandler {
         (System.currentTimeMillis() - accessTime));
   }
 
+  private void writeFiles(List<ShufflePartitionedBlock> shuffleBlocks) throws IOException {
+    if (writerCache == null) {
+      String dataFileName = ShuffleStorageUtils.generateDataFileName(fileNamePrefix);
+      String indexFileName = ShuffleStorageUtils.generateIndexFileName(fileNamePrefix);
+      try (LocalFileWriter dataWriter = createWriter(dataFileName);
+          LocalFileWriter indexWriter = createWriter(indexFileName)) {
+        writeBlocks(dataWriter, indexWriter, shuffleBlocks);
+      }
+    } else {
+      LocalFileWriterCache.CachedWriters writers = writerCache.acquire(basePath, fileNamePrefix);
+      boolean success = false;
+      try {
+        writeBlocks(writers.getDataWriter(), writers.getIndexWriter(), shuffleBlocks);
+        success = true;
+      } finally {
+        if (!success) {
+          // files may be partially written, the offset will be reset by reopening them
+          writerCache.invalidate(writers);
+        }
+        writers.release();
+      }
+    }
+  }
+
+  private void writeBlocks(
+      LocalFileWriter dataWriter,
+      LocalFileWriter indexWriter,
+      List<ShufflePartitionedBlock> shuffleBlocks) throws IOException {
+    long startTime = System.currentTimeMillis();
+    ByteBuffer[] dataBuffers = new ByteBuffer[shuffleBlocks.size()];
+    List<FileBasedShuffleSegment> segments = Lists.newArrayListWithCapacity(shuffleBlocks.size());
+    long startOffset = dataWriter.nextOffset();
+    for (ShufflePartitionedBlock block : shuffleBlocks) {
+      ByteBuffer dataBuffer = block.getDataBuffer();
+      dataBuffers[segments.size()] = dataBuffer;
+      segments.add(new FileBasedShuffleSegment(block.getBlockId(), startOffset, block.getLength(),
+          block.getUncompressLength(), block.getCrc(), block.getTaskAttemptId()));
+      startOffset += dataBuffer.remaining();
+    }
+    // write data of all blocks with one call, index is written after data is ready
+    dataWriter.writeData(dataBuffers);
+    indexWriter.writeIndex(segments);
+    LOG.debug(
+        "Write handler write {} blocks cost {} ms without file open close",
+        shuffleBlocks.size(),
+        (System.currentTimeMillis() - startTime));
+  }
+
   private LocalFileWriter createWriter(String fileName) throws IOException, IllegalStateException {
     File file = new File(basePath, fileName);
     return new LocalFileWriter(file);
@@ -23,8 +23,12 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
 
+import com.tencent.rss.common.util.ChecksumUtils;
 import com.tencent.rss.storage.common.FileBasedShuffleSegment;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
 
 public class LocalFileWriter implements Closeable {
 
@@ -46,6 +50,28 @@ public class LocalFileWriter implements Closeable {
     }
   }
 
+  // direct buffer is written by the file channel without copying to heap
+  public void writeData(ByteBuffer data) throws IOException {
+    int length = data.remaining();
+    while (data.hasRemaining()) {
+      fileOutputStream.getChannel().write(data);
+    }
+    nextOffset = nextOffset + length;
+  }
+
+  // gathering write for the data of many blocks
+  public void writeData(ByteBuffer[] data) throws IOException {
+    long length = 0;
+    for (ByteBuffer buffer : data) {
+      length += buffer.remaining();
+    }
+    long written = 0;
+    while (written < length) {
+      written += fileOutputStream.getChannel().write(data);
+    }
+    nextOffset = nextOffset + length;
+  }
+
   public void writeIndex(FileBasedShuffleSegment segment) throws IOException {
     dataOutputStream.writeLong(segment.getOffset());
     dataOutputStream.writeInt(segment.getLength());
@@ -55,6 +81,46 @@ public class LocalFileWriter implements Closeable {
     dataOutputStream.writeLong(segment.getTaskAttemptId());
   }
 
+  // serialize all segments to one buffer, then write them with one call
+  public void writeIndex(List<FileBasedShuffleSegment> segments) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(FileBasedShuffleSegment.SEGMENT_SIZE * segments.size());
+    putSegments(buffer, segments);
+    buffer.flip();
+    writeData(buffer);
+  }
+
+  // write the header with the index length and data length of every partition before the index of them,
+  // the header and the index are written with one call
+  public void writeIndex(
+      List<Integer> partitions,
+      List<Long> indexLengths,
+      List<Long> dataLengths,
+      List<FileBasedShuffleSegment> segments) throws IOException {
+    int headerLen = (int) ShuffleStorageUtils.getIndexFileHeaderLen(partitions.size());
+    ByteBuffer buffer = ByteBuffer.allocate(headerLen + FileBasedShuffleSegment.SEGMENT_SIZE * segments.size());
+    buffer.putInt(partitions.size());
+    for (int i = 0; i < partitions.size(); i++) {
+      buffer.putInt(partitions.get(i));
+      buffer.putLong(indexLengths.get(i));
+      buffer.putLong(dataLengths.get(i));
+    }
+    buffer.putLong(ChecksumUtils.getCrc32(buffer.array(), 0, buffer.position()));
+    putSegments(buffer, segments);
+    buffer.flip();
+    writeData(buffer);
+  }
+
+  private void putSegments(ByteBuffer buffer, List<FileBasedShuffleSegment> segments) {
+    for (FileBasedShuffleSegment segment : segments) {
+      buffer.putLong(segment.getOffset());
+      buffer.putInt(segment.getLength());
+      buffer.putInt(segment.getUncompressLength());
+      buffer.putLong(segment.getCrc());
+      buffer.putLong(segment.getBlockId());
+      buffer.putLong(segment.getTaskAttemptId());
+    }
+  }
+
   public long nextOffset() {
     return nextOffset;
   }
@@ -0,0 +1,207 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
+
+/**
+ * Keep the data and index writers of partition ranges open, so flush only appends data to files
+ * without open and close them. The number of cached writers is limited with LRU, and the idle
+ * writers will be closed when other writers are acquired or shuffle resources are removed.
+ */
+public class LocalFileWriterCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LocalFileWriterCache.class);
+  private static final String PATH_SEPARATOR = "/";
+
+  private final int maxNum;
+  private final long idleTimeoutMs;
+  // the eldest accessed writers is the first one, guarded by this
+  private final LinkedHashMap<String, CachedWriters> writers = new LinkedHashMap<>(16, 0.75f, true);
+
+  public LocalFileWriterCache(int maxNum, long idleTimeoutMs) {
+    this.maxNum = maxNum;
+    this.idleTimeoutMs = idleTimeoutMs;
+  }
+
+  // the returned writers is locked by current thread, and it must be released after writing
+  public CachedWriters acquire(String basePath, String fileNamePrefix) throws IOException {
+    String key = String.join(PATH_SEPARATOR, basePath, fileNamePrefix);
+    while (true) {
+      CachedWriters cachedWriters;
+      List<CachedWriters> evictedWriters;
+      synchronized (this) {
+        cachedWriters = writers.computeIfAbsent(key, k -> new CachedWriters(k, basePath, fileNamePrefix));
+        cachedWriters.lastAccessTime = System.currentTimeMillis();
+        evictedWriters = evict(cachedWriters.lastAccessTime);
+      }
+      closeWriters(evictedWriters);
+      cachedWriters.lock.lock();
+      if (!cachedWriters.closed) {
+        try {
+          cachedWriters.open();
+        } catch (IOException e) {
+          invalidate(cachedWriters);
+          cachedWriters.release();
+          throw e;
+        }
+        return cachedWriters;
+      }
+      // it is evicted by the other thread, try again
+      cachedWriters.release();
+    }
+  }
+
+  // close the writers, eg, the files may be partially written after failure
+  public void invalidate(CachedWriters cachedWriters) {
+    synchronized (this) {
+      writers.remove(cachedWriters.key, cachedWriters);
+    }
+    cachedWriters.close();
+  }
+
+  // close all writers in the folder, it should be called before files are deleted
+  public void removeWriters(String folder) {
+    String prefix = folder + PATH_SEPARATOR;
+    List<CachedWriters> removedWriters = Lists.newArrayList();
+    synchronized (this) {
+      Iterator<Map.Entry<String, CachedWriters>> iterator = writers.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, CachedWriters> entry = iterator.next();
+        if (entry.getKey().startsWith(prefix)) {
+          removedWriters.add(entry.getValue());
+          iterator.remove();
+        }
+      }
+    }
+    closeWriters(removedWriters);
+  }
+
+  public void closeIdleWriters() {
+    List<CachedWriters> evictedWriters;
+    synchronized (this) {
+      evictedWriters = evict(System.currentTimeMillis());
+    }
+    closeWriters(evictedWriters);
+  }
+
+  @VisibleForTesting
+  public synchronized int getSize() {
+    return writers.size();
+  }
+
+  private List<CachedWriters> evict(long currentTime) {
+    List<CachedWriters> evictedWriters = Lists.newArrayList();
+    Iterator<CachedWriters> iterator = writers.values().iterator();
+    while (iterator.hasNext()) {
+      CachedWriters cachedWriters = iterator.next();
+      if (writers.size() <= maxNum && currentTime - cachedWriters.lastAccessTime <= idleTimeoutMs) {
+        break;
+      }
+      evictedWriters.add(cachedWriters);
+      iterator.remove();
+    }
+    return evictedWriters;
+  }
+
+  private void closeWriters(List<CachedWriters> cachedWritersList) {
+    for (CachedWriters cachedWriters : cachedWritersList) {
+      cachedWriters.close();
+    }
+  }
+
+  public static class CachedWriters {
+
+    private final String key;
+    private final String basePath;
+    private final String fileNamePrefix;
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by cache
+    private long lastAccessTime;
+    // guarded by lock
+    private boolean closed = false;
+    private LocalFileWriter dataWriter;
+    private LocalFileWriter indexWriter;
+
+    CachedWriters(String key, String basePath, String fileNamePrefix) {
+      this.key = key;
+      this.basePath = basePath;
+      this.fileNamePrefix = fileNamePrefix;
+    }
+
+    private void open() throws IOException {
+      if (dataWriter == null) {
+        dataWriter = new LocalFileWriter(
+            new File(basePath, ShuffleStorageUtils.generateDataFileName(fileNamePrefix)));
+      }
+      if (indexWriter == null) {
+        indexWriter = new LocalFileWriter(
+            new File(basePath, ShuffleStorageUtils.generateIndexFileName(fileNamePrefix)));
+      }
+    }
+
+    private void close() {
+      lock.lock();
+      try {
+        closed = true;
+        closeWriter(dataWriter);
+        closeWriter(indexWriter);
+        dataWriter = null;
+        indexWriter = null;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private void closeWriter(LocalFileWriter writer) {
+      if (writer != null) {
+        try {
+          writer.close();
+        } catch (IOException e) {
+          LOG.warn("Fail to close writer of " + key, e);
+        }
+      }
+    }
+
+    public LocalFileWriter getDataWriter() {
+      return dataWriter;
+    }
+
+    public LocalFileWriter getIndexWriter() {
+      return indexWriter;
+    }
+
+    public void release() {
+      lock.unlock();
+    }
+  }
+}
@@ -20,6 +20,7 @@ package com.tencent.rss.storage.handler.impl;
 
 import java.util.List;
 
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +37,8 @@ public class MemoryClientReadHandler extends AbstractClientReadHandler {
   private static final Logger LOG = LoggerFactory.getLogger(MemoryQuorumClientReadHandler.class);
   private long lastBlockId = Constants.INVALID_BLOCK_ID;
   private ShuffleServerClient shuffleServerClient;
+  // the blocks of other tasks are skipped by server if it isn't null
+  private Roaring64NavigableMap expectTaskIds;
 
   public MemoryClientReadHandler(
       String appId,
@@ -43,11 +46,22 @@ public class MemoryClientReadHandler extends AbstractClientReadHandler {
       int partitionId,
       int readBufferSize,
       ShuffleServerClient shuffleServerClient) {
+    this(appId, shuffleId, partitionId, readBufferSize, shuffleServerClient, null);
+  }
+
+  public MemoryClientReadHandler(
+      String appId,
+      int shuffleId,
+      int partitionId,
+      int readBufferSize,
+      ShuffleServerClient shuffleServerClient,
+      Roaring64NavigableMap expectTaskIds) {
     this.appId = appId;
     this.shuffleId = shuffleId;
     this.partitionId = partitionId;
     this.readBufferSize = readBufferSize;
     this.shuffleServerClient = shuffleServerClient;
+    this.expectTaskIds = expectTaskIds;
   }
 
   @Override
@@ -55,7 +69,7 @@ public class MemoryClientReadHandler extends AbstractClientReadHandler {
     ShuffleDataResult result = null;
 
     RssGetInMemoryShuffleDataRequest request = new RssGetInMemoryShuffleDataRequest(
-      appId,shuffleId, partitionId, lastBlockId, readBufferSize);
+      appId,shuffleId, partitionId, lastBlockId, readBufferSize, expectTaskIds, null);
 
     try {
       RssGetInMemoryShuffleDataResponse response =
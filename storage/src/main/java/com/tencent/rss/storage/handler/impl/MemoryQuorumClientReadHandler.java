@@ -21,6 +21,7 @@ package com.tencent.rss.storage.handler.impl;
 import java.util.List;
 
 import com.google.common.collect.Lists;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,13 +42,23 @@ public class MemoryQuorumClientReadHandler extends AbstractClientReadHandler {
       int partitionId,
       int readBufferSize,
       List<ShuffleServerClient> shuffleServerClients) {
+    this(appId, shuffleId, partitionId, readBufferSize, shuffleServerClients, null);
+  }
+
+  public MemoryQuorumClientReadHandler(
+      String appId,
+      int shuffleId,
+      int partitionId,
+      int readBufferSize,
+      List<ShuffleServerClient> shuffleServerClients,
+      Roaring64NavigableMap expectTaskIds) {
     this.appId = appId;
     this.shuffleId = shuffleId;
     this.partitionId = partitionId;
     this.readBufferSize = readBufferSize;
     shuffleServerClients.forEach(client ->
       handlers.add(new MemoryClientReadHandler(
-          appId, shuffleId, partitionId, readBufferSize, client))
+          appId, shuffleId, partitionId, readBufferSize, client, expectTaskIds))
     );
   }
 
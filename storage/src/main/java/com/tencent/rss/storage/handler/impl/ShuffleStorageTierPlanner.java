@@ -0,0 +1,89 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tencent.rss.client.api.ShuffleServerClient;
+import com.tencent.rss.client.request.RssGetShuffleStorageTierRequest;
+import com.tencent.rss.client.response.RssGetShuffleStorageTierResponse;
+
+/**
+ * Ask the shuffle servers of a partition which storage tiers hold its data, they are the local disk,
+ * the remote storage written by flush directly and the remote storage written by the uploader.
+ * The answers of all replicas are merged, and the plan is unknown if any replica can't tell,
+ * eg, the server doesn't support it, then every tier has to be read.
+ */
+public class ShuffleStorageTierPlanner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ShuffleStorageTierPlanner.class);
+
+  public static final int LOCAL = 0;
+  public static final int REMOTE = 1;
+  public static final int UPLOADED = 2;
+
+  private final String appId;
+  private final int shuffleId;
+  private final int partitionId;
+  private final List<ShuffleServerClient> shuffleServerClients;
+
+  public ShuffleStorageTierPlanner(
+      String appId,
+      int shuffleId,
+      int partitionId,
+      List<ShuffleServerClient> shuffleServerClients) {
+    this.appId = appId;
+    this.shuffleId = shuffleId;
+    this.partitionId = partitionId;
+    this.shuffleServerClients = shuffleServerClients;
+  }
+
+  // whether the tiers hold data in the order of LOCAL, REMOTE and UPLOADED, null if it is unknown
+  public boolean[] plan() {
+    boolean[] tiers = new boolean[UPLOADED + 1];
+    for (ShuffleServerClient client : shuffleServerClients) {
+      RssGetShuffleStorageTierResponse response;
+      try {
+        response = client.getShuffleStorageTier(
+            new RssGetShuffleStorageTierRequest(appId, shuffleId, partitionId));
+      } catch (Exception e) {
+        LOG.warn("Can't get storage tier of appId[" + appId + "], shuffleId[" + shuffleId
+            + "], partitionId[" + partitionId + "] from " + client.getClientInfo() + ", " + e.getMessage());
+        return null;
+      }
+      if (!response.isKnown()) {
+        return null;
+      }
+      tiers[LOCAL] |= response.isLocal();
+      tiers[REMOTE] |= response.isRemote();
+      tiers[UPLOADED] |= response.isUploaded();
+    }
+    return tiers;
+  }
+
+  // whether the local file and hdfs hold data, the uploaded data is read by the hdfs handler too,
+  // null if it is unknown
+  public boolean[] planLocalAndHdfs() {
+    boolean[] tiers = plan();
+    return tiers == null ? null : new boolean[] {tiers[LOCAL], tiers[REMOTE] || tiers[UPLOADED]};
+  }
+}
@@ -114,4 +114,10 @@ public class UploadedHdfsClientReadHandler extends HdfsClientReadHandler {
     }
     return super.readShuffleData();
   }
+
+  @Override
+  protected void initReadHandlers() {
+    // the uploaded files don't use the coalesced layout
+    init(getFullShufflePath());
+  }
 }
@@ -42,6 +42,10 @@ public class CreateShuffleReadHandlerRequest {
   private List<ShuffleServerInfo> shuffleServerInfoList;
   private Roaring64NavigableMap expectBlockIds;
   private Roaring64NavigableMap processBlockIds;
+  private boolean streamReadEnabled;
+  // the blocks are filtered by server with it if it isn't null
+  private Roaring64NavigableMap expectTaskIds;
+  private int hdfsReadConcurrency = 1;
 
   public CreateShuffleReadHandlerRequest() {
   }
@@ -157,4 +161,28 @@ public class CreateShuffleReadHandlerRequest {
   public Roaring64NavigableMap getProcessBlockIds() {
     return processBlockIds;
   }
+
+  public boolean isStreamReadEnabled() {
+    return streamReadEnabled;
+  }
+
+  public void setStreamReadEnabled(boolean streamReadEnabled) {
+    this.streamReadEnabled = streamReadEnabled;
+  }
+
+  public Roaring64NavigableMap getExpectTaskIds() {
+    return expectTaskIds;
+  }
+
+  public void setExpectTaskIds(Roaring64NavigableMap expectTaskIds) {
+    this.expectTaskIds = expectTaskIds;
+  }
+
+  public int getHdfsReadConcurrency() {
+    return hdfsReadConcurrency;
+  }
+
+  public void setHdfsReadConcurrency(int hdfsReadConcurrency) {
+    this.hdfsReadConcurrency = hdfsReadConcurrency;
+  }
 }
@@ -45,6 +45,7 @@ public class ShuffleStorageUtils {
   static final String HDFS_PATH_SEPARATOR = "/";
   static final String HDFS_DIRNAME_SEPARATOR = "-";
   private static final Logger LOG = LoggerFactory.getLogger(ShuffleStorageUtils.class);
+  private static final long COALESCED_MAX_SKIP_SIZE = 64 * 1024L;
 
   private ShuffleStorageUtils() {
   }
@@ -84,6 +85,13 @@ public class ShuffleStorageUtils {
 
   public static List<DataFileSegment> mergeSegments(
       String path, List<FileBasedShuffleSegment> segments, int readBufferSize) {
+    return mergeSegments(path, segments, readBufferSize, readBufferSize / 2);
+  }
+
+  // the segments are merged if the gap between them isn't larger than skipThreshold, and the data in the gap
+  // is read with them, so at most skipThreshold bytes are read for every gap in the merged segment
+  public static List<DataFileSegment> mergeSegments(
+      String path, List<FileBasedShuffleSegment> segments, int readBufferSize, long skipThreshold) {
     List<DataFileSegment> dataFileSegments = Lists.newArrayList();
     if (segments != null && !segments.isEmpty()) {
       if (segments.size() == 1) {
@@ -97,7 +105,6 @@ public class ShuffleStorageUtils {
         Collections.sort(segments);
         long start = -1;
         long lastestPosition = -1;
-        long skipThreshold = readBufferSize / 2;
         long lastPosition = Long.MAX_VALUE;
         List<BufferSegment> bufferSegments = Lists.newArrayList();
         for (FileBasedShuffleSegment segment : segments) {
@@ -162,6 +169,20 @@ public class ShuffleStorageUtils {
         "combine");
   }
 
+  // the data of other partitions between the blocks of a partition in coalesced files is read if the gap isn't
+  // larger than it, it is much smaller than readBufferSize / 2 because most of the file belongs to other partitions
+  public static long getCoalescedSkipThreshold(int readBufferSize) {
+    return Math.min(readBufferSize / 2, COALESCED_MAX_SKIP_SIZE);
+  }
+
+  public static String getCoalescedDataPath(String appId, int shuffleId) {
+    return String.join(
+        HDFS_PATH_SEPARATOR,
+        appId,
+        String.valueOf(shuffleId),
+        "coalesced");
+  }
+
   public static String getFullShuffleDataFolder(String basePath, String subPath) {
     return String.join(HDFS_PATH_SEPARATOR, basePath, subPath);
   }
@@ -161,4 +161,38 @@ public class LocalStorageTest {
     assertEquals(2, item.getSortedShuffleKeys(false, 2).size());
     assertEquals(2, item.getSortedShuffleKeys(false, 3).size());
   }
+
+  @Test
+  public void coldShuffleKeysTest() throws Exception {
+    LocalStorage item = LocalStorage.newBuilder().basePath(testBaseDir.getAbsolutePath())
+        .cleanupThreshold(50)
+        .highWaterMarkOfWrite(95)
+        .lowWaterMarkOfWrite(80)
+        .capacity(100)
+        .cleanIntervalMs(5000)
+        .build();
+    item.createMetadataIfNotExist("key1");
+    item.createMetadataIfNotExist("key2");
+    item.createMetadataIfNotExist("key3");
+    item.updateWrite("key1", 10, Lists.newArrayList(1));
+    item.updateWrite("key2", 30, Lists.newArrayList(1));
+    item.updateWrite("key3", 20, Lists.newArrayList(1));
+    // the shuffle which isn't read won't be uploaded
+    assertTrue(item.getColdShuffleKeys(3, 0).isEmpty());
+
+    item.prepareStartRead("key2");
+    item.updateShuffleLastReadTs("key2");
+    item.prepareStartRead("key1");
+    item.updateShuffleLastReadTs("key1");
+    // all shuffles are read recently
+    assertTrue(item.getColdShuffleKeys(3, 60000).isEmpty());
+    Thread.sleep(10);
+    // the one not read for the longest time is first
+    assertEquals(Lists.newArrayList("key2", "key1"), item.getColdShuffleKeys(3, 5));
+    assertEquals(Lists.newArrayList("key2"), item.getColdShuffleKeys(1, 5));
+
+    // the shuffle which is uploaded totally is skipped
+    item.updateUploadedShuffle("key2", 30, Lists.newArrayList(1));
+    assertEquals(Lists.newArrayList("key1"), item.getColdShuffleKeys(3, 5));
+  }
 }
@@ -0,0 +1,111 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+import com.tencent.rss.common.BufferSegment;
+import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.common.util.ChecksumUtils;
+import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.storage.HdfsShuffleHandlerTestBase;
+
+public class CoalescedHdfsShuffleHandlerTest extends HdfsShuffleHandlerTestBase {
+
+  private long sequence = 0;
+
+  @Test
+  public void writeAndReadTest() throws Exception {
+    String basePath = HDFS_URI + "coalescedTest";
+    // partition -> blockId -> data
+    Map<Integer, Map<Long, byte[]>> expectedData = Maps.newHashMap();
+    for (String server : new String[]{"server1", "server2"}) {
+      CoalescedHdfsShuffleWriteHandler writeHandler =
+          new CoalescedHdfsShuffleWriteHandler("appId", 0, basePath, server, conf);
+      for (int i = 0; i < 3; i++) {
+        List<ShufflePartitionedBlock> blocks = Lists.newArrayList();
+        for (int partition = 0; partition < 4; partition++) {
+          blocks.addAll(createBlocks(partition, 3, expectedData));
+        }
+        writeHandler.write(blocks);
+      }
+    }
+
+    // all partitions of a shuffle server are in the same files
+    FileStatus[] files = fs.listStatus(new Path(basePath + "/appId/0/coalesced"));
+    assertEquals(4, files.length);
+    assertEquals(1, fs.listStatus(new Path(basePath + "/appId/0")).length);
+
+    for (int partition = 0; partition < 4; partition++) {
+      // the blocks of other partitions between the blocks of the partition are read with a large buffer,
+      // and are skipped with a small buffer
+      for (int readBufferSize : new int[]{1024 * 10214, 16}) {
+        for (int concurrency : new int[]{1, 2}) {
+          Map<Long, byte[]> expected = expectedData.get(partition);
+          Roaring64NavigableMap expectBlockIds = Roaring64NavigableMap.bitmapOf();
+          expected.keySet().forEach(expectBlockIds::addLong);
+          Roaring64NavigableMap processBlockIds = Roaring64NavigableMap.bitmapOf();
+          HdfsClientReadHandler handler = new HdfsClientReadHandler("appId", 0, partition,
+              readBufferSize, 1, 4, 20, expectBlockIds, processBlockIds, basePath, conf, concurrency);
+          Set<Long> actualBlockIds = Sets.newHashSet();
+          ShuffleDataResult result = handler.readShuffleData();
+          while (!result.isEmpty()) {
+            checkData(result, expected);
+            for (BufferSegment segment : result.getBufferSegments()) {
+              assertTrue(actualBlockIds.add(segment.getBlockId()));
+              processBlockIds.addLong(segment.getBlockId());
+            }
+            result = handler.readShuffleData();
+          }
+          assertEquals(expected.keySet(), actualBlockIds);
+          handler.close();
+        }
+      }
+    }
+  }
+
+  private List<ShufflePartitionedBlock> createBlocks(
+      int partitionId, int num, Map<Integer, Map<Long, byte[]>> expectedData) {
+    List<ShufflePartitionedBlock> blocks = Lists.newArrayList();
+    for (int i = 0; i < num; i++) {
+      byte[] buf = new byte[5 + i];
+      new Random().nextBytes(buf);
+      long blockId = (sequence++ << (Constants.PARTITION_ID_MAX_LENGTH + Constants.TASK_ATTEMPT_ID_MAX_LENGTH))
+          + ((long) partitionId << Constants.TASK_ATTEMPT_ID_MAX_LENGTH);
+      blocks.add(new ShufflePartitionedBlock(buf.length, buf.length, ChecksumUtils.getCrc32(buf), blockId, 0, buf));
+      expectedData.computeIfAbsent(partitionId, key -> Maps.newHashMap()).put(blockId, buf);
+    }
+    return blocks;
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.tencent.rss.common.BufferSegment;
+import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.common.ShuffleDataSegment;
+import com.tencent.rss.common.ShuffleIndexResult;
+import com.tencent.rss.common.ShufflePartitionedBlock;
+import com.tencent.rss.common.util.ChecksumUtils;
+import com.tencent.rss.common.util.Constants;
+import com.tencent.rss.common.util.RssUtils;
+import com.tencent.rss.storage.handler.api.ServerReadHandler;
+import com.tencent.rss.storage.util.LocalFileReadMode;
+import com.tencent.rss.storage.util.ShuffleStorageUtils;
+
+public class CoalescedLocalFileHandlerTest {
+
+  private static final int PARTITION_NUM = 8;
+  private static final int PARTITION_NUM_PER_RANGE = 2;
+
+  private long sequence = 0;
+
+  @Test
+  public void writeAndReadTest(@TempDir File tempDir) throws Exception {
+    String basePath = tempDir.getAbsolutePath();
+    AtomicInteger missNum = new AtomicInteger(0);
+    LocalFileWriterCache writerCache = new LocalFileWriterCache(10, 60000L);
+    LocalFileIndexCache indexCache = new LocalFileIndexCache(1024 * 1024, () -> { }, missNum::incrementAndGet);
+    LocalFileChannelCache channelCache = new LocalFileChannelCache(10);
+    CoalescedLocalFileWriteHandler writeHandler =
+        new CoalescedLocalFileWriteHandler("appId", 0, basePath, "pre", writerCache, indexCache);
+    // partition -> blockId -> data
+    Map<Integer, Map<Long, byte[]>> expectedData = Maps.newHashMap();
+    for (int i = 0; i < 3; i++) {
+      writeHandler.write(createBlocksOfAllPartitions(expectedData));
+    }
+
+    // all partition ranges of the shuffle are in the same files
+    File coalescedFolder = new File(ShuffleStorageUtils.getFullShuffleDataFolder(basePath,
+        ShuffleStorageUtils.getCoalescedDataPath("appId", 0)));
+    assertEquals(2, coalescedFolder.listFiles().length);
+    assertEquals(1, new File(basePath, "appId/0").listFiles().length);
+
+    List<ServerReadHandler> readHandlers = Lists.newArrayList();
+    for (int partition = 0; partition < PARTITION_NUM; partition += PARTITION_NUM_PER_RANGE) {
+      readHandlers.add(new CoalescedLocalFileServerReadHandler("appId", 0, partition, PARTITION_NUM_PER_RANGE,
+          PARTITION_NUM, basePath, LocalFileReadMode.CHANNEL, channelCache, indexCache));
+    }
+    validateResult(readHandlers, expectedData);
+    assertEquals(PARTITION_NUM / PARTITION_NUM_PER_RANGE, indexCache.getSize());
+
+    // the cached index of all ranges is invalidated by the next write
+    writeHandler.write(createBlocksOfAllPartitions(expectedData));
+    assertEquals(0, indexCache.getSize());
+    validateResult(readHandlers, expectedData);
+    assertEquals(2 * PARTITION_NUM / PARTITION_NUM_PER_RANGE, missNum.get());
+
+    // the handler without caches reads the same data
+    CoalescedLocalFileWriteHandler uncachedWriteHandler =
+        new CoalescedLocalFileWriteHandler("appId", 0, basePath, "pre", null, null);
+    writerCache.removeWriters(coalescedFolder.getAbsolutePath());
+    uncachedWriteHandler.write(createBlocksOfAllPartitions(expectedData));
+    readHandlers.clear();
+    for (int partition = 0; partition < PARTITION_NUM; partition += PARTITION_NUM_PER_RANGE) {
+      readHandlers.add(new CoalescedLocalFileServerReadHandler("appId", 0, partition, PARTITION_NUM_PER_RANGE,
+          PARTITION_NUM, basePath, LocalFileReadMode.STREAM, null, null));
+    }
+    validateResult(readHandlers, expectedData);
+  }
+
+  @Test
+  public void readNotExistFileTest(@TempDir File tempDir) {
+    String basePath = tempDir.getAbsolutePath();
+    new CoalescedLocalFileWriteHandler("appId", 0, basePath, "pre", null, null);
+    ServerReadHandler readHandler = new CoalescedLocalFileServerReadHandler(
+        "appId", 0, 0, PARTITION_NUM_PER_RANGE, PARTITION_NUM, basePath, LocalFileReadMode.STREAM, null, null);
+    assertTrue(readHandler.getShuffleIndex().isEmpty());
+  }
+
+  private void validateResult(List<ServerReadHandler> readHandlers, Map<Integer, Map<Long, byte[]>> expectedData) {
+    for (int range = 0; range < readHandlers.size(); range++) {
+      Map<Long, byte[]> expected = Maps.newHashMap();
+      for (int i = 0; i < PARTITION_NUM_PER_RANGE; i++) {
+        expected.putAll(expectedData.get(range * PARTITION_NUM_PER_RANGE + i));
+      }
+      // the blocks of other ranges between the blocks of the range are read with a large buffer,
+      // and are skipped with a small buffer
+      for (int readBufferSize : new int[]{1024 * 1024, 16}) {
+        Set<Long> actualBlockIds = Sets.newHashSet();
+        ServerReadHandler readHandler = readHandlers.get(range);
+        ShuffleIndexResult shuffleIndexResult = readHandler.getShuffleIndex();
+        List<ShuffleDataSegment> segments = RssUtils.transIndexDataToSegments(shuffleIndexResult,
+            readBufferSize, ShuffleStorageUtils.getCoalescedSkipThreshold(readBufferSize));
+        for (ShuffleDataSegment segment : segments) {
+          byte[] data = readHandler.getShuffleData(segment.getOffset(), segment.getLength()).getData();
+          ShuffleDataResult result = new ShuffleDataResult(data, segment.getBufferSegments());
+          for (BufferSegment bs : result.getBufferSegments()) {
+            byte[] blockData = new byte[bs.getLength()];
+            System.arraycopy(result.getData(), bs.getOffset(), blockData, 0, bs.getLength());
+            assertEquals(bs.getCrc(), ChecksumUtils.getCrc32(blockData));
+            assertArrayEquals(expected.get(bs.getBlockId()), blockData);
+            assertTrue(actualBlockIds.add(bs.getBlockId()));
+          }
+        }
+        assertEquals(expected.keySet(), actualBlockIds);
+      }
+    }
+  }
+
+  private List<ShufflePartitionedBlock> createBlocksOfAllPartitions(Map<Integer, Map<Long, byte[]>> expectedData) {
+    List<ShufflePartitionedBlock> blocks = Lists.newArrayList();
+    // the blocks are out of the order of partitions
+    for (int i = 0; i < 3; i++) {
+      for (int partition = PARTITION_NUM - 1; partition >= 0; partition--) {
+        byte[] buf = new byte[5 + i];
+        new Random().nextBytes(buf);
+        long blockId = (sequence++ << (Constants.PARTITION_ID_MAX_LENGTH + Constants.TASK_ATTEMPT_ID_MAX_LENGTH))
+            + ((long) partition << Constants.TASK_ATTEMPT_ID_MAX_LENGTH);
+        blocks.add(new ShufflePartitionedBlock(buf.length, buf.length, ChecksumUtils.getCrc32(buf), blockId, 0, buf));
+        expectedData.computeIfAbsent(partition, key -> Maps.newHashMap()).put(blockId, buf);
+      }
+    }
+    return blocks;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Tencent is pleased to support the open source community by making
+ * Firestorm-Spark remote shuffle server available. 
+ *
+ * Copyright (C) 2021 THL A29 Limited, a Tencent company.  All rights reserved. 
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at
+ *
+ * https://opensource.org/licenses/Apache-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OF ANY KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package com.tencent.rss.storage.handler.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.Lists;
+import com.tencent.rss.client.api.ShuffleServerClient;
+import com.tencent.rss.client.response.ResponseStatusCode;
+import com.tencent.rss.client.response.RssGetShuffleStorageTierResponse;
+import com.tencent.rss.common.BufferSegment;
+import com.tencent.rss.common.ShuffleDataResult;
+import com.tencent.rss.storage.handler.api.ClientReadHandler;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.longlong.Roaring64NavigableMap;
+
+public class ComposedClientReadHandlerTest {
+
+  @Test
+  public void skipHandlersAfterAllBlocksProcessedTest() {
+    Roaring64NavigableMap expectBlockIds = Roaring64NavigableMap.bitmapOf(1, 2);
+    Roaring64NavigableMap processBlockIds = Roaring64NavigableMap.bitmapOf();
+    AtomicInteger createdNum = new AtomicInteger(0);
+    AtomicInteger plannedNum = new AtomicInteger(0);
+    ComposedClientReadHandler handler = new ComposedClientReadHandler(expectBlockIds, processBlockIds, () -> {
+      plannedNum.incrementAndGet();
+      return null;
+    }, creator(createdNum, 1, 2), creator(createdNum), creator(createdNum));
+
+    readAll(handler, processBlockIds);
+    assertEquals(expectBlockIds, processBlockIds);
+    // the data is read from the hot handler only, and the tiers are never planned
+    assertEquals(1, createdNum.get());
+    assertEquals(0, plannedNum.get());
+  }
+
+  @Test
+  public void readPlannedHandlersTest() {
+    Roaring64NavigableMap expectBlockIds = Roaring64NavigableMap.bitmapOf(1, 2, 3);
+    Roaring64NavigableMap processBlockIds = Roaring64NavigableMap.bitmapOf();
+    AtomicInteger hotNum = new AtomicInteger(0);
+    AtomicInteger warmNum = new AtomicInteger(0);
+    AtomicInteger coldNum = new AtomicInteger(0);
+    ComposedClientReadHandler handler = new ComposedClientReadHandler(expectBlockIds, processBlockIds,
+        () -> new boolean[] {true, false, true},
+        creator(hotNum, 1, 2), creator(warmNum, 3), creator(coldNum, 3));
+
+    readAll(handler, processBlockIds);
+    assertEquals(expectBlockIds, processBlockIds);
+    // the warm handler without data is skipped
+    assertEquals(1, hotNum.get());
+    assertEquals(0, warmNum.get());
+    assertEquals(1, coldNum.get());
+  }
+
+  @Test
+  public void readSkippedHandlersIfBlocksMissingTest() {
+    Roaring64NavigableMap expectBlockIds = Roaring64NavigableMap.bitmapOf(1, 2, 3, 4);
+    Roaring64NavigableMap processBlockIds = Roaring64NavigableMap.bitmapOf();
+    AtomicInteger createdNum = new AtomicInteger(0);
+    // the plan is stale, eg, the data is uploaded after planning
+    ComposedClientReadHandler handler = new ComposedClientReadHandler(expectBlockIds, processBlockIds,
+        () -> new boolean[] {true, false, false},
+        creator(createdNum, 1), creator(createdNum, 2, 3), creator(createdNum, 4));
+
+    readAll(handler, processBlockIds);
+    assertEquals(expectBlockIds, processBlockIds);
+    assertEquals(3, createdNum.get());
+
+    // the handlers are read in sequence without plan
+    processBlockIds = Roaring64NavigableMap.bitmapOf();
+    createdNum.set(0);
+    handler = new ComposedClientReadHandler(
+        creator(createdNum, 1), creator(createdNum, 2, 3), creator(createdNum, 4));
+    readAll(handler, processBlockIds);
+    assertEquals(expectBlockIds, processBlockIds);
+    assertEquals(3, createdNum.get());
+  }
+
+  @Test
+  public void readUploadedDataByPlannedHdfsHandlerTest() throws Exception {
+    Roaring64NavigableMap expectBlockIds = Roaring64NavigableMap.bitmapOf(1, 2);
+    Roaring64NavigableMap processBlockIds = Roaring64NavigableMap.bitmapOf();
+    // the data of the partition is only uploaded to hdfs after it is read from memory
+    ShuffleServerClient client = mock(ShuffleServerClient.class);
+    when(client.getShuffleStorageTier(any())).thenReturn(
+        new RssGetShuffleStorageTierResponse(ResponseStatusCode.SUCCESS, true, false, false, true));
+    ShuffleStorageTierPlanner planner = new ShuffleStorageTierPlanner("appId", 0, 1, Lists.newArrayList(client));
+    assertArrayEquals(new boolean[] {false, true}, planner.planLocalAndHdfs());
+
+    AtomicInteger memoryNum = new AtomicInteger(0);
+    AtomicInteger localNum = new AtomicInteger(0);
+    AtomicInteger hdfsNum = new AtomicInteger(0);
+    ComposedClientReadHandler handler = new ComposedClientReadHandler(expectBlockIds, processBlockIds, () -> {
+      boolean[] tiers = planner.planLocalAndHdfs();
+      return new boolean[] {true, tiers[0], tiers[1]};
+    }, creator(memoryNum, 1), creator(localNum), creator(hdfsNum, 2));
+
+    readAll(handler, processBlockIds);
+    assertEquals(expectBlockIds, processBlockIds);
+    // the hdfs handler is planned, the local file handler isn't read as the fallback of missing blocks
+    assertEquals(1, memoryNum.get());
+    assertEquals(0, localNum.get());
+    assertEquals(1, hdfsNum.get());
+  }
+
+  private void readAll(ComposedClientReadHandler handler, Roaring64NavigableMap processBlockIds) {
+    ShuffleDataResult result = handler.readShuffleData();
+    while (result != null) {
+      for (BufferSegment bs : result.getBufferSegments()) {
+        processBlockIds.addLong(bs.getBlockId());
+        handler.updateConsumedBlockInfo(bs);
+      }
+      result = handler.readShuffleData();
+    }
+    assertNull(handler.readShuffleData());
+  }
+
+  // the created handler returns one result with the blocks and then nothing
+  private Callable<ClientReadHandler> creator(AtomicInteger createdNum, long... blockIds) {
+    return () -> {
+      createdNum.incrementAndGet();
+      List<BufferSegment> bufferSegments = Lists.newArrayList();
+      for (int i = 0; i < blockIds.length; i++) {
+        bufferSegments.add(new BufferSegment(blockIds[i], i, 1, 1, 0, 0));
+      }
+      ClientReadHandler readHandler = mock(ClientReadHandler.class);
+      if (bufferSegments.isEmpty()) {
+        when(readHandler.readShuffleData()).thenReturn(null);
+      } else {
+        when(readHandler.readShuffleData()).thenReturn(
+            new ShuffleDataResult(new byte[blockIds.length], bufferSegments), (ShuffleDataResult) null);
+      }
+      return readHandler;
+    };
+  }
+}
@@ -106,4 +106,45 @@ public class HdfsClientReadHandlerTest extends HdfsShuffleHandlerTestBase {
       fail(e.getMessage());
     }
   }
+
+  @Test
+  public void readConcurrentlyTest() throws Exception {
+    String basePath = HDFS_URI + "clientReadTest2";
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Roaring64NavigableMap expectBlockIds = Roaring64NavigableMap.bitmapOf();
+    Roaring64NavigableMap processBlockIds = Roaring64NavigableMap.bitmapOf();
+    int readBufferSize = 13;
+    int total = 0;
+    // every writer has its own data file
+    for (int i = 0; i < 3; i++) {
+      HdfsShuffleWriteHandler writeHandler =
+          new HdfsShuffleWriteHandler("appId", 0, 1, 1, basePath, "test" + i, conf);
+      for (int j = 0; j < 2; j++) {
+        writeTestData(writeHandler, 5, 3, 0, expectedData);
+        total += calcExpectedSegmentNum(5, 3, readBufferSize);
+      }
+    }
+    expectedData.forEach((id, block) -> expectBlockIds.addLong(id));
+
+    HdfsClientReadHandler handler = new HdfsClientReadHandler(
+        "appId", 0, 1, 1024 * 10214, 1, 10, readBufferSize,
+        expectBlockIds, processBlockIds, basePath, conf, 2);
+    Set<Long> actualBlockIds = Sets.newHashSet();
+    int segmentNum = 0;
+    ShuffleDataResult shuffleDataResult = handler.readShuffleData();
+    while (!shuffleDataResult.isEmpty()) {
+      segmentNum++;
+      checkData(shuffleDataResult, expectedData);
+      for (BufferSegment bufferSegment : shuffleDataResult.getBufferSegments()) {
+        actualBlockIds.add(bufferSegment.getBlockId());
+        processBlockIds.addLong(bufferSegment.getBlockId());
+      }
+      shuffleDataResult = handler.readShuffleData();
+    }
+    assertEquals(total, segmentNum);
+    assertEquals(expectedData.keySet(), actualBlockIds);
+    // the finished files are closed
+    assertTrue(handler.getHdfsShuffleFileReadHandlers().isEmpty());
+    handler.close();
+  }
 }
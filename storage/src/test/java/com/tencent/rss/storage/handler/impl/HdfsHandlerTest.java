@@ -18,6 +18,8 @@
 
 package com.tencent.rss.storage.handler.impl;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.google.common.collect.Lists;
@@ -91,6 +93,53 @@ public class HdfsHandlerTest extends HdfsTestBase {
     compareDataAndIndex("appId", 1, 1, basePath, expectedData, expectedBlockId);
   }
 
+  @Test
+  public void writeWithCachedWritersTest() throws Exception {
+    String basePath = HDFS_URI + "writeWithCachedWritersTest";
+    HdfsFileWriterCache writerCache = new HdfsFileWriterCache(10, 60000L, false, conf);
+    HdfsShuffleWriteHandler writeHandler =
+        new HdfsShuffleWriteHandler("appId", 1, 1, 1, basePath, "test", conf, writerCache);
+    List<Long> expectedBlockId = new LinkedList<>();
+    List<byte[]> expectedData = new LinkedList<>();
+    int blockId = 1;
+    for (int round = 0; round < 3; round++) {
+      List<ShufflePartitionedBlock> blocks = new LinkedList<>();
+      for (int i = 0; i < 5; i++, blockId++) {
+        byte[] buf = new byte[blockId * 8];
+        new Random().nextBytes(buf);
+        expectedData.add(buf);
+        expectedBlockId.add((long) blockId);
+        blocks.add(new ShufflePartitionedBlock(buf.length, buf.length, blockId, blockId, 0, buf));
+      }
+      writeHandler.write(blocks);
+      // the streams are still open, and the data is visible after hflush
+      assertEquals(1, writerCache.getSize());
+      compareDataAndIndex("appId", 1, 1, basePath, expectedData, expectedBlockId);
+    }
+    assertEquals(2, fs.listStatus(new Path(basePath + "/appId/1/1-1")).length);
+
+    // the streams are closed, and the files of the removed app aren't reopened by the following write
+    writerCache.removeWriters(basePath + "/appId");
+    assertEquals(0, writerCache.getSize());
+    byte[] buf = new byte[8];
+    new Random().nextBytes(buf);
+    ShufflePartitionedBlock block = new ShufflePartitionedBlock(8, 8, blockId, blockId, 0, buf);
+    assertThrows(RuntimeException.class, () -> writeHandler.write(Lists.newArrayList(block)));
+    assertEquals(0, writerCache.getSize());
+    compareDataAndIndex("appId", 1, 1, basePath, expectedData, expectedBlockId);
+    assertEquals(2, fs.listStatus(new Path(basePath + "/appId/1/1-1")).length);
+
+    // all streams are closed with the cache, and it can't be used any more
+    HdfsShuffleWriteHandler otherWriteHandler =
+        new HdfsShuffleWriteHandler("appId2", 1, 1, 1, basePath, "test", conf, writerCache);
+    otherWriteHandler.write(Lists.newArrayList(block));
+    assertEquals(1, writerCache.getSize());
+    writerCache.close();
+    assertEquals(0, writerCache.getSize());
+    assertThrows(IllegalStateException.class,
+        () -> writerCache.acquire(basePath + "/appId2/1/1-1", "test"));
+  }
+
   private void compareDataAndIndex(
       String appId,
       int shuffleId,
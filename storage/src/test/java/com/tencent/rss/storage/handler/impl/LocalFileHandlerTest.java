@@ -37,6 +37,7 @@ import com.tencent.rss.common.util.ChecksumUtils;
 import com.tencent.rss.common.util.RssUtils;
 import com.tencent.rss.storage.handler.api.ServerReadHandler;
 import com.tencent.rss.storage.handler.api.ShuffleWriteHandler;
+import com.tencent.rss.storage.util.LocalFileReadMode;
 import com.tencent.rss.storage.util.ShuffleStorageUtils;
 import java.io.File;
 import java.io.IOException;
@@ -44,6 +45,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.Test;
 
@@ -113,6 +115,143 @@ public class LocalFileHandlerTest {
     }
   }
 
+  @Test
+  public void writeWithWriterCacheTest() throws Exception {
+    File tmpDir = Files.createTempDir();
+    tmpDir.deleteOnExit();
+    String basePath = new File(tmpDir, "data").getAbsolutePath();
+    LocalFileWriterCache writerCache = new LocalFileWriterCache(1, 60000L);
+    LocalFileWriteHandler writeHandler1 = new LocalFileWriteHandler("appId", 0, 1, 1,
+        basePath, "pre", writerCache);
+    LocalFileWriteHandler writeHandler2 = new LocalFileWriteHandler("appId", 0, 2, 2,
+        basePath, "pre", writerCache);
+
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Set<Long> expectedBlockIds1 = Sets.newHashSet();
+    Set<Long> expectedBlockIds2 = Sets.newHashSet();
+    writeTestData(writeHandler1, 1, 32, expectedData, expectedBlockIds1);
+    writeTestData(writeHandler1, 2, 32, expectedData, expectedBlockIds1);
+    assertEquals(1, writerCache.getSize());
+    // writers of handler1 are evicted
+    writeTestData(writeHandler2, 3, 32, expectedData, expectedBlockIds2);
+    assertEquals(1, writerCache.getSize());
+    writeTestData(writeHandler1, 3, 32, expectedData, expectedBlockIds1);
+
+    LocalFileServerReadHandler readHandler1 = new LocalFileServerReadHandler(
+        "appId", 0, 1, 1, 10, basePath);
+    LocalFileServerReadHandler readHandler2 = new LocalFileServerReadHandler(
+        "appId", 0, 2, 1, 10, basePath);
+    validateResult(readHandler1, expectedBlockIds1, expectedData);
+    validateResult(readHandler2, expectedBlockIds2, expectedData);
+
+    // writers are closed with shuffle, and they are reopened by next write
+    writerCache.removeWriters(ShuffleStorageUtils.getFullShuffleDataFolder(basePath,
+        ShuffleStorageUtils.getShuffleDataPath("appId", 0)));
+    assertEquals(0, writerCache.getSize());
+    writeTestData(writeHandler1, 2, 32, expectedData, expectedBlockIds1);
+    validateResult(readHandler1, expectedBlockIds1, expectedData);
+  }
+
+  @Test
+  public void readWithChannelCacheTest() throws Exception {
+    File tmpDir = Files.createTempDir();
+    tmpDir.deleteOnExit();
+    String basePath = new File(tmpDir, "data").getAbsolutePath();
+    LocalFileWriteHandler writeHandler1 = new LocalFileWriteHandler("appId", 0, 1, 1, basePath, "pre");
+    LocalFileWriteHandler writeHandler2 = new LocalFileWriteHandler("appId", 0, 2, 2, basePath, "pre");
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Set<Long> expectedBlockIds1 = Sets.newHashSet();
+    Set<Long> expectedBlockIds2 = Sets.newHashSet();
+    writeTestData(writeHandler1, 2, 32, expectedData, expectedBlockIds1);
+    writeTestData(writeHandler2, 3, 32, expectedData, expectedBlockIds2);
+
+    // 2 files of handler1 are evicted by handler2
+    LocalFileChannelCache channelCache = new LocalFileChannelCache(2);
+    LocalFileServerReadHandler readHandler1 = new LocalFileServerReadHandler(
+        "appId", 0, 1, 1, 10, basePath, LocalFileReadMode.CHANNEL, channelCache, null);
+    LocalFileServerReadHandler readHandler2 = new LocalFileServerReadHandler(
+        "appId", 0, 2, 1, 10, basePath, LocalFileReadMode.CHANNEL, channelCache, null);
+    validateResult(readHandler1, expectedBlockIds1, expectedData);
+    assertEquals(2, channelCache.getSize());
+    validateResult(readHandler2, expectedBlockIds2, expectedData);
+    assertEquals(2, channelCache.getSize());
+
+    // the cached channels read the appended data
+    writeTestData(writeHandler2, 2, 32, expectedData, expectedBlockIds2);
+    validateResult(readHandler2, expectedBlockIds2, expectedData);
+    // read beyond the file fails
+    assertEquals(0, readHandler2.getShuffleData(0, 32 * 100).getDataLength());
+    assertEquals(0, readHandler1.getShuffleData(32, 32 * 100).getDataLength());
+
+    channelCache.removeChannels(ShuffleStorageUtils.getFullShuffleDataFolder(basePath,
+        ShuffleStorageUtils.getShuffleDataPath("appId", 0)));
+    assertEquals(0, channelCache.getSize());
+    validateResult(readHandler1, expectedBlockIds1, expectedData);
+  }
+
+  @Test
+  public void readWithIndexCacheTest() throws Exception {
+    File tmpDir = Files.createTempDir();
+    tmpDir.deleteOnExit();
+    String basePath = new File(tmpDir, "data").getAbsolutePath();
+    AtomicInteger hitNum = new AtomicInteger(0);
+    AtomicInteger missNum = new AtomicInteger(0);
+    LocalFileIndexCache indexCache =
+        new LocalFileIndexCache(1024 * 1024, hitNum::incrementAndGet, missNum::incrementAndGet);
+    LocalFileWriteHandler writeHandler = new LocalFileWriteHandler("appId", 0, 1, 1,
+        basePath, "pre", null, indexCache);
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Set<Long> expectedBlockIds = Sets.newHashSet();
+    writeTestData(writeHandler, 2, 32, expectedData, expectedBlockIds);
+
+    LocalFileServerReadHandler readHandler = new LocalFileServerReadHandler(
+        "appId", 0, 1, 1, 10, basePath, LocalFileReadMode.STREAM, null, indexCache);
+    validateResult(readHandler, expectedBlockIds, expectedData);
+    validateResult(readHandler, expectedBlockIds, expectedData);
+    assertEquals(1, missNum.get());
+    assertEquals(1, hitNum.get());
+    assertEquals(1, indexCache.getSize());
+
+    // the cached index is invalidated by new data
+    writeTestData(writeHandler, 3, 32, expectedData, expectedBlockIds);
+    assertEquals(0, indexCache.getSize());
+    validateResult(readHandler, expectedBlockIds, expectedData);
+    assertEquals(2, missNum.get());
+
+    // the index which is read before invalidation won't be cached
+    long version = indexCache.getVersion();
+    byte[] staleIndex = readHandler.getShuffleIndex().getIndexData();
+    writeTestData(writeHandler, 1, 32, expectedData, expectedBlockIds);
+    indexCache.put("stale", staleIndex, version);
+    assertEquals(0, indexCache.getSize());
+
+    validateResult(readHandler, expectedBlockIds, expectedData);
+    indexCache.invalidateAll(ShuffleStorageUtils.getFullShuffleDataFolder(basePath,
+        ShuffleStorageUtils.getShuffleDataPath("appId", 0)));
+    assertEquals(0, indexCache.getSize());
+  }
+
+  @Test
+  public void resolveFilePathLaterTest() throws Exception {
+    File tmpDir = Files.createTempDir();
+    tmpDir.deleteOnExit();
+    String basePath = new File(tmpDir, "data").getAbsolutePath();
+    // the folder exists before any file is flushed
+    File partitionFolder = new File(ShuffleStorageUtils.getFullShuffleDataFolder(basePath,
+        ShuffleStorageUtils.getShuffleDataPathWithRange("appId", 0, 1, 1, 10)));
+    assertTrue(partitionFolder.mkdirs());
+    LocalFileServerReadHandler readHandler = new LocalFileServerReadHandler(
+        "appId", 0, 1, 1, 10, basePath);
+    assertTrue(readHandler.getShuffleIndex().isEmpty());
+
+    // the same handler finds the files after they are flushed
+    LocalFileWriteHandler writeHandler = new LocalFileWriteHandler("appId", 0, 1, 1, basePath, "pre");
+    Map<Long, byte[]> expectedData = Maps.newHashMap();
+    Set<Long> expectedBlockIds = Sets.newHashSet();
+    writeTestData(writeHandler, 2, 32, expectedData, expectedBlockIds);
+    validateResult(readHandler, expectedBlockIds, expectedData);
+  }
+
   @Test
   public void writeBigDataTest() throws IOException  {
     File tmpDir = Files.createTempDir();
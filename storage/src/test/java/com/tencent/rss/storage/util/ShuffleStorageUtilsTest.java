@@ -217,6 +217,29 @@ public class ShuffleStorageUtilsTest {
     assertEquals(2, testedBlockIds.size());
   }
 
+  @Test
+  public void mergeSegmentsWithSkipThresholdTest() {
+    // the gaps are [40, 50) and [90, 200)
+    List<FileBasedShuffleSegment> segments = Lists.newArrayList(
+        new FileBasedShuffleSegment(1, 0, 40, 0, 0, 0),
+        new FileBasedShuffleSegment(2, 50, 40, 0, 0, 0),
+        new FileBasedShuffleSegment(3, 200, 20, 0, 0, 0));
+    List<DataFileSegment> fileSegments = ShuffleStorageUtils.mergeSegments("path", segments, 1000, 10);
+    assertEquals(2, fileSegments.size());
+    assertEquals(0, fileSegments.get(0).getOffset());
+    assertEquals(90, fileSegments.get(0).getLength());
+    assertEquals(new BufferSegment(2, 50, 40, 0, 0, 0), fileSegments.get(0).getBufferSegments().get(1));
+    assertEquals(200, fileSegments.get(1).getOffset());
+    assertEquals(20, fileSegments.get(1).getLength());
+
+    // no gap is read
+    fileSegments = ShuffleStorageUtils.mergeSegments("path", segments, 1000, 0);
+    assertEquals(3, fileSegments.size());
+
+    // the default threshold is readBufferSize / 2
+    assertEquals(1, ShuffleStorageUtils.mergeSegments("path", segments, 1000).size());
+  }
+
   @Test
   public void getShuffleDataPathWithRangeTest() {
     String result = ShuffleStorageUtils.getShuffleDataPathWithRange("appId", 0, 1, 3, 6);